@@ -0,0 +1,65 @@
+package model.trader;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.CachedStockDataRetriever;
+import util.StockDataRetriever;
+import util.SyntheticStockDataRetriever;
+
+/**
+ * This class is a JMH benchmark of the closing prices of a basket over a year, for baskets of
+ * 10 to 500 synthetic stocks cached on the heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BasketBenchmark {
+  @Param({"10", "50", "100", "500"})
+  private int members;
+
+  private Basket basket;
+
+  /**
+   * Create the basket and fill the cache.
+   *
+   * @throws Exception when cannot retrieve data
+   */
+  @Setup
+  public void setUp() throws Exception {
+    StockDataRetriever dataRetriever = new CachedStockDataRetriever(
+            new SyntheticStockDataRetriever(42));
+    basket = new Basket("bench", dataRetriever, 20160101);
+    List<String> symbols = SyntheticStockDataRetriever.universe(members);
+    for (int i = 0; i < members; i++) {
+      basket.addStock(symbols.get(i), 1 + i % 10);
+    }
+    getHistoricalClosing();
+  }
+
+  /**
+   * Get the closing prices of the basket over a year.
+   *
+   * @return the closing prices
+   * @throws Exception when cannot retrieve data
+   */
+  @Benchmark
+  public Map<Integer, Double> getHistoricalClosing() throws Exception {
+    return basket.getHistoricalClosing(20160101, 20161231);
+  }
+}
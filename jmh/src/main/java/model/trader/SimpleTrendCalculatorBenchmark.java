@@ -0,0 +1,71 @@
+package model.trader;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.PriceSeries;
+import util.SyntheticStockDataRetriever;
+
+/**
+ * This class is a JMH benchmark of the simple trend of a synthetic stock, from the closing
+ * prices as a map, as the model passes them, and as a series.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleTrendCalculatorBenchmark {
+  @Param({"1", "30"})
+  private int years;
+
+  private SimpleTrendCalculator trendCalculator;
+  private Map<Integer, Double> closingMap;
+  private PriceSeries closingSeries;
+
+  /**
+   * Get the closing prices.
+   *
+   * @throws Exception when cannot retrieve data
+   */
+  @Setup
+  public void setUp() throws Exception {
+    Stock stock = new Stock("AAPL", new SyntheticStockDataRetriever(42));
+    int fromDate = (2017 - years) * 10000 + 101;
+    closingMap = stock.getHistoricalClosing(fromDate, 20161231);
+    closingSeries = stock.getClosingSeries(fromDate, 20161231);
+    trendCalculator = new SimpleTrendCalculator();
+  }
+
+  /**
+   * Get the trend of the closing prices as a map.
+   *
+   * @return the trend
+   */
+  @Benchmark
+  public double trendMap() {
+    return trendCalculator.trend(closingMap);
+  }
+
+  /**
+   * Get the trend of the closing prices as a series.
+   *
+   * @return the trend
+   */
+  @Benchmark
+  public double trendSeries() {
+    return trendCalculator.trend(closingSeries);
+  }
+}
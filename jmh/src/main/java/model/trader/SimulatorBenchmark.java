@@ -0,0 +1,69 @@
+package model.trader;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.CachedStockDataRetriever;
+import util.SyntheticStockDataRetriever;
+
+/**
+ * This class is a JMH benchmark of running a dollar cost averaging simulation of four synthetic
+ * stocks cached on the heap over 30 years, investing every month or every quarter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatorBenchmark {
+  private static final LocalDate START = LocalDate.of(1987, 1, 2);
+  private static final LocalDate END = LocalDate.of(2016, 12, 30);
+
+  @Param({"MONTH", "QUARTER"})
+  private String cadence;
+
+  private Map<String, Double> proportionMap;
+  private SymbolRegistry registry;
+
+  /**
+   * Create the registry and fill the cache.
+   *
+   * @throws Exception when cannot retrieve data
+   */
+  @Setup
+  public void setUp() throws Exception {
+    proportionMap = new HashMap<>();
+    for (String stockSymbol : new String[]{"AAPL", "AMZN", "GOOG", "MSFT"}) {
+      proportionMap.put(stockSymbol, 0.25);
+    }
+    registry = new SymbolRegistry(new CachedStockDataRetriever(
+            new SyntheticStockDataRetriever(42)));
+    simulate();
+  }
+
+  /**
+   * Run the simulation.
+   *
+   * @return the simulation
+   * @throws Exception when cannot retrieve data
+   */
+  @Benchmark
+  public Simulator simulate() throws Exception {
+    return new Simulator(100000, 1000, START, END, "DCA", cadence, proportionMap,
+            registry.getDataRetriever(), registry);
+  }
+}
@@ -0,0 +1,67 @@
+package util;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import model.trader.Stock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class is a JMH benchmark of the moving averages of Calculate, over synthetic prices
+ * cached on the heap as the application caches web prices.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculateBenchmark {
+  @Param({"50", "200"})
+  private int days;
+
+  private Stock stock;
+
+  /**
+   * Create the stock and fill the cache.
+   *
+   * @throws Exception when cannot retrieve data
+   */
+  @Setup
+  public void setUp() throws Exception {
+    stock = new Stock("AAPL", new CachedStockDataRetriever(new SyntheticStockDataRetriever(42)));
+    getAveRange();
+  }
+
+  /**
+   * Get the moving average of one day.
+   *
+   * @return the average
+   * @throws Exception when cannot retrieve data
+   */
+  @Benchmark
+  public double getAve() throws Exception {
+    return Calculate.getAve(stock, days, 30, 12, 2016);
+  }
+
+  /**
+   * Get the moving averages of every day of a year.
+   *
+   * @return the averages
+   * @throws Exception when cannot retrieve data
+   */
+  @Benchmark
+  public Map<Integer, Double> getAveRange() throws Exception {
+    return Calculate.getAveRange(stock, 20160101, 20161231, days);
+  }
+}
@@ -0,0 +1,79 @@
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class is a JMH benchmark of parsing a historical price response the way
+ * WebStockDataRetriever does, from synthetic prices written as Date,Open,High,Low,Close,Volume
+ * rows with d-MMM-yy dates, newest first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceCsvParserBenchmark {
+  private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul",
+    "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+  @Param({"1", "10"})
+  private int years;
+
+  private byte[] csv;
+  private PriceCsvParser parser;
+
+  /**
+   * Write the response.
+   *
+   * @throws Exception when cannot retrieve data
+   */
+  @Setup
+  public void setUp() throws Exception {
+    Map<Integer, PriceRecord> prices = new SyntheticStockDataRetriever(42)
+            .getHistoricalPrices("AAPL", 1, 1, 2017 - years, 31, 12, 2016);
+    List<Integer> dates = new ArrayList<>(prices.keySet());
+    StringBuilder out = new StringBuilder("Date,Open,High,Low,Close,Volume\n");
+    for (int i = dates.size() - 1; i >= 0; i--) {
+      int date = dates.get(i);
+      PriceRecord record = prices.get(date);
+      out.append(date % 100).append('-').append(MONTHS[date / 100 % 100 - 1]).append('-')
+              .append(String.format(Locale.ROOT, "%02d", date / 10000 % 100)).append(',')
+              .append(record.getOpenPrice()).append(',')
+              .append(record.getHighestDayPrice()).append(',')
+              .append(record.getLowestDayPrice()).append(',')
+              .append(record.getClosePrice()).append(",0\n");
+    }
+    csv = out.toString().getBytes(StandardCharsets.US_ASCII);
+    parser = new PriceCsvParser();
+  }
+
+  /**
+   * Parse the response into the map WebStockDataRetriever returns.
+   *
+   * @return the prices
+   * @throws Exception when the response cannot be parsed
+   */
+  @Benchmark
+  public Map<Integer, PriceRecord> parse() throws Exception {
+    return parser.parse(new ByteArrayInputStream(csv)).toMap();
+  }
+}
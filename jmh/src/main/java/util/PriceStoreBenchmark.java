@@ -0,0 +1,166 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class is a JMH benchmark of the price store formats, over synthetic daily histories
+ * (cent-quoted random walks over business days) written in the plain or the compressed format.
+ * It measures decoding every block of a file into primitive arrays and reading the close price
+ * of a random row of a random file. The bytes per row of the format are printed when the files
+ * are written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceStoreBenchmark {
+
+  @Param({"false", "true"})
+  private boolean compressed;
+
+  @Param({"100"})
+  private int stocks;
+
+  @Param({"6000"})
+  private int days;
+
+  private Path dir;
+  private PriceStoreFile[] files;
+  private int next;
+  private int[] blockDates;
+  private double[] blockOpen;
+  private double[] blockHigh;
+  private double[] blockLow;
+  private double[] blockClose;
+  private SplittableRandom picks;
+
+  /**
+   * Write the files.
+   *
+   * @throws Exception when the files cannot be written
+   */
+  @Setup
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("pricebench");
+    int[] dates = new int[days];
+    double[] open = new double[days];
+    double[] high = new double[days];
+    double[] low = new double[days];
+    double[] close = new double[days];
+    Random random = new Random(42);
+    files = new PriceStoreFile[stocks];
+    long bytes = 0;
+    for (int s = 0; s < stocks; s++) {
+      fill(random, dates, open, high, low, close);
+      Path path = dir.resolve("S" + s);
+      PriceStoreFile.write(path, "S" + s, dates, open, high, low, close, days, compressed);
+      bytes += Files.size(path);
+      files[s] = PriceStoreFile.open(path);
+    }
+    System.out.printf(Locale.ROOT, "%n%s format, %.2f bytes/row%n",
+            compressed ? "compressed" : "plain", (double) bytes / stocks / days);
+
+    int size = files[0].getBlockSize();
+    blockDates = new int[size];
+    blockOpen = new double[size];
+    blockHigh = new double[size];
+    blockLow = new double[size];
+    blockClose = new double[size];
+    picks = new SplittableRandom(42);
+  }
+
+  /**
+   * Delete the files.
+   *
+   * @throws IOException when the files cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    files = null;
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.deleteIfExists(path);
+      }
+    }
+  }
+
+  /**
+   * Fill the columns with a random walk over business days.
+   *
+   * @param random random numbers
+   * @param dates  date column
+   * @param open   open price column
+   * @param high   highest price column
+   * @param low    lowest price column
+   * @param close  close price column
+   */
+  private static void fill(Random random, int[] dates, double[] open, double[] high,
+                           double[] low, double[] close) {
+    int day = DateUtil.toEpochDay(19900101);
+    long cents = 1000 + random.nextInt(20000);
+    for (int i = 0; i < dates.length; i++) {
+      while (DateUtil.dayOfWeek(DateUtil.fromEpochDay(day)) > 5) {
+        day++;
+      }
+      dates[i] = DateUtil.fromEpochDay(day++);
+      cents = Math.max(100, cents + Math.round(random.nextGaussian() * cents / 80));
+      long openCents = Math.max(50, cents + Math.round(random.nextGaussian() * cents / 200));
+      close[i] = cents / 100.0;
+      open[i] = openCents / 100.0;
+      high[i] = (Math.max(cents, openCents) + random.nextInt(1 + (int) (cents / 100))) / 100.0;
+      low[i] = (Math.min(cents, openCents) - random.nextInt(1 + (int) (cents / 200))) / 100.0;
+    }
+  }
+
+  /**
+   * Decode every block of the next file into primitive arrays.
+   *
+   * @return sum of the last close price of each block
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public double decode() {
+    PriceStoreFile file = files[next];
+    next = (next + 1) % files.length;
+    double checksum = 0;
+    for (int b = 0; b < file.getBlockCount(); b++) {
+      int n = file.readBlock(b, blockDates, blockOpen, blockHigh, blockLow, blockClose);
+      checksum += blockClose[n - 1];
+    }
+    return checksum;
+  }
+
+  /**
+   * Read the close price of a random row of a random file.
+   *
+   * @return the close price
+   */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public double lookup() {
+    PriceStoreFile file = files[picks.nextInt(files.length)];
+    return file.closeAt(picks.nextInt(file.size()));
+  }
+}
@@ -0,0 +1,232 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * This class is a JMH load benchmark of the retriever stack, served by a local
+ * StubMarketDataServer. Each benchmark thread is a client requesting historical prices of
+ * symbols drawn from a Zipf distribution, over windows of one to twelve months of 2016, as fast
+ * as it can; the number of clients is set with -t. The stack is the web retriever alone, or with
+ * the coalescing, in-memory caching or tiered caching layers on top of it. Sampling gives the
+ * latency percentiles, the failed requests are counted per iteration, and the requests that
+ * reached the server are printed after each iteration. By default the server serves the
+ * synthetic prices of the seed without delay or errors; with the store parameter it serves the
+ * recorded prices of a price store instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class WebRetrieverBenchmark {
+
+  @Param({"web", "coalescing", "cached", "tiered"})
+  private String stack;
+
+  @Param({"500"})
+  private int symbols;
+
+  @Param({"0"})
+  private double zipf;
+
+  @Param({"0"})
+  private long latency;
+
+  @Param({"0"})
+  private long jitter;
+
+  @Param({"0"})
+  private double errors;
+
+  @Param({"0"})
+  private long bandwidth;
+
+  @Param({""})
+  private String store;
+
+  @Param({"42"})
+  private long seed;
+
+  private StubMarketDataServer server;
+  private StockDataRetriever retriever;
+  private Path tiered;
+  private String[] names;
+  private double[] cumulative;
+  private final AtomicInteger clients = new AtomicInteger();
+  private long upstream;
+
+  /**
+   * The state of a client thread: its random requests and its failed requests.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Client {
+    private SplittableRandom random;
+    public long failed;
+
+    /**
+     * Seed the requests of the client from the seed of the benchmark and the client number.
+     *
+     * @param benchmark the benchmark
+     */
+    @Setup
+    public void setUp(WebRetrieverBenchmark benchmark) {
+      random = new SplittableRandom(benchmark.seed * 1_000_003L
+              + benchmark.clients.getAndIncrement());
+    }
+
+    /**
+     * Reset the failed requests.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+      failed = 0;
+    }
+  }
+
+  /**
+   * Start the server and build the retriever stack on top of a web retriever of it.
+   *
+   * @throws Exception when the server cannot be started
+   */
+  @Setup
+  public void setUp() throws Exception {
+    StockDataRetriever source;
+    if (store.isEmpty()) {
+      source = new SyntheticStockDataRetriever(seed);
+      names = SyntheticStockDataRetriever.universe(symbols).toArray(new String[0]);
+    } else {
+      source = new MappedStockDataRetriever(Paths.get(store));
+      names = ((MappedStockDataRetriever) source).getSymbols().toArray(new String[0]);
+    }
+    cumulative = zipfWeights(names.length, zipf);
+
+    server = new StubMarketDataServer(source, 64);
+    server.setLatency(Duration.ofMillis(latency), Duration.ofMillis(jitter));
+    server.setErrorRate(errors);
+    server.setBandwidth(bandwidth);
+    server.setSeed(seed);
+    StockDataRetriever web = new WebStockDataRetriever(server.getQuoteUrl(),
+            server.getHistoryUrl(), Duration.ofSeconds(30), 32);
+    switch (stack) {
+      case "web":
+        retriever = web;
+        break;
+      case "coalescing":
+        retriever = new CoalescingStockDataRetriever(web);
+        break;
+      case "cached":
+        retriever = new CachedStockDataRetriever(new CoalescingStockDataRetriever(web));
+        break;
+      case "tiered":
+        tiered = Files.createTempDirectory("tiered");
+        retriever = new TieredStockDataRetriever(new CoalescingStockDataRetriever(web), tiered,
+                64L << 20, 1L << 30);
+        break;
+      default:
+        throw new IllegalArgumentException("invalid input");
+    }
+  }
+
+  /**
+   * Remember the requests that reached the server before an iteration.
+   */
+  @Setup(Level.Iteration)
+  public void countUpstream() {
+    upstream = server.getRequestCount();
+  }
+
+  /**
+   * Print the requests that reached the server during an iteration.
+   */
+  @TearDown(Level.Iteration)
+  public void printUpstream() {
+    System.out.printf(Locale.ROOT, "%d upstream requests%n", server.getRequestCount() - upstream);
+  }
+
+  /**
+   * Stop the server and delete the tiered cache directory.
+   *
+   * @throws IOException when the directory cannot be deleted
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    server.close();
+    if (tiered != null) {
+      try (Stream<Path> paths = Files.walk(tiered)) {
+        for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+          Files.deleteIfExists(path);
+        }
+      }
+    }
+  }
+
+  /**
+   * Request the historical prices of a random symbol over a random window of 2016.
+   *
+   * @param client the client
+   * @return the prices, or null when the request failed
+   */
+  @Benchmark
+  public Object request(Client client) {
+    int s = Arrays.binarySearch(cumulative, client.random.nextDouble());
+    String stockSymbol = names[Math.min(names.length - 1, s < 0 ? -s - 1 : s)];
+    int toMonth = client.random.nextInt(1, 13);
+    int fromMonth = client.random.nextInt(1, toMonth + 1);
+    try {
+      return retriever.getHistoricalPrices(stockSymbol, 1, fromMonth, 2016, 28, toMonth, 2016);
+    } catch (Exception e) {
+      client.failed++;
+      return null;
+    }
+  }
+
+  /**
+   * Get the cumulative probabilities of a Zipf distribution over a number of symbols.
+   *
+   * @param symbols  number of symbols
+   * @param exponent the exponent, 0 for a uniform distribution
+   * @return the cumulative probability of each symbol
+   */
+  private static double[] zipfWeights(int symbols, double exponent) {
+    double[] cumulative = new double[symbols];
+    double sum = 0;
+    for (int i = 0; i < symbols; i++) {
+      sum += 1 / Math.pow(i + 1, exponent);
+      cumulative[i] = sum;
+    }
+    for (int i = 0; i < symbols; i++) {
+      cumulative[i] /= sum;
+    }
+    return cumulative;
+  }
+}
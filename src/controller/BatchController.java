@@ -0,0 +1,197 @@
+package controller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Locale;
+
+import model.trader.IStockModel;
+import model.trader.TrendCalculator;
+import util.StockDataRetriever;
+import view.trader.BatchView;
+
+/**
+ * This is a Batch Controller class, it runs a script of commands without printing the manual.
+ * Each command is run by an interactive controller on a batch view, and its output is written
+ * as one machine-readable record with the time the command took. Records are written through a
+ * buffer which is flushed after a given number of commands and at the end of the script.
+ * Blank lines and lines starting with # are skipped, and a line q ends the script.
+ */
+public class BatchController implements Controller {
+
+  /**
+   * The output formats of the batch controller.
+   */
+  public enum Format {
+    // one tab separated line per command after a header line
+    TSV,
+    // one JSON object per line per command
+    JSON
+  }
+
+  private final Reader in;
+  private final Writer out;
+  private final Format format;
+  private final int flushEvery;
+  private final BatchView view;
+  private final InteractiveController controller;
+
+  /**
+   * Construct a batch controller object.
+   *
+   * @param in              script of commands
+   * @param out             output of records
+   * @param format          output format
+   * @param flushEvery      flush the output after this many commands, or only at the end if 0
+   * @param iStockModel     a stock set
+   * @param dataRetriever   stock data retriever
+   * @param trendCalculator trend calculator
+   * @throws Exception when cannot retrieve data
+   */
+  public BatchController(Reader in, Writer out, Format format, int flushEvery,
+                         IStockModel iStockModel, StockDataRetriever dataRetriever,
+                         TrendCalculator trendCalculator) throws Exception {
+    if (flushEvery < 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.in = in;
+    this.out = new BufferedWriter(out, 1 << 16);
+    this.format = format;
+    this.flushEvery = flushEvery;
+    this.view = new BatchView();
+    this.controller = new InteractiveController(new StringReader(""), view, iStockModel,
+            dataRetriever, trendCalculator);
+  }
+
+  /**
+   * Run every command of the script and write one record per command.
+   */
+  @Override
+  public void startProgram() throws Exception {
+    BufferedReader reader = new BufferedReader(in);
+    if (format == Format.TSV) {
+      out.write("seq\tstatus\tmillis\tcommand\toutput\n");
+    }
+    int seq = 0;
+    String line;
+    try {
+      while ((line = reader.readLine()) != null) {
+        String command = line.trim();
+        if (command.isEmpty() || command.startsWith("#")) {
+          continue;
+        }
+        if (command.equals("q")) {
+          break;
+        }
+        seq++;
+        long start = System.nanoTime();
+        try {
+          controller.executeCommand(InteractiveController.tokenize(command));
+        } catch (Exception e) {
+          view.printError(e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        writeRecord(seq, view.takeError() ? "error" : "ok", millis, command,
+                view.takeOutput().trim());
+        if (flushEvery > 0 && seq % flushEvery == 0) {
+          out.flush();
+        }
+      }
+    } finally {
+      out.flush();
+    }
+  }
+
+  /**
+   * Write the record of one command.
+   *
+   * @param seq     sequence number of the command in the script, starting from 1
+   * @param status  ok, or error if the command printed an error
+   * @param millis  milliseconds the command took
+   * @param command the command
+   * @param output  everything the command printed
+   * @throws IOException when cannot write the output
+   */
+  private void writeRecord(int seq, String status, double millis, String command, String output)
+          throws IOException {
+    String time = String.format(Locale.ROOT, "%.3f", millis);
+    if (format == Format.TSV) {
+      out.write(seq + "\t" + status + "\t" + time + "\t" + escapeTsv(command) + "\t"
+              + escapeTsv(output) + "\n");
+    } else {
+      out.write("{\"seq\":" + seq + ",\"status\":\"" + status + "\",\"millis\":" + time
+              + ",\"command\":" + quoteJson(command) + ",\"output\":" + quoteJson(output)
+              + "}\n");
+    }
+  }
+
+  /**
+   * Escape backslashes, tabs and line breaks so that a value fits in one TSV field.
+   *
+   * @param value the value
+   * @return the escaped value
+   */
+  private static String escapeTsv(String value) {
+    StringBuilder sb = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Quote a value as a JSON string.
+   *
+   * @param value the value
+   * @return the JSON string
+   */
+  private static String quoteJson(String value) {
+    StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          sb.append("\\\"");
+          break;
+        case '\\':
+          sb.append("\\\\");
+          break;
+        case '\t':
+          sb.append("\\t");
+          break;
+        case '\n':
+          sb.append("\\n");
+          break;
+        case '\r':
+          sb.append("\\r");
+          break;
+        default:
+          if (c < 0x20) {
+            sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+          } else {
+            sb.append(c);
+          }
+      }
+    }
+    return sb.append('"').toString();
+  }
+}
@@ -1,16 +1,23 @@
 package controller;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 
 import model.trader.IStockModel;
+import model.trader.SimulationSweep;
 import model.trader.Simulator;
 import model.trader.TrendCalculator;
 import util.DateUtil;
+import util.IndicatorEngine;
+import util.MappedStockDataRetriever;
 import util.StockDataRetriever;
 import view.trader.InteractiveView;
 
@@ -65,20 +72,43 @@ public class InteractiveController implements Controller {
         return;
       } else {
         // split input args on whitespaces
-        String[] inputArgs = input.split("\\s+");
-        processArgs(inputArgs);
+        executeCommand(tokenize(input));
       }
     }
   }
 
   /**
-   * Process user input.
+   * Split a command line into arguments on whitespaces.
+   *
+   * @param line command line
+   * @return the arguments, empty if the line is blank
+   */
+  public static String[] tokenize(String line) {
+    List<String> args = new ArrayList<>();
+    int start = -1;
+    for (int i = 0; i <= line.length(); i++) {
+      boolean space = i == line.length() || Character.isWhitespace(line.charAt(i));
+      if (space && start >= 0) {
+        args.add(line.substring(start, i));
+        start = -1;
+      } else if (!space && start < 0) {
+        start = i;
+      }
+    }
+    return args.toArray(new String[0]);
+  }
+
+  /**
+   * Process one command of user input.
    * Catch exception if input is invalid.
-   * @param args user input
+   * @param args user input, split into arguments
+   * @throws Exception when cannot retrieve data
    */
-  private void processArgs(String[] args) throws Exception {
+  public void executeCommand(String[] args) throws Exception {
 
-    if (args[0].equals("-create") && args.length > 2) {
+    if (args.length == 0) {
+      view.printError("invalid input\n");
+    } else if (args[0].equals("-create") && args.length > 2) {
       try {
         Integer.parseInt(args[2]);
         createBasket(args[1], Integer.parseInt(args[2]));
@@ -98,12 +128,21 @@ public class InteractiveController implements Controller {
       printBasket(args[1]);
     } else if (args[0].equals("-trend") && args.length > 3) {
       try {
-        int start = Integer.parseInt(args[2]);
-        int end = Integer.parseInt(args[3]);
-        trend(args[1], start, end, trendCalculator);
+        int start = Integer.parseInt(args[args.length - 2]);
+        int end = Integer.parseInt(args[args.length - 1]);
+        trend(Arrays.asList(args).subList(1, args.length - 2), start, end, trendCalculator);
       } catch (NumberFormatException e) {
         view.printError("start and end date must be an integer\n");
       }
+    } else if (args[0].equals("-save") && args.length > 1) {
+      try {
+        iStockModel.saveSnapshot(Paths.get(args[1]));
+        view.printMessage("saved " + iStockModel.getBasketSet().size() + " baskets\n");
+      } catch (IOException e) {
+        view.printError("cannot write " + args[1] + "\n");
+      }
+    } else if (args[0].equals("-refresh") && args.length > 1) {
+      refresh(Arrays.asList(args).subList(1, args.length));
     } else if (args[0].equals("-graph")) {
       processGraphArgs(args);
     } else if (args[0].equals("-simulate")) {
@@ -139,6 +178,8 @@ public class InteractiveController implements Controller {
       plotremove(args);
     } else if (args[1].equals("-addMA") && args.length >= 6) {
       plotaddmovave(args);
+    } else if (args[1].equals("-plotIndicators") && args.length >= 6) {
+      plotindicators(args);
     } else {
       view.printError("invalid input\n");
     }
@@ -173,6 +214,32 @@ public class InteractiveController implements Controller {
               strategy, cadence, proportionMap);
       view.printMessage("Simulation Initialized\n");
     }
+    // -simulate -sweep principles investingAmounts startDate endDate strategies cadences
+    // symbols steps [top], where numbers are comma separated or from:to:step ranges
+    else if (args[1].equals("-sweep") && len >= 10) {
+      List<Double> principles = parseValues(args[2]);
+      List<Double> investingAmounts = parseValues(args[3]);
+      LocalDate startDate = DateUtil.getLocalDate(Integer.valueOf(args[4]));
+      LocalDate endDate = DateUtil.getLocalDate(Integer.valueOf(args[5]));
+      List<String> strategies = Arrays.asList(args[6].split(","));
+      List<String> cadences = Arrays.asList(args[7].split(","));
+      List<Map<String, Double>> proportions = SimulationSweep.proportionGrid(
+              Arrays.asList(args[8].split(",")), Integer.valueOf(args[9]));
+      int top = len > 10 ? Integer.valueOf(args[10]) : 10;
+
+      SimulationSweep sweep = new SimulationSweep(startDate, endDate, principles,
+              investingAmounts, strategies, cadences, proportions);
+      long start = System.nanoTime();
+      List<SimulationSweep.Result> results = iStockModel.startSweep(sweep);
+      long millis = (System.nanoTime() - start) / 1000000;
+      StringBuilder table = new StringBuilder(
+              "rank\tprinciple\tinvest\tstrategy\tcadence\tproportion\tinvested\tprofit\treturn\n");
+      for (int i = 0; i < Math.min(top, results.size()); i++) {
+        table.append(i + 1).append('\t').append(results.get(i)).append('\n');
+      }
+      table.append(results.size()).append(" simulations in ").append(millis).append(" ms\n");
+      view.printMessage(table.toString());
+    }
     // -simulate -query date
     else if (args[1].equals("-query")) {
       LocalDate queryDate = DateUtil.getLocalDate(Integer.valueOf(args[2]));
@@ -182,11 +249,57 @@ public class InteractiveController implements Controller {
       double profit = iStockModel.getProfit(simulator, queryDate);
       view.printMessage("Profit on " + queryDate.toString() + " is " + profit + "\n");
     }
+    // -simulate -curve startDate endDate
+    else if (args[1].equals("-curve") && len >= 4) {
+      LocalDate fromDate = DateUtil.getLocalDate(Integer.valueOf(args[2]));
+      LocalDate toDate = DateUtil.getLocalDate(Integer.valueOf(args[3]));
+      if (simulator == null) {
+        throw new IllegalArgumentException("simulation has not been initialized\n");
+      }
+      Map<String, Map<Integer, Double>> curve =
+              iStockModel.getEquityCurve(simulator, fromDate, toDate);
+      StringBuilder table = new StringBuilder("date\tvalue\tinvested\tprofit\n");
+      for (Map.Entry<Integer, Double> value : curve.get("value").entrySet()) {
+        int date = value.getKey();
+        table.append(date).append('\t').append(value.getValue())
+                .append('\t').append(curve.get("invested").get(date))
+                .append('\t').append(curve.get("profit").get(date)).append('\n');
+      }
+      view.printMessage(table.toString());
+    }
     else {
       throw new IllegalArgumentException("Invalid input\n");
     }
   }
 
+  /**
+   * Parse a comma separated list of numbers, or a range from:to:step of numbers.
+   *
+   * @param arg user input
+   * @return the numbers
+   */
+  private List<Double> parseValues(String arg) {
+    List<Double> values = new ArrayList<>();
+    String[] range = arg.split(":");
+    if (range.length == 3) {
+      double from = Double.valueOf(range[0]);
+      double to = Double.valueOf(range[1]);
+      double step = Double.valueOf(range[2]);
+      if (step <= 0) {
+        throw new IllegalArgumentException("Range step must be positive\n");
+      }
+      // a little slack so that rounding does not drop the end of the range
+      for (int i = 0; from + i * step <= to + step / 1000; i++) {
+        values.add(from + i * step);
+      }
+    } else {
+      for (String value : arg.split(",")) {
+        values.add(Double.valueOf(value));
+      }
+    }
+    return values;
+  }
+
   /**
    * Tell view to create a blank graph.
    */
@@ -206,10 +319,8 @@ public class InteractiveController implements Controller {
     try {
       int end = Integer.parseInt(args[args.length - 1]);
       int start = Integer.parseInt(args[args.length - 2]);
-      for (int i = 2; i < args.length - 2; i++) {
-        Map<String, Map<Integer, Double>> data = iStockModel.iStockPlot(args[i], start, end);
-        dataTotal.putAll(data);
-      }
+      dataTotal.putAll(iStockModel.iStockPlot(
+              Arrays.asList(args).subList(2, args.length - 2), start, end));
       view.plotWithData(dataTotal);
       view.printMessage("Historical closing price data plotted\n");
     } catch (NumberFormatException e) {
@@ -230,12 +341,10 @@ public class InteractiveController implements Controller {
     try {
       int end = Integer.parseInt(args[args.length - 1]);
       int start = Integer.parseInt(args[args.length - 2]);
-      for (int i = 2; i < args.length - 2; i++) {
-        Map<String, Map<Integer, Double>> closingdata = iStockModel.iStockPlot(args[i], start, end);
-        Map<String, Map<Integer, Double>> data =
-                iStockModel.iStockPlotMov(args[i], start, end, days);
-        dataTotal.putAll(closingdata);
-        dataTotal.putAll(data);
+      List<String> names = Arrays.asList(args).subList(2, args.length - 2);
+      dataTotal.putAll(iStockModel.iStockPlot(names, start, end));
+      for (String name : names) {
+        dataTotal.putAll(iStockModel.iStockPlotMov(name, start, end, days));
       }
       view.plotWithData(dataTotal);
       view.printMessage("moving average data printed\n");
@@ -247,6 +356,42 @@ public class InteractiveController implements Controller {
     }
   }
 
+  /**
+   * Retrieve indicator data and closing price data form model.
+   * Send data to view to generate a new graph, with the oscillators (RSI, MACD, ATR) on an axis
+   * of their own below the prices.
+   * Indicators are given as one comma separated argument, for example EMA20,BB20,ATR14.
+   * Catch exception when date input cannot be parsed into integer.
+   * @param args data need to be retrieved and plotted.
+   */
+  private void plotindicators(String[] args) throws Exception {
+    Map<String, Map<Integer, Double>> dataTotal = new HashMap<>();
+    Map<String, Map<Integer, Double>> oscillators = new HashMap<>();
+    try {
+      int end = Integer.parseInt(args[args.length - 1]);
+      int start = Integer.parseInt(args[args.length - 2]);
+      List<String> indicators = Arrays.asList(args[2].split(","));
+      Set<String> oscillatorNames = IndicatorEngine.parse(indicators).getOscillatorNames();
+      List<String> names = Arrays.asList(args).subList(3, args.length - 2);
+      for (String name : names) {
+        for (Map.Entry<String, Map<Integer, Double>> e
+                : iStockModel.iStockPlotIndicators(name, start, end, indicators).entrySet()) {
+          String line = e.getKey().substring(name.length());
+          (oscillatorNames.contains(line) ? oscillators : dataTotal).put(e.getKey(),
+                  e.getValue());
+        }
+      }
+      view.plotWithData(dataTotal, oscillators);
+      view.printMessage("indicator data plotted\n");
+    } catch (NumberFormatException e) {
+      view.printError("from date and end date must be integer\n");
+    } catch (IndexOutOfBoundsException e) {
+      view.printError("Maximum 11 lines are allowed in one graph\n");
+    } catch (IllegalArgumentException e) {
+      view.printError(e.getMessage() + "\n");
+    }
+  }
+
   /**
    * Remove line(s) from current graph.
    *
@@ -272,10 +417,8 @@ public class InteractiveController implements Controller {
     try {
       int end = Integer.parseInt(args[args.length - 1]);
       int start = Integer.parseInt(args[args.length - 2]);
-      for (int i = 2; i < args.length - 2; i++) {
-        Map<String, Map<Integer, Double>> data = iStockModel.iStockPlot(args[i], start, end);
-        dataTotal.putAll(data);
-      }
+      dataTotal.putAll(iStockModel.iStockPlot(
+              Arrays.asList(args).subList(2, args.length - 2), start, end));
       view.addline(dataTotal);
     } catch (NumberFormatException e) {
       view.printError("from date and end date must be integer\n");
@@ -295,13 +438,11 @@ public class InteractiveController implements Controller {
       int end = Integer.parseInt(args[args.length - 1]);
       int start = Integer.parseInt(args[args.length - 2]);
       int days = Integer.parseInt(args[2]);
-      for (int i = 3; i < args.length - 2; i++) {
-        Map<String, Map<Integer, Double>> closingdata = iStockModel.iStockPlot(args[i], start, end);
-        Map<String, Map<Integer, Double>> data =
-                iStockModel.iStockPlotMov(args[i], start, end, days);
-        dataTotal.putAll(data);
-        dataTotal.putAll(closingdata);
+      List<String> names = Arrays.asList(args).subList(3, args.length - 2);
+      for (String name : names) {
+        dataTotal.putAll(iStockModel.iStockPlotMov(name, start, end, days));
       }
+      dataTotal.putAll(iStockModel.iStockPlot(names, start, end));
       view.addline(dataTotal);
     } catch (NumberFormatException e) {
       view.printError("from date and end date must be integer\n");
@@ -354,20 +495,45 @@ public class InteractiveController implements Controller {
   }
 
   /**
-   * Get trend of a stock within a date range.
+   * Get trend of one or more stocks or baskets within a date range.
    * Send trend information to view, and if input is invalid, send error message.
-   * @param stockName stock name
-   * @param start     start date of the trend
-   * @param end       end date of the trend
-   * @return trend of stock from start date to end date
+   * With several names each trend is printed on its own line after the name.
+   * @param stockNames stock or basket names
+   * @param start      start date of the trend
+   * @param end        end date of the trend
    */
-  private void trend(String stockName, Integer start, Integer end, TrendCalculator trendCalculator)
-          throws Exception {
+  private void trend(List<String> stockNames, Integer start, Integer end,
+                     TrendCalculator trendCalculator) throws Exception {
     try {
-      String trend = iStockModel.trend(stockName, start, end, trendCalculator);
-      view.printMessage(trend + "\n");
+      if (stockNames.size() == 1) {
+        String trend = iStockModel.trend(stockNames.get(0), start, end, trendCalculator);
+        view.printMessage(trend + "\n");
+        return;
+      }
+      Map<String, String> trends = iStockModel.trend(stockNames, start, end, trendCalculator);
+      StringBuilder sb = new StringBuilder();
+      for (Map.Entry<String, String> e : trends.entrySet()) {
+        sb.append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+      }
+      view.printMessage(sb.toString());
     } catch (IllegalArgumentException e) {
       view.printError("invalid input\n");
     }
   }
+
+  /**
+   * Append the days after the last stored date of the given stocks to the local price store.
+   *
+   * @param stockNames the stock symbols
+   * @throws Exception when cannot print
+   */
+  private void refresh(List<String> stockNames) throws Exception {
+    if (!(dataRetriever instanceof MappedStockDataRetriever)) {
+      view.printError("refresh needs a local price store\n");
+      return;
+    }
+    MappedStockDataRetriever.Refresh refresh = ((MappedStockDataRetriever) dataRetriever)
+            .refresh(stockNames, DateUtil.convertInt(LocalDate.now()));
+    view.printMessage(refresh + "\n");
+  }
 }
@@ -7,7 +7,10 @@ import java.util.TreeMap;
 
 import util.Calculate;
 import util.DateUtil;
+import util.MovingAverageIndex;
 import util.PriceRecord;
+import util.PriceSeries;
+import util.TradingCalendar;
 import util.StockDataRetriever;
 
 
@@ -18,6 +21,7 @@ public class Basket implements IStock {
 
   private Map<Stock, Integer> basketMap;
   private StockDataRetriever dataRetriever;
+  private SymbolRegistry registry;
   private String basektname;
   private int basektCreateTime;
 
@@ -30,8 +34,22 @@ public class Basket implements IStock {
    * @param createDate    the create date of this bakset
    */
   public Basket(String basketname, StockDataRetriever dataRetriever, int createDate) {
+    this(basketname, dataRetriever, createDate, new SymbolRegistry(dataRetriever));
+  }
+
+  /**
+   * Construct a basket object which looks up its stocks in a shared symbol registry.
+   *
+   * @param basketname    the name of this basket
+   * @param dataRetriever a stock data retriever
+   * @param createDate    the create date of this bakset
+   * @param registry      the symbol registry shared with other baskets
+   */
+  public Basket(String basketname, StockDataRetriever dataRetriever, int createDate,
+                SymbolRegistry registry) {
     this.basektname = basketname;
     this.dataRetriever = dataRetriever;
+    this.registry = registry;
     this.basketMap = new HashMap<>();
     this.basektCreateTime = createDate;
   }
@@ -66,9 +84,16 @@ public class Basket implements IStock {
     double highestprice = 0;
     double lowestprice = 0;
 
+    Map<String, Map<Integer, PriceRecord>> prices = dataRetriever.getHistoricalPrices(
+            getStockMap().keySet(), date, mon, year, date, mon, year);
     for (Map.Entry<Stock, Integer> e : basketMap.entrySet()) {
-      PriceRecord record = Calculate.getPrice(e.getKey().getStockSymbol(), dataRetriever,
-              date, mon, year);
+      Map<Integer, PriceRecord> map = prices.get(e.getKey().getStockSymbol());
+      //If the map size is not equal to one, which means the passed in argument is not a business
+      //day throw exception.
+      if (map.size() != 1) {
+        throw new IllegalArgumentException("invalid input");
+      }
+      PriceRecord record = map.values().iterator().next();
       openprice += record.getOpenPrice() * e.getValue();
       closeprice += record.getClosePrice() * e.getValue();
       highestprice += record.getHighestDayPrice() * e.getValue();
@@ -85,34 +110,57 @@ public class Basket implements IStock {
     if (beforeCreate(fromDate, fromMon, fromYear)) {
       throw new IllegalArgumentException("invalid input");
     }
-    Map<Integer, Double> basketHC = new TreeMap<>();
+    return getClosingSeries(DateUtil.toInt(fromDate, fromMon, fromYear),
+            DateUtil.toInt(toDate, toMon, toYear)).toMap();
+  }
+
+  @Override
+  //throw exception if from date is before basket create date
+  public Map<Integer, Double> getHistoricalClosing(int fromDate, int toDate) throws Exception {
+    return getClosingSeries(fromDate, toDate).toMap();
+  }
+
+  @Override
+  //throw exception if from date is before basket create date
+  public PriceSeries getClosingSeries(int fromDate, int toDate) throws Exception {
+    if (fromDate < basektCreateTime) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    Map<String, Map<Integer, PriceRecord>> prices = fetchPrices(fromDate, toDate);
+    PriceSeries basketHC = PriceSeries.EMPTY;
     for (Map.Entry<Stock, Integer> e : basketMap.entrySet()) {
-      Map<Integer, Double> map = e.getKey().getHistoricalClosing(fromDate, fromMon, fromYear,
-              toDate, toMon, toYear);
-      for (int time : map.keySet()) {
-        if (!basketHC.containsKey(time)) {
-          basketHC.put(time, map.get(time) * e.getValue());
-        } else {
-          basketHC.put(time, basketHC.get(time) + map.get(time) * e.getValue());
-        }
-      }
+      basketHC = basketHC.plusScaled(
+              PriceSeries.closingOf(prices.get(e.getKey().getStockSymbol())), e.getValue());
     }
     return basketHC;
-
   }
 
   @Override
   //throw exception if from date is before basket create date
-  public Map<Integer, Double> getHistoricalClosing(int fromDate, int toDate) throws Exception {
-    String fromDatestr = String.valueOf(fromDate);
-    int fromday = Integer.parseInt(fromDatestr.substring(6));
-    int frommon = Integer.parseInt(fromDatestr.substring(4, 6));
-    int fromyear = Integer.parseInt(fromDatestr.substring(0, 4));
-    String toDatestr = String.valueOf(toDate);
-    int today = Integer.parseInt(toDatestr.substring(6));
-    int tomon = Integer.parseInt(toDatestr.substring(4, 6));
-    int toyear = Integer.parseInt(toDatestr.substring(0, 4));
-    return getHistoricalClosing(fromday, frommon, fromyear, today, tomon, toyear);
+  public Map<Integer, PriceRecord> getHistoricalPrices(int fromDate, int toDate)
+          throws Exception {
+    if (fromDate < basektCreateTime) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    Map<String, Map<Integer, PriceRecord>> prices = fetchPrices(fromDate, toDate);
+    Map<Integer, PriceRecord> basketHP = new TreeMap<>();
+    for (Map.Entry<Stock, Integer> e : basketMap.entrySet()) {
+      int share = e.getValue();
+      for (Map.Entry<Integer, PriceRecord> day
+              : prices.get(e.getKey().getStockSymbol()).entrySet()) {
+        PriceRecord record = day.getValue();
+        PriceRecord sum = basketHP.get(day.getKey());
+        if (sum == null) {
+          sum = new PriceRecord(0, 0, 0, 0);
+        }
+        basketHP.put(day.getKey(), new PriceRecord(
+                sum.getOpenPrice() + record.getOpenPrice() * share,
+                sum.getClosePrice() + record.getClosePrice() * share,
+                sum.getLowestDayPrice() + record.getLowestDayPrice() * share,
+                sum.getHighestDayPrice() + record.getHighestDayPrice() * share));
+      }
+    }
+    return basketHP;
   }
 
   @Override
@@ -123,8 +171,14 @@ public class Basket implements IStock {
     if (beforeCreate(fromDate, fromMon, fromYear)) {
       throw new IllegalArgumentException("invalid input");
     }
-    Map<Integer, Double> stockHC = getHistoricalClosing(fromDate, fromMon, fromYear,
-            toDate, toMon, toYear);
+    return trend(DateUtil.toInt(fromDate, fromMon, fromYear),
+            DateUtil.toInt(toDate, toMon, toYear), trendCalculator);
+  }
+
+  @Override
+  //throw exception if from date is before basket create date
+  public String trend(int fromDate, int toDate, TrendCalculator trendCalculator) throws Exception {
+    PriceSeries stockHC = getClosingSeries(fromDate, toDate);
 
     //Throw exception when there is less than two business day in certain day range
     if (stockHC.size() < 2) {
@@ -134,37 +188,25 @@ public class Basket implements IStock {
     return trendCalculator.getTrendStatus(trend);
   }
 
-  @Override
-  //throw exception if from date is before basket create date
-  public String trend(int fromDate, int toDate, TrendCalculator trendCalculator) throws Exception {
-    String fromDatestr = String.valueOf(fromDate);
-    int fromday = Integer.parseInt(fromDatestr.substring(6));
-    int frommon = Integer.parseInt(fromDatestr.substring(4, 6));
-    int fromyear = Integer.parseInt(fromDatestr.substring(0, 4));
-    String toDatestr = String.valueOf(toDate);
-    int today = Integer.parseInt(toDatestr.substring(6));
-    int tomon = Integer.parseInt(toDatestr.substring(4, 6));
-    int toyear = Integer.parseInt(toDatestr.substring(0, 4));
-    return trend(fromday, frommon, fromyear, today, tomon, toyear, trendCalculator);
-  }
-
   @Override
   //throw exception if from date is before basket create date
   public boolean buyOpportunity(int date, int mon, int year) throws Exception {
     if (beforeCreate(date, mon, year)) {
       throw new IllegalArgumentException("invalid input");
     }
+    int day = DateUtil.toInt(date, mon, year);
 
-    Map<Integer, Double> map = getHistoricalClosing(date, mon, year,
-            date, mon, year);
+    MovingAverageIndex index = new MovingAverageIndex(
+            getClosingSeries(TradingCalendar.lookbackStart(day, 200), day));
 
-    //If the map size is not equal to one, which means the passed in argument is not a business day
-    //throw exception.
-    if (map.size() != 1) {
+    //If the given date is not in the closing prices, which means the passed in argument is not a
+    //business day throw exception.
+    int last = index.getClosing().indexOf(day);
+    if (last < 0) {
       throw new IllegalArgumentException("invalid input");
     }
-    double ave50 = Calculate.getAve(this, 50, date, mon, year);
-    double ave200 = Calculate.getAve(this, 200, date, mon, year);
+    double ave50 = index.average(last, 50);
+    double ave200 = index.average(last, 200);
     return ave50 > ave200;
   }
 
@@ -178,6 +220,33 @@ public class Basket implements IStock {
     return Calculate.getAveRange(this, fromDate, toDate, days);
   }
 
+  @Override
+  //throw exception if moving average data cannot be calculated, same as getAveRange.
+  public PriceSeries getAveSeries(int fromDate, int toDate, int days) throws Exception {
+    return Calculate.getAveSeries(this, fromDate, toDate, days);
+  }
+
+  /**
+   * Fetch the historical prices of all stocks in this basket with one batch request.
+   *
+   * @param fromDate start of date range (YYYYMMDD)
+   * @param toDate   end of date range (YYYYMMDD)
+   * @return map with stock symbol as key and historical prices as value
+   * @throws Exception when cannot retrieve data
+   */
+  private Map<String, Map<Integer, PriceRecord>> fetchPrices(int fromDate, int toDate)
+          throws Exception {
+    Map<String, Map<Integer, PriceRecord>> prices = dataRetriever.getHistoricalPrices(
+            getStockMap().keySet(), fromDate % 100, fromDate / 100 % 100, fromDate / 10000,
+            toDate % 100, toDate / 100 % 100, toDate / 10000);
+    for (Map<Integer, PriceRecord> map : prices.values()) {
+      if (map.isEmpty()) {
+        throw new IllegalArgumentException("invalid date range");
+      }
+    }
+    return prices;
+  }
+
   /**
    * Generate a map with stock symbol as key, and stock share as value.
    *
@@ -208,7 +277,7 @@ public class Basket implements IStock {
    * @throws Exception cannot retrieve data
    */
   public void addStock(String stockSymbol, int share) throws Exception {
-    Stock newstock = new Stock(stockSymbol, dataRetriever);
+    Stock newstock = registry.getStock(stockSymbol);
     if (basketMap.containsKey(newstock)) {
       basketMap.put(newstock, basketMap.get(newstock) + share);
     } else {
@@ -228,6 +297,15 @@ public class Basket implements IStock {
     return basketstr.toString();
   }
 
+  /**
+   * Return the symbol registry this basket looks up its stocks in.
+   *
+   * @return the symbol registry
+   */
+  SymbolRegistry getSymbolRegistry() {
+    return this.registry;
+  }
+
   /**
    * Return the basket name.
    *
@@ -2,6 +2,7 @@ package model.trader;
 
 import util.DateUtil;
 import util.StockDataRetriever;
+import util.TradingCalendar;
 
 import java.time.LocalDate;
 import java.util.Map;
@@ -13,8 +14,11 @@ public class DollarCostAverageStrategy implements InvestingStrategy {
 
   private Map<String, Double> proportion;
 
-  // save historical prices data in memory to fetch it really fast
-  private Map<String, Map<Integer, Double>> stockPricesRecord;
+  // a date with no price is looked up on the next business day at most this many days later
+  static final int MAX_DAYS_AHEAD = 15;
+
+  // historical prices and their trading calendar of each stock, indexed by business day
+  private PriceMatrix prices;
 
   private StockDataRetriever dataRetriever;
 
@@ -29,8 +33,20 @@ public class DollarCostAverageStrategy implements InvestingStrategy {
   public DollarCostAverageStrategy
   (Map<String, Double> proportion, Map<String, Map<Integer, Double>> stockPricesRecord,
    StockDataRetriever dataRetriever) {
+    this(proportion, PriceMatrix.of(stockPricesRecord), dataRetriever);
+  }
+
+  /**
+   * Initialize DollarCostAverageStrategy on prices that may be shared with other simulations.
+   *
+   * @param proportion    stock to proportion map, proportions must add up to 1
+   * @param prices        historical stock prices data
+   * @param dataRetriever stock data retriever
+   */
+  public DollarCostAverageStrategy(Map<String, Double> proportion, PriceMatrix prices,
+                                   StockDataRetriever dataRetriever) {
     this.proportion = proportion;
-    this.stockPricesRecord = stockPricesRecord;
+    this.prices = prices;
     this.dataRetriever = dataRetriever;
   }
 
@@ -49,24 +65,22 @@ public class DollarCostAverageStrategy implements InvestingStrategy {
     investingCost = 0;
     // must use new instance each time to keep a history snapshot of basket
     Basket newBasket = new Basket("SimulationBasket", this.dataRetriever,
-            DateUtil.convertInt(date));
+            DateUtil.convertInt(date), preBasket.getSymbolRegistry());
+    int day = DateUtil.toInt(date.getDayOfMonth(), date.getMonthValue(), date.getYear());
     for (Map.Entry<String, Integer> stock : preBasket.getStockMap().entrySet()) {
-      // if the date is not business day, invest on the last business day
-      int plusDays = 0;
-      while (stockPricesRecord.get(stock.getKey()).get(DateUtil.convertInt(date)) == null) {
-        // assume that stock market never paused for more than two weeks,
-        // or if we mistakenly look into the future
-        // if the date looking for is not a business day, look for next business day.
-        if (plusDays > 14) {
-          throw new RuntimeException("Cannot find price entry");
-        }
-        plusDays++;
-        date = date.plusDays(1);
+      // if the date is not business day, invest on the next business day.
+      // assume that stock market never paused for more than two weeks,
+      // or if we mistakenly look into the future
+      TradingCalendar calendar = prices.getCalendar(stock.getKey());
+      int ordinal = calendar.nextTradingOrdinal(day, MAX_DAYS_AHEAD);
+      if (ordinal < 0) {
+        throw new RuntimeException("Cannot find price entry");
       }
-      int share = (int) Math.floor(investingAmount * proportion.get(stock.getKey())
-              / stockPricesRecord.get(stock.getKey()).get(DateUtil.convertInt(date)));
+      day = calendar.dateOf(ordinal);
+      double price = prices.getSeries(stock.getKey()).valueAt(ordinal);
+      int share = (int) Math.floor(investingAmount * proportion.get(stock.getKey()) / price);
       newBasket.addStock(stock.getKey(), stock.getValue() + share);
-      investingCost += share * stockPricesRecord.get(stock.getKey()).get(DateUtil.convertInt(date));
+      investingCost += share * price;
     }
     return newBasket;
   }
@@ -0,0 +1,166 @@
+package model.trader;
+
+import util.DateUtil;
+import util.PriceSeries;
+
+/**
+ * This class represents the daily equity curve of a finished simulation: the value of the
+ * basket and the money invested so far on every calendar day from the start to the end date.
+ * Both are kept in primitive arrays indexed by days since the start date, so looking up a date is
+ * an array read. A day without trading is valued with the prices of the next business day, like
+ * the simulation does.
+ */
+public class EquityCurve {
+  private final int firstEpochDay;
+  private final double[] values;
+  private final double[] costs;
+  private final boolean[] tradingDays;
+
+  /**
+   * Construct an equity curve.
+   *
+   * @param startDate   first date (YYYYMMDD)
+   * @param values      basket value on each day, NaN if no price can be found
+   * @param costs       money invested up to and including each day
+   * @param tradingDays whether any stock of the basket is traded on each day
+   */
+  EquityCurve(int startDate, double[] values, double[] costs, boolean[] tradingDays) {
+    this.firstEpochDay = DateUtil.toEpochDay(startDate);
+    this.values = values;
+    this.costs = costs;
+    this.tradingDays = tradingDays;
+  }
+
+  /**
+   * Get the first date of this curve.
+   *
+   * @return first date (YYYYMMDD)
+   */
+  public int getStartDate() {
+    return DateUtil.fromEpochDay(firstEpochDay);
+  }
+
+  /**
+   * Get the last date of this curve.
+   *
+   * @return last date (YYYYMMDD)
+   */
+  public int getEndDate() {
+    return DateUtil.fromEpochDay(firstEpochDay + values.length - 1);
+  }
+
+  /**
+   * Check whether the given date is within this curve.
+   *
+   * @param date date (YYYYMMDD)
+   * @return true if the date is between the start and the end date
+   */
+  public boolean contains(int date) {
+    int i = DateUtil.toEpochDay(date) - firstEpochDay;
+    return i >= 0 && i < values.length;
+  }
+
+  /**
+   * Get the value of the basket on a date.
+   *
+   * @param date date (YYYYMMDD)
+   * @return value of the basket
+   */
+  public double getValue(int date) {
+    double value = values[indexOf(date)];
+    if (Double.isNaN(value)) {
+      throw new RuntimeException("Cannot find price");
+    }
+    return value;
+  }
+
+  /**
+   * Get the money invested up to and including a date.
+   *
+   * @param date date (YYYYMMDD)
+   * @return money invested
+   */
+  public double getCost(int date) {
+    return costs[indexOf(date)];
+  }
+
+  /**
+   * Get the profit on a date, relative to all the money invested over the simulation, like the
+   * profit queried from the simulation.
+   *
+   * @param date date (YYYYMMDD)
+   * @return value of the basket minus money invested
+   */
+  public double getProfit(int date) {
+    return getValue(date) - costs[costs.length - 1];
+  }
+
+  /**
+   * Get the value of the basket on each trading day of a date range.
+   *
+   * @param fromDate start of date range (YYYYMMDD)
+   * @param toDate   end of date range (YYYYMMDD)
+   * @return series of basket values
+   */
+  public PriceSeries getValues(int fromDate, int toDate) {
+    return toSeries(fromDate, toDate, values, 0);
+  }
+
+  /**
+   * Get the money invested up to each trading day of a date range.
+   *
+   * @param fromDate start of date range (YYYYMMDD)
+   * @param toDate   end of date range (YYYYMMDD)
+   * @return series of money invested
+   */
+  public PriceSeries getCosts(int fromDate, int toDate) {
+    return toSeries(fromDate, toDate, costs, 0);
+  }
+
+  /**
+   * Get the profit on each trading day of a date range, relative to all the money invested over
+   * the simulation.
+   *
+   * @param fromDate start of date range (YYYYMMDD)
+   * @param toDate   end of date range (YYYYMMDD)
+   * @return series of profits
+   */
+  public PriceSeries getProfits(int fromDate, int toDate) {
+    return toSeries(fromDate, toDate, values, costs[costs.length - 1]);
+  }
+
+  /**
+   * Get the index of a date in the arrays.
+   *
+   * @param date date (YYYYMMDD)
+   * @return index of the date
+   */
+  private int indexOf(int date) {
+    if (!contains(date)) {
+      throw new IllegalArgumentException("Date must be start and end range\n");
+    }
+    return DateUtil.toEpochDay(date) - firstEpochDay;
+  }
+
+  /**
+   * Collect an array, minus an amount, on the trading days of a date range whose value is known.
+   *
+   * @param fromDate start of date range (YYYYMMDD)
+   * @param toDate   end of date range (YYYYMMDD)
+   * @param array    the values
+   * @param minus    amount to subtract
+   * @return the series
+   */
+  private PriceSeries toSeries(int fromDate, int toDate, double[] array, double minus) {
+    int from = Math.max(DateUtil.toEpochDay(fromDate) - firstEpochDay, 0);
+    int to = Math.min(DateUtil.toEpochDay(toDate) - firstEpochDay, values.length - 1);
+    PriceSeries.Builder series = new PriceSeries.Builder(to - from + 1);
+    for (int i = from; i <= to; i++) {
+      if (tradingDays[i] && !Double.isNaN(values[i])) {
+        series.add(DateUtil.fromEpochDay(firstEpochDay + i),
+                array[i] - minus);
+      }
+    }
+    return series.build();
+  }
+}
@@ -3,6 +3,7 @@ package model.trader;
 import java.util.Map;
 
 import util.PriceRecord;
+import util.PriceSeries;
 
 /**
  * This is an IStock interface contains the operation that all types of stock including
@@ -54,6 +55,30 @@ public interface IStock {
    */
   Map<Integer, Double> getHistoricalClosing(int fromDate, int toDate) throws Exception;
 
+  /**
+   * Get historical (closing) prices for a stock or a basket of stock for a certain date range.
+   * With input format as YYYYMMDD.
+   * Return a price series sorted by date.
+   *
+   * @param fromDate the start day for a certain date range
+   * @param toDate   the end day for a certain date range
+   * @return series of closing prices
+   * @throws Exception when cannot retrieve data
+   */
+  PriceSeries getClosingSeries(int fromDate, int toDate) throws Exception;
+
+  /**
+   * Get historical daily prices (open, close, lowest and highest) for a stock or a basket of
+   * stock for a certain date range.
+   * With input format as YYYYMMDD.
+   *
+   * @param fromDate the start day for a certain date range
+   * @param toDate   the end day for a certain date range
+   * @return a map with date as key and price record as value
+   * @throws Exception when cannot retrieve data
+   */
+  Map<Integer, PriceRecord> getHistoricalPrices(int fromDate, int toDate) throws Exception;
+
   /**
    * Determine if a stock or a basket trends up during a certain date range using given trend
    * calculator.
@@ -115,4 +140,15 @@ public interface IStock {
    * @throws Exception when cannot retrieve data
    */
   Map<Integer, Double> getAveRange(int fromDate, int toDate, int days) throws Exception;
+
+  /**
+   * Get X-day moving average of this basket within certain date range as a price series.
+   *
+   * @param fromDate from date of certain date range
+   * @param toDate   to date of certain date range
+   * @param days     X-days
+   * @return X-day moving average series
+   * @throws Exception when cannot retrieve data
+   */
+  PriceSeries getAveSeries(int fromDate, int toDate, int days) throws Exception;
 }
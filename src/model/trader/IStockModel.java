@@ -1,10 +1,27 @@
 package model.trader;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
+import util.AsyncRetrieverAdapter;
+import util.AsyncStockDataRetriever;
+import util.DateUtil;
+import util.IndicatorEngine;
+import util.PriceRecord;
+import util.PriceSeries;
 import util.StockDataRetriever;
+import util.TradingCalendar;
 
 /**
  * This is a class represent a IStock Model
@@ -15,15 +32,40 @@ public class IStockModel implements Model {
 
   private StockDataRetriever dataRetriever;
 
+  private AsyncStockDataRetriever asyncRetriever;
+
+  private Duration fetchTimeout;
+
+  private SymbolRegistry registry;
+
+  private ModelJournal journal;
+
+  private Path snapshotFile;
+
+  private long compactEvery;
+
   /**
    * Create an empty IStock set.
    *
    * @param stockDataRetriever stockdataretriever
    */
   public IStockModel(StockDataRetriever stockDataRetriever) {
+    this(stockDataRetriever, null);
+  }
+
+  /**
+   * Create an empty IStock set whose commands over several stocks fetch their prices at the same
+   * time, each fetch failing with a TimeoutException when it takes longer than the given time.
+   *
+   * @param stockDataRetriever stockdataretriever
+   * @param fetchTimeout       deadline of each fetch, or null to wait as long as fetches take
+   */
+  public IStockModel(StockDataRetriever stockDataRetriever, Duration fetchTimeout) {
     this.setOfBasket = new HashMap<>();
     this.dataRetriever = stockDataRetriever;
-
+    this.asyncRetriever = new AsyncRetrieverAdapter(stockDataRetriever);
+    this.fetchTimeout = fetchTimeout;
+    this.registry = new SymbolRegistry(stockDataRetriever);
   }
 
   @Override
@@ -38,17 +80,62 @@ public class IStockModel implements Model {
       return istockplot;
     } else {
       //Check if given IStock name is a valid stock name.
-      if (dataRetriever.getName(iStockName).equals("N/A")) {
+      if (!registry.isValid(iStockName)) {
         throw new IllegalArgumentException("Invalid stock/basket name");
       } else {
         Map<Integer, Double> data
-                = new Stock(iStockName, dataRetriever).getHistoricalClosing(fromDate, toDate);
+                = registry.getStock(iStockName).getHistoricalClosing(fromDate, toDate);
         istockplot.put(iStockName, data);
         return istockplot;
       }
     }
   }
 
+  @Override
+  public Map<String, Map<Integer, Double>> iStockPlot(List<String> iStockNames, int fromDate,
+                                                      int toDate) throws Exception {
+    List<String> stocks = new ArrayList<>();
+    for (String iStockName : iStockNames) {
+      //Check if given IStock name is a basket, or a valid stock name.
+      if (!setOfBasket.containsKey(iStockName)) {
+        if (!registry.isValid(iStockName)) {
+          throw new IllegalArgumentException("Invalid stock/basket name");
+        }
+        stocks.add(iStockName);
+      }
+    }
+    //Start fetching the stocks, and compute the baskets while the fetches are in flight.
+    Map<String, CompletableFuture<Map<Integer, PriceRecord>>> fetches
+            = asyncRetriever.getHistoricalPrices(stocks, fromDate, toDate, fetchTimeout);
+    Map<String, Map<Integer, Double>> baskets = new HashMap<>();
+    try {
+      for (String iStockName : iStockNames) {
+        if (setOfBasket.containsKey(iStockName)) {
+          baskets.put(iStockName,
+                  setOfBasket.get(iStockName).getHistoricalClosing(fromDate, toDate));
+        }
+      }
+    } catch (Exception e) {
+      fetches.values().forEach(f -> f.cancel(true));
+      throw e;
+    }
+    Map<String, Map<Integer, PriceRecord>> prices = AsyncStockDataRetriever.awaitAll(fetches);
+
+    Map<String, Map<Integer, Double>> istockplot = new LinkedHashMap<>();
+    for (String iStockName : iStockNames) {
+      if (baskets.containsKey(iStockName)) {
+        istockplot.put(iStockName, baskets.get(iStockName));
+      } else {
+        Map<Integer, PriceRecord> map = prices.get(iStockName);
+        if (map.isEmpty()) {
+          throw new IllegalArgumentException("invalid date range");
+        }
+        istockplot.put(iStockName, PriceSeries.closingOf(map).toMap());
+      }
+    }
+    return istockplot;
+  }
+
   @Override
   public Map<String, Map<Integer, Double>> iStockPlotMov(String iStockName, int fromDate,
                                                          int toDate, int days) throws Exception {
@@ -60,27 +147,77 @@ public class IStockModel implements Model {
       istock = setOfBasket.get(iStockName);
     } else {
       //Check if given IStock name is a valid stock name.
-      if (dataRetriever.getName(iStockName).equals("N/A")) {
+      if (!registry.isValid(iStockName)) {
         throw new IllegalArgumentException("Invalid stock/basket name");
       } else {
-        istock = new Stock(iStockName, dataRetriever);
+        istock = registry.getStock(iStockName);
       }
     }
-    //Retrieve 50 and 200 moving average data.
-    if (days == 50 || days == 250) {
+    //Retrieve 50 and 200 moving average data, or X-day moving average data.
+    if (days == 250) {
       move.put(iStockName + 50, istock.getAveRange(fromDate, toDate, 50));
-    }
-    if (days == 200 || days == 250) {
       move.put(iStockName + 200, istock.getAveRange(fromDate, toDate, 200));
+    } else {
+      move.put(iStockName + days, istock.getAveRange(fromDate, toDate, days));
     }
     return move;
   }
 
+  @Override
+  public Map<String, Map<Integer, Double>> iStockPlotIndicators(String iStockName, int fromDate,
+                                                                int toDate,
+                                                                List<String> indicators)
+          throws Exception {
+    IStock istock;
+    //Check if given IStock name is a basket.
+    if (setOfBasket.containsKey(iStockName)) {
+      istock = setOfBasket.get(iStockName);
+    } else {
+      //Check if given IStock name is a valid stock name.
+      if (!registry.isValid(iStockName)) {
+        throw new IllegalArgumentException("Invalid stock/basket name");
+      } else {
+        istock = registry.getStock(iStockName);
+      }
+    }
+    //Compute all indicators in one pass, starting early enough for them to settle.
+    IndicatorEngine engine = IndicatorEngine.parse(indicators);
+    Map<Integer, PriceRecord> bars = istock.getHistoricalPrices(
+            TradingCalendar.lookbackStart(fromDate, engine.getLookback()), toDate);
+    Map<String, PriceSeries> lines = engine.run(bars, fromDate, toDate);
+    //The closing prices come from the same bars, instead of being fetched again.
+    Map<Integer, Double> closing = new TreeMap<>();
+    for (Map.Entry<Integer, PriceRecord> e : bars.entrySet()) {
+      if (e.getKey() >= fromDate && e.getKey() <= toDate) {
+        closing.put(e.getKey(), e.getValue().getClosePrice());
+      }
+    }
+    Map<String, Map<Integer, Double>> result = new LinkedHashMap<>();
+    result.put(iStockName, closing);
+    for (Map.Entry<String, PriceSeries> e : lines.entrySet()) {
+      result.put(iStockName + e.getKey(), e.getValue().toMap());
+    }
+    return result;
+  }
+
 
   @Override
   public void add(String basketName, StockDataRetriever dataRetriever, int createDate) {
-    Basket basket = new Basket(basketName, dataRetriever, createDate);
+    Basket basket;
+    if (dataRetriever == this.dataRetriever) {
+      basket = new Basket(basketName, dataRetriever, createDate, registry);
+    } else {
+      basket = new Basket(basketName, dataRetriever, createDate);
+    }
     setOfBasket.put(basketName, basket);
+    if (journal != null) {
+      journal.addBasket(basketName, createDate);
+      try {
+        compactIfDue();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
   }
 
   /**
@@ -98,6 +235,12 @@ public class IStockModel implements Model {
     Basket request = setOfBasket.get(basketName);
     request.addStock(stockSymbol, share);
     setOfBasket.put(basketName, request);
+    if (journal != null) {
+      // a basket of another retriever validates its stocks in its own registry
+      journal.addStock(basketName, stockSymbol,
+              request.getSymbolRegistry().getKnownNames().get(stockSymbol), share);
+      compactIfDue();
+    }
   }
 
 
@@ -109,15 +252,162 @@ public class IStockModel implements Model {
       istock = setOfBasket.get(iStockName);
       return istock.trend(fromdate, todate, trendCalculator);
     } else {
-      if (dataRetriever.getName(iStockName).equals("N/A")) {
+      if (!registry.isValid(iStockName)) {
         throw new IllegalArgumentException("Invalid stock/basket name");
       } else {
-        istock = new Stock(iStockName, dataRetriever);
+        istock = registry.getStock(iStockName);
         return istock.trend(fromdate, todate, trendCalculator);
       }
     }
   }
 
+  @Override
+  public Map<String, String> trend(List<String> iStockNames, int fromdate, int todate,
+                                   TrendCalculator trendCalculator) throws Exception {
+    List<String> stocks = new ArrayList<>();
+    for (String iStockName : iStockNames) {
+      if (!setOfBasket.containsKey(iStockName)) {
+        if (!registry.isValid(iStockName)) {
+          throw new IllegalArgumentException("Invalid stock/basket name");
+        }
+        stocks.add(iStockName);
+      }
+    }
+    //Start fetching the stocks, and compute the basket trends while the fetches are in flight.
+    Map<String, CompletableFuture<PriceSeries>> fetches = new LinkedHashMap<>();
+    for (String stock : stocks) {
+      fetches.putIfAbsent(stock,
+              asyncRetriever.getClosingSeries(stock, fromdate, todate, fetchTimeout));
+    }
+    Map<String, String> baskets = new HashMap<>();
+    try {
+      for (String iStockName : iStockNames) {
+        if (setOfBasket.containsKey(iStockName)) {
+          baskets.put(iStockName,
+                  setOfBasket.get(iStockName).trend(fromdate, todate, trendCalculator));
+        }
+      }
+    } catch (Exception e) {
+      fetches.values().forEach(f -> f.cancel(true));
+      throw e;
+    }
+    Map<String, PriceSeries> prices = AsyncStockDataRetriever.awaitAll(fetches);
+
+    Map<String, String> trends = new LinkedHashMap<>();
+    for (String iStockName : iStockNames) {
+      if (baskets.containsKey(iStockName)) {
+        trends.put(iStockName, baskets.get(iStockName));
+      } else {
+        PriceSeries closing = prices.get(iStockName);
+        //Throw exception when there is less than two business day in certain day range
+        if (closing.size() < 2) {
+          throw new IllegalArgumentException("invalid date range");
+        }
+        trends.put(iStockName, trendCalculator.getTrendStatus(trendCalculator.trend(closing)));
+      }
+    }
+    return trends;
+  }
+
+  @Override
+  public void saveSnapshot(Path file) throws IOException {
+    ModelSnapshot.write(this, file, journal == null ? 0 : journal.sync());
+  }
+
+  @Override
+  public int openJournal(Path snapshot, Path journalFile, long commitInterval, long compactEvery)
+          throws Exception {
+    if (journal != null || compactEvery < 1) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    long sequence = 0;
+    if (Files.exists(snapshot)) {
+      ModelSnapshot.read(this, snapshot);
+      sequence = ModelSnapshot.readSequence(snapshot);
+    }
+    ModelJournal opened = new ModelJournal(journalFile, commitInterval);
+    int replayed;
+    try {
+      replayed = opened.replay(this, sequence);
+    } catch (Exception e) {
+      opened.close();
+      throw e;
+    }
+    this.journal = opened;
+    this.snapshotFile = snapshot;
+    this.compactEvery = compactEvery;
+    return replayed;
+  }
+
+  @Override
+  public void compact() throws IOException {
+    if (journal == null) {
+      throw new IllegalStateException("no journal is open");
+    }
+    // a crash between the two steps leaves records the snapshot holds, which replay skips
+    ModelSnapshot.write(this, snapshotFile, journal.sync());
+    journal.reset();
+  }
+
+  @Override
+  public void closeJournal() throws IOException {
+    if (journal == null) {
+      return;
+    }
+    try {
+      if (journal.getRecordCount() > 0) {
+        compact();
+      }
+    } finally {
+      journal.close();
+      journal = null;
+    }
+  }
+
+  /**
+   * Get the journal recording the basket mutations of this model.
+   *
+   * @return the journal, or null if none is open
+   */
+  ModelJournal getJournal() {
+    return journal;
+  }
+
+  /**
+   * Fold the journal into a new snapshot once it holds enough records. A failed compaction
+   * leaves the journal as it is, so no mutation is lost.
+   *
+   * @throws IOException when the files cannot be written
+   */
+  private void compactIfDue() throws IOException {
+    if (journal.getRecordCount() >= compactEvery) {
+      compact();
+    }
+  }
+
+  @Override
+  public int loadSnapshot(Path file) throws Exception {
+    return ModelSnapshot.read(this, file);
+  }
+
+  /**
+   * Get the symbol registry shared by the baskets of this model.
+   *
+   * @return the symbol registry
+   */
+  SymbolRegistry getSymbolRegistry() {
+    return registry;
+  }
+
+  /**
+   * Get the data retriever of this model.
+   *
+   * @return the stock data retriever
+   */
+  StockDataRetriever getDataRetriever() {
+    return dataRetriever;
+  }
+
   /**
    * Check if given basket name has been created or not.
    *
@@ -133,13 +423,34 @@ public class IStockModel implements Model {
                                  LocalDate endDate, String strategy, String cadence,
                                  Map<String, Double> proportionMap) throws Exception {
     Simulator simulator = new Simulator(principle, investAmount, startDate, endDate,
-            strategy, cadence, proportionMap, dataRetriever);
+            strategy, cadence, proportionMap, asyncRetriever, fetchTimeout, registry);
     return simulator;
   }
 
+  @Override
+  public List<SimulationSweep.Result> startSweep(SimulationSweep sweep) throws Exception {
+    return sweep.run(registry);
+  }
+
   @Override
   public double getProfit(Simulator simulator, LocalDate queryDate) {
     double profit = simulator.getProfit(queryDate);
     return profit;
   }
+
+  @Override
+  public Map<String, Map<Integer, Double>> getEquityCurve(Simulator simulator, LocalDate fromDate,
+                                                          LocalDate toDate) {
+    EquityCurve curve = simulator.getEquityCurve();
+    int from = DateUtil.convertInt(fromDate);
+    int to = DateUtil.convertInt(toDate);
+    if (from > to || !curve.contains(from) || !curve.contains(to)) {
+      throw new IllegalArgumentException("Date must be start and end range\n");
+    }
+    Map<String, Map<Integer, Double>> result = new LinkedHashMap<>();
+    result.put("value", curve.getValues(from, to).toMap());
+    result.put("invested", curve.getCosts(from, to).toMap());
+    result.put("profit", curve.getProfits(from, to).toMap());
+    return result;
+  }
 }
@@ -2,6 +2,8 @@ package model.trader;
 
 import java.util.Map;
 
+import util.PriceSeries;
+
 /**
  * This is a class represent the linear regression calculator model.
  * Using linear regression model to determine the trend of a  stock or a basket of stocks prices
@@ -14,6 +16,11 @@ public class LinearRegressionCalculator implements TrendCalculator {
     return 0.0;
   }
 
+  @Override
+  public double trend(PriceSeries historicalClosing) {
+    return 0.0;
+  }
+
   @Override
   public String getTrendStatus(double trend) {
     return "";
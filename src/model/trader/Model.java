@@ -1,6 +1,9 @@
 package model.trader;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 import util.StockDataRetriever;
@@ -24,6 +27,21 @@ public interface Model {
   String trend(String iStockName, int fromdate, int todate, TrendCalculator trendCalculator)
           throws Exception;
 
+  /**
+   * Retrieve and calculate the trends of several IStocks over the same date range.
+   * The prices of all stocks are fetched at the same time.
+   *
+   * @param iStockNames     iStock names
+   * @param fromdate        from date of date range
+   * @param todate          to date of date range
+   * @param trendCalculator trendcalculator
+   * @return map with IStock name as key, in the order of the given names, and trend in string
+   *         notation as value
+   * @throws Exception when cannot retrieve data
+   */
+  Map<String, String> trend(List<String> iStockNames, int fromdate, int todate,
+                            TrendCalculator trendCalculator) throws Exception;
+
   /**
    * Add Stock to existing basket.
    *
@@ -45,9 +63,8 @@ public interface Model {
 
   /**
    * Retrieve to X-days moving average data for given IStock name, and put them in map as result.
-   * If days equal to 50, 50 days moving average will be calculated.
-   * If days equal to 200, 200 days moving average will be calculated.
    * If days equals to 250, both 50 and 200 days moving average will be calculated.
+   * Otherwise X-days moving average will be calculated, for example 50 or 200 days.
    *
    * @param iStockName the name of IStock
    * @param fromDate   from date
@@ -59,6 +76,24 @@ public interface Model {
   Map<String, Map<Integer, Double>> iStockPlotMov(String iStockName, int fromDate,
                                                   int toDate, int days) throws Exception;
 
+  /**
+   * Retrieve closing price and indicator data for given IStock name, and put them in map as
+   * result. The daily prices are fetched once, and all indicators are computed in one pass over
+   * them, for example "EMA20", "RSI14", "MACD", "BB20" or "ATR14". The closing prices are keyed
+   * by IStock name, and each indicator line by IStock name followed by the line name, for
+   * example "GOOGEMA20" or "GOOGBB20upper".
+   *
+   * @param iStockName the name of IStock
+   * @param fromDate   from date
+   * @param toDate     to date
+   * @param indicators indicator names
+   * @return result map with line name as key, and closing price or indicator value as value
+   * @throws Exception when cannot retrieve data
+   */
+  Map<String, Map<Integer, Double>> iStockPlotIndicators(String iStockName, int fromDate,
+                                                         int toDate, List<String> indicators)
+          throws Exception;
+
   /**
    * Retrieve closing price data for given IStock name, and put them in map as result.
    *
@@ -71,6 +106,19 @@ public interface Model {
   Map<String, Map<Integer, Double>> iStockPlot(String iStockName, int fromDate, int toDate)
           throws Exception;
 
+  /**
+   * Retrieve closing price data for several IStock names, and put them in map as result.
+   * Prices of all stocks among the names are fetched with one batch request.
+   *
+   * @param iStockNames the names of IStocks
+   * @param fromDate    from date
+   * @param toDate      to date
+   * @return result map with IStock name a key, and closing price as value
+   * @throws Exception when cannot retrieve data
+   */
+  Map<String, Map<Integer, Double>> iStockPlot(List<String> iStockNames, int fromDate,
+                                               int toDate) throws Exception;
+
   /**
    * Start simulation with given principle, invest money, date range, strategy, cadence and
    * stocks with corresponding share.
@@ -88,6 +136,15 @@ public interface Model {
                           LocalDate endDate, String strategy, String cadence,
                           Map<String, Double> proportionMap) throws Exception;
 
+  /**
+   * Run every simulation of a parameter sweep on prices loaded once, in parallel.
+   *
+   * @param sweep the parameter sweep
+   * @return results, highest profit first
+   * @throws Exception when cannot retrieve data
+   */
+  List<SimulationSweep.Result> startSweep(SimulationSweep sweep) throws Exception;
+
   /**
    * Get the profit of given simulation and query date.
    * @param simulator simulation
@@ -95,4 +152,65 @@ public interface Model {
    * @return profit earned on query date
    */
   double getProfit(Simulator simulator, LocalDate queryDate);
+
+  /**
+   * Get the daily equity curve of given simulation within a date range, on every trading day.
+   * The result has the lines "value" (value of the basket), "invested" (money invested up to
+   * that day) and "profit" (value minus all the money invested, as queried from the simulation),
+   * in the same form as the plot data.
+   *
+   * @param simulator simulation
+   * @param fromDate  from date
+   * @param toDate    to date
+   * @return result map with line name as key, and a map with date as key and amount as value
+   */
+  Map<String, Map<Integer, Double>> getEquityCurve(Simulator simulator, LocalDate fromDate,
+                                                   LocalDate toDate);
+
+  /**
+   * Save the baskets of this model, the stock names it knows and the price series cached for
+   * them into a binary snapshot file.
+   *
+   * @param file the snapshot file
+   * @throws IOException when the file cannot be written
+   */
+  void saveSnapshot(Path file) throws IOException;
+
+  /**
+   * Restore the baskets, stock names and cached price series saved in a snapshot file.
+   *
+   * @param file the snapshot file
+   * @return number of restored baskets
+   * @throws Exception when the file cannot be read or a stock cannot be validated
+   */
+  int loadSnapshot(Path file) throws Exception;
+
+  /**
+   * Restore the model from a snapshot file and the journal of basket mutations made since, then
+   * record every later basket creation and added stock into the journal. The journal commits
+   * records in groups and is folded into a new snapshot every given number of records.
+   *
+   * @param snapshot       the snapshot file, which need not exist yet
+   * @param journal        the journal file, which need not exist yet
+   * @param commitInterval milliseconds a record may wait for others before it is committed
+   * @param compactEvery   number of journal records after which the journal is compacted
+   * @return number of journal records replayed
+   * @throws Exception when the files cannot be read or a stock cannot be validated
+   */
+  int openJournal(Path snapshot, Path journal, long commitInterval, long compactEvery)
+          throws Exception;
+
+  /**
+   * Save the model into the snapshot file given to openJournal, and empty the journal.
+   *
+   * @throws IOException when the files cannot be written
+   */
+  void compact() throws IOException;
+
+  /**
+   * Compact the journal if it holds records, and close it.
+   *
+   * @throws IOException when the files cannot be written
+   */
+  void closeJournal() throws IOException;
 }
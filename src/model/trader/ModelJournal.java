@@ -0,0 +1,425 @@
+package model.trader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * This class represents an append-only journal of the basket mutations of a stock model.
+ * Every basket creation and every stock added to a basket is appended as a record with a
+ * sequence number, so the baskets can be rebuilt by replaying the journal on top of the last
+ * snapshot, skipping the records the snapshot already holds.
+ * Appending only buffers the record; a background thread writes and syncs all buffered records
+ * at once (group commit) after the commit interval, or sooner when the buffer fills up or a
+ * caller waits for durability with sync. A script adding thousands of stocks therefore costs a
+ * few syncs instead of one per command.
+ * Layout: magic, version and the sequence number of the last record folded into a snapshot, then
+ * records of payload length, CRC-32 of the payload and the payload: sequence number, type and
+ * fields. Strings are a length followed by UTF-8 bytes. A torn record at the end, left by a
+ * crash during a write, is cut off when the journal is replayed.
+ */
+public class ModelJournal implements Closeable {
+  static final int MAGIC = 0x494A524E;
+  static final int VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int MAX_BATCH = 1 << 20;
+  private static final byte ADD_BASKET = 1;
+  private static final byte ADD_STOCK = 2;
+
+  private final FileChannel channel;
+  private final long commitInterval;
+  private final Thread flusher;
+  private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private long nextSequence = 1;
+  private long appended;
+  private long durable;
+  private boolean flushRequested;
+  private boolean writing;
+  private boolean closed;
+  private IOException failure;
+  private long records;
+  private long commits;
+
+  /**
+   * Open a journal file, creating it if it does not exist. Replay it before appending to it.
+   *
+   * @param file           the journal file
+   * @param commitInterval milliseconds buffered records wait for more records before a commit
+   * @throws IOException when the file cannot be opened
+   */
+  public ModelJournal(Path file, long commitInterval) throws IOException {
+    if (commitInterval < 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+    this.commitInterval = commitInterval;
+    if (channel.size() < HEADER_SIZE) {
+      writeHeader(0);
+    }
+    this.flusher = new Thread(this::flushLoop, "journal-commit");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /**
+   * Apply the records of the journal newer than the given sequence number to a model, and cut
+   * off a torn record at the end. The model must not record into this journal while replaying.
+   *
+   * @param model         the model
+   * @param afterSequence sequence number of the last record the model already holds
+   * @return number of applied records
+   * @throws Exception when the file cannot be read, or a stock cannot be added
+   */
+  synchronized int replay(IStockModel model, long afterSequence) throws Exception {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    readFully(header, 0);
+    header.flip();
+    if (header.getInt() != MAGIC) {
+      throw new IllegalArgumentException("not a model journal");
+    }
+    if (header.getInt() != VERSION) {
+      throw new IllegalArgumentException("unsupported model journal version");
+    }
+    long last = Math.max(header.getLong(), afterSequence);
+    ByteBuffer in = ByteBuffer.allocate((int) (channel.size() - HEADER_SIZE));
+    readFully(in, HEADER_SIZE);
+    in.flip();
+
+    int applied = 0;
+    CRC32 crc = new CRC32();
+    while (in.remaining() >= 8) {
+      int start = in.position();
+      int length = in.getInt();
+      int checksum = in.getInt();
+      if (length < 9 || length > in.remaining()) {
+        in.position(start);
+        break;
+      }
+      crc.reset();
+      crc.update(in.array(), in.position(), length);
+      if ((int) crc.getValue() != checksum) {
+        in.position(start);
+        break;
+      }
+      long sequence = in.getLong();
+      byte type = in.get();
+      if (type == ADD_BASKET) {
+        String basketName = readString(in);
+        int createDate = in.getInt();
+        if (sequence > afterSequence) {
+          model.add(basketName, model.getDataRetriever(), createDate);
+          applied++;
+        }
+      } else {
+        String basketName = readString(in);
+        String stockSymbol = readString(in);
+        String name = readString(in);
+        int share = in.getInt();
+        if (sequence > afterSequence) {
+          if (!name.isEmpty()) {
+            model.getSymbolRegistry().putName(stockSymbol, name);
+          }
+          model.addStock(basketName, stockSymbol, share);
+          applied++;
+        }
+      }
+      last = Math.max(last, sequence);
+      records++;
+    }
+    channel.truncate(HEADER_SIZE + in.position());
+    channel.force(false);
+    nextSequence = last + 1;
+    appended = last;
+    durable = last;
+    return applied;
+  }
+
+  /**
+   * Record the creation of a basket.
+   *
+   * @param basketName the basket name
+   * @param createDate the creation date (YYYYMMDD)
+   * @return sequence number of the record
+   */
+  public long addBasket(String basketName, int createDate) {
+    return append(out -> {
+      out.writeByte(ADD_BASKET);
+      writeString(out, basketName);
+      out.writeInt(createDate);
+    });
+  }
+
+  /**
+   * Record shares of a stock added to a basket.
+   *
+   * @param basketName  the basket name
+   * @param stockSymbol the stock symbol
+   * @param name        the stock name, so replaying does not validate the symbol again
+   * @param share       number of shares added
+   * @return sequence number of the record
+   */
+  public long addStock(String basketName, String stockSymbol, String name, int share) {
+    return append(out -> {
+      out.writeByte(ADD_STOCK);
+      writeString(out, basketName);
+      writeString(out, stockSymbol);
+      writeString(out, name == null ? "" : name);
+      out.writeInt(share);
+    });
+  }
+
+  /**
+   * The fields of a record, written after its sequence number.
+   */
+  private interface RecordWriter {
+    /**
+     * Write the type and fields of a record.
+     *
+     * @param out the stream
+     * @throws IOException when the stream cannot be written
+     */
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /**
+   * Buffer a record for the next commit.
+   *
+   * @param writer writes the type and fields of the record
+   * @return sequence number of the record
+   */
+  private synchronized long append(RecordWriter writer) {
+    if (closed) {
+      throw new IllegalStateException("journal is closed");
+    }
+    long sequence = nextSequence++;
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+    try {
+      DataOutputStream out = new DataOutputStream(payload);
+      out.writeLong(sequence);
+      writer.write(out);
+      CRC32 crc = new CRC32();
+      crc.update(payload.toByteArray());
+      DataOutputStream record = new DataOutputStream(pending);
+      record.writeInt(payload.size());
+      record.writeInt((int) crc.getValue());
+      payload.writeTo(record);
+    } catch (IOException e) {
+      // writing to memory does not fail
+      throw new IllegalStateException(e);
+    }
+    appended = sequence;
+    records++;
+    if (pending.size() >= MAX_BATCH) {
+      notifyAll();
+    }
+    return sequence;
+  }
+
+  /**
+   * Commit every record appended so far, and wait until they are on disk.
+   *
+   * @return sequence number of the last durable record
+   * @throws IOException when the journal cannot be written
+   */
+  public synchronized long sync() throws IOException {
+    long target = appended;
+    flushRequested = true;
+    notifyAll();
+    try {
+      while (durable < target && failure == null) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while committing the journal", e);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+    return target;
+  }
+
+  /**
+   * Empty the journal after its records have been folded into a snapshot.
+   *
+   * @return sequence number of the last record held by the snapshot
+   * @throws IOException when the journal cannot be written
+   */
+  synchronized long reset() throws IOException {
+    long last = sync();
+    try {
+      while (writing) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while resetting the journal", e);
+    }
+    channel.truncate(0);
+    writeHeader(last);
+    records = 0;
+    return last;
+  }
+
+  /**
+   * Get the number of records in the journal since it was opened or last emptied.
+   *
+   * @return number of records
+   */
+  public synchronized long getRecordCount() {
+    return records;
+  }
+
+  /**
+   * Get the number of commits, each writing and syncing a batch of records.
+   *
+   * @return number of commits
+   */
+  public synchronized long getCommitCount() {
+    return commits;
+  }
+
+  /**
+   * Commit the buffered records and close the journal.
+   *
+   * @throws IOException when the journal cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      sync();
+    } finally {
+      synchronized (this) {
+        closed = true;
+        notifyAll();
+      }
+      try {
+        flusher.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      channel.close();
+    }
+  }
+
+  /**
+   * Commit batches of buffered records until the journal is closed.
+   */
+  private void flushLoop() {
+    while (true) {
+      byte[] batch;
+      long last;
+      synchronized (this) {
+        try {
+          while (!closed && pending.size() == 0) {
+            wait();
+          }
+          if (pending.size() == 0) {
+            return;
+          }
+          // give more records the chance to join this commit
+          long remaining = TimeUnit.MILLISECONDS.toNanos(commitInterval);
+          long deadline = System.nanoTime() + remaining;
+          while (!flushRequested && !closed && pending.size() < MAX_BATCH && remaining > 0) {
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        batch = pending.toByteArray();
+        pending = new ByteArrayOutputStream();
+        last = appended;
+        flushRequested = false;
+        writing = true;
+      }
+      try {
+        ByteBuffer out = ByteBuffer.wrap(batch);
+        long position = channel.size();
+        while (out.hasRemaining()) {
+          position += channel.write(out, position);
+        }
+        channel.force(false);
+        synchronized (this) {
+          durable = last;
+          commits++;
+          writing = false;
+          notifyAll();
+        }
+      } catch (IOException e) {
+        synchronized (this) {
+          failure = e;
+          writing = false;
+          notifyAll();
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Read from the journal until a buffer is full or the end of the file is reached.
+   *
+   * @param buffer   the buffer
+   * @param position position in the file to read from
+   * @throws IOException when the file cannot be read
+   */
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        return;
+      }
+      position += read;
+    }
+  }
+
+  /**
+   * Write the header of an empty journal.
+   *
+   * @param lastSequence sequence number of the last record folded into a snapshot
+   * @throws IOException when the file cannot be written
+   */
+  private void writeHeader(long lastSequence) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putLong(lastSequence).flip();
+    while (header.hasRemaining()) {
+      channel.write(header, HEADER_SIZE - header.remaining());
+    }
+    channel.force(false);
+  }
+
+  /**
+   * Write a string as its length and UTF-8 bytes.
+   *
+   * @param out    the stream
+   * @param string the string
+   * @throws IOException when the stream cannot be written
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read a string written by writeString.
+   *
+   * @param in the buffer
+   * @return the string
+   */
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
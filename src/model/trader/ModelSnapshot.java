@@ -0,0 +1,268 @@
+package model.trader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import util.CachedStockDataRetriever;
+import util.PriceRecord;
+import util.StockDataRetriever;
+
+/**
+ * This class saves the state of a stock model into a binary snapshot file and restores it, so a
+ * new session starts with the baskets of the last one without validating their stocks again.
+ * A snapshot holds the valid stock symbols with their names, every basket (name, creation date,
+ * and the symbol and share vectors of its stocks), and when the model fetches through a caching
+ * retriever, the cached price series of the symbols with the date ranges they cover.
+ * A snapshot also records the sequence number of the last journal record it holds, so replaying
+ * the journal on top of it skips the records already folded in.
+ * Layout: magic, version, journal sequence number, symbol count, then symbol and name of each
+ * symbol; basket count, then
+ * name, creation date, stock count and the symbol index and share of each stock; series count,
+ * then symbol index, range count, ranges, row count and the date, open, high, low and close
+ * columns of each series. Strings are a length followed by UTF-8 bytes; an empty name marks a
+ * symbol to validate again. The file is memory-mapped when read.
+ */
+class ModelSnapshot {
+  static final int MAGIC = 0x49534E50;
+  static final int VERSION = 2;
+
+  /**
+   * Not instantiable.
+   */
+  private ModelSnapshot() {
+  }
+
+  /**
+   * Write the state of a model into a snapshot file. The file is written next to the target and
+   * moved into place, so a crash never leaves a partial snapshot.
+   *
+   * @param model    the model
+   * @param file     the target file
+   * @param sequence sequence number of the last journal record the model holds, 0 if none
+   * @throws IOException when the file cannot be written
+   */
+  static void write(IStockModel model, Path file, long sequence) throws IOException {
+    SymbolRegistry registry = model.getSymbolRegistry();
+    Map<String, Basket> baskets = new TreeMap<>(model.getBasketSet());
+    Map<String, String> names = new TreeMap<>(registry.getKnownNames());
+    for (Basket basket : baskets.values()) {
+      // a basket of another retriever knows the names of its stocks in its own registry
+      Map<String, String> known = basket.getSymbolRegistry() == registry
+              ? names : basket.getSymbolRegistry().getKnownNames();
+      for (String stockSymbol : basket.getStockMap().keySet()) {
+        names.putIfAbsent(stockSymbol, known.getOrDefault(stockSymbol, ""));
+      }
+    }
+    Map<String, Integer> index = new TreeMap<>();
+    for (String stockSymbol : names.keySet()) {
+      index.put(stockSymbol, index.size());
+    }
+
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(tmp), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(sequence);
+      out.writeInt(names.size());
+      for (Map.Entry<String, String> e : names.entrySet()) {
+        writeString(out, e.getKey());
+        writeString(out, e.getValue());
+      }
+
+      out.writeInt(baskets.size());
+      for (Basket basket : baskets.values()) {
+        writeString(out, basket.getBasektname());
+        out.writeInt(basket.getBasektCreateTime());
+        Map<String, Integer> stocks = new TreeMap<>(basket.getStockMap());
+        out.writeInt(stocks.size());
+        for (Map.Entry<String, Integer> e : stocks.entrySet()) {
+          out.writeInt(index.get(e.getKey()));
+          out.writeInt(e.getValue());
+        }
+      }
+
+      StockDataRetriever retriever = model.getDataRetriever();
+      List<String> cached = new ArrayList<>();
+      if (retriever instanceof CachedStockDataRetriever) {
+        for (String stockSymbol : names.keySet()) {
+          if (!((CachedStockDataRetriever) retriever).getCoveredRanges(stockSymbol).isEmpty()) {
+            cached.add(stockSymbol);
+          }
+        }
+      }
+      out.writeInt(cached.size());
+      for (String stockSymbol : cached) {
+        CachedStockDataRetriever cache = (CachedStockDataRetriever) retriever;
+        List<int[]> ranges = cache.getCoveredRanges(stockSymbol);
+        Map<Integer, PriceRecord> prices = cache.getCachedPrices(stockSymbol);
+        out.writeInt(index.get(stockSymbol));
+        out.writeInt(ranges.size());
+        for (int[] range : ranges) {
+          out.writeInt(range[0]);
+          out.writeInt(range[1]);
+        }
+        out.writeInt(prices.size());
+        for (int date : prices.keySet()) {
+          out.writeInt(date);
+        }
+        for (PriceRecord record : prices.values()) {
+          out.writeDouble(record.getOpenPrice());
+        }
+        for (PriceRecord record : prices.values()) {
+          out.writeDouble(record.getHighestDayPrice());
+        }
+        for (PriceRecord record : prices.values()) {
+          out.writeDouble(record.getLowestDayPrice());
+        }
+        for (PriceRecord record : prices.values()) {
+          out.writeDouble(record.getClosePrice());
+        }
+      }
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Restore the state saved in a snapshot file into a model. Baskets of the same name are
+   * replaced. Stock symbols saved with their names are not validated again, and cached series
+   * are put back into the caching retriever of the model if it has one.
+   *
+   * @param model the model
+   * @param file  the snapshot file
+   * @return number of restored baskets
+   * @throws Exception when the file cannot be read, or a stock has to be validated again and
+   *                   cannot be
+   */
+  static int read(IStockModel model, Path file) throws Exception {
+    MappedByteBuffer in;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    checkHeader(in);
+    SymbolRegistry registry = model.getSymbolRegistry();
+    String[] symbols = new String[in.getInt()];
+    for (int i = 0; i < symbols.length; i++) {
+      symbols[i] = readString(in);
+      String name = readString(in);
+      if (!name.isEmpty()) {
+        registry.putName(symbols[i], name);
+      }
+    }
+
+    int baskets = in.getInt();
+    for (int b = 0; b < baskets; b++) {
+      String name = readString(in);
+      model.add(name, model.getDataRetriever(), in.getInt());
+      int stocks = in.getInt();
+      for (int s = 0; s < stocks; s++) {
+        String stockSymbol = symbols[in.getInt()];
+        model.addStock(name, stockSymbol, in.getInt());
+      }
+    }
+
+    StockDataRetriever retriever = model.getDataRetriever();
+    int series = in.getInt();
+    for (int s = 0; s < series; s++) {
+      String stockSymbol = symbols[in.getInt()];
+      List<int[]> ranges = new ArrayList<>();
+      int rangeCount = in.getInt();
+      for (int r = 0; r < rangeCount; r++) {
+        ranges.add(new int[]{in.getInt(), in.getInt()});
+      }
+      int rows = in.getInt();
+      int[] dates = new int[rows];
+      double[][] columns = new double[4][rows];
+      in.asIntBuffer().get(dates);
+      in.position(in.position() + 4 * rows);
+      for (double[] column : columns) {
+        in.asDoubleBuffer().get(column);
+        in.position(in.position() + 8 * rows);
+      }
+      if (retriever instanceof CachedStockDataRetriever) {
+        Map<Integer, PriceRecord> prices = new TreeMap<>();
+        for (int i = 0; i < rows; i++) {
+          prices.put(dates[i], new PriceRecord(columns[0][i], columns[3][i], columns[2][i],
+                  columns[1][i]));
+        }
+        ((CachedStockDataRetriever) retriever).preload(stockSymbol, ranges, prices);
+      }
+    }
+    return baskets;
+  }
+
+  /**
+   * Get the sequence number of the last journal record held by a snapshot file.
+   *
+   * @param file the snapshot file
+   * @return the sequence number, 0 for a snapshot written without a journal
+   * @throws IOException when the file cannot be read
+   */
+  static long readSequence(Path file) throws IOException {
+    ByteBuffer in = ByteBuffer.allocate(16);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      channel.read(in, 0);
+    }
+    in.flip();
+    return checkHeader(in);
+  }
+
+  /**
+   * Check the magic and version of a snapshot and read its journal sequence number. Snapshots of
+   * version 1 have no sequence number.
+   *
+   * @param in the buffer, positioned at the start of the file
+   * @return the journal sequence number
+   */
+  private static long checkHeader(ByteBuffer in) {
+    if (in.remaining() < 8 || in.getInt() != MAGIC) {
+      throw new IllegalArgumentException("not a model snapshot");
+    }
+    int version = in.getInt();
+    if (version == 1) {
+      return 0;
+    }
+    if (version != VERSION || in.remaining() < 8) {
+      throw new IllegalArgumentException("unsupported model snapshot version");
+    }
+    return in.getLong();
+  }
+
+  /**
+   * Write a string as its length and UTF-8 bytes.
+   *
+   * @param out    the stream
+   * @param string the string
+   * @throws IOException when the stream cannot be written
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read a string written by writeString.
+   *
+   * @param in the buffer
+   * @return the string
+   */
+  private static String readString(MappedByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
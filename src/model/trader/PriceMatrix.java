@@ -0,0 +1,141 @@
+package model.trader;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import util.AsyncStockDataRetriever;
+import util.DateUtil;
+import util.PriceRecord;
+import util.PriceSeries;
+import util.StockDataRetriever;
+import util.TradingCalendar;
+
+/**
+ * This class represents the closing prices of a set of stocks over a date range, loaded once and
+ * then shared read-only by any number of simulations, also from different threads.
+ * Each stock has its closing price series and the trading calendar of that series, so the price
+ * on a business-day ordinal is an array access.
+ */
+public class PriceMatrix {
+  private final Map<String, PriceSeries> priceSeries;
+  private final Map<String, TradingCalendar> calendars;
+
+  /**
+   * Construct a price matrix from closing price series.
+   *
+   * @param priceSeries map with stock symbol as key and closing price series as value
+   */
+  private PriceMatrix(Map<String, PriceSeries> priceSeries) {
+    this.priceSeries = priceSeries;
+    this.calendars = new HashMap<>();
+    for (Map.Entry<String, PriceSeries> e : priceSeries.entrySet()) {
+      calendars.put(e.getKey(), TradingCalendar.of(e.getValue()));
+    }
+  }
+
+  /**
+   * Create a price matrix from historical closing prices.
+   *
+   * @param stockPricesRecord map with stock symbol as key, and a map with date as key and
+   *                          closing price as value as value
+   * @return the price matrix
+   */
+  public static PriceMatrix of(Map<String, Map<Integer, Double>> stockPricesRecord) {
+    Map<String, PriceSeries> priceSeries = new HashMap<>();
+    for (Map.Entry<String, Map<Integer, Double>> e : stockPricesRecord.entrySet()) {
+      priceSeries.put(e.getKey(), PriceSeries.fromMap(e.getValue()));
+    }
+    return new PriceMatrix(priceSeries);
+  }
+
+  /**
+   * Load the closing prices of the given stocks for a simulation date range.
+   * Two more weeks are loaded after the end date, because an investment or a query on a day
+   * without trading uses the prices of the next business day.
+   *
+   * @param dataRetriever stock data retriever
+   * @param symbols       stock symbols
+   * @param startDate     simulation start date
+   * @param endDate       simulation end date
+   * @return the price matrix
+   * @throws Exception when cannot retrieve data
+   */
+  public static PriceMatrix load(StockDataRetriever dataRetriever, Collection<String> symbols,
+                                 LocalDate startDate, LocalDate endDate) throws Exception {
+    endDate = endDate.plusWeeks(2);
+    Map<String, PriceSeries> priceSeries = new HashMap<>();
+    for (Map.Entry<String, Map<Integer, PriceRecord>> e : dataRetriever.getHistoricalPrices(
+            symbols, startDate.getDayOfMonth(), startDate.getMonthValue(), startDate.getYear(),
+            endDate.getDayOfMonth(), endDate.getMonthValue(), endDate.getYear()).entrySet()) {
+      priceSeries.put(e.getKey(), PriceSeries.closingOf(e.getValue()));
+    }
+    return new PriceMatrix(priceSeries);
+  }
+
+  /**
+   * Load the closing prices of the given stocks for a simulation date range, fetching all stocks
+   * at the same time. As soon as one fetch fails the others are cancelled.
+   *
+   * @param dataRetriever asynchronous stock data retriever
+   * @param symbols       stock symbols
+   * @param startDate     simulation start date
+   * @param endDate       simulation end date
+   * @param timeout       deadline of each fetch, or null to wait as long as the fetches take
+   * @return the price matrix
+   * @throws Exception when cannot retrieve data
+   */
+  public static PriceMatrix load(AsyncStockDataRetriever dataRetriever,
+                                 Collection<String> symbols, LocalDate startDate,
+                                 LocalDate endDate, Duration timeout) throws Exception {
+    Map<String, PriceSeries> priceSeries = new HashMap<>();
+    for (Map.Entry<String, Map<Integer, PriceRecord>> e : AsyncStockDataRetriever.awaitAll(
+            dataRetriever.getHistoricalPrices(symbols, DateUtil.convertInt(startDate),
+                    DateUtil.convertInt(endDate.plusWeeks(2)), timeout)).entrySet()) {
+      priceSeries.put(e.getKey(), PriceSeries.closingOf(e.getValue()));
+    }
+    return new PriceMatrix(priceSeries);
+  }
+
+  /**
+   * Get the stock symbols of this price matrix.
+   *
+   * @return stock symbols
+   */
+  public Collection<String> getSymbols() {
+    return Collections.unmodifiableSet(priceSeries.keySet());
+  }
+
+  /**
+   * Check whether this price matrix holds prices of the given stock.
+   *
+   * @param stockSymbol stock symbol
+   * @return true if prices of the stock are loaded
+   */
+  public boolean contains(String stockSymbol) {
+    return priceSeries.containsKey(stockSymbol);
+  }
+
+  /**
+   * Get the closing price series of a stock.
+   *
+   * @param stockSymbol stock symbol
+   * @return closing price series
+   */
+  public PriceSeries getSeries(String stockSymbol) {
+    return priceSeries.get(stockSymbol);
+  }
+
+  /**
+   * Get the trading calendar of a stock, whose ordinals index its closing price series.
+   *
+   * @param stockSymbol stock symbol
+   * @return trading calendar
+   */
+  public TradingCalendar getCalendar(String stockSymbol) {
+    return calendars.get(stockSymbol);
+  }
+}
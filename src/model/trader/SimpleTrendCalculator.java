@@ -1,10 +1,9 @@
 package model.trader;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
+import util.PriceSeries;
+
 
 /**
  * This is a class that represent the simple trend calculator.
@@ -16,10 +15,13 @@ public class SimpleTrendCalculator implements TrendCalculator {
 
   @Override
   public double trend(Map<Integer, Double> historicalClosing) {
-    List sortedKeys = new ArrayList(historicalClosing.keySet());
-    Collections.sort(sortedKeys);
-    double fromPrice = historicalClosing.get(sortedKeys.get(0));
-    double toPrice = historicalClosing.get(sortedKeys.get(sortedKeys.size() - 1));
+    return trend(PriceSeries.fromMap(historicalClosing));
+  }
+
+  @Override
+  public double trend(PriceSeries historicalClosing) {
+    double fromPrice = historicalClosing.valueAt(0);
+    double toPrice = historicalClosing.valueAt(historicalClosing.size() - 1);
     return toPrice - fromPrice;
   }
 
@@ -0,0 +1,388 @@
+package model.trader;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class represents a parameter sweep: one simulation for every combination of principle,
+ * investment amount, strategy, cadence and stock proportions over the same date range.
+ * Prices of all stocks are loaded once into a price matrix shared by every simulation, and the
+ * simulations run in parallel on a fork/join pool.
+ */
+public class SimulationSweep {
+  // number of simulations below which a task runs them itself instead of splitting
+  private static final int THRESHOLD = 4;
+
+  private final LocalDate startDate;
+  private final LocalDate endDate;
+  private final List<Double> principles;
+  private final List<Double> investAmounts;
+  private final List<String> strategies;
+  private final List<String> cadences;
+  private final List<Map<String, Double>> proportions;
+
+  /**
+   * Construct a parameter sweep.
+   *
+   * @param startDate     simulation start date
+   * @param endDate       simulation end date
+   * @param principles    principles to try
+   * @param investAmounts amounts of money used in each investment to try
+   * @param strategies    strategies to try
+   * @param cadences      investment cadences to try
+   * @param proportions   stock to proportion maps to try, proportions must add up to 1
+   */
+  public SimulationSweep(LocalDate startDate, LocalDate endDate, List<Double> principles,
+                         List<Double> investAmounts, List<String> strategies,
+                         List<String> cadences, List<Map<String, Double>> proportions) {
+    if (principles.isEmpty() || investAmounts.isEmpty() || strategies.isEmpty()
+            || cadences.isEmpty() || proportions.isEmpty()) {
+      throw new IllegalArgumentException("Every sweep parameter needs at least one value\n");
+    }
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.principles = new ArrayList<>(principles);
+    this.investAmounts = new ArrayList<>(investAmounts);
+    this.strategies = new ArrayList<>(strategies);
+    this.cadences = new ArrayList<>(cadences);
+    this.proportions = new ArrayList<>(proportions);
+  }
+
+  /**
+   * Generate every stock to proportion map whose proportions are multiples of 1 / steps and add
+   * up to 1. For example 3 stocks with 10 steps give 66 maps.
+   *
+   * @param symbols stock symbols
+   * @param steps   number of parts 1 is divided into
+   * @return stock to proportion maps
+   */
+  public static List<Map<String, Double>> proportionGrid(List<String> symbols, int steps) {
+    if (symbols.isEmpty() || steps <= 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    List<Map<String, Double>> grid = new ArrayList<>();
+    addProportions(symbols, steps, 0, steps, new int[symbols.size()], grid);
+    return grid;
+  }
+
+  /**
+   * Recursively distribute the remaining parts over the stocks from the given index on.
+   *
+   * @param symbols stock symbols
+   * @param steps   number of parts 1 is divided into
+   * @param index   index of the next stock to give parts to
+   * @param left    parts not given to any stock yet
+   * @param parts   parts given to each stock
+   * @param grid    list the complete maps are added to
+   */
+  private static void addProportions(List<String> symbols, int steps, int index, int left,
+                                     int[] parts, List<Map<String, Double>> grid) {
+    if (index == symbols.size() - 1) {
+      parts[index] = left;
+      Map<String, Double> proportion = new LinkedHashMap<>();
+      for (int i = 0; i < parts.length; i++) {
+        proportion.put(symbols.get(i), (double) parts[i] / steps);
+      }
+      grid.add(proportion);
+      return;
+    }
+    for (int part = left; part >= 0; part--) {
+      parts[index] = part;
+      addProportions(symbols, steps, index + 1, left - part, parts, grid);
+    }
+  }
+
+  /**
+   * Get the number of simulations of this sweep.
+   *
+   * @return number of simulations
+   */
+  public int size() {
+    return principles.size() * investAmounts.size() * strategies.size() * cadences.size()
+            * proportions.size();
+  }
+
+  /**
+   * Get the stock symbols used by any simulation of this sweep.
+   *
+   * @return stock symbols
+   */
+  public Set<String> getSymbols() {
+    Set<String> symbols = new LinkedHashSet<>();
+    for (Map<String, Double> proportion : proportions) {
+      symbols.addAll(proportion.keySet());
+    }
+    return symbols;
+  }
+
+  /**
+   * Load the prices of all stocks once, run every simulation on the common fork/join pool, and
+   * rank the results by profit on the end date.
+   *
+   * @param registry the symbol registry shared with the model
+   * @return results, highest profit first
+   * @throws Exception when cannot retrieve data
+   */
+  public List<Result> run(SymbolRegistry registry) throws Exception {
+    return run(registry, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Load the prices of all stocks once, run every simulation on the given fork/join pool, and
+   * rank the results by profit on the end date.
+   *
+   * @param registry the symbol registry shared with the model
+   * @param pool     the fork/join pool running the simulations
+   * @return results, highest profit first
+   * @throws Exception when cannot retrieve data
+   */
+  public List<Result> run(SymbolRegistry registry, ForkJoinPool pool) throws Exception {
+    PriceMatrix prices = PriceMatrix.load(registry.getDataRetriever(), getSymbols(), startDate,
+            endDate);
+    return run(prices, registry, pool);
+  }
+
+  /**
+   * Run every simulation on prices loaded beforehand, and rank the results by profit on the end
+   * date.
+   *
+   * @param prices   historical prices of all stocks of this sweep
+   * @param registry the symbol registry shared with the model
+   * @param pool     the fork/join pool running the simulations
+   * @return results, highest profit first
+   * @throws Exception when a simulation fails
+   */
+  public List<Result> run(PriceMatrix prices, SymbolRegistry registry, ForkJoinPool pool)
+          throws Exception {
+    List<Result> results;
+    try {
+      results = pool.invoke(new SweepTask(prices, registry, 0, size()));
+    } catch (SweepException e) {
+      throw e.getCause();
+    }
+    // the sort is stable, so equal profits keep the order of the parameters
+    Collections.sort(results, (a, b) -> Double.compare(b.getProfit(), a.getProfit()));
+    return results;
+  }
+
+  /**
+   * Run the simulation with the given index in the order principle, investment amount,
+   * strategy, cadence, proportions, with the last one varying fastest.
+   *
+   * @param prices   historical prices of all stocks of this sweep
+   * @param registry the symbol registry shared with the model
+   * @param index    index of the simulation
+   * @return the result of the simulation
+   * @throws Exception when the simulation fails
+   */
+  private Result simulate(PriceMatrix prices, SymbolRegistry registry, int index)
+          throws Exception {
+    Map<String, Double> proportion = proportions.get(index % proportions.size());
+    index /= proportions.size();
+    String cadence = cadences.get(index % cadences.size());
+    index /= cadences.size();
+    String strategy = strategies.get(index % strategies.size());
+    index /= strategies.size();
+    double investAmount = investAmounts.get(index % investAmounts.size());
+    index /= investAmounts.size();
+    double principle = principles.get(index);
+
+    Simulator simulator = new Simulator(principle, investAmount, startDate, endDate, strategy,
+            cadence, proportion, prices, registry);
+    return new Result(principle, investAmount, strategy, cadence, proportion,
+            simulator.getPrinciple(), simulator.getEndProfit());
+  }
+
+  /**
+   * A fork/join task running the simulations of an index range, split in halves until the range
+   * is small.
+   */
+  private class SweepTask extends RecursiveTask<List<Result>> {
+    private static final long serialVersionUID = 1L;
+
+    private final PriceMatrix prices;
+    private final SymbolRegistry registry;
+    private final int from;
+    private final int to;
+
+    /**
+     * Construct a task running simulations from index from (inclusive) to index to (exclusive).
+     *
+     * @param prices   historical prices of all stocks of this sweep
+     * @param registry the symbol registry shared with the model
+     * @param from     first index
+     * @param to       index after the last
+     */
+    SweepTask(PriceMatrix prices, SymbolRegistry registry, int from, int to) {
+      this.prices = prices;
+      this.registry = registry;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected List<Result> compute() {
+      if (to - from <= THRESHOLD) {
+        List<Result> results = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+          try {
+            results.add(simulate(prices, registry, i));
+          } catch (Exception e) {
+            throw new SweepException(e);
+          }
+        }
+        return results;
+      }
+      int mid = (from + to) >>> 1;
+      SweepTask left = new SweepTask(prices, registry, from, mid);
+      left.fork();
+      List<Result> results = new SweepTask(prices, registry, mid, to).compute();
+      List<Result> leftResults = left.join();
+      leftResults.addAll(results);
+      return leftResults;
+    }
+  }
+
+  /**
+   * An unchecked wrapper carrying the exception of a failed simulation out of the fork/join
+   * pool.
+   */
+  private static class SweepException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Construct a wrapper of the given exception.
+     *
+     * @param cause exception of the failed simulation
+     */
+    SweepException(Exception cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized Exception getCause() {
+      return (Exception) super.getCause();
+    }
+  }
+
+  /**
+   * This class represents the parameters and the outcome of one simulation of a sweep.
+   */
+  public static class Result {
+    private final double principle;
+    private final double investAmount;
+    private final String strategy;
+    private final String cadence;
+    private final Map<String, Double> proportion;
+    private final double invested;
+    private final double profit;
+
+    /**
+     * Construct a result.
+     *
+     * @param principle    principle
+     * @param investAmount the amount of money used in each investment
+     * @param strategy     simulation strategy
+     * @param cadence      investment cadence
+     * @param proportion   stock to proportion map
+     * @param invested     money actually invested
+     * @param profit       profit on the end date
+     */
+    Result(double principle, double investAmount, String strategy, String cadence,
+           Map<String, Double> proportion, double invested, double profit) {
+      this.principle = principle;
+      this.investAmount = investAmount;
+      this.strategy = strategy;
+      this.cadence = cadence;
+      this.proportion = Collections.unmodifiableMap(proportion);
+      this.invested = invested;
+      this.profit = profit;
+    }
+
+    /**
+     * Get the principle of the simulation.
+     *
+     * @return principle
+     */
+    public double getPrinciple() {
+      return principle;
+    }
+
+    /**
+     * Get the amount of money used in each investment of the simulation.
+     *
+     * @return investment amount
+     */
+    public double getInvestAmount() {
+      return investAmount;
+    }
+
+    /**
+     * Get the strategy of the simulation.
+     *
+     * @return strategy
+     */
+    public String getStrategy() {
+      return strategy;
+    }
+
+    /**
+     * Get the investment cadence of the simulation.
+     *
+     * @return cadence
+     */
+    public String getCadence() {
+      return cadence;
+    }
+
+    /**
+     * Get the stock to proportion map of the simulation.
+     *
+     * @return stock to proportion map
+     */
+    public Map<String, Double> getProportion() {
+      return proportion;
+    }
+
+    /**
+     * Get the money actually invested over the simulation.
+     *
+     * @return money invested
+     */
+    public double getInvested() {
+      return invested;
+    }
+
+    /**
+     * Get the profit on the end date of the simulation.
+     *
+     * @return profit
+     */
+    public double getProfit() {
+      return profit;
+    }
+
+    /**
+     * Get the profit relative to the money invested.
+     *
+     * @return profit divided by money invested, or 0 if nothing was invested
+     */
+    public double getReturn() {
+      return invested == 0 ? 0 : profit / invested;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%.2f\t%.2f\t%s\t%s\t%s\t%.2f\t%.2f\t%.2f%%", principle, investAmount,
+              strategy, cadence, proportion, invested, profit, getReturn() * 100);
+    }
+  }
+}
@@ -1,12 +1,16 @@
 package model.trader;
 
+import util.AsyncStockDataRetriever;
 import util.DateUtil;
-import util.PriceRecord;
 import util.StockDataRetriever;
+import util.TradingCalendar;
 
+import java.time.Duration;
 import java.time.LocalDate;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.TreeMap;
 
 /**
@@ -16,15 +20,20 @@ import java.util.TreeMap;
 public class Simulator implements ISimulator {
 
   private TreeMap<Integer, Basket> basketSnapshots;
+  // money invested up to and including each investment date
+  private TreeMap<Integer, Double> investedSnapshots;
+  // built on first use, as simulations of a sweep never need it
+  private EquityCurve equityCurve;
   private InvestingStrategy strategy;
   private LocalDate startDate;
   private LocalDate endDate;
   private Map<String, Double> proportionMap;
   private double principle;
   private double investAmount;
-  private Map<String, Map<Integer, Double>> stockPricesRecord;
+  private PriceMatrix prices;
   private String cadence;
   private StockDataRetriever dataRetriever;
+  private SymbolRegistry registry;
 
   /**
    * Support command "[-simulate -run principle investingAmount startDate endDate
@@ -41,6 +50,98 @@ public class Simulator implements ISimulator {
   public Simulator(double principle, double investAmount, LocalDate startDate, LocalDate endDate,
                    String strategy, String cadence, Map<String, Double> proportionMap,
                    StockDataRetriever dataRetriever) throws Exception {
+    this(principle, investAmount, startDate, endDate, strategy, cadence, proportionMap,
+            dataRetriever, new SymbolRegistry(dataRetriever));
+  }
+
+  /**
+   * Support command "[-simulate -run principle investingAmount startDate endDate
+   * DOLLARCOSTAVERAGE/OPTION2/OPTION3 MONTH/QUARTER {a list of stock proportion pairs}]",
+   * looking up stocks in a shared symbol registry.
+   *
+   * @param principle     principle
+   * @param investAmount  the amount of money used in each investment
+   * @param startDate     simulation start date
+   * @param endDate       simulation end date
+   * @param strategy      simulation strategy
+   * @param cadence       investment cadence
+   * @param proportionMap stock to proportion map, proprotions must add up to 1
+   * @param registry      the symbol registry shared with the model
+   */
+  public Simulator(double principle, double investAmount, LocalDate startDate, LocalDate endDate,
+                   String strategy, String cadence, Map<String, Double> proportionMap,
+                   StockDataRetriever dataRetriever, SymbolRegistry registry) throws Exception {
+    this(principle, investAmount, startDate, endDate, strategy, cadence, proportionMap, null,
+            null, null, dataRetriever, registry);
+  }
+
+  /**
+   * Run a simulation, fetching the prices of all its stocks at the same time.
+   *
+   * @param principle     principle
+   * @param investAmount  the amount of money used in each investment
+   * @param startDate     simulation start date
+   * @param endDate       simulation end date
+   * @param strategy      simulation strategy
+   * @param cadence       investment cadence
+   * @param proportionMap stock to proportion map, proprotions must add up to 1
+   * @param fetcher       asynchronous stock data retriever fetching the prices
+   * @param fetchTimeout  deadline of each fetch, or null to wait as long as fetches take
+   * @param registry      the symbol registry shared with the model
+   */
+  public Simulator(double principle, double investAmount, LocalDate startDate, LocalDate endDate,
+                   String strategy, String cadence, Map<String, Double> proportionMap,
+                   AsyncStockDataRetriever fetcher, Duration fetchTimeout,
+                   SymbolRegistry registry) throws Exception {
+    this(principle, investAmount, startDate, endDate, strategy, cadence, proportionMap, null,
+            Objects.requireNonNull(fetcher), fetchTimeout, registry.getDataRetriever(), registry);
+  }
+
+  /**
+   * Run a simulation on prices loaded beforehand, which may be shared with other simulations.
+   * No prices are fetched, so the price matrix must hold every stock of the proportion map from
+   * the start date to two weeks after the end date.
+   *
+   * @param principle     principle
+   * @param investAmount  the amount of money used in each investment
+   * @param startDate     simulation start date
+   * @param endDate       simulation end date
+   * @param strategy      simulation strategy
+   * @param cadence       investment cadence
+   * @param proportionMap stock to proportion map, proprotions must add up to 1
+   * @param prices        historical prices of the stocks
+   * @param registry      the symbol registry shared with the model
+   */
+  public Simulator(double principle, double investAmount, LocalDate startDate, LocalDate endDate,
+                   String strategy, String cadence, Map<String, Double> proportionMap,
+                   PriceMatrix prices, SymbolRegistry registry) throws Exception {
+    this(principle, investAmount, startDate, endDate, strategy, cadence, proportionMap,
+            Objects.requireNonNull(prices), null, null, registry.getDataRetriever(), registry);
+  }
+
+  /**
+   * Run a simulation, fetching the prices of its stocks when they are not given.
+   *
+   * @param principle     principle
+   * @param investAmount  the amount of money used in each investment
+   * @param startDate     simulation start date
+   * @param endDate       simulation end date
+   * @param strategy      simulation strategy
+   * @param cadence       investment cadence
+   * @param proportionMap stock to proportion map, proprotions must add up to 1
+   * @param prices        historical prices of the stocks, or null to fetch them
+   * @param fetcher       asynchronous retriever fetching the prices, or null to fetch them with
+   *                      one batch call of the stock data retriever
+   * @param fetchTimeout  deadline of each asynchronous fetch, or null for none
+   * @param dataRetriever stock data retriever
+   * @param registry      the symbol registry shared with the model
+   */
+  private Simulator(double principle, double investAmount, LocalDate startDate,
+                    LocalDate endDate, String strategy, String cadence,
+                    Map<String, Double> proportionMap, PriceMatrix prices,
+                    AsyncStockDataRetriever fetcher, Duration fetchTimeout,
+                    StockDataRetriever dataRetriever, SymbolRegistry registry) throws Exception {
+    this.registry = registry;
     this.principle = principle;
     this.investAmount = investAmount;
 
@@ -53,17 +154,30 @@ public class Simulator implements ISimulator {
 
     this.dataRetriever = dataRetriever;
 
-    this.stockPricesRecord
-            = fetchHistoricalStockPrices(this.proportionMap, this.startDate, this.endDate);
+    if (prices == null && fetcher != null) {
+      prices = PriceMatrix.load(fetcher, this.proportionMap.keySet(), this.startDate,
+              this.endDate, fetchTimeout);
+    } else if (prices == null) {
+      prices = PriceMatrix.load(dataRetriever, this.proportionMap.keySet(), this.startDate,
+              this.endDate);
+    }
+    for (String stock : this.proportionMap.keySet()) {
+      if (!prices.contains(stock)) {
+        throw new IllegalArgumentException("No prices loaded for " + stock + "\n");
+      }
+    }
+    this.prices = prices;
 
     this.strategy
-            = setStrategy(strategy, this.stockPricesRecord, this.dataRetriever);
+            = setStrategy(strategy, this.prices, this.dataRetriever);
 
     Basket initialBasket
             = this.strategy.invest(initBasket(this.proportionMap), this.principle, this.startDate);
     this.principle = this.strategy.getInvestingCost();
     basketSnapshots = new TreeMap<Integer, Basket>();
     basketSnapshots.put(DateUtil.convertInt(this.startDate), initialBasket);
+    investedSnapshots = new TreeMap<Integer, Double>();
+    investedSnapshots.put(DateUtil.convertInt(this.startDate), this.principle);
 
 
     // run simulation
@@ -76,6 +190,8 @@ public class Simulator implements ISimulator {
    * Share of each stocks in an basket is calculated by proportion * principle / stock price. Then
    * the share will be casted in to integer as final share of this stock in this basket. Then the
    * actual initial principle will be calculated by each stocks' prices * its share.
+   * The profit is the value of the basket minus all the money invested over the simulation, read
+   * from the equity curve, which is built on the first query.
    *
    * @param date the date at which profit is computed.
    * @return the profit
@@ -85,7 +201,46 @@ public class Simulator implements ISimulator {
     if (date.isBefore(this.startDate) || date.isAfter(this.endDate)) {
       throw new IllegalArgumentException("Date must be start and end range\n");
     }
-    return getBasketValue(date) - principle;
+    return getEquityCurve().getProfit(DateUtil.convertInt(date));
+  }
+
+  /**
+   * Get the profit at the end date without building the equity curve, for callers which only
+   * need the outcome of the simulation, such as a parameter sweep.
+   *
+   * @return the profit at the end date
+   */
+  public double getEndProfit() {
+    int day = DateUtil.convertInt(endDate);
+    double value = getBasketValue(new ArrayList<>(
+            basketSnapshots.lastEntry().getValue().getStockMap().entrySet()), day);
+    if (Double.isNaN(value)) {
+      throw new RuntimeException("Cannot find price");
+    }
+    return value - principle;
+  }
+
+  /**
+   * Get the money actually invested over the whole simulation: the initial principle plus every
+   * periodical investment, each rounded down to whole shares.
+   *
+   * @return the money invested
+   */
+  public double getPrinciple() {
+    return principle;
+  }
+
+  /**
+   * Get the daily equity curve of this simulation, from the start to the end date. The curve is
+   * built on the first call and kept.
+   *
+   * @return the equity curve
+   */
+  public synchronized EquityCurve getEquityCurve() {
+    if (equityCurve == null) {
+      equityCurve = buildEquityCurve();
+    }
+    return equityCurve;
   }
 
   /**
@@ -107,6 +262,7 @@ public class Simulator implements ISimulator {
       Basket newBasket = strategy.invest(curBasket, investAmount, current);
       this.principle += strategy.getInvestingCost();
       basketSnapshots.put(DateUtil.convertInt(current), newBasket);
+      investedSnapshots.put(DateUtil.convertInt(current), this.principle);
       curBasket = newBasket;
     }
   }
@@ -140,19 +296,18 @@ public class Simulator implements ISimulator {
   /**
    * Create a Strategy object based on user choice of strategy.
    *
-   * @param strategy          strategy will be used
-   * @param stockPricesRecord stock price
-   * @param dataRetriever     stock data retriever
+   * @param strategy      strategy will be used
+   * @param prices        stock price
+   * @param dataRetriever stock data retriever
    * @return Strategy object
    */
-  private InvestingStrategy setStrategy(
-          String strategy, Map<String, Map<Integer, Double>> stockPricesRecord,
-          StockDataRetriever dataRetriever) {
+  private InvestingStrategy setStrategy(String strategy, PriceMatrix prices,
+                                        StockDataRetriever dataRetriever) {
     if (strategy.equals("DCA")) {
-      return new DollarCostAverageStrategy(proportionMap, stockPricesRecord, dataRetriever);
+      return new DollarCostAverageStrategy(proportionMap, prices, dataRetriever);
     } else if (strategy.equals("AR")) {
       //Different kinds of strategy are supported, for now use DCA (implemented) as default.
-      return new DollarCostAverageStrategy(proportionMap, stockPricesRecord, dataRetriever);
+      return new DollarCostAverageStrategy(proportionMap, prices, dataRetriever);
     } else {
       throw new IllegalArgumentException("Unknown Investing Strategy\n");
     }
@@ -198,7 +353,7 @@ public class Simulator implements ISimulator {
    */
   private Basket initBasket(Map<String, Double> proportionMap) throws Exception {
     Basket basket =
-            new Basket("SimulationBasket", this.dataRetriever, 19000101);
+            new Basket("SimulationBasket", this.dataRetriever, 19000101, this.registry);
     for (String stock : proportionMap.keySet()) {
       basket.addStock(stock, 0);
     }
@@ -206,57 +361,59 @@ public class Simulator implements ISimulator {
   }
 
   /**
-   * Get historical pricing data of each stocks in basket within certain date range.
+   * Value the basket on every day from the start to the end date, once the simulation is done.
+   * Each day uses the basket of the last investment on or before it.
    *
-   * @param proportionMap stock proportion map
-   * @param startDate     start date
-   * @param endDate       end date
-   * @return historical pricing data map with stock symbol as key, data as value
-   * @throws Exception when cannot retrieve data
+   * @return the equity curve
    */
-  private Map<String, Map<Integer, Double>> fetchHistoricalStockPrices(
-          Map<String, Double> proportionMap, LocalDate startDate, LocalDate endDate)
-          throws Exception {
-    // fetch two more week data because if we invest on weekends we will use prices in next monday
-    endDate = endDate.plusWeeks(2);
-    Map<String, Map<Integer, Double>> stockPricesRecord =
-            new HashMap<String, Map<Integer, Double>>();
-    for (String stock : proportionMap.keySet()) {
-      Map<Integer, PriceRecord> dateToPricRecordeMap = dataRetriever.getHistoricalPrices(stock,
-              startDate.getDayOfMonth(), startDate.getMonthValue(), startDate.getYear(),
-              endDate.getDayOfMonth(), endDate.getMonthValue(), endDate.getYear());
-      Map<Integer, Double> dateToClosingPriceMap = new HashMap<Integer, Double>();
-      for (int date : dateToPricRecordeMap.keySet()) {
-        dateToClosingPriceMap.put(date, dateToPricRecordeMap.get(date).getClosePrice());
+  private EquityCurve buildEquityCurve() {
+    int start = DateUtil.convertInt(startDate);
+    int days = DateUtil.toEpochDay(DateUtil.convertInt(endDate)) - DateUtil.toEpochDay(start) + 1;
+    double[] values = new double[days];
+    double[] costs = new double[days];
+    boolean[] tradingDays = new boolean[days];
+
+    Map.Entry<Integer, Basket> basket = basketSnapshots.firstEntry();
+    Map.Entry<Integer, Double> invested = investedSnapshots.firstEntry();
+    List<Map.Entry<String, Integer>> stocks = new ArrayList<>(
+            basket.getValue().getStockMap().entrySet());
+    int day = start;
+    for (int i = 0; i < days; i++, day = DateUtil.plusDays(day, 1)) {
+      Map.Entry<Integer, Basket> next = basketSnapshots.higherEntry(basket.getKey());
+      if (next != null && next.getKey() <= day) {
+        basket = next;
+        invested = investedSnapshots.floorEntry(day);
+        stocks = new ArrayList<>(basket.getValue().getStockMap().entrySet());
+      }
+      values[i] = getBasketValue(stocks, day);
+      costs[i] = invested.getValue();
+      for (Map.Entry<String, Integer> stock : stocks) {
+        tradingDays[i] |= prices.getCalendar(stock.getKey()).isTradingDay(day);
       }
-      stockPricesRecord.put(stock, dateToClosingPriceMap);
     }
-    return stockPricesRecord;
+    return new EquityCurve(start, values, costs, tradingDays);
   }
 
   /**
    * Get basket value on a given date.
    *
-   * @param date date
-   * @return value of basket
+   * @param stocks stock symbols with their shares in the basket
+   * @param day    date (YYYYMMDD)
+   * @return value of basket, or NaN if a price cannot be found
    */
-  private double getBasketValue(LocalDate date) {
+  private double getBasketValue(List<Map.Entry<String, Integer>> stocks, int day) {
     double value = 0;
-    Basket basket = basketSnapshots.floorEntry(DateUtil.convertInt(date)).getValue();
-    for (Map.Entry<String, Integer> stock : basket.getStockMap().entrySet()) {
-      int plusDays = 0;
+    for (Map.Entry<String, Integer> stock : stocks) {
       // assume that stock market never paused for more than two weeks,
       // or if we mistakenly look into the future
       // if the date looking for is not a business day, look for next monday
-      while (stockPricesRecord.get(stock.getKey()).get(DateUtil.convertInt(date)) == null) {
-        if (plusDays > 14) {
-          throw new RuntimeException("Cannot find price");
-        }
-        plusDays++;
-        date = date.plusDays(1);
+      TradingCalendar calendar = prices.getCalendar(stock.getKey());
+      int ordinal = calendar.nextTradingOrdinal(day, DollarCostAverageStrategy.MAX_DAYS_AHEAD);
+      if (ordinal < 0) {
+        return Double.NaN;
       }
-      value += stockPricesRecord.get(stock.getKey()).get(DateUtil.convertInt(date))
-              * stock.getValue();
+      day = calendar.dateOf(ordinal);
+      value += prices.getSeries(stock.getKey()).valueAt(ordinal) * stock.getValue();
     }
     return value;
   }
@@ -1,10 +1,14 @@
 package model.trader;
 
+import java.time.LocalDate;
 import java.util.Map;
-import java.util.TreeMap;
 
 import util.Calculate;
+import util.DateUtil;
+import util.MovingAverageIndex;
 import util.PriceRecord;
+import util.PriceSeries;
+import util.TradingCalendar;
 import util.StockDataRetriever;
 
 /**
@@ -13,6 +17,12 @@ import util.StockDataRetriever;
 public class Stock implements IStock {
   private String stockSymbol;
   private StockDataRetriever dataRetriever;
+  private SymbolRegistry registry;
+
+  // closing prices fetched so far, with prefix sums for moving averages
+  private MovingAverageIndex averages;
+  private int averagesFrom;
+  private int averagesTo;
 
   /**
    * Construct a stock object.
@@ -22,9 +32,21 @@ public class Stock implements IStock {
    * @param dataRetriever the data retriever to get data from web
    */
   public Stock(String stockSymbol, StockDataRetriever dataRetriever) throws Exception {
+    this(stockSymbol, dataRetriever, new SymbolRegistry(dataRetriever));
+    isValid();
+  }
+
+  /**
+   * Construct a stock object whose symbol has already been validated by the given registry.
+   *
+   * @param stockSymbol   the stock symbol of this stock
+   * @param dataRetriever the data retriever to get data from web
+   * @param registry      the symbol registry which looks up the name of this stock
+   */
+  Stock(String stockSymbol, StockDataRetriever dataRetriever, SymbolRegistry registry) {
     this.stockSymbol = stockSymbol;
     this.dataRetriever = dataRetriever;
-    isValid();
+    this.registry = registry;
   }
 
   @Override
@@ -36,40 +58,44 @@ public class Stock implements IStock {
   public Map<Integer, Double> getHistoricalClosing(int fromDate, int fromMon, int fromYear,
                                                    int toDate, int toMon, int toYear)
           throws Exception {
-    Map<Integer, PriceRecord> map = dataRetriever.getHistoricalPrices(stockSymbol,
-            fromDate, fromMon, fromYear, toDate, toMon, toYear);
-
-    if (map.isEmpty()) {
-      throw new IllegalArgumentException("invalid date range");
-    }
+    return getClosingSeries(DateUtil.toInt(fromDate, fromMon, fromYear),
+            DateUtil.toInt(toDate, toMon, toYear)).toMap();
+  }
 
-    Map<Integer, Double> stockHC = new TreeMap<Integer, Double>();
+  @Override
+  public Map<Integer, Double> getHistoricalClosing(int fromDate, int toDate) throws Exception {
+    return getClosingSeries(fromDate, toDate).toMap();
+  }
 
-    for (Map.Entry<Integer, PriceRecord> e : map.entrySet()) {
-      stockHC.put(e.getKey(), e.getValue().getClosePrice());
-    }
-    return stockHC;
+  @Override
+  public PriceSeries getClosingSeries(int fromDate, int toDate) throws Exception {
+    return PriceSeries.closingOf(getHistoricalPrices(fromDate, toDate));
   }
 
   @Override
-  public Map<Integer, Double> getHistoricalClosing(int fromDate, int toDate) throws Exception {
-    String fromDatestr = String.valueOf(fromDate);
-    int fromday = Integer.parseInt(fromDatestr.substring(6));
-    int frommon = Integer.parseInt(fromDatestr.substring(4, 6));
-    int fromyear = Integer.parseInt(fromDatestr.substring(0, 4));
-    String toDatestr = String.valueOf(toDate);
-    int today = Integer.parseInt(toDatestr.substring(6));
-    int tomon = Integer.parseInt(toDatestr.substring(4, 6));
-    int toyear = Integer.parseInt(toDatestr.substring(0, 4));
-    return getHistoricalClosing(fromday, frommon, fromyear, today, tomon, toyear);
+  public Map<Integer, PriceRecord> getHistoricalPrices(int fromDate, int toDate)
+          throws Exception {
+    Map<Integer, PriceRecord> map = dataRetriever.getHistoricalPrices(stockSymbol,
+            fromDate % 100, fromDate / 100 % 100, fromDate / 10000,
+            toDate % 100, toDate / 100 % 100, toDate / 10000);
+
+    if (map.isEmpty()) {
+      throw new IllegalArgumentException("invalid date range");
+    }
+    return map;
   }
 
   @Override
   public String trend(int fromDate, int fromMon, int fromYear,
                       int toDate, int toMon, int toYear,
                       TrendCalculator trendCalculator) throws Exception {
-    Map<Integer, Double> stockHC = getHistoricalClosing(fromDate, fromMon, fromYear,
-            toDate, toMon, toYear);
+    return trend(DateUtil.toInt(fromDate, fromMon, fromYear),
+            DateUtil.toInt(toDate, toMon, toYear), trendCalculator);
+  }
+
+  @Override
+  public String trend(int fromDate, int toDate, TrendCalculator trendCalculator) throws Exception {
+    PriceSeries stockHC = getClosingSeries(fromDate, toDate);
 
     //Throw exception when there is less than two business day in certain day range
     if (stockHC.size() < 2) {
@@ -79,31 +105,20 @@ public class Stock implements IStock {
     return trendCalculator.getTrendStatus(trend);
   }
 
-  @Override
-  public String trend(int fromDate, int toDate, TrendCalculator trendCalculator) throws Exception {
-    String fromDatestr = String.valueOf(fromDate);
-    int fromday = Integer.parseInt(fromDatestr.substring(6));
-    int frommon = Integer.parseInt(fromDatestr.substring(4, 6));
-    int fromyear = Integer.parseInt(fromDatestr.substring(0, 4));
-    String toDatestr = String.valueOf(toDate);
-    int today = Integer.parseInt(toDatestr.substring(6));
-    int tomon = Integer.parseInt(toDatestr.substring(4, 6));
-    int toyear = Integer.parseInt(toDatestr.substring(0, 4));
-    return trend(fromday, frommon, fromyear, today, tomon, toyear, trendCalculator);
-  }
-
   @Override
   public boolean buyOpportunity(int date, int mon, int year) throws Exception {
-    Map<Integer, Double> map = getHistoricalClosing(date, mon, year,
-            date, mon, year);
+    int day = DateUtil.toInt(date, mon, year);
 
-    //If the map size is not equal to one, which means the passed in argument is not a business day
-    //throw exception.
-    if (map.size() != 1) {
+    MovingAverageIndex index = getMovingAverages(TradingCalendar.lookbackStart(day, 200), day);
+
+    //If the given date is not in the closing prices, which means the passed in argument is not a
+    //business day throw exception.
+    int last = index.getClosing().indexOf(day);
+    if (last < 0) {
       throw new IllegalArgumentException("invalid input");
     }
-    double ave50 = Calculate.getAve(this, 50, date, mon, year);
-    double ave200 = Calculate.getAve(this, 200, date, mon, year);
+    double ave50 = index.average(last, 50);
+    double ave200 = index.average(last, 200);
 
     return ave50 > ave200;
   }
@@ -126,8 +141,7 @@ public class Stock implements IStock {
    * @throws Exception when the given stock symbol is in valid
    */
   public void isValid() throws Exception {
-    String stockname = dataRetriever.getName(stockSymbol);
-    if (stockname.equals("N/A")) {
+    if (!registry.isValid(stockSymbol)) {
       throw new IllegalArgumentException("invalid stock symbol");
     }
   }
@@ -162,7 +176,7 @@ public class Stock implements IStock {
   @Override
   public String toString() {
     try {
-      return stockSymbol + dataRetriever.getName(stockSymbol);
+      return stockSymbol + registry.getName(stockSymbol);
     } catch (Exception e) {
       return "invalid stock";
     }
@@ -174,5 +188,37 @@ public class Stock implements IStock {
     return Calculate.getAveRange(this, fromDate, toDate, days);
   }
 
+  @Override
+  public PriceSeries getAveSeries(int fromDate, int toDate, int days) throws Exception {
+    return getMovingAverages(TradingCalendar.lookbackStart(fromDate, days), toDate)
+            .averageSeries(fromDate, toDate, days);
+  }
+
+  /**
+   * Get the moving average index of this stock covering a date range.
+   * The index is kept between calls and rebuilt over the union of the old and the requested
+   * range only when the request is not covered, so any moving average on any covered date is a
+   * subtraction of two prefix sums.
+   *
+   * @param fromDate start of date range (YYYYMMDD)
+   * @param toDate   end of date range (YYYYMMDD)
+   * @return the moving average index
+   * @throws Exception when cannot retrieve data
+   */
+  private synchronized MovingAverageIndex getMovingAverages(int fromDate, int toDate)
+          throws Exception {
+    if (averages == null || fromDate < averagesFrom || toDate > averagesTo) {
+      int from = averages == null ? fromDate : Math.min(fromDate, averagesFrom);
+      int to = averages == null ? toDate : Math.max(toDate, averagesTo);
+      averages = new MovingAverageIndex(getClosingSeries(from, to));
+      averagesFrom = from;
+      // prices of today and later are not final yet, so never treat them as covered
+      LocalDate yesterday = LocalDate.now().minusDays(1);
+      averagesTo = Math.min(to, DateUtil.toInt(yesterday.getDayOfMonth(),
+              yesterday.getMonthValue(), yesterday.getYear()));
+    }
+    return averages;
+  }
+
 
 }
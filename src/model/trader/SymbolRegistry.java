@@ -0,0 +1,189 @@
+package model.trader;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import util.StockDataRetriever;
+
+/**
+ * This is a class represent the registry of known stock symbols.
+ * It interns one Stock object per symbol, and caches the name lookups made through the stock
+ * data retriever, so a symbol is validated once instead of on every Stock construction.
+ * Valid symbols are remembered with their names for a positive time-to-live. Unknown symbols are
+ * remembered exactly, each for a negative time-to-live, up to a bounded number of symbols.
+ */
+public class SymbolRegistry {
+  private static final long DEFAULT_POSITIVE_TTL = 24 * 60 * 60 * 1000L;
+  private static final long DEFAULT_NEGATIVE_TTL = 10 * 60 * 1000L;
+
+  private final StockDataRetriever dataRetriever;
+  private final long positiveTtl;
+  private final long negativeTtl;
+  private final Map<String, NameEntry> names;
+  private final Map<String, Stock> stocks;
+  private final NegativeCache negatives;
+
+  /**
+   * A cached stock name with the time it expires.
+   */
+  private static class NameEntry {
+    private final String name;
+    private final long expires;
+
+    private NameEntry(String name, long expires) {
+      this.name = name;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * A bounded set of unknown stock symbols, each remembered until its time-to-live elapses.
+   * Membership is exact, so a valid symbol is never reported unknown without a lookup. When the
+   * set is full the symbol remembered longest is forgotten first.
+   */
+  private static class NegativeCache {
+    private static final int CAPACITY = 4096;
+
+    private final Map<String, Long> expires = new LinkedHashMap<String, Long>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        return size() > CAPACITY;
+      }
+    };
+
+    private synchronized boolean contains(String symbol, long now) {
+      Long expiry = expires.get(symbol);
+      if (expiry == null) {
+        return false;
+      }
+      if (now >= expiry) {
+        expires.remove(symbol);
+        return false;
+      }
+      return true;
+    }
+
+    private synchronized void add(String symbol, long now, long ttl) {
+      // re-insert so the entry moves to the end of the eviction order
+      expires.remove(symbol);
+      expires.put(symbol, now + ttl);
+    }
+  }
+
+  /**
+   * Construct a symbol registry with the default time-to-live of lookups.
+   *
+   * @param dataRetriever the data retriever used to look up stock names
+   */
+  public SymbolRegistry(StockDataRetriever dataRetriever) {
+    this(dataRetriever, DEFAULT_POSITIVE_TTL, DEFAULT_NEGATIVE_TTL);
+  }
+
+  /**
+   * Construct a symbol registry.
+   *
+   * @param dataRetriever the data retriever used to look up stock names
+   * @param positiveTtl   time in milliseconds a valid symbol is remembered
+   * @param negativeTtl   time in milliseconds an unknown symbol is remembered
+   */
+  public SymbolRegistry(StockDataRetriever dataRetriever, long positiveTtl, long negativeTtl) {
+    this.dataRetriever = dataRetriever;
+    this.positiveTtl = positiveTtl;
+    this.negativeTtl = negativeTtl;
+    this.names = new ConcurrentHashMap<>();
+    this.stocks = new ConcurrentHashMap<>();
+    this.negatives = new NegativeCache();
+  }
+
+  /**
+   * Get the stock name of given symbol. Return "N/A" if the symbol is unknown.
+   *
+   * @param stockSymbol the stock symbol
+   * @return the stock name, or "N/A"
+   * @throws Exception when cannot retrieve data
+   */
+  public String getName(String stockSymbol) throws Exception {
+    long now = System.currentTimeMillis();
+    NameEntry entry = names.get(stockSymbol);
+    if (entry != null && now < entry.expires) {
+      return entry.name;
+    }
+    if (negatives.contains(stockSymbol, now)) {
+      return "N/A";
+    }
+    String name = dataRetriever.getName(stockSymbol);
+    if (name == null || name.equals("N/A")) {
+      names.remove(stockSymbol);
+      stocks.remove(stockSymbol);
+      negatives.add(stockSymbol, now, negativeTtl);
+      return "N/A";
+    }
+    names.put(stockSymbol, new NameEntry(name, now + positiveTtl));
+    return name;
+  }
+
+  /**
+   * Check whether the given stock symbol is valid.
+   *
+   * @param stockSymbol the stock symbol
+   * @return true if the symbol is a known stock, otherwise false
+   * @throws Exception when cannot retrieve data
+   */
+  public boolean isValid(String stockSymbol) throws Exception {
+    return !getName(stockSymbol).equals("N/A");
+  }
+
+  /**
+   * Get the one Stock object of given symbol.
+   * throw illegalArgumentException if the cannot find a stock with given stock symbol
+   *
+   * @param stockSymbol the stock symbol
+   * @return the stock
+   * @throws Exception when cannot retrieve data
+   */
+  public Stock getStock(String stockSymbol) throws Exception {
+    if (!isValid(stockSymbol)) {
+      throw new IllegalArgumentException("invalid stock symbol");
+    }
+    return stocks.computeIfAbsent(stockSymbol, s -> new Stock(s, dataRetriever, this));
+  }
+
+  /**
+   * Get the valid symbols this registry currently remembers, with their names.
+   *
+   * @return map with stock symbol as key and stock name as value
+   */
+  Map<String, String> getKnownNames() {
+    long now = System.currentTimeMillis();
+    Map<String, String> known = new TreeMap<>();
+    for (Map.Entry<String, NameEntry> e : names.entrySet()) {
+      if (now < e.getValue().expires) {
+        known.put(e.getKey(), e.getValue().name);
+      }
+    }
+    return known;
+  }
+
+  /**
+   * Remember a valid symbol with its name, as if it had just been looked up.
+   *
+   * @param stockSymbol the stock symbol
+   * @param name        the stock name
+   */
+  void putName(String stockSymbol, String name) {
+    names.put(stockSymbol, new NameEntry(name, System.currentTimeMillis() + positiveTtl));
+  }
+
+  /**
+   * Get the data retriever of this registry.
+   *
+   * @return the stock data retriever
+   */
+  public StockDataRetriever getDataRetriever() {
+    return dataRetriever;
+  }
+}
@@ -2,6 +2,8 @@ package model.trader;
 
 import java.util.Map;
 
+import util.PriceSeries;
+
 
 /**
  * This is an trend calculator interface contains the operation that all types of trend calculator
@@ -19,6 +21,16 @@ public interface TrendCalculator {
    */
   double trend(Map<Integer, Double> historicalClosing);
 
+  /**
+   * Calculate the trend by calculate the difference in price between the start and the end of
+   * the date range.
+   *
+   * @param historicalClosing the closing price series of a stock or a basket of stocks
+   * @return the trend calculate by calculating the difference in price between the start and the
+   *     end of the date range
+   */
+  double trend(PriceSeries historicalClosing);
+
   /**
    * Return the String representation of trend.
    *
@@ -0,0 +1,122 @@
+package util;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class adapts any stock data retriever to the asynchronous interface. Each call runs the
+ * blocking call of the wrapped retriever on its own thread. On a runtime with virtual threads
+ * every call gets a new virtual thread, otherwise calls share a cached pool of daemon threads.
+ * When the future of a call is cancelled or its deadline passes, the thread running the call is
+ * interrupted, so the wrapped retriever stops waiting on its I/O.
+ */
+public class AsyncRetrieverAdapter implements AsyncStockDataRetriever {
+  private static final ExecutorService SHARED_EXECUTOR = newExecutor();
+
+  private final StockDataRetriever dataRetriever;
+  private final ExecutorService executor;
+
+  /**
+   * Construct an adapter running calls on the shared executor.
+   *
+   * @param dataRetriever the wrapped stock data retriever
+   */
+  public AsyncRetrieverAdapter(StockDataRetriever dataRetriever) {
+    this(dataRetriever, SHARED_EXECUTOR);
+  }
+
+  /**
+   * Construct an adapter running calls on the given executor.
+   *
+   * @param dataRetriever the wrapped stock data retriever
+   * @param executor      executor running the blocking calls
+   */
+  public AsyncRetrieverAdapter(StockDataRetriever dataRetriever, ExecutorService executor) {
+    if (dataRetriever == null || executor == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.dataRetriever = dataRetriever;
+    this.executor = executor;
+  }
+
+  /**
+   * Create an executor starting a virtual thread per task when the runtime has virtual threads,
+   * or else a cached pool of daemon threads.
+   *
+   * @return the executor
+   */
+  static ExecutorService newExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "stock-fetch");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  /**
+   * Get the wrapped stock data retriever.
+   *
+   * @return the stock data retriever
+   */
+  public StockDataRetriever getDataRetriever() {
+    return dataRetriever;
+  }
+
+  @Override
+  public CompletableFuture<String> getName(String stockSymbol) {
+    return submit(() -> dataRetriever.getName(stockSymbol), null);
+  }
+
+  @Override
+  public CompletableFuture<Map<Integer, PriceRecord>> getHistoricalPrices(String stockSymbol,
+                                                                          int fromDate,
+                                                                          int toDate,
+                                                                          Duration timeout) {
+    return submit(() -> dataRetriever.getHistoricalPrices(stockSymbol,
+            fromDate % 100, fromDate / 100 % 100, fromDate / 10000,
+            toDate % 100, toDate / 100 % 100, toDate / 10000), timeout);
+  }
+
+  /**
+   * Run a blocking call on the executor. The returned future completes with the result of the
+   * call, and cancelling it or letting its deadline pass interrupts the call.
+   *
+   * @param call    the blocking call
+   * @param timeout deadline of the call, or null for none
+   * @param <T>     type of the result
+   * @return future of the result
+   */
+  private <T> CompletableFuture<T> submit(Callable<T> call, Duration timeout) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Future<?> task = executor.submit(() -> {
+      try {
+        result.complete(call.call());
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+      }
+    });
+    result.whenComplete((value, e) -> {
+      if (e instanceof CancellationException || e instanceof TimeoutException) {
+        task.cancel(true);
+      }
+    });
+    if (timeout != null) {
+      result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+    return result;
+  }
+}
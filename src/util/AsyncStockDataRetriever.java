@@ -0,0 +1,173 @@
+package util;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This interface represents a stock data retriever whose calls return at once with a future.
+ * Many fetches can be in flight together, so a command over several stocks waits for the slowest
+ * fetch rather than for the sum of all fetches. Cancelling a returned future, or letting its
+ * deadline pass, stops the fetch behind it.
+ */
+public interface AsyncStockDataRetriever {
+
+  /**
+   * Get the stock name.
+   *
+   * @param stockSymbol the stock symbol
+   * @return future of the stock name
+   */
+  CompletableFuture<String> getName(String stockSymbol);
+
+  /**
+   * Get historical pricing of a stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @param fromDate    start of date range (YYYYMMDD)
+   * @param toDate      end of date range (YYYYMMDD)
+   * @param timeout     time after which the future fails with a TimeoutException and the fetch
+   *                    is cancelled, or null to wait as long as the fetch takes
+   * @return future of a map with date as key and price record as value
+   */
+  CompletableFuture<Map<Integer, PriceRecord>> getHistoricalPrices(String stockSymbol,
+                                                                   int fromDate, int toDate,
+                                                                   Duration timeout);
+
+  /**
+   * Get historical pricing of a stock, waiting as long as the fetch takes.
+   *
+   * @param stockSymbol the stock symbol
+   * @param fromDate    start of date range (YYYYMMDD)
+   * @param toDate      end of date range (YYYYMMDD)
+   * @return future of a map with date as key and price record as value
+   */
+  default CompletableFuture<Map<Integer, PriceRecord>> getHistoricalPrices(String stockSymbol,
+                                                                           int fromDate,
+                                                                           int toDate) {
+    return getHistoricalPrices(stockSymbol, fromDate, toDate, null);
+  }
+
+  /**
+   * Get the closing prices of a stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @param fromDate    start of date range (YYYYMMDD)
+   * @param toDate      end of date range (YYYYMMDD)
+   * @param timeout     time after which the future fails with a TimeoutException and the fetch
+   *                    is cancelled, or null to wait as long as the fetch takes
+   * @return future of the closing price series, whose cancelling also cancels the fetch
+   */
+  default CompletableFuture<PriceSeries> getClosingSeries(String stockSymbol, int fromDate,
+                                                          int toDate, Duration timeout) {
+    CompletableFuture<Map<Integer, PriceRecord>> prices
+            = getHistoricalPrices(stockSymbol, fromDate, toDate, timeout);
+    CompletableFuture<PriceSeries> closing = prices.thenApply(PriceSeries::closingOf);
+    closing.whenComplete((series, e) -> {
+      if (closing.isCancelled()) {
+        prices.cancel(true);
+      }
+    });
+    return closing;
+  }
+
+  /**
+   * Get historical pricing of several stocks, all fetched at the same time.
+   *
+   * @param stockSymbols the stock symbols
+   * @param fromDate     start of date range (YYYYMMDD)
+   * @param toDate       end of date range (YYYYMMDD)
+   * @param timeout      deadline of each fetch, or null to wait as long as the fetches take
+   * @return map with stock symbol as key, in the order of the given symbols, and the future of
+   *         its historical pricing as value
+   */
+  default Map<String, CompletableFuture<Map<Integer, PriceRecord>>> getHistoricalPrices(
+          Collection<String> stockSymbols, int fromDate, int toDate, Duration timeout) {
+    Map<String, CompletableFuture<Map<Integer, PriceRecord>>> futures = new LinkedHashMap<>();
+    for (String stockSymbol : stockSymbols) {
+      if (!futures.containsKey(stockSymbol)) {
+        futures.put(stockSymbol, getHistoricalPrices(stockSymbol, fromDate, toDate, timeout));
+      }
+    }
+    return futures;
+  }
+
+  /**
+   * Wait for a future and return its value, rethrowing the exception it failed with.
+   * If the waiting thread is interrupted the future is cancelled.
+   *
+   * @param future the future
+   * @param <T>    type of the value
+   * @return the value
+   * @throws Exception the exception the future failed with
+   */
+  static <T> T await(CompletableFuture<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      throw e;
+    } catch (ExecutionException | CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Wait for all futures of a map and return their values. As soon as one future fails its
+   * exception is recorded, the others are cancelled and the recorded exception is rethrown.
+   *
+   * @param futures map of futures
+   * @param <K>     type of the keys
+   * @param <T>     type of the values
+   * @return map with the same keys in the same order, and the value of each future as value
+   * @throws Exception the exception the first failing future failed with
+   */
+  static <K, T> Map<K, T> awaitAll(Map<K, CompletableFuture<T>> futures) throws Exception {
+    List<CompletableFuture<T>> all = new ArrayList<>(futures.values());
+    CompletableFuture<Throwable> failure = new CompletableFuture<>();
+    for (CompletableFuture<T> future : all) {
+      future.whenComplete((value, e) -> {
+        if (e != null) {
+          failure.complete(e instanceof CompletionException && e.getCause() != null
+                  ? e.getCause() : e);
+        }
+      });
+    }
+    try {
+      CompletableFuture.anyOf(CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0])),
+              failure).get();
+    } catch (InterruptedException e) {
+      for (CompletableFuture<T> future : all) {
+        future.cancel(true);
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      // allOf failed before the failure was recorded; the recording follows at once
+    }
+    if (failure.isDone() || all.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+      Throwable cause = failure.get();
+      for (CompletableFuture<T> future : all) {
+        future.cancel(true);
+      }
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw new ExecutionException(cause);
+    }
+    Map<K, T> values = new LinkedHashMap<>();
+    for (Map.Entry<K, CompletableFuture<T>> e : futures.entrySet()) {
+      values.put(e.getKey(), e.getValue().join());
+    }
+    return values;
+  }
+}
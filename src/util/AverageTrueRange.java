@@ -0,0 +1,74 @@
+package util;
+
+/**
+ * This class represents the X-day average true range of daily bars.
+ * The true range of a day is its highest minus its lowest price, widened to include the close
+ * price of the day before. It is seeded with the simple average of the first X true ranges and
+ * then smoothed with Wilder's method, each new day weighing 1 / X.
+ */
+public class AverageTrueRange implements Indicator {
+  private final int days;
+  private int count;
+  private double previousClose;
+  private double value;
+
+  /**
+   * Construct an X-day average true range.
+   *
+   * @param days X business days
+   */
+  public AverageTrueRange(int days) {
+    if (days <= 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.days = days;
+  }
+
+  @Override
+  public String[] getOutputNames() {
+    return new String[]{"ATR" + days};
+  }
+
+  @Override
+  public boolean isOscillator() {
+    return true;
+  }
+
+  @Override
+  public int getLookback() {
+    return 3 * days;
+  }
+
+  @Override
+  public void update(double high, double low, double close) {
+    double range = high - low;
+    if (count > 0) {
+      range = Math.max(range, Math.max(Math.abs(high - previousClose),
+              Math.abs(low - previousClose)));
+    }
+    count++;
+    if (count <= days) {
+      value += range / days;
+    } else {
+      value = (value * (days - 1) + range) / days;
+    }
+    previousClose = close;
+  }
+
+  @Override
+  public boolean isReady() {
+    return count >= days;
+  }
+
+  @Override
+  public double getValue(int output) {
+    return value;
+  }
+
+  @Override
+  public void reset() {
+    count = 0;
+    previousClose = 0;
+    value = 0;
+  }
+}
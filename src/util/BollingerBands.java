@@ -0,0 +1,91 @@
+package util;
+
+/**
+ * This class represents Bollinger bands of closing prices: the X-day simple moving average, and
+ * the bands K standard deviations above and below it.
+ * Unlike the other indicators the bands need the last X closing prices, which are kept in a ring
+ * buffer together with their running sum and sum of squares, so each day is still constant work.
+ */
+public class BollingerBands implements Indicator {
+  private final int days;
+  private final double width;
+  private final double[] window;
+  private int count;
+  private double sum;
+  private double sumOfSquares;
+
+  /**
+   * Construct X-day Bollinger bands two standard deviations wide.
+   *
+   * @param days X business days
+   */
+  public BollingerBands(int days) {
+    this(days, 2);
+  }
+
+  /**
+   * Construct X-day Bollinger bands K standard deviations wide.
+   *
+   * @param days  X business days
+   * @param width K standard deviations
+   */
+  public BollingerBands(int days, double width) {
+    if (days <= 0 || width < 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.days = days;
+    this.width = width;
+    this.window = new double[days];
+  }
+
+  @Override
+  public String[] getOutputNames() {
+    return new String[]{"BB" + days, "BB" + days + "upper", "BB" + days + "lower"};
+  }
+
+  @Override
+  public boolean isOscillator() {
+    return false;
+  }
+
+  @Override
+  public int getLookback() {
+    return days;
+  }
+
+  @Override
+  public void update(double high, double low, double close) {
+    int slot = count % days;
+    if (count >= days) {
+      sum -= window[slot];
+      sumOfSquares -= window[slot] * window[slot];
+    }
+    window[slot] = close;
+    sum += close;
+    sumOfSquares += close * close;
+    count++;
+  }
+
+  @Override
+  public boolean isReady() {
+    return count >= days;
+  }
+
+  @Override
+  public double getValue(int output) {
+    double mean = sum / days;
+    if (output == 0) {
+      return mean;
+    }
+    // rounding can make the running variance slightly negative when prices are flat
+    double deviation = Math.sqrt(Math.max(sumOfSquares / days - mean * mean, 0));
+    return output == 1 ? mean + width * deviation : mean - width * deviation;
+  }
+
+  @Override
+  public void reset() {
+    count = 0;
+    sum = 0;
+    sumOfSquares = 0;
+  }
+}
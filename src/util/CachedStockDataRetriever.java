@@ -0,0 +1,421 @@
+package util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class represents a caching stock retriever module that wraps another retriever.
+ * For each stock symbol it keeps the historical prices it has fetched, together with the date
+ * intervals those prices cover. A request only fetches the parts of its date range that are not
+ * covered yet, and the covered intervals are merged when they overlap or touch.
+ * The cache holds at most a given number of price records, and evicts whole stock symbols,
+ * least recently used first, to stay within that bound.
+ */
+public class CachedStockDataRetriever implements StockDataRetriever {
+  private static final int DEFAULT_MAX_RECORDS = 1000000;
+
+  private final StockDataRetriever delegate;
+  private final int maxRecords;
+  private final LinkedHashMap<String, SymbolEntry> entries;
+  private int recordCount;
+  private long hits;
+  private long misses;
+  private long gapFetches;
+
+  /**
+   * The cached historical prices of one stock symbol.
+   */
+  private static class SymbolEntry {
+    private final TreeMap<Integer, PriceRecord> prices = new TreeMap<>();
+    // start date to end date (inclusive) of each covered interval, in YYYYMMDD notation
+    private final TreeMap<Integer, Integer> intervals = new TreeMap<>();
+
+    /**
+     * Find the parts of the given date range which are not covered yet.
+     *
+     * @param from start date of range
+     * @param to   end date of range
+     * @return list of {start, end} gaps, in date order
+     */
+    private List<int[]> gaps(int from, int to) {
+      List<int[]> gaps = new ArrayList<>();
+      int cursor = from;
+      Map.Entry<Integer, Integer> floor = intervals.floorEntry(from);
+      if (floor != null && floor.getValue() >= from) {
+        cursor = nextDay(floor.getValue());
+      }
+      for (Map.Entry<Integer, Integer> e : intervals.tailMap(from, false).entrySet()) {
+        if (cursor > to || e.getKey() > to) {
+          break;
+        }
+        if (e.getKey() > cursor) {
+          gaps.add(new int[]{cursor, previousDay(e.getKey())});
+        }
+        cursor = Math.max(cursor, nextDay(e.getValue()));
+      }
+      if (cursor <= to) {
+        gaps.add(new int[]{cursor, to});
+      }
+      return gaps;
+    }
+
+    /**
+     * Record that the given date range is covered, merging overlapping and adjacent intervals.
+     *
+     * @param from start date of range
+     * @param to   end date of range
+     */
+    private void cover(int from, int to) {
+      Map.Entry<Integer, Integer> floor = intervals.floorEntry(from);
+      if (floor != null && nextDay(floor.getValue()) >= from) {
+        from = floor.getKey();
+        to = Math.max(to, floor.getValue());
+      }
+      Iterator<Map.Entry<Integer, Integer>> it =
+              intervals.tailMap(from, true).entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<Integer, Integer> e = it.next();
+        if (e.getKey() > nextDay(to)) {
+          break;
+        }
+        to = Math.max(to, e.getValue());
+        it.remove();
+      }
+      intervals.put(from, to);
+    }
+  }
+
+  /**
+   * Construct a CachedStockDataRetriever object with the default memory bound.
+   *
+   * @param delegate the retriever to fetch missing data from
+   */
+  public CachedStockDataRetriever(StockDataRetriever delegate) {
+    this(delegate, DEFAULT_MAX_RECORDS);
+  }
+
+  /**
+   * Construct a CachedStockDataRetriever object.
+   *
+   * @param delegate   the retriever to fetch missing data from
+   * @param maxRecords the maximum number of price records held by the cache
+   */
+  public CachedStockDataRetriever(StockDataRetriever delegate, int maxRecords) {
+    if (maxRecords <= 0) {
+      throw new IllegalArgumentException("cache size must be positive");
+    }
+    this.delegate = delegate;
+    this.maxRecords = maxRecords;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  @Override
+  public double getCurrentPrice(String stockSymbol) throws Exception {
+    return delegate.getCurrentPrice(stockSymbol);
+  }
+
+  @Override
+  public String getName(String stockSymbol) throws Exception {
+    return delegate.getName(stockSymbol);
+  }
+
+  @Override
+  public Map<Integer, PriceRecord> getHistoricalPrices(
+          String stockSymbol,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    int from = DateUtil.toInt(fromDate, fromMonth, fromYear);
+    int to = DateUtil.toInt(toDate, toMonth, toYear);
+
+    Map<Integer, PriceRecord> result;
+    List<int[]> gaps;
+    synchronized (this) {
+      SymbolEntry entry = entries.get(stockSymbol);
+      if (entry == null) {
+        gaps = new ArrayList<>();
+        gaps.add(new int[]{from, to});
+        result = new TreeMap<>();
+      } else {
+        gaps = entry.gaps(from, to);
+        result = new TreeMap<>(entry.prices.subMap(from, true, to, true));
+      }
+      if (gaps.isEmpty()) {
+        hits++;
+        return result;
+      }
+      misses++;
+    }
+
+    // fetch outside of the lock, so a slow fetch does not block other symbols
+    List<Map<Integer, PriceRecord>> fetched = new ArrayList<>();
+    for (int[] gap : gaps) {
+      fetched.add(delegate.getHistoricalPrices(stockSymbol,
+              gap[0] % 100, gap[0] / 100 % 100, gap[0] / 10000,
+              gap[1] % 100, gap[1] / 100 % 100, gap[1] / 10000));
+    }
+
+    synchronized (this) {
+      for (int i = 0; i < gaps.size(); i++) {
+        result.putAll(fetched.get(i));
+        store(stockSymbol, gaps.get(i)[0], gaps.get(i)[1], fetched.get(i));
+      }
+      evict();
+    }
+    return result;
+  }
+
+  /**
+   * Get historical pricing of several stocks. Stocks fully covered by the cache are served from
+   * it, and the others are fetched with one batch request to the delegate per distinct missing
+   * span, usually a single request for all of them.
+   *
+   * @param stockSymbols the stock symbols
+   * @param fromDate     from day of the date
+   * @param fromMonth    from month of the date
+   * @param fromYear     from year of the date
+   * @param toDate       to day from the date
+   * @param toMonth      to month of the date
+   * @param toYear       to year of the date
+   * @return map with stock symbol as key and the historical price of that stock as value
+   * @throws Exception when cannot retrieve data
+   */
+  @Override
+  public Map<String, Map<Integer, PriceRecord>> getHistoricalPrices(
+          Collection<String> stockSymbols,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    int from = DateUtil.toInt(fromDate, fromMonth, fromYear);
+    int to = DateUtil.toInt(toDate, toMonth, toYear);
+
+    Map<String, Map<Integer, PriceRecord>> result = new LinkedHashMap<>();
+    // stocks to fetch, grouped by the span from their first to their last gap
+    Map<List<Integer>, List<String>> spans = new LinkedHashMap<>();
+    synchronized (this) {
+      for (String stockSymbol : stockSymbols) {
+        if (result.containsKey(stockSymbol)) {
+          continue;
+        }
+        SymbolEntry entry = entries.get(stockSymbol);
+        List<int[]> gaps;
+        if (entry == null) {
+          gaps = new ArrayList<>();
+          gaps.add(new int[]{from, to});
+          result.put(stockSymbol, new TreeMap<>());
+        } else {
+          gaps = entry.gaps(from, to);
+          result.put(stockSymbol, new TreeMap<>(entry.prices.subMap(from, true, to, true)));
+        }
+        if (gaps.isEmpty()) {
+          hits++;
+        } else {
+          misses++;
+          List<Integer> span = Arrays.asList(gaps.get(0)[0], gaps.get(gaps.size() - 1)[1]);
+          spans.computeIfAbsent(span, k -> new ArrayList<>()).add(stockSymbol);
+        }
+      }
+      if (spans.isEmpty()) {
+        return result;
+      }
+    }
+
+    // fetch outside of the lock, so a slow fetch does not block other symbols
+    List<Map<String, Map<Integer, PriceRecord>>> fetched = new ArrayList<>();
+    for (Map.Entry<List<Integer>, List<String>> span : spans.entrySet()) {
+      int spanFrom = span.getKey().get(0);
+      int spanTo = span.getKey().get(1);
+      fetched.add(delegate.getHistoricalPrices(span.getValue(),
+              spanFrom % 100, spanFrom / 100 % 100, spanFrom / 10000,
+              spanTo % 100, spanTo / 100 % 100, spanTo / 10000));
+    }
+
+    synchronized (this) {
+      int i = 0;
+      for (List<Integer> span : spans.keySet()) {
+        for (Map.Entry<String, Map<Integer, PriceRecord>> e : fetched.get(i++).entrySet()) {
+          result.get(e.getKey()).putAll(e.getValue());
+          store(e.getKey(), span.get(0), span.get(1), e.getValue());
+        }
+      }
+      evict();
+    }
+    return result;
+  }
+
+  /**
+   * Add fetched prices of a stock to the cache, and mark the fetched date range covered up to
+   * yesterday. Must be called holding the lock of this cache.
+   *
+   * @param stockSymbol the stock symbol
+   * @param from        start of fetched date range (YYYYMMDD)
+   * @param to          end of fetched date range (YYYYMMDD)
+   * @param data        the fetched prices
+   */
+  private void store(String stockSymbol, int from, int to, Map<Integer, PriceRecord> data) {
+    gapFetches++;
+    SymbolEntry entry = entries.get(stockSymbol);
+    if (entry == null) {
+      entry = new SymbolEntry();
+      entries.put(stockSymbol, entry);
+    }
+    int before = entry.prices.size();
+    entry.prices.putAll(data);
+    recordCount += entry.prices.size() - before;
+    // data of today and later is not final yet, so it is returned but never marked covered
+    LocalDate yesterday = LocalDate.now().minusDays(1);
+    int lastFinal = DateUtil.toInt(yesterday.getDayOfMonth(), yesterday.getMonthValue(),
+            yesterday.getYear());
+    int end = Math.min(to, lastFinal);
+    if (from <= end) {
+      entry.cover(from, end);
+    }
+  }
+
+  /**
+   * Get the date ranges of a stock covered by the cache, for example to save them.
+   *
+   * @param stockSymbol the stock symbol
+   * @return list of {start, end} ranges (YYYYMMDD), in date order, empty if none
+   */
+  public synchronized List<int[]> getCoveredRanges(String stockSymbol) {
+    List<int[]> ranges = new ArrayList<>();
+    SymbolEntry entry = entries.get(stockSymbol);
+    if (entry != null) {
+      for (Map.Entry<Integer, Integer> e : entry.intervals.entrySet()) {
+        ranges.add(new int[]{e.getKey(), e.getValue()});
+      }
+    }
+    return ranges;
+  }
+
+  /**
+   * Get a copy of the cached prices of a stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @return map with date as key and price record as value, empty if none
+   */
+  public synchronized Map<Integer, PriceRecord> getCachedPrices(String stockSymbol) {
+    SymbolEntry entry = entries.get(stockSymbol);
+    return entry == null ? new TreeMap<>() : new TreeMap<>(entry.prices);
+  }
+
+  /**
+   * Fill the cache with prices of a stock known to cover the given date ranges, for example
+   * saved by an earlier session, without counting them as fetches.
+   *
+   * @param stockSymbol the stock symbol
+   * @param ranges      list of {start, end} ranges (YYYYMMDD) the prices cover
+   * @param prices      the prices
+   */
+  public synchronized void preload(String stockSymbol, List<int[]> ranges,
+                                   Map<Integer, PriceRecord> prices) {
+    SymbolEntry entry = entries.get(stockSymbol);
+    if (entry == null) {
+      entry = new SymbolEntry();
+      entries.put(stockSymbol, entry);
+    }
+    int before = entry.prices.size();
+    entry.prices.putAll(prices);
+    recordCount += entry.prices.size() - before;
+    for (int[] range : ranges) {
+      entry.cover(range[0], range[1]);
+    }
+    evict();
+  }
+
+  /**
+   * Get the number of requests fully served from the cache.
+   *
+   * @return number of cache hits
+   */
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  /**
+   * Get the number of requests which needed at least one fetch from the wrapped retriever.
+   *
+   * @return number of cache misses
+   */
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  /**
+   * Get the number of fetches sent to the wrapped retriever, one per missing date range.
+   *
+   * @return number of gap fetches
+   */
+  public synchronized long getGapFetchCount() {
+    return gapFetches;
+  }
+
+  /**
+   * Get the number of price records currently held by the cache.
+   *
+   * @return number of cached price records
+   */
+  public synchronized int getRecordCount() {
+    return recordCount;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "hits: " + hits + " misses: " + misses + " gap fetches: " + gapFetches
+            + " cached records: " + recordCount + " symbols: " + entries.size();
+  }
+
+  /**
+   * Evict least recently used stock symbols until the cache is within its memory bound.
+   * The most recently used symbol is always kept.
+   */
+  private void evict() {
+    Iterator<SymbolEntry> it = entries.values().iterator();
+    while (recordCount > maxRecords && entries.size() > 1) {
+      SymbolEntry eldest = it.next();
+      recordCount -= eldest.prices.size();
+      it.remove();
+    }
+  }
+
+  /**
+   * Get the day after the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return the next day in YYYYMMDD notation
+   */
+  private static int nextDay(int date) {
+    LocalDate next = DateUtil.getLocalDate(date).plusDays(1);
+    return DateUtil.toInt(next.getDayOfMonth(), next.getMonthValue(), next.getYear());
+  }
+
+  /**
+   * Get the day before the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return the previous day in YYYYMMDD notation
+   */
+  private static int previousDay(int date) {
+    LocalDate previous = DateUtil.getLocalDate(date).minusDays(1);
+    return DateUtil.toInt(previous.getDayOfMonth(), previous.getMonthValue(),
+            previous.getYear());
+  }
+}
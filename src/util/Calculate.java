@@ -1,10 +1,6 @@
 package util;
 
-import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -58,30 +54,8 @@ public class Calculate {
    */
   public static double getAve(IStock stock, int days, int date, int mon, int year)
           throws Exception {
-    int minusDays = days * 2;
-    LocalDate startDay = DateUtil.minusDay(minusDays, date, mon, year);
-    int startdate = startDay.getDayOfMonth();
-    int startmon = startDay.getMonthValue();
-    int startyear = startDay.getYear();
-    double sumclosing = 0;
-    int count = days;
-
-    //Retrieve more historical closing data to get needed business days.
-    Map<Integer, Double> mapHC = stock.getHistoricalClosing(startdate, startmon, startyear,
-            date, mon, year);
-    List<Integer> sortedkeys = new ArrayList<Integer>(mapHC.keySet());
-
-    //Sorted the date integer/key.
-    Collections.sort(sortedkeys);
-    for (int i = sortedkeys.size() - 1; i >= 0; i--) {
-      if (count != 0) {
-        sumclosing += mapHC.get(sortedkeys.get(i));
-        count--;
-      } else {
-        break;
-      }
-    }
-    return sumclosing / days;
+    int day = DateUtil.toInt(date, mon, year);
+    return stock.getAveSeries(day, day, days).valueAt(0);
   }
 
   /**
@@ -97,61 +71,27 @@ public class Calculate {
    */
   public static Map<Integer, Double> getAveRange(IStock iStock, int fromDate, int toDate, int days)
           throws Exception {
-    LocalDate fromlocal = DateUtil.getLocalDate(fromDate);
-
-    Map<Integer, Double> mapHCrange = iStock.getHistoricalClosing(fromDate, toDate);
-
-    //calculate the 2 times more days before from date as startdays
-    LocalDate startDay = DateUtil.minusDay(days * 2, fromlocal);
-
-    int startint = DateUtil.convertInt(startDay);
-    double sumclosing = 0;
-    int count = days;
-
-    //use queue to store data got previously, and keep polling and offering old and new data
-    LinkedList<Double> queue = new LinkedList<>();
-
-    //Retrieve historical pricing data from start date to from date.
-    Map<Integer, Double> mapHC = iStock.getHistoricalClosing(startint, fromDate);
-
-    List<Integer> sortedkeys = new ArrayList<Integer>(mapHC.keySet());
-
-    //Sorted the date integer/key.
-    Collections.sort(sortedkeys);
-
-    for (int i = sortedkeys.size() - 1; i >= 0; i--) {
-      if (count != 0) {
-        queue.offerLast(mapHC.get(sortedkeys.get(i)));
-        sumclosing += mapHC.get(sortedkeys.get(i));
-        count--;
-      } else {
-        break;
-      }
-    }
-
-    Map<Integer, Double> ave50 = new HashMap<>();
-    int curint = sortedkeys.get(sortedkeys.size() - 1);
-
-    LocalDate curlocal = DateUtil.getLocalDate(curint);
-
-    ave50.put(curint, sumclosing / days);
-
-    curlocal = curlocal.plusDays(1);
-    curint = DateUtil.convertInt(curlocal);
-    double pre = 0;
-    while (curint <= toDate) {
-      if (mapHCrange.containsKey(curint)) {
-        pre = queue.pollLast();
-        sumclosing = sumclosing - pre + mapHCrange.get(curint);
-        ave50.put(curint, sumclosing / days);
-
-        queue.offerFirst(mapHCrange.get(curint));
-      }
-      curlocal = curlocal.plusDays(1);
-      curint = DateUtil.convertInt(curlocal);
-
-    }
+    return iStock.getAveSeries(fromDate, toDate, days).toMap();
+  }
 
-    return ave50;
+  /**
+   * Calculate the The X-day moving average on day Y of a stock or a basket of stocks within a
+   * certain date range, as a price series.
+   * The series starts on the last business day on or before the start of the date range.
+   *
+   * @param iStock   a IStock
+   * @param fromDate start of date range
+   * @param toDate   end of date range
+   * @param days     last X business days
+   * @return X-day moving average series within certain date range
+   * @throws Exception when cannot retrieve data
+   */
+  public static PriceSeries getAveSeries(IStock iStock, int fromDate, int toDate, int days)
+          throws Exception {
+    //Retrieve historical pricing data from X business days before from date to end of the
+    //range at once.
+    PriceSeries closing = iStock.getClosingSeries(TradingCalendar.lookbackStart(fromDate, days),
+            toDate);
+    return new MovingAverageIndex(closing).averageSeries(fromDate, toDate, days);
   }
 }
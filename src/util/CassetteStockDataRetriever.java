@@ -0,0 +1,560 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * This class represents a stock retriever module that records the requests made through another
+ * retriever into a cassette file, or replays a cassette without any other retriever.
+ * In record mode every name, current price and historical price request is passed on, and
+ * appended to the cassette with its outcome and how long it took. In replay mode the cassette
+ * answers each request with the last recorded outcome of the same request, failing again with
+ * the same message where the recorded request failed, optionally after the recorded time scaled
+ * by a factor. A request that is not on the cassette fails with an IOException.
+ * Layout: magic and version, then one entry per request: kind, symbol, date range for historical
+ * prices, nanoseconds taken, outcome, and the name, the price, the historical prices as a block
+ * of the compressed price store format with its row count and length, or the error message.
+ * Strings are a length followed by UTF-8 bytes, or a length of -1 for a missing name. A cassette
+ * cut off by a crash is replayed up to its last whole entry.
+ */
+public class CassetteStockDataRetriever implements StockDataRetriever, Closeable {
+  static final int MAGIC = 0x49434153;
+  static final int VERSION = 1;
+  private static final byte NAME = 1;
+  private static final byte PRICE = 2;
+  private static final byte HISTORY = 3;
+  private static final byte OK = 0;
+  private static final byte INVALID = 1;
+  private static final byte FAILED = 2;
+
+  private final StockDataRetriever delegate;
+  private final DataOutputStream out;
+  private final ByteBuffer cassette;
+  private final Map<String, Integer> entries;
+  private final double latencyScale;
+  private long recorded;
+  private long replayed;
+
+  /**
+   * Construct a recorder or a player.
+   *
+   * @param delegate     the retriever to record, or null to replay
+   * @param out          the cassette to record into, or null to replay
+   * @param cassette     the cassette to replay, or null to record
+   * @param latencyScale factor of the recorded time each replayed request waits
+   */
+  private CassetteStockDataRetriever(StockDataRetriever delegate, DataOutputStream out,
+                                     ByteBuffer cassette, double latencyScale) {
+    this.delegate = delegate;
+    this.out = out;
+    this.cassette = cassette;
+    this.entries = new HashMap<>();
+    this.latencyScale = latencyScale;
+  }
+
+  /**
+   * Record the requests made through a retriever into a new cassette file.
+   *
+   * @param delegate the retriever
+   * @param file     the cassette file, replaced if it exists
+   * @return the recording retriever, to be closed when done
+   * @throws IOException when the file cannot be written
+   */
+  public static CassetteStockDataRetriever record(StockDataRetriever delegate, Path file)
+          throws IOException {
+    if (delegate == null) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(file), 1 << 16));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    return new CassetteStockDataRetriever(delegate, out, null, 0);
+  }
+
+  /**
+   * Replay a cassette file.
+   *
+   * @param file         the cassette file
+   * @param latencyScale factor of the recorded time each request waits, 0 to answer at once
+   * @return the replaying retriever
+   * @throws IOException when the file cannot be read
+   */
+  public static CassetteStockDataRetriever replay(Path file, double latencyScale)
+          throws IOException {
+    if (!(latencyScale >= 0)) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    ByteBuffer in;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (in.capacity() < 8 || in.getInt() != MAGIC) {
+      throw new IllegalArgumentException("not a cassette");
+    }
+    if (in.getInt() != VERSION) {
+      throw new IllegalArgumentException("unsupported cassette version");
+    }
+    CassetteStockDataRetriever player = new CassetteStockDataRetriever(null, null, in,
+            latencyScale);
+    try {
+      while (in.hasRemaining()) {
+        int start = in.position();
+        byte kind = in.get();
+        String key = keyOf(kind, readString(in), in);
+        in.getLong();
+        skipOutcome(kind, in);
+        // the last recording of a request wins
+        player.entries.put(key, start);
+      }
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      // an entry cut off at the end
+    }
+    return player;
+  }
+
+  @Override
+  public double getCurrentPrice(String stockSymbol) throws Exception {
+    if (delegate == null) {
+      ByteBuffer in = play(PRICE + "|" + stockSymbol);
+      return in.getDouble();
+    }
+    long start = System.nanoTime();
+    try {
+      double price = delegate.getCurrentPrice(stockSymbol);
+      write(PRICE, stockSymbol, 0, 0, System.nanoTime() - start, OK, entry -> {
+        entry.writeDouble(price);
+      });
+      return price;
+    } catch (Exception e) {
+      writeError(PRICE, stockSymbol, 0, 0, System.nanoTime() - start, e);
+      throw e;
+    }
+  }
+
+  @Override
+  public String getName(String stockSymbol) throws Exception {
+    if (delegate == null) {
+      ByteBuffer in = play(NAME + "|" + stockSymbol);
+      return readString(in);
+    }
+    long start = System.nanoTime();
+    try {
+      String name = delegate.getName(stockSymbol);
+      write(NAME, stockSymbol, 0, 0, System.nanoTime() - start, OK, entry -> {
+        writeString(entry, name);
+      });
+      return name;
+    } catch (Exception e) {
+      writeError(NAME, stockSymbol, 0, 0, System.nanoTime() - start, e);
+      throw e;
+    }
+  }
+
+  @Override
+  public Map<Integer, PriceRecord> getHistoricalPrices(
+          String stockSymbol,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    int from = DateUtil.toInt(fromDate, fromMonth, fromYear);
+    int to = DateUtil.toInt(toDate, toMonth, toYear);
+    if (delegate == null) {
+      return readPrices(play(HISTORY + "|" + stockSymbol + "|" + from + "|" + to));
+    }
+    long start = System.nanoTime();
+    try {
+      Map<Integer, PriceRecord> prices = delegate.getHistoricalPrices(stockSymbol, fromDate,
+              fromMonth, fromYear, toDate, toMonth, toYear);
+      writePrices(stockSymbol, from, to, System.nanoTime() - start, prices);
+      return prices;
+    } catch (Exception e) {
+      writeError(HISTORY, stockSymbol, from, to, System.nanoTime() - start, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Get historical pricing of several stocks. A recording passes the batch on as one request and
+   * records each stock as taking the time of the whole batch, and as failing when the batch
+   * fails; a replay waits the longest recorded time of the batch once, as the stocks were
+   * fetched at the same time.
+   *
+   * @param stockSymbols the stock symbols
+   * @param fromDate     from day of the date
+   * @param fromMonth    from month of the date
+   * @param fromYear     from year of the date
+   * @param toDate       to day from the date
+   * @param toMonth      to month of the date
+   * @param toYear       to year of the date
+   * @return map with stock symbol as key and the historical price of that stock as value
+   * @throws Exception when cannot retrieve data
+   */
+  @Override
+  public Map<String, Map<Integer, PriceRecord>> getHistoricalPrices(
+          Collection<String> stockSymbols,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    Set<String> symbols = new LinkedHashSet<>(stockSymbols);
+    int from = DateUtil.toInt(fromDate, fromMonth, fromYear);
+    int to = DateUtil.toInt(toDate, toMonth, toYear);
+    Map<String, Map<Integer, PriceRecord>> prices = new LinkedHashMap<>();
+    if (delegate == null) {
+      long longest = 0;
+      Map<String, ByteBuffer> outcomes = new LinkedHashMap<>();
+      for (String stockSymbol : symbols) {
+        ByteBuffer in = find(HISTORY + "|" + stockSymbol + "|" + from + "|" + to);
+        longest = Math.max(longest, in.getLong());
+        outcomes.put(stockSymbol, in);
+      }
+      pause(longest);
+      for (Map.Entry<String, ByteBuffer> e : outcomes.entrySet()) {
+        prices.put(e.getKey(), readPrices(outcome(e.getValue())));
+      }
+      return prices;
+    }
+    long start = System.nanoTime();
+    Map<String, Map<Integer, PriceRecord>> fetched;
+    try {
+      fetched = delegate.getHistoricalPrices(symbols, fromDate, fromMonth, fromYear, toDate,
+              toMonth, toYear);
+    } catch (Exception e) {
+      long nanos = System.nanoTime() - start;
+      for (String stockSymbol : symbols) {
+        writeError(HISTORY, stockSymbol, from, to, nanos, e);
+      }
+      throw e;
+    }
+    long nanos = System.nanoTime() - start;
+    for (Map.Entry<String, Map<Integer, PriceRecord>> e : fetched.entrySet()) {
+      writePrices(e.getKey(), from, to, nanos, e.getValue());
+    }
+    return fetched;
+  }
+
+  /**
+   * Get the number of requests recorded.
+   *
+   * @return number of recorded requests
+   */
+  public synchronized long getRecordedCount() {
+    return recorded;
+  }
+
+  /**
+   * Get the number of requests replayed.
+   *
+   * @return number of replayed requests
+   */
+  public synchronized long getReplayedCount() {
+    return replayed;
+  }
+
+  /**
+   * Get the number of distinct requests on the cassette being replayed.
+   *
+   * @return number of distinct requests
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Write out the recorded requests and close the cassette. Does nothing when replaying.
+   *
+   * @throws IOException when the file cannot be written
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (out != null) {
+      out.close();
+    }
+  }
+
+  /**
+   * The outcome of a recorded request.
+   */
+  private interface Payload {
+    /**
+     * Write the outcome.
+     *
+     * @param entry the stream
+     * @throws IOException when the stream cannot be written
+     */
+    void write(DataOutputStream entry) throws IOException;
+  }
+
+  /**
+   * Append an entry to the cassette.
+   *
+   * @param kind        kind of request
+   * @param stockSymbol the stock symbol
+   * @param from        first date of historical prices
+   * @param to          last date of historical prices
+   * @param nanos       time the request took
+   * @param outcome     OK, INVALID or FAILED
+   * @param payload     writes the outcome
+   * @throws IOException when the file cannot be written
+   */
+  private synchronized void write(byte kind, String stockSymbol, int from, int to, long nanos,
+                                  byte outcome, Payload payload) throws IOException {
+    out.writeByte(kind);
+    writeString(out, stockSymbol);
+    if (kind == HISTORY) {
+      out.writeInt(from);
+      out.writeInt(to);
+    }
+    out.writeLong(nanos);
+    out.writeByte(outcome);
+    payload.write(out);
+    recorded++;
+  }
+
+  /**
+   * Append a failed request to the cassette.
+   *
+   * @param kind        kind of request
+   * @param stockSymbol the stock symbol
+   * @param from        first date of historical prices
+   * @param to          last date of historical prices
+   * @param nanos       time the request took
+   * @param e           the failure
+   * @throws IOException when the file cannot be written
+   */
+  private void writeError(byte kind, String stockSymbol, int from, int to, long nanos,
+                          Exception e) throws IOException {
+    String message = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+    write(kind, stockSymbol, from, to, nanos,
+            e instanceof IllegalArgumentException ? INVALID : FAILED,
+            entry -> writeString(entry, message));
+  }
+
+  /**
+   * Append historical prices to the cassette.
+   *
+   * @param stockSymbol the stock symbol
+   * @param from        first date
+   * @param to          last date
+   * @param nanos       time the request took
+   * @param prices      the prices
+   * @throws IOException when the file cannot be written
+   */
+  private void writePrices(String stockSymbol, int from, int to, long nanos,
+                           Map<Integer, PriceRecord> prices) throws IOException {
+    PriceColumns columns = new PriceColumns(prices.size());
+    for (Map.Entry<Integer, PriceRecord> e : new TreeMap<>(prices).entrySet()) {
+      PriceRecord record = e.getValue();
+      columns.add(e.getKey(), record.getOpenPrice(), record.getHighestDayPrice(),
+              record.getLowestDayPrice(), record.getClosePrice());
+    }
+    int n = columns.size();
+    int[] dates = new int[n];
+    double[][] values = new double[4][n];
+    for (int i = 0; i < n; i++) {
+      dates[i] = columns.dateAt(i);
+      values[0][i] = columns.openAt(i);
+      values[1][i] = columns.highAt(i);
+      values[2][i] = columns.lowAt(i);
+      values[3][i] = columns.closeAt(i);
+    }
+    byte[] block = n == 0 ? new byte[0]
+            : PriceBlockCodec.encode(dates, values[0], values[1], values[2], values[3], 0, n);
+    write(HISTORY, stockSymbol, from, to, nanos, OK, entry -> {
+      entry.writeInt(n);
+      entry.writeInt(block.length);
+      entry.write(block);
+    });
+  }
+
+  /**
+   * Find a recorded request, wait its scaled time, and get its outcome.
+   *
+   * @param key the request
+   * @return the payload of a successful request
+   * @throws Exception the recorded failure, or when the request is not on the cassette
+   */
+  private ByteBuffer play(String key) throws Exception {
+    ByteBuffer in = find(key);
+    pause(in.getLong());
+    return outcome(in);
+  }
+
+  /**
+   * Find a recorded request.
+   *
+   * @param key the request
+   * @return the entry, positioned at the time the request took
+   * @throws IOException when the request is not on the cassette
+   */
+  private ByteBuffer find(String key) throws IOException {
+    Integer start = entries.get(key);
+    if (start == null) {
+      throw new IOException("not on cassette: " + key);
+    }
+    ByteBuffer in = cassette.duplicate();
+    in.position(start);
+    byte kind = in.get();
+    keyOf(kind, readString(in), in);
+    synchronized (this) {
+      replayed++;
+    }
+    return in;
+  }
+
+  /**
+   * Read the outcome of a recorded request.
+   *
+   * @param in the entry, positioned at the outcome
+   * @return the payload of a successful request
+   * @throws Exception the recorded failure
+   */
+  private static ByteBuffer outcome(ByteBuffer in) throws Exception {
+    byte outcome = in.get();
+    if (outcome == INVALID) {
+      throw new IllegalArgumentException(readString(in));
+    }
+    if (outcome == FAILED) {
+      throw new IOException(readString(in));
+    }
+    return in;
+  }
+
+  /**
+   * Wait the scaled time of a recorded request.
+   *
+   * @param nanos the recorded time
+   * @throws InterruptedException when interrupted
+   */
+  private void pause(long nanos) throws InterruptedException {
+    long wait = (long) (nanos * latencyScale);
+    if (wait > 0) {
+      Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+    }
+  }
+
+  /**
+   * Read recorded historical prices.
+   *
+   * @param in the payload
+   * @return the prices
+   */
+  private static Map<Integer, PriceRecord> readPrices(ByteBuffer in) {
+    int n = in.getInt();
+    int length = in.getInt();
+    Map<Integer, PriceRecord> prices = new TreeMap<>();
+    if (n == 0) {
+      return prices;
+    }
+    int[] dates = new int[n];
+    double[] open = new double[n];
+    double[] high = new double[n];
+    double[] low = new double[n];
+    double[] close = new double[n];
+    PriceBlockCodec.decode(in, in.position(), n, dates, open, high, low, close);
+    in.position(in.position() + length);
+    for (int i = 0; i < n; i++) {
+      prices.put(dates[i], new PriceRecord(open[i], close[i], low[i], high[i]));
+    }
+    return prices;
+  }
+
+  /**
+   * Read the rest of the request of an entry and get its key.
+   *
+   * @param kind        kind of request
+   * @param stockSymbol the stock symbol
+   * @param in          the entry, positioned after the symbol
+   * @return the key of the request
+   */
+  private static String keyOf(byte kind, String stockSymbol, ByteBuffer in) {
+    if (kind == HISTORY) {
+      return kind + "|" + stockSymbol + "|" + in.getInt() + "|" + in.getInt();
+    }
+    if (kind != NAME && kind != PRICE) {
+      throw new IllegalArgumentException("invalid cassette entry");
+    }
+    return kind + "|" + stockSymbol;
+  }
+
+  /**
+   * Skip the outcome of an entry.
+   *
+   * @param kind kind of request
+   * @param in   the entry, positioned at the outcome
+   */
+  private static void skipOutcome(byte kind, ByteBuffer in) {
+    byte outcome = in.get();
+    if (outcome != OK || kind == NAME) {
+      readString(in);
+    } else if (kind == PRICE) {
+      in.getDouble();
+    } else {
+      in.getInt();
+      int length = in.getInt();
+      in.position(in.position() + length);
+    }
+  }
+
+  /**
+   * Write a string as its length and UTF-8 bytes, or a null string as a length of -1.
+   *
+   * @param out    the stream
+   * @param string the string, or null
+   * @throws IOException when the stream cannot be written
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    if (string == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Read a string written by writeString.
+   *
+   * @param in the buffer
+   * @return the string, or null
+   */
+  private static String readString(ByteBuffer in) {
+    int length = in.getInt();
+    if (length == -1) {
+      return null;
+    }
+    if (length < 0 || length > in.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
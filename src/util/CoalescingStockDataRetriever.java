@@ -0,0 +1,355 @@
+package util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This class represents a stock retriever module that collapses concurrent identical fetches.
+ * While a historical price fetch of a stock is in flight, any other request for the same stock
+ * whose date range lies within the range being fetched does not reach the wrapped retriever:
+ * it waits for the fetch in flight and takes its share of the result. A failed fetch fails every
+ * request waiting for it, and so does a stock left out of the result of a batch fetch. Nothing is kept once a fetch is done, so this module is meant to sit
+ * below a cache, which then never sends the same fetch twice at the same time.
+ */
+public class CoalescingStockDataRetriever implements StockDataRetriever {
+  private final StockDataRetriever delegate;
+  private final Map<String, List<Flight>> inFlight;
+  private long requests;
+  private long fetches;
+  private long coalesced;
+  private long subsetServed;
+
+  /**
+   * A historical price fetch of one stock symbol in flight.
+   */
+  private static class Flight {
+    private final int from;
+    private final int to;
+    private final CompletableFuture<TreeMap<Integer, PriceRecord>> result;
+    private int waiters;
+
+    /**
+     * Construct a fetch in flight.
+     *
+     * @param from start date of fetched range (YYYYMMDD)
+     * @param to   end date of fetched range (YYYYMMDD)
+     */
+    private Flight(int from, int to) {
+      this.from = from;
+      this.to = to;
+      this.result = new CompletableFuture<>();
+    }
+
+    /**
+     * Check whether this fetch covers the given date range.
+     *
+     * @param from start date of range
+     * @param to   end date of range
+     * @return true if the range lies within the fetched range
+     */
+    private boolean covers(int from, int to) {
+      return this.from <= from && to <= this.to;
+    }
+  }
+
+  /**
+   * Construct a CoalescingStockDataRetriever object.
+   *
+   * @param delegate the retriever to fetch data from
+   */
+  public CoalescingStockDataRetriever(StockDataRetriever delegate) {
+    this.delegate = delegate;
+    this.inFlight = new HashMap<>();
+  }
+
+  @Override
+  public double getCurrentPrice(String stockSymbol) throws Exception {
+    return delegate.getCurrentPrice(stockSymbol);
+  }
+
+  @Override
+  public String getName(String stockSymbol) throws Exception {
+    return delegate.getName(stockSymbol);
+  }
+
+  @Override
+  public Map<Integer, PriceRecord> getHistoricalPrices(
+          String stockSymbol,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    int from = DateUtil.toInt(fromDate, fromMonth, fromYear);
+    int to = DateUtil.toInt(toDate, toMonth, toYear);
+
+    Flight leader;
+    Flight flight = null;
+    synchronized (this) {
+      requests++;
+      leader = join(stockSymbol, from, to);
+      if (leader == null) {
+        flight = start(stockSymbol, from, to);
+      }
+    }
+    if (leader != null) {
+      return await(leader, from, to);
+    }
+
+    Map<Integer, PriceRecord> data;
+    try {
+      data = delegate.getHistoricalPrices(stockSymbol, fromDate, fromMonth, fromYear,
+              toDate, toMonth, toYear);
+    } catch (Throwable e) {
+      // errors too, or the flight would stay registered and its waiters would wait forever
+      finish(stockSymbol, flight, null, e);
+      throw e;
+    }
+    finish(stockSymbol, flight, data, null);
+    return data;
+  }
+
+  /**
+   * Get historical pricing of several stocks. Stocks with a covering fetch in flight wait for it,
+   * and all other stocks are fetched with one batch request to the delegate.
+   *
+   * @param stockSymbols the stock symbols
+   * @param fromDate     from day of the date
+   * @param fromMonth    from month of the date
+   * @param fromYear     from year of the date
+   * @param toDate       to day from the date
+   * @param toMonth      to month of the date
+   * @param toYear       to year of the date
+   * @return map with stock symbol as key and the historical price of that stock as value
+   * @throws Exception when cannot retrieve data, or the delegate left a stock out of its result
+   */
+  @Override
+  public Map<String, Map<Integer, PriceRecord>> getHistoricalPrices(
+          Collection<String> stockSymbols,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    int from = DateUtil.toInt(fromDate, fromMonth, fromYear);
+    int to = DateUtil.toInt(toDate, toMonth, toYear);
+
+    Map<String, Flight> leaders = new LinkedHashMap<>();
+    Map<String, Flight> started = new LinkedHashMap<>();
+    synchronized (this) {
+      for (String stockSymbol : stockSymbols) {
+        if (leaders.containsKey(stockSymbol) || started.containsKey(stockSymbol)) {
+          continue;
+        }
+        requests++;
+        Flight leader = join(stockSymbol, from, to);
+        if (leader != null) {
+          leaders.put(stockSymbol, leader);
+        } else {
+          started.put(stockSymbol, start(stockSymbol, from, to));
+        }
+      }
+    }
+
+    Map<String, Map<Integer, PriceRecord>> fetched = new HashMap<>();
+    if (!started.isEmpty()) {
+      try {
+        fetched = delegate.getHistoricalPrices(started.keySet(), fromDate, fromMonth, fromYear,
+                toDate, toMonth, toYear);
+      } catch (Throwable e) {
+        for (Map.Entry<String, Flight> s : started.entrySet()) {
+          finish(s.getKey(), s.getValue(), null, e);
+        }
+        throw e;
+      }
+      IOException omitted = null;
+      for (Map.Entry<String, Flight> s : started.entrySet()) {
+        Map<Integer, PriceRecord> data = fetched.get(s.getKey());
+        if (data == null) {
+          // waiters must not take a symbol the delegate left out for a stock without prices
+          IOException e = new IOException("no prices returned for " + s.getKey());
+          finish(s.getKey(), s.getValue(), null, e);
+          omitted = omitted == null ? e : omitted;
+        } else {
+          finish(s.getKey(), s.getValue(), data, null);
+        }
+      }
+      if (omitted != null) {
+        throw omitted;
+      }
+    }
+
+    Map<String, Map<Integer, PriceRecord>> result = new LinkedHashMap<>();
+    for (String stockSymbol : stockSymbols) {
+      if (result.containsKey(stockSymbol)) {
+        continue;
+      }
+      if (leaders.containsKey(stockSymbol)) {
+        result.put(stockSymbol, await(leaders.get(stockSymbol), from, to));
+      } else {
+        result.put(stockSymbol, fetched.get(stockSymbol));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Find a fetch in flight covering the given date range of a stock, and register as waiting for
+   * it. Must be called holding the lock of this retriever.
+   *
+   * @param stockSymbol the stock symbol
+   * @param from        start date of range
+   * @param to          end date of range
+   * @return the fetch in flight, or null if there is none
+   */
+  private Flight join(String stockSymbol, int from, int to) {
+    List<Flight> flights = inFlight.get(stockSymbol);
+    if (flights == null) {
+      return null;
+    }
+    for (Flight flight : flights) {
+      if (flight.covers(from, to)) {
+        flight.waiters++;
+        coalesced++;
+        if (flight.from != from || flight.to != to) {
+          subsetServed++;
+        }
+        return flight;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Register a new fetch in flight. Must be called holding the lock of this retriever.
+   *
+   * @param stockSymbol the stock symbol
+   * @param from        start date of range
+   * @param to          end date of range
+   * @return the fetch in flight
+   */
+  private Flight start(String stockSymbol, int from, int to) {
+    fetches++;
+    Flight flight = new Flight(from, to);
+    inFlight.computeIfAbsent(stockSymbol, k -> new ArrayList<>()).add(flight);
+    return flight;
+  }
+
+  /**
+   * Remove a fetch from flight and hand its outcome to the requests waiting for it.
+   * The waiters get a private copy of the data, so the caller that fetched it may keep using the
+   * fetched map as its own.
+   *
+   * @param stockSymbol the stock symbol
+   * @param flight      the fetch
+   * @param data        the fetched prices, or null if the fetch failed
+   * @param error       the exception or error the fetch failed with, or null
+   */
+  private void finish(String stockSymbol, Flight flight, Map<Integer, PriceRecord> data,
+                      Throwable error) {
+    int waiters;
+    synchronized (this) {
+      List<Flight> flights = inFlight.get(stockSymbol);
+      Iterator<Flight> it = flights.iterator();
+      while (it.hasNext()) {
+        if (it.next() == flight) {
+          it.remove();
+          break;
+        }
+      }
+      if (flights.isEmpty()) {
+        inFlight.remove(stockSymbol);
+      }
+      waiters = flight.waiters;
+    }
+    // no one can join after the fetch left the in-flight map, so without waiters nothing to copy
+    if (error != null) {
+      flight.result.completeExceptionally(error);
+    } else if (waiters > 0) {
+      flight.result.complete(data == null ? new TreeMap<>() : new TreeMap<>(data));
+    }
+  }
+
+  /**
+   * Wait for a fetch in flight and take the prices of the given date range from its result.
+   *
+   * @param flight the fetch
+   * @param from   start date of range
+   * @param to     end date of range
+   * @return the prices of the range
+   * @throws Exception the exception the fetch failed with
+   */
+  private static Map<Integer, PriceRecord> await(Flight flight, int from, int to)
+          throws Exception {
+    TreeMap<Integer, PriceRecord> data;
+    try {
+      data = flight.result.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+    return new TreeMap<>(data.subMap(from, true, to, true));
+  }
+
+  /**
+   * Get the number of historical price requests, counting each stock of a batch request.
+   *
+   * @return number of requests
+   */
+  public synchronized long getRequestCount() {
+    return requests;
+  }
+
+  /**
+   * Get the number of requests sent on to the wrapped retriever.
+   *
+   * @return number of fetches
+   */
+  public synchronized long getFetchCount() {
+    return fetches;
+  }
+
+  /**
+   * Get the number of requests collapsed into a fetch already in flight.
+   *
+   * @return number of coalesced requests
+   */
+  public synchronized long getCoalescedCount() {
+    return coalesced;
+  }
+
+  /**
+   * Get the number of coalesced requests served from a fetch of a larger date range.
+   *
+   * @return number of requests served from a superset fetch
+   */
+  public synchronized long getSubsetServedCount() {
+    return subsetServed;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "requests: " + requests + " fetches: " + fetches + " coalesced: " + coalesced
+            + " served from superset: " + subsetServed + " in flight: " + inFlight.size();
+  }
+}
@@ -23,6 +23,81 @@ public class DateUtil {
     return LocalDate.of(year, mon, day);
   }
 
+  /**
+   * Get the integer notation (YYYYMMDD) of the given day, month and year.
+   * Example: toInt(1, 7, 2017) output: 20170701.
+   *
+   * @param date the day of a certain day
+   * @param mon  the month of a certain day
+   * @param year the year of a certain day
+   * @return integer notation of given date
+   */
+  public static int toInt(int date, int mon, int year) {
+    return (year * 100 + mon) * 100 + date;
+  }
+
+  /**
+   * Get the number of days from 19700101 to the given date, without creating objects.
+   * Example: toEpochDay(19700102) output: 1.
+   *
+   * @param date the date in integer notation (YYYYMMDD)
+   * @return the epoch day of given date
+   */
+  public static int toEpochDay(int date) {
+    int year = date / 10000;
+    int mon = date / 100 % 100;
+    int day = date % 100;
+    // count years from March, so the leap day is the last day of a year
+    year -= mon <= 2 ? 1 : 0;
+    int era = (year >= 0 ? year : year - 399) / 400;
+    int yearOfEra = year - era * 400;
+    int dayOfYear = (153 * (mon + (mon > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /**
+   * Get the date (YYYYMMDD) of the given number of days from 19700101, without creating objects.
+   * Example: fromEpochDay(1) output: 19700102.
+   *
+   * @param epochDay the epoch day
+   * @return the date in integer notation
+   */
+  public static int fromEpochDay(int epochDay) {
+    int shifted = epochDay + 719468;
+    int era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+    int dayOfEra = shifted - era * 146097;
+    int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    int monthIndex = (5 * dayOfYear + 2) / 153;
+    int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+    int mon = monthIndex + (monthIndex < 10 ? 3 : -9);
+    return toInt(day, mon, yearOfEra + era * 400 + (mon <= 2 ? 1 : 0));
+  }
+
+  /**
+   * Add the given number of days to a date, without creating objects.
+   * Example: plusDays(20170630, 1) output: 20170701.
+   *
+   * @param date the date in integer notation (YYYYMMDD)
+   * @param days days to add, may be negative
+   * @return the date in integer notation
+   */
+  public static int plusDays(int date, int days) {
+    return fromEpochDay(toEpochDay(date) + days);
+  }
+
+  /**
+   * Get the day of week of a date, from 1 (Monday) to 7 (Sunday).
+   *
+   * @param date the date in integer notation (YYYYMMDD)
+   * @return the day of week
+   */
+  public static int dayOfWeek(int date) {
+    // 19700101 was a Thursday
+    return Math.floorMod(toEpochDay(date) + 3, 7) + 1;
+  }
+
   /**
    * Get a LocalDate object with the given date represented by integer.
    *
@@ -1,15 +1,12 @@
 package util;
 
+import java.awt.BorderLayout;
 import java.awt.Graphics2D;
 import java.awt.Dimension;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Line2D;
-import java.util.ArrayList;
-
-import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,9 +18,12 @@ import model.trader.IStock;
 
 /**
  * This is a Drawline class for graph generation.
+ * Prices are drawn on one panel. Oscillators, whose values are not on the price scale, are drawn
+ * on a second panel below it with an axis of their own.
  */
 public class DrawLine extends JFrame {
   private DrawPanel drawPanel;
+  private DrawPanel oscillatorPanel;
 
   /**
    * This is a drawpanel class for panel generation.
@@ -31,7 +31,9 @@ public class DrawLine extends JFrame {
   private class DrawPanel extends JPanel {
 
     private Map<String, Map<Integer, Double>> data;
+    private Map<String, PriceSeries> series;
     private List<IStock> istocks;
+    private final boolean oscillators;
     private final int PAD = 40;
     private final Color[] colorarray = {Color.BLACK, Color.BLUE, Color.CYAN,
         Color.GRAY, Color.GREEN, Color.LIGHT_GRAY, Color.MAGENTA, Color.ORANGE, Color.PINK,
@@ -39,12 +41,17 @@ public class DrawLine extends JFrame {
 
     /**
      * Construct a draw panel object.
+     *
+     * @param oscillators true to draw oscillators on an axis from their lowest value, false to
+     *                    draw prices on an axis from zero
      */
-    public DrawPanel() {
+    public DrawPanel(boolean oscillators) {
       super();
+      this.oscillators = oscillators;
       //set background to white
       this.setBackground(Color.WHITE);
       this.data = new HashMap<>();
+      this.series = new HashMap<>();
       this.istocks = istocks;
     }
 
@@ -64,6 +71,10 @@ public class DrawLine extends JFrame {
      */
     public void add(Map<String, Map<Integer, Double>> newdata) {
       data.putAll(newdata);
+      //sort each line once here, instead of on every repaint
+      for (Map.Entry<String, Map<Integer, Double>> e : newdata.entrySet()) {
+        series.put(e.getKey(), PriceSeries.fromMap(e.getValue()));
+      }
     }
 
     /**
@@ -73,12 +84,13 @@ public class DrawLine extends JFrame {
      */
     public void remove(String istockname) {
       data.remove(istockname);
+      series.remove(istockname);
     }
 
 
     @Override
     public Dimension getPreferredSize() {
-      return new Dimension(600, 600);
+      return new Dimension(600, oscillators ? 300 : 600);
     }
 
     @Override
@@ -96,39 +108,39 @@ public class DrawLine extends JFrame {
       g2d.drawLine(PAD, PAD, PAD, h - PAD);
       g2d.drawLine(PAD, h - PAD, w - PAD, h - PAD);
       g2d.drawString("Date", w - PAD, h - PAD);
-      g2d.drawString("Price", 0, PAD);
+      g2d.drawString(oscillators ? "Value" : "Price", 0, PAD);
 
 
       //scale the x-axis and y-axis based on given data.
       int xinterval = (w - 2 * PAD) / (getXMax());
-      double yinterval = (double) (h - 2 * PAD - 100) / getYMax();
+      double ymin = oscillators ? getYMin() : 0;
+      double yinterval = (double) (h - 2 * PAD - 100) / (getYMax() - ymin);
 
 
       int j = 0;
-      for (Map.Entry<String, Map<Integer, Double>> e : data.entrySet()) {
+      for (Map.Entry<String, PriceSeries> e : series.entrySet()) {
 
         g2d.setColor(colorarray[j]);
 
-        List<Integer> sortedkeys = new ArrayList<>(e.getValue().keySet());
-
-        Collections.sort(sortedkeys);
-        int pre = sortedkeys.get(0);
+        PriceSeries line = e.getValue();
+        int pre = line.dateAt(0);
         int prex = 0;
         double prey = 0;
-        long startpointValue = Math.round(e.getValue().get(sortedkeys.get(0)));
+        long startpointValue = Math.round(line.valueAt(0));
 
         //draw the stock name and start point price as graph symbol.
-        g2d.drawString(e.getKey() + ": start point price: " + startpointValue,
+        g2d.drawString(e.getKey() + (oscillators ? ": start point value: "
+                : ": start point price: ") + startpointValue,
                 PAD, (PAD / 2) * (j + 1));
 
-        //traverse each data point in the map, and draw it on the graph.
-        for (int i = 0; i < sortedkeys.size(); i++) {
-          int diff = DateUtil.timeDiff(sortedkeys.get(i), pre);
+        //traverse each data point in the series, and draw it on the graph.
+        for (int i = 0; i < line.size(); i++) {
+          int diff = DateUtil.timeDiff(line.dateAt(i), pre);
           int x = PAD + diff + i * xinterval;
-          double y = h - PAD - e.getValue().get(sortedkeys.get(i)) * yinterval;
+          double y = h - PAD - (line.valueAt(i) - ymin) * yinterval;
           g2d.fill(new Ellipse2D.Double(x, y, 4, 4));
 
-          pre = sortedkeys.get(i);
+          pre = line.dateAt(i);
           if (prex != 0) {
             //draw a line between each single data point.
             g2d.draw(new Line2D.Double(x, y, prex, prey));
@@ -147,8 +159,8 @@ public class DrawLine extends JFrame {
      */
     private int getXMax() {
       int max = Integer.MIN_VALUE;
-      for (Map<Integer, Double> map : data.values()) {
-        max = Math.max(map.size(), max);
+      for (PriceSeries line : series.values()) {
+        max = Math.max(line.size(), max);
       }
       return max;
     }
@@ -160,15 +172,29 @@ public class DrawLine extends JFrame {
      */
     private double getYMax() {
       double max = 0;
-      for (Map<Integer, Double> map : data.values()) {
-        Collection<Double> values = map.values();
-        for (double value : values) {
-          max = Math.max(max, value);
+      for (PriceSeries line : series.values()) {
+        for (int i = 0; i < line.size(); i++) {
+          max = Math.max(max, line.valueAt(i));
         }
       }
       return max;
     }
 
+    /**
+     * Get the minimum y-value in the data for plot scale, or 0 if all values are positive.
+     *
+     * @return the minimum y-value in the data
+     */
+    private double getYMin() {
+      double min = 0;
+      for (PriceSeries line : series.values()) {
+        for (int i = 0; i < line.size(); i++) {
+          min = Math.min(min, line.valueAt(i));
+        }
+      }
+      return min;
+    }
+
 
   }
 
@@ -181,8 +207,8 @@ public class DrawLine extends JFrame {
     //the X button should close this window, but not the entire program
     this.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
     //add the panel to this frame
-    drawPanel = new DrawPanel();
-    this.add(drawPanel);
+    drawPanel = new DrawPanel(false);
+    this.add(drawPanel, BorderLayout.CENTER);
     //resize this frame so that it is just big enough to hold the panel
     //the panel sets its own size by overriding getPreferredSize
     this.pack();
@@ -200,6 +226,24 @@ public class DrawLine extends JFrame {
     repaint(); //refresh the screen
   }
 
+  /**
+   * Add oscillator data to the panel below the prices, and refresh the screen.
+   *
+   * @param newdata to be added
+   */
+  public void addOscillators(Map<String, Map<Integer, Double>> newdata) {
+    if (newdata.isEmpty()) {
+      return;
+    }
+    if (oscillatorPanel == null) {
+      oscillatorPanel = new DrawPanel(true);
+      this.add(oscillatorPanel, BorderLayout.SOUTH);
+      this.pack();
+    }
+    oscillatorPanel.add(newdata);
+    repaint(); //refresh the screen
+  }
+
   /**
    * Remove data from current graph, and refresh the screen.
    *
@@ -207,6 +251,9 @@ public class DrawLine extends JFrame {
    */
   public void removeStock(String istock) {
     drawPanel.remove(istock);
+    if (oscillatorPanel != null) {
+      oscillatorPanel.remove(istock);
+    }
     repaint(); //refresh the screen
   }
 
@@ -216,6 +263,10 @@ public class DrawLine extends JFrame {
    * @return data in current graph
    */
   public Map<String, Map<Integer, Double>> getGraphData() {
-    return drawPanel.getCurGraphData();
+    Map<String, Map<Integer, Double>> data = drawPanel.getCurGraphData();
+    if (oscillatorPanel != null) {
+      data.putAll(oscillatorPanel.getCurGraphData());
+    }
+    return data;
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
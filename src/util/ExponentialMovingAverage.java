@@ -0,0 +1,88 @@
+package util;
+
+/**
+ * This class represents an X-day exponential moving average of closing prices.
+ * It is seeded with the simple average of the first X closing prices, after which each closing
+ * price moves the average by 2 / (X + 1) of its distance to the average.
+ */
+public class ExponentialMovingAverage implements Indicator {
+  private final int days;
+  private final double alpha;
+  private int count;
+  private double value;
+
+  /**
+   * Construct an X-day exponential moving average.
+   *
+   * @param days X business days
+   */
+  public ExponentialMovingAverage(int days) {
+    if (days <= 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.days = days;
+    this.alpha = 2.0 / (days + 1);
+  }
+
+  @Override
+  public String[] getOutputNames() {
+    return new String[]{"EMA" + days};
+  }
+
+  @Override
+  public boolean isOscillator() {
+    return false;
+  }
+
+  @Override
+  public int getLookback() {
+    // the weight of the seed has decayed below one percent after this many days
+    return 3 * days;
+  }
+
+  @Override
+  public void update(double high, double low, double close) {
+    update(close);
+  }
+
+  /**
+   * Feed the next value.
+   *
+   * @param close the next value, usually a close price
+   */
+  public void update(double close) {
+    count++;
+    if (count < days) {
+      value += close;
+    } else if (count == days) {
+      value = (value + close) / days;
+    } else {
+      value += alpha * (close - value);
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return count >= days;
+  }
+
+  @Override
+  public double getValue(int output) {
+    return value;
+  }
+
+  /**
+   * Get the current average.
+   *
+   * @return the average after the last value fed
+   */
+  public double getValue() {
+    return value;
+  }
+
+  @Override
+  public void reset() {
+    count = 0;
+    value = 0;
+  }
+}
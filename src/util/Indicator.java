@@ -0,0 +1,62 @@
+package util;
+
+/**
+ * This interface represents a technical indicator computed incrementally over daily price bars.
+ * Bars are fed one at a time in date order, and the indicator keeps only the running state it
+ * needs, so a whole series is computed in a single pass without re-reading earlier bars.
+ */
+public interface Indicator {
+
+  /**
+   * Get the names of the lines this indicator produces, for example "EMA20" or the middle, upper
+   * and lower line of Bollinger bands.
+   *
+   * @return the names of the output lines
+   */
+  String[] getOutputNames();
+
+  /**
+   * Check whether the lines of this indicator are on a scale of their own, such as a relative
+   * strength between 0 and 100, rather than on the price scale of the bars.
+   *
+   * @return true for an oscillator, false for an overlay on the prices
+   */
+  boolean isOscillator();
+
+  /**
+   * Get the number of business days that should be fed before the first date of interest, so
+   * that the values on that date are settled.
+   *
+   * @return number of business days of warm-up
+   */
+  int getLookback();
+
+  /**
+   * Feed the next daily bar.
+   *
+   * @param high  the highest price of the day
+   * @param low   the lowest price of the day
+   * @param close the close price of the day
+   */
+  void update(double high, double low, double close);
+
+  /**
+   * Check whether enough bars have been fed for the values to be defined.
+   *
+   * @return true if the values are defined
+   */
+  boolean isReady();
+
+  /**
+   * Get the current value of an output line.
+   *
+   * @param output index of the output line in getOutputNames()
+   * @return the value after the last bar fed
+   */
+  double getValue(int output);
+
+  /**
+   * Forget all bars fed so far.
+   */
+  void reset();
+}
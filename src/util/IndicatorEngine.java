@@ -0,0 +1,170 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class computes several indicators over the daily bars of one stock in a single pass.
+ * Every bar is read once and fed to all indicators, so adding an overlay to a chart does not
+ * read the price data again.
+ * An engine holds the running state of its indicators, so it must not be shared between threads.
+ */
+public class IndicatorEngine {
+  private static final Pattern SPEC = Pattern.compile(
+          "(EMA|RSI|BB|ATR)(\\d+)|MACD(?:(\\d+)-(\\d+)-(\\d+))?");
+
+  private final List<Indicator> indicators;
+
+  /**
+   * Construct an engine computing the given indicators.
+   *
+   * @param indicators the indicators
+   */
+  public IndicatorEngine(List<Indicator> indicators) {
+    this.indicators = new ArrayList<>(indicators);
+  }
+
+  /**
+   * Construct an engine from indicator names such as "EMA20", "RSI14", "MACD" or "MACD12-26-9",
+   * "BB20" and "ATR14".
+   *
+   * @param specs indicator names
+   * @return the indicator engine
+   */
+  public static IndicatorEngine parse(List<String> specs) {
+    List<Indicator> indicators = new ArrayList<>();
+    for (String spec : specs) {
+      indicators.add(parse(spec));
+    }
+    return new IndicatorEngine(indicators);
+  }
+
+  /**
+   * Create an indicator from its name, such as "EMA20", "RSI14", "MACD" or "MACD12-26-9", "BB20"
+   * and "ATR14".
+   *
+   * @param spec indicator name
+   * @return the indicator
+   */
+  public static Indicator parse(String spec) {
+    Matcher m = SPEC.matcher(spec.toUpperCase(Locale.ROOT));
+    if (!m.matches()) {
+      throw new IllegalArgumentException("invalid indicator " + spec);
+    }
+    if (m.group(1) == null) {
+      if (m.group(3) == null) {
+        return new MovingAverageConvergenceDivergence();
+      }
+      return new MovingAverageConvergenceDivergence(Integer.parseInt(m.group(3)),
+              Integer.parseInt(m.group(4)), Integer.parseInt(m.group(5)));
+    }
+    int days = Integer.parseInt(m.group(2));
+    switch (m.group(1)) {
+      case "EMA":
+        return new ExponentialMovingAverage(days);
+      case "RSI":
+        return new RelativeStrengthIndex(days);
+      case "BB":
+        return new BollingerBands(days);
+      default:
+        return new AverageTrueRange(days);
+    }
+  }
+
+  /**
+   * Get the number of business days that should be fed before the first date of interest, so
+   * that all indicators are settled on that date.
+   *
+   * @return number of business days of warm-up
+   */
+  public int getLookback() {
+    int lookback = 0;
+    for (Indicator indicator : indicators) {
+      lookback = Math.max(lookback, indicator.getLookback());
+    }
+    return lookback;
+  }
+
+  /**
+   * Get the names of the lines of the oscillators among the indicators, which are not on the
+   * price scale and should be drawn on an axis of their own.
+   *
+   * @return names of the oscillator lines
+   */
+  public Set<String> getOscillatorNames() {
+    Set<String> names = new HashSet<>();
+    for (Indicator indicator : indicators) {
+      if (indicator.isOscillator()) {
+        names.addAll(Arrays.asList(indicator.getOutputNames()));
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Compute all indicators over the given daily bars, and keep the values within a date range.
+   * Bars before the date range only warm the indicators up, and dates on which an indicator is
+   * not defined yet are left out of its lines.
+   *
+   * @param bars     map with date (YYYYMMDD) as key and price record as value
+   * @param fromDate start of date range (YYYYMMDD)
+   * @param toDate   end of date range (YYYYMMDD)
+   * @return map with line name as key, in the order of the indicators, and line as value
+   */
+  public Map<String, PriceSeries> run(Map<Integer, PriceRecord> bars, int fromDate,
+                                      int toDate) {
+    int[] dates = new int[bars.size()];
+    int n = 0;
+    for (int date : bars.keySet()) {
+      dates[n++] = date;
+    }
+    Arrays.sort(dates);
+
+    List<PriceSeries.Builder[]> lines = new ArrayList<>();
+    for (Indicator indicator : indicators) {
+      indicator.reset();
+      PriceSeries.Builder[] builders = new PriceSeries.Builder[indicator.getOutputNames().length];
+      for (int j = 0; j < builders.length; j++) {
+        builders[j] = new PriceSeries.Builder(n);
+      }
+      lines.add(builders);
+    }
+
+    for (int date : dates) {
+      if (date > toDate) {
+        break;
+      }
+      PriceRecord bar = bars.get(date);
+      double high = bar.getHighestDayPrice();
+      double low = bar.getLowestDayPrice();
+      double close = bar.getClosePrice();
+      for (int i = 0; i < indicators.size(); i++) {
+        Indicator indicator = indicators.get(i);
+        indicator.update(high, low, close);
+        if (date >= fromDate && indicator.isReady()) {
+          PriceSeries.Builder[] builders = lines.get(i);
+          for (int j = 0; j < builders.length; j++) {
+            builders[j].add(date, indicator.getValue(j));
+          }
+        }
+      }
+    }
+
+    Map<String, PriceSeries> result = new LinkedHashMap<>();
+    for (int i = 0; i < indicators.size(); i++) {
+      String[] names = indicators.get(i).getOutputNames();
+      for (int j = 0; j < names.length; j++) {
+        result.put(names[j], lines.get(i)[j].build());
+      }
+    }
+    return result;
+  }
+}
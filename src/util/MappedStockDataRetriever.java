@@ -0,0 +1,383 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * This class represents a stock retriever module backed by a local price store.
+ * The store is a directory holding one memory-mapped price store file per stock symbol, so
+ * historical prices are served by binary searching the date column instead of downloading and
+ * parsing text.
+ * A store given an upstream retriever can be refreshed: for each stock only the days after its
+ * last stored trading date are fetched, or its whole history when it has none, and appended as
+ * new blocks by replacing the stock's file atomically.
+ */
+public class MappedStockDataRetriever implements StockDataRetriever {
+  static final String SUFFIX = ".prices";
+  // an empty stock is filled with all the history the upstream retriever has from this date on,
+  // the epoch of DateUtil, whose two-digit year window cannot tell earlier dates apart
+  static final int FIRST_DATE = 19700101;
+
+  private final Path directory;
+  private final Map<String, PriceStoreFile> files;
+  private final StockDataRetriever upstream;
+  private final int refreshConcurrency;
+  // one lock per stock, so a stock's file is only rewritten by one refresh at a time
+  private final Map<String, Object> locks;
+
+  /**
+   * The outcome of refreshing several stocks.
+   */
+  public static class Refresh {
+    private final Map<String, Integer> appended = new TreeMap<>();
+    private final Map<String, Exception> failures = new TreeMap<>();
+    private long millis;
+
+    /**
+     * Get the number of days appended to each refreshed stock.
+     *
+     * @return map with stock symbol as key and number of appended days as value
+     */
+    public Map<String, Integer> getAppended() {
+      return appended;
+    }
+
+    /**
+     * Get the exception each stock which could not be refreshed failed with.
+     *
+     * @return map with stock symbol as key and exception as value
+     */
+    public Map<String, Exception> getFailures() {
+      return failures;
+    }
+
+    /**
+     * Get the time the refresh took.
+     *
+     * @return milliseconds
+     */
+    public long getMillis() {
+      return millis;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      int days = 0;
+      for (Map.Entry<String, Integer> e : appended.entrySet()) {
+        sb.append(e.getKey()).append(": ").append(e.getValue()).append(" new days\n");
+        days += e.getValue();
+      }
+      for (Map.Entry<String, Exception> e : failures.entrySet()) {
+        sb.append(e.getKey()).append(": failed, ").append(e.getValue().getMessage())
+                .append("\n");
+      }
+      return sb.append("refreshed ").append(appended.size()).append(" stocks, ").append(days)
+              .append(" new days, ").append(failures.size()).append(" failed in ")
+              .append(millis).append(" ms").toString();
+    }
+  }
+
+  /**
+   * Construct a MappedStockDataRetriever object serving only what the store holds.
+   *
+   * @param directory the directory of the local price store
+   * @throws IOException when the directory cannot be created
+   */
+  public MappedStockDataRetriever(Path directory) throws IOException {
+    this(directory, null, 1);
+  }
+
+  /**
+   * Construct a MappedStockDataRetriever object which can be refreshed from an upstream source.
+   *
+   * @param directory          the directory of the local price store
+   * @param upstream           the retriever new days are fetched from
+   * @param refreshConcurrency maximum number of stocks refreshed at the same time
+   * @throws IOException when the directory cannot be created
+   */
+  public MappedStockDataRetriever(Path directory, StockDataRetriever upstream,
+                                  int refreshConcurrency) throws IOException {
+    if (refreshConcurrency <= 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.directory = Files.createDirectories(directory);
+    this.files = new ConcurrentHashMap<>();
+    this.upstream = upstream;
+    this.refreshConcurrency = refreshConcurrency;
+    this.locks = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Get the current price, which is the latest closing price in the store.
+   *
+   * @param stockSymbol the stock symbol
+   * @return the current price
+   * @throws Exception when the stock is not in the store
+   */
+  public double getCurrentPrice(String stockSymbol) throws Exception {
+    PriceStoreFile file = getFile(stockSymbol);
+    if (file == null || file.size() == 0) {
+      throw new IllegalArgumentException("invalid stock symbol");
+    }
+    return file.closeAt(file.size() - 1);
+  }
+
+  /**
+   * Get the stock name. Return "N/A" if the stock is not in the store.
+   *
+   * @param stockSymbol the stock symbol
+   * @return the stock name
+   * @throws Exception when cannot read the store
+   */
+  public String getName(String stockSymbol) throws Exception {
+    PriceStoreFile file = getFile(stockSymbol);
+    if (file == null) {
+      return "N/A";
+    }
+    return file.getName();
+  }
+
+  /**
+   * Get historical pricing.
+   *
+   * @param stockSymbol the stock symbol
+   * @param fromDate    from day of the date
+   * @param fromMonth   from month of the date
+   * @param fromYear    from year of the date
+   * @param toDate      to day from the date
+   * @param toMonth     to month of the date
+   * @param toYear      to year of the date
+   * @return the historical price
+   * @throws Exception when the stock is not in the store
+   */
+  public Map<Integer, PriceRecord> getHistoricalPrices(
+          String stockSymbol,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    PriceStoreFile file = getFile(stockSymbol);
+    if (file == null) {
+      throw new IllegalArgumentException("invalid stock symbol");
+    }
+    int from = DateUtil.toInt(fromDate, fromMonth, fromYear);
+    int to = DateUtil.toInt(toDate, toMonth, toYear);
+
+    Map<Integer, PriceRecord> prices = new TreeMap<Integer, PriceRecord>();
+    for (int i = file.lowerBound(from); i < file.size() && file.dateAt(i) <= to; i++) {
+      prices.put(file.dateAt(i), file.recordAt(i));
+    }
+    return prices;
+  }
+
+  /**
+   * Store the given prices of a stock, replacing what the store held for it.
+   *
+   * @param stockSymbol the stock symbol
+   * @param name        the stock name
+   * @param prices      map with date (YYYYMMDD) as key and price record as value
+   * @throws IOException when the store cannot be written
+   */
+  public void store(String stockSymbol, String name, Map<Integer, PriceRecord> prices)
+          throws IOException {
+    synchronized (lockOf(stockSymbol)) {
+      PriceStoreFile.write(pathOf(stockSymbol), name, prices);
+      files.remove(stockSymbol);
+    }
+  }
+
+  /**
+   * Get the last trading date stored for a stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @return the last stored date (YYYYMMDD), or 0 if the store holds no day of the stock
+   * @throws IOException when the store cannot be read
+   */
+  public int getLastDate(String stockSymbol) throws IOException {
+    PriceStoreFile file = getFile(stockSymbol);
+    return file == null || file.size() == 0 ? 0 : file.dateAt(file.size() - 1);
+  }
+
+  /**
+   * Fetch the days of a stock after its last stored date up to the given date from the upstream
+   * retriever, or every day up to the given date when none is stored, and append them to the
+   * store. Only the last block of the stock's file is encoded again; the file is replaced
+   * atomically, so readers see either the old or the new days, never a partial file.
+   *
+   * @param stockSymbol the stock symbol, which must be in the store
+   * @param toDate      last date to fetch (YYYYMMDD)
+   * @return number of appended days
+   * @throws Exception when cannot retrieve data or write the store
+   */
+  public int refresh(String stockSymbol, int toDate) throws Exception {
+    if (upstream == null) {
+      throw new IllegalStateException("no upstream source to refresh from");
+    }
+    synchronized (lockOf(stockSymbol)) {
+      PriceStoreFile stored = getFile(stockSymbol);
+      if (stored == null) {
+        throw new IllegalArgumentException("invalid stock symbol");
+      }
+      int last = stored.size() == 0 ? 0 : stored.dateAt(stored.size() - 1);
+      int from = last == 0 ? FIRST_DATE : DateUtil.plusDays(last, 1);
+      if (from > toDate) {
+        return 0;
+      }
+      Map<Integer, PriceRecord> tail = upstream.getHistoricalPrices(stockSymbol,
+              from % 100, from / 100 % 100, from / 10000,
+              toDate % 100, toDate / 100 % 100, toDate / 10000);
+      PriceColumns columns = new PriceColumns(tail.size());
+      for (Map.Entry<Integer, PriceRecord> e : new TreeMap<>(tail).entrySet()) {
+        if (e.getKey() > last && e.getKey() <= toDate) {
+          PriceRecord record = e.getValue();
+          columns.add(e.getKey(), record.getOpenPrice(), record.getHighestDayPrice(),
+                  record.getLowestDayPrice(), record.getClosePrice());
+        }
+      }
+      int appended = columns.size();
+      if (appended > 0) {
+        Path path = pathOf(stockSymbol);
+        columns.appendTo(path);
+        files.put(stockSymbol, PriceStoreFile.open(path));
+      }
+      return appended;
+    }
+  }
+
+  /**
+   * Refresh several stocks up to the given date, at most the refresh concurrency of this store
+   * at the same time. A stock which fails does not stop the others.
+   *
+   * @param stockSymbols the stock symbols
+   * @param toDate       last date to fetch (YYYYMMDD)
+   * @return the outcome of the refresh
+   * @throws InterruptedException when interrupted while waiting for the refreshes
+   */
+  public Refresh refresh(Collection<String> stockSymbols, int toDate)
+          throws InterruptedException {
+    long start = System.nanoTime();
+    Set<String> symbols = new LinkedHashSet<>(stockSymbols);
+    Refresh refresh = new Refresh();
+    ExecutorService pool = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(refreshConcurrency, symbols.size())));
+    try {
+      Map<String, Future<Integer>> futures = new LinkedHashMap<>();
+      for (String stockSymbol : symbols) {
+        futures.put(stockSymbol, pool.submit(() -> refresh(stockSymbol, toDate)));
+      }
+      for (Map.Entry<String, Future<Integer>> e : futures.entrySet()) {
+        try {
+          refresh.appended.put(e.getKey(), e.getValue().get());
+        } catch (ExecutionException ex) {
+          refresh.failures.put(e.getKey(), ex.getCause() instanceof Exception
+                  ? (Exception) ex.getCause() : ex);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    refresh.millis = (System.nanoTime() - start) / 1000000;
+    return refresh;
+  }
+
+  /**
+   * Copy the historical prices of a stock within a date range from another retriever into
+   * the store.
+   *
+   * @param source      the retriever to copy from
+   * @param stockSymbol the stock symbol
+   * @param fromDate    from date (YYYYMMDD)
+   * @param toDate      to date (YYYYMMDD)
+   * @throws Exception when cannot retrieve data or write the store
+   */
+  public void importFrom(StockDataRetriever source, String stockSymbol, int fromDate, int toDate)
+          throws Exception {
+    Map<Integer, PriceRecord> prices = source.getHistoricalPrices(stockSymbol,
+            fromDate % 100, fromDate / 100 % 100, fromDate / 10000,
+            toDate % 100, toDate / 100 % 100, toDate / 10000);
+    store(stockSymbol, source.getName(stockSymbol), prices);
+  }
+
+  /**
+   * Get the directory of this store.
+   *
+   * @return the store directory
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Get the symbols of the stocks in this store.
+   *
+   * @return the stock symbols, in order
+   * @throws IOException when the directory cannot be read
+   */
+  public Set<String> getSymbols() throws IOException {
+    Set<String> symbols = new TreeSet<>();
+    try (Stream<Path> paths = Files.list(directory)) {
+      paths.map(p -> p.getFileName().toString()).filter(f -> f.endsWith(SUFFIX))
+              .forEach(f -> symbols.add(f.substring(0, f.length() - SUFFIX.length())));
+    }
+    return symbols;
+  }
+
+  /**
+   * Get the mapped file of a stock, opening it on first use.
+   *
+   * @param stockSymbol the stock symbol
+   * @return the mapped file, or null if the stock is not in the store
+   * @throws IOException when the file cannot be read
+   */
+  private PriceStoreFile getFile(String stockSymbol) throws IOException {
+    PriceStoreFile file = files.get(stockSymbol);
+    if (file == null) {
+      Path path = pathOf(stockSymbol);
+      if (!Files.exists(path)) {
+        return null;
+      }
+      file = PriceStoreFile.open(path);
+      files.put(stockSymbol, file);
+    }
+    return file;
+  }
+
+  /**
+   * Get the lock of a stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @return the lock
+   */
+  private Object lockOf(String stockSymbol) {
+    return locks.computeIfAbsent(stockSymbol, k -> new Object());
+  }
+
+  /**
+   * Get the file path of a stock in this store.
+   *
+   * @param stockSymbol the stock symbol
+   * @return path of the stock's price store file
+   */
+  private Path pathOf(String stockSymbol) {
+    return directory.resolve(stockSymbol + SUFFIX);
+  }
+}
@@ -0,0 +1,91 @@
+package util;
+
+/**
+ * This class represents the moving average convergence divergence of closing prices.
+ * The MACD line is the fast minus the slow exponential moving average, the signal line is an
+ * exponential moving average of the MACD line, and the histogram is their difference.
+ */
+public class MovingAverageConvergenceDivergence implements Indicator {
+  private final int fastDays;
+  private final int slowDays;
+  private final int signalDays;
+  private final ExponentialMovingAverage fast;
+  private final ExponentialMovingAverage slow;
+  private final ExponentialMovingAverage signal;
+
+  /**
+   * Construct the usual 12-26-9 day moving average convergence divergence.
+   */
+  public MovingAverageConvergenceDivergence() {
+    this(12, 26, 9);
+  }
+
+  /**
+   * Construct a moving average convergence divergence.
+   *
+   * @param fastDays   business days of the fast moving average
+   * @param slowDays   business days of the slow moving average
+   * @param signalDays business days of the signal line
+   */
+  public MovingAverageConvergenceDivergence(int fastDays, int slowDays, int signalDays) {
+    if (fastDays >= slowDays) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.fastDays = fastDays;
+    this.slowDays = slowDays;
+    this.signalDays = signalDays;
+    this.fast = new ExponentialMovingAverage(fastDays);
+    this.slow = new ExponentialMovingAverage(slowDays);
+    this.signal = new ExponentialMovingAverage(signalDays);
+  }
+
+  @Override
+  public String[] getOutputNames() {
+    String name = "MACD" + fastDays + "-" + slowDays + "-" + signalDays;
+    return new String[]{name, name + "signal", name + "hist"};
+  }
+
+  @Override
+  public boolean isOscillator() {
+    return true;
+  }
+
+  @Override
+  public int getLookback() {
+    return slow.getLookback() + signal.getLookback();
+  }
+
+  @Override
+  public void update(double high, double low, double close) {
+    fast.update(close);
+    slow.update(close);
+    if (slow.isReady()) {
+      signal.update(fast.getValue() - slow.getValue());
+    }
+  }
+
+  @Override
+  public boolean isReady() {
+    return signal.isReady();
+  }
+
+  @Override
+  public double getValue(int output) {
+    double macd = fast.getValue() - slow.getValue();
+    switch (output) {
+      case 0:
+        return macd;
+      case 1:
+        return signal.getValue();
+      default:
+        return macd - signal.getValue();
+    }
+  }
+
+  @Override
+  public void reset() {
+    fast.reset();
+    slow.reset();
+    signal.reset();
+  }
+}
@@ -0,0 +1,79 @@
+package util;
+
+/**
+ * This class represents the prefix sums of a closing price series.
+ * It is built once per series, after which the X-day moving average on any date, for any X, is
+ * one subtraction and one division. The prefix sums are compensated (Kahan), each kept as a sum
+ * and its rounding error, so an average differs from summing its window directly only in the
+ * last bits, however long the series.
+ */
+public class MovingAverageIndex {
+  private final PriceSeries closing;
+  // prefix[i] + error[i] is the sum of the first i closing prices
+  private final double[] prefix;
+  private final double[] error;
+
+  /**
+   * Construct a moving average index over a closing price series.
+   *
+   * @param closing the closing price series
+   */
+  public MovingAverageIndex(PriceSeries closing) {
+    this.closing = closing;
+    this.prefix = new double[closing.size() + 1];
+    this.error = new double[closing.size() + 1];
+    double compensation = 0;
+    for (int i = 0; i < closing.size(); i++) {
+      double y = closing.valueAt(i) - compensation;
+      double t = prefix[i] + y;
+      compensation = (t - prefix[i]) - y;
+      prefix[i + 1] = t;
+      error[i + 1] = -compensation;
+    }
+  }
+
+  /**
+   * Get the closing price series this index is built on.
+   *
+   * @return the closing price series
+   */
+  public PriceSeries getClosing() {
+    return closing;
+  }
+
+  /**
+   * Calculate the X-day moving average at the given index of the series: the sum of the last X
+   * closing prices up to and including that index, divided by X. When the series starts less
+   * than X business days before the index, only the available closing prices are summed.
+   *
+   * @param index index in the closing price series
+   * @param days  X business days
+   * @return the X-day moving average
+   */
+  public double average(int index, int days) {
+    int first = index + 1 - Math.min(days, index + 1);
+    return ((prefix[index + 1] - prefix[first]) + (error[index + 1] - error[first])) / days;
+  }
+
+  /**
+   * Calculate the X-day moving average on each business day of a date range.
+   * The series starts on the last business day on or before the start of the date range.
+   *
+   * @param fromDate start of date range (YYYYMMDD)
+   * @param toDate   end of date range (YYYYMMDD)
+   * @param days     X business days
+   * @return X-day moving average series
+   */
+  public PriceSeries averageSeries(int fromDate, int toDate, int days) {
+    int first = closing.floorIndex(fromDate);
+    if (first < 0) {
+      throw new IllegalArgumentException("invalid date range");
+    }
+    int last = closing.floorIndex(toDate);
+    PriceSeries.Builder ave = new PriceSeries.Builder(last - first + 1);
+    for (int i = first; i <= last; i++) {
+      ave.add(closing.dateAt(i), average(i, days));
+    }
+    return ave.build();
+  }
+}
@@ -0,0 +1,486 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class encodes and decodes blocks of daily price rows for the compressed price store
+ * format. A block is a bit stream holding its rows column by column:
+ * dates are stored as the first date followed by delta-of-delta values, which are almost
+ * always zero for consecutive business days;
+ * each price column is stored either as decimal-scaled integers (when the values of the block
+ * are decimals with at most 8 fraction digits, as quoted prices are) each as the difference to
+ * the previous one, with the few values which are not such decimals stored as raw doubles, or
+ * else as doubles each XORed with the previous value keeping only the meaningful bits.
+ * Blocks are padded to whole 8-byte words, so the decoder reads the stream a word at a time.
+ */
+public final class PriceBlockCodec {
+  private static final double[] SCALES = {1, 10, 100, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8};
+  private static final int XOR = 0;
+  private static final int SCALED = 1;
+  // returned by readVariable for a raw double in a scaled column
+  private static final long EXCEPTION = -1;
+
+  /**
+   * Not instantiable.
+   */
+  private PriceBlockCodec() {
+  }
+
+  /**
+   * Encode rows into a block.
+   *
+   * @param dates date column (YYYYMMDD, ascending)
+   * @param open  open price column
+   * @param high  highest price column
+   * @param low   lowest price column
+   * @param close close price column
+   * @param from  index of the first row of the block
+   * @param n     number of rows of the block
+   * @return the block, a multiple of 8 bytes long
+   */
+  public static byte[] encode(int[] dates, double[] open, double[] high, double[] low,
+                              double[] close, int from, int n) {
+    BitWriter out = new BitWriter(n);
+    encodeDates(out, dates, from, n);
+    for (double[] column : new double[][]{open, high, low, close}) {
+      encodeColumn(out, column, from, n);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Decode a block straight into primitive arrays, starting at index 0 of each array.
+   *
+   * @param in     buffer holding the block
+   * @param offset byte offset of the block in the buffer
+   * @param n      number of rows of the block
+   * @param dates  target date column
+   * @param open   target open price column
+   * @param high   target highest price column
+   * @param low    target lowest price column
+   * @param close  target close price column
+   */
+  public static void decode(ByteBuffer in, int offset, int n, int[] dates, double[] open,
+                            double[] high, double[] low, double[] close) {
+    BitReader reader = new BitReader(in, offset);
+    decodeDates(reader, dates, n);
+    decodeColumn(reader, open, n);
+    decodeColumn(reader, high, n);
+    decodeColumn(reader, low, n);
+    decodeColumn(reader, close, n);
+  }
+
+  /**
+   * Encode the dates of a block: the first date, the first difference and then the
+   * differences between consecutive differences.
+   *
+   * @param out   target stream
+   * @param dates date column
+   * @param from  index of the first row
+   * @param n     number of rows
+   */
+  private static void encodeDates(BitWriter out, int[] dates, int from, int n) {
+    out.write(dates[from], 32);
+    long previousDelta = 0;
+    for (int i = from + 1; i < from + n; i++) {
+      long delta = (long) dates[i] - dates[i - 1];
+      writeVariable(out, zigzag(delta - previousDelta));
+      previousDelta = delta;
+    }
+  }
+
+  /**
+   * Decode the dates of a block.
+   *
+   * @param in    source stream
+   * @param dates target date column
+   * @param n     number of rows
+   */
+  private static void decodeDates(BitReader in, int[] dates, int n) {
+    int date = (int) in.read(32);
+    dates[0] = date;
+    long delta = 0;
+    for (int i = 1; i < n; i++) {
+      delta += unzigzag(readVariable(in));
+      date += (int) delta;
+      dates[i] = date;
+    }
+  }
+
+  /**
+   * Encode a price column of a block, scaled when most values are exact decimals and XORed
+   * otherwise.
+   *
+   * @param out    target stream
+   * @param column the column
+   * @param from   index of the first row
+   * @param n      number of rows
+   */
+  private static void encodeColumn(BitWriter out, double[] column, int from, int n) {
+    int scale = scaleOf(column, from, n);
+    if (scale < 0) {
+      out.write(XOR, 1);
+      encodeXor(out, column, from, n);
+      return;
+    }
+    out.write(SCALED, 1);
+    out.write(scale, 4);
+    long previous = 0;
+    for (int i = from; i < from + n; i++) {
+      if (isExact(column[i], SCALES[scale])) {
+        long value = Math.round(column[i] * SCALES[scale]);
+        writeVariable(out, zigzag(value - previous));
+        previous = value;
+      } else {
+        out.write(31, 5);
+        out.write(Double.doubleToRawLongBits(column[i]), 64);
+      }
+    }
+  }
+
+  /**
+   * Decode a price column of a block.
+   *
+   * @param in     source stream
+   * @param column target column
+   * @param n      number of rows
+   */
+  private static void decodeColumn(BitReader in, double[] column, int n) {
+    if (in.read(1) == XOR) {
+      decodeXor(in, column, n);
+      return;
+    }
+    double scale = SCALES[(int) in.read(4)];
+    long value = 0;
+    for (int i = 0; i < n; i++) {
+      long delta = readVariable(in);
+      if (delta == EXCEPTION) {
+        column[i] = Double.longBitsToDouble(in.read(64));
+      } else {
+        value += unzigzag(delta);
+        column[i] = value / scale;
+      }
+    }
+  }
+
+  /**
+   * Find the smallest number of fraction digits the values of a block which are decimals can be
+   * scaled by and restored exactly.
+   *
+   * @param column the column
+   * @param from   index of the first row
+   * @param n      number of rows
+   * @return index into the scales, or -1 if less than half of the values are exact decimals
+   */
+  private static int scaleOf(double[] column, int from, int n) {
+    int scale = 0;
+    int exceptions = 0;
+    for (int i = from; i < from + n; i++) {
+      if (isExact(column[i], SCALES[scale])) {
+        continue;
+      }
+      int s = scale + 1;
+      while (s < SCALES.length && !isExact(column[i], SCALES[s])) {
+        s++;
+      }
+      if (s == SCALES.length) {
+        exceptions++;
+      } else {
+        scale = s;
+      }
+    }
+    return exceptions * 2 > n ? -1 : scale;
+  }
+
+  /**
+   * Check if a value scaled to an integer and divided back gives exactly the same double.
+   *
+   * @param value the value
+   * @param scale the scale
+   * @return true if the value is restored exactly
+   */
+  private static boolean isExact(double value, double scale) {
+    double scaled = value * scale;
+    if (!(Math.abs(scaled) < 0x1p53)) {
+      return false;
+    }
+    long integer = Math.round(scaled);
+    return Double.doubleToRawLongBits(integer / scale) == Double.doubleToRawLongBits(value);
+  }
+
+  /**
+   * Encode doubles XORed with the previous value: a 0 bit for an equal value, 10 followed by
+   * the meaningful bits when they fit in the previous leading and trailing zeros, and otherwise
+   * 11 followed by the number of leading zeros, the number of meaningful bits and the bits.
+   *
+   * @param out    target stream
+   * @param column the column
+   * @param from   index of the first row
+   * @param n      number of rows
+   */
+  private static void encodeXor(BitWriter out, double[] column, int from, int n) {
+    long previous = Double.doubleToRawLongBits(column[from]);
+    out.write(previous, 64);
+    int leading = -1;
+    int trailing = 0;
+    for (int i = from + 1; i < from + n; i++) {
+      long bits = Double.doubleToRawLongBits(column[i]);
+      long xor = bits ^ previous;
+      previous = bits;
+      if (xor == 0) {
+        out.write(0, 1);
+        continue;
+      }
+      int lead = Math.min(Long.numberOfLeadingZeros(xor), 31);
+      int trail = Long.numberOfTrailingZeros(xor);
+      if (leading >= 0 && lead >= leading && trail >= trailing) {
+        out.write(2, 2);
+        out.write(xor >>> trailing, 64 - leading - trailing);
+      } else {
+        int length = 64 - lead - trail;
+        out.write(3, 2);
+        out.write(lead, 5);
+        out.write(length - 1, 6);
+        out.write(xor >>> trail, length);
+        leading = lead;
+        trailing = trail;
+      }
+    }
+  }
+
+  /**
+   * Decode doubles XORed with the previous value.
+   *
+   * @param in     source stream
+   * @param column target column
+   * @param n      number of rows
+   */
+  private static void decodeXor(BitReader in, double[] column, int n) {
+    long bits = in.read(64);
+    column[0] = Double.longBitsToDouble(bits);
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 1; i < n; i++) {
+      int prefix = in.readOnes(2);
+      if (prefix != 0) {
+        if (prefix == 2) {
+          leading = (int) in.read(5);
+          trailing = 64 - leading - ((int) in.read(6) + 1);
+        }
+        bits ^= in.read(64 - leading - trailing) << trailing;
+      }
+      column[i] = Double.longBitsToDouble(bits);
+    }
+  }
+
+  /**
+   * Write a non-negative value with a prefix telling its width: 0 for zero, then 10, 110,
+   * 1110 and 11110 for 7, 12, 20 and 64 bits. The prefix 11111 marks a raw double.
+   *
+   * @param out   target stream
+   * @param value the value
+   */
+  private static void writeVariable(BitWriter out, long value) {
+    if (value == 0) {
+      out.write(0, 1);
+    } else if (value >>> 7 == 0) {
+      out.write(2, 2);
+      out.write(value, 7);
+    } else if (value >>> 12 == 0) {
+      out.write(6, 3);
+      out.write(value, 12);
+    } else if (value >>> 20 == 0) {
+      out.write(14, 4);
+      out.write(value, 20);
+    } else {
+      out.write(30, 5);
+      out.write(value, 64);
+    }
+  }
+
+  /**
+   * Read a value written by writeVariable.
+   *
+   * @param in source stream
+   * @return the value, or EXCEPTION if a raw double follows
+   */
+  private static long readVariable(BitReader in) {
+    switch (in.readOnes(5)) {
+      case 0:
+        return 0;
+      case 1:
+        return in.read(7);
+      case 2:
+        return in.read(12);
+      case 3:
+        return in.read(20);
+      case 4:
+        return in.read(64);
+      default:
+        return EXCEPTION;
+    }
+  }
+
+  /**
+   * Map a signed value to a non-negative one, small magnitudes to small values.
+   *
+   * @param value signed value
+   * @return zigzag encoded value
+   */
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  /**
+   * Undo zigzag encoding.
+   *
+   * @param value zigzag encoded value
+   * @return signed value
+   */
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * A stream of bits written into 64-bit words, most significant bit first.
+   */
+  private static class BitWriter {
+    private long[] words;
+    private int count;
+    private long current;
+    private int used;
+
+    /**
+     * Construct a stream sized for a block of the given number of rows.
+     *
+     * @param rows number of rows
+     */
+    BitWriter(int rows) {
+      this.words = new long[Math.max(8, rows)];
+    }
+
+    /**
+     * Append the lowest bits of a value.
+     *
+     * @param value the value
+     * @param bits  number of bits, 0 to 64
+     */
+    void write(long value, int bits) {
+      if (bits == 0) {
+        return;
+      }
+      if (bits < 64) {
+        value &= (1L << bits) - 1;
+      }
+      int free = 64 - used;
+      if (bits < free) {
+        current |= value << (free - bits);
+        used += bits;
+        return;
+      }
+      int rest = bits - free;
+      current |= value >>> rest;
+      flush();
+      current = rest == 0 ? 0 : value << (64 - rest);
+      used = rest;
+    }
+
+    /**
+     * Move the current word into the written words.
+     */
+    private void flush() {
+      if (count == words.length) {
+        words = Arrays.copyOf(words, count * 2);
+      }
+      words[count++] = current;
+    }
+
+    /**
+     * Get the written bits, padded to whole words.
+     *
+     * @return the bytes
+     */
+    byte[] toByteArray() {
+      if (used > 0) {
+        flush();
+        current = 0;
+        used = 0;
+      }
+      ByteBuffer bytes = ByteBuffer.allocate(8 * count);
+      for (int i = 0; i < count; i++) {
+        bytes.putLong(words[i]);
+      }
+      return bytes.array();
+    }
+  }
+
+  /**
+   * A stream of bits read from 64-bit words of a buffer, most significant bit first.
+   */
+  private static class BitReader {
+    private final ByteBuffer in;
+    private int position;
+    private long word;
+    private int available;
+
+    /**
+     * Construct a stream reading from the given offset.
+     *
+     * @param in     the buffer
+     * @param offset byte offset of the first word
+     */
+    BitReader(ByteBuffer in, int offset) {
+      this.in = in;
+      this.position = offset;
+    }
+
+    /**
+     * Read bits.
+     *
+     * @param bits number of bits, 0 to 64
+     * @return the bits as the lowest bits of a value
+     */
+    long read(int bits) {
+      if (bits == 0) {
+        return 0;
+      }
+      if (bits <= available) {
+        long value = word >>> (64 - bits);
+        word = bits == 64 ? 0 : word << bits;
+        available -= bits;
+        return value;
+      }
+      int rest = bits - available;
+      long high = available == 0 ? 0 : word >>> (64 - available);
+      word = in.getLong(position);
+      position += 8;
+      long value = (rest == 64 ? 0 : high << rest) | (word >>> (64 - rest));
+      word = rest == 64 ? 0 : word << rest;
+      available = 64 - rest;
+      return value;
+    }
+
+    /**
+     * Read a prefix of 1 bits ended by a 0 bit, or by reaching the given number of 1 bits.
+     *
+     * @param max most 1 bits to read
+     * @return number of 1 bits read
+     */
+    int readOnes(int max) {
+      if (available > max) {
+        // the prefix lies in the current word, count it at once
+        int ones = Math.min(Long.numberOfLeadingZeros(~word), max);
+        int length = ones < max ? ones + 1 : max;
+        word <<= length;
+        available -= length;
+        return ones;
+      }
+      int ones = 0;
+      while (ones < max && read(1) == 1) {
+        ones++;
+      }
+      return ones;
+    }
+  }
+}
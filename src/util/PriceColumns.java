@@ -0,0 +1,248 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class represents daily price rows held as growable primitive columns: a date column
+ * (YYYYMMDD integers) and the open, high, low and close columns. Rows are appended in any order
+ * and can be sorted by date afterwards, so a parser can fill the columns without creating an
+ * object per row. The columns can be cleared and filled again without allocating.
+ */
+public class PriceColumns {
+  private int[] dates;
+  private double[] open;
+  private double[] high;
+  private double[] low;
+  private double[] close;
+  private int size;
+
+  /**
+   * Construct empty price columns.
+   */
+  public PriceColumns() {
+    this(256);
+  }
+
+  /**
+   * Construct empty price columns.
+   *
+   * @param capacity expected number of rows
+   */
+  public PriceColumns(int capacity) {
+    capacity = Math.max(capacity, 8);
+    this.dates = new int[capacity];
+    this.open = new double[capacity];
+    this.high = new double[capacity];
+    this.low = new double[capacity];
+    this.close = new double[capacity];
+  }
+
+  /**
+   * Append a row.
+   *
+   * @param date  date in YYYYMMDD notation
+   * @param open  open price
+   * @param high  highest price of the day
+   * @param low   lowest price of the day
+   * @param close close price
+   */
+  public void add(int date, double open, double high, double low, double close) {
+    if (size == dates.length) {
+      int capacity = size * 2;
+      this.dates = Arrays.copyOf(this.dates, capacity);
+      this.open = Arrays.copyOf(this.open, capacity);
+      this.high = Arrays.copyOf(this.high, capacity);
+      this.low = Arrays.copyOf(this.low, capacity);
+      this.close = Arrays.copyOf(this.close, capacity);
+    }
+    this.dates[size] = date;
+    this.open[size] = open;
+    this.high[size] = high;
+    this.low[size] = low;
+    this.close[size] = close;
+    size++;
+  }
+
+  /**
+   * Remove all rows, keeping the allocated columns.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Get the number of rows.
+   *
+   * @return number of rows
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Get the date of a row.
+   *
+   * @param i row index
+   * @return date in YYYYMMDD notation
+   */
+  public int dateAt(int i) {
+    return dates[i];
+  }
+
+  /**
+   * Get the open price of a row.
+   *
+   * @param i row index
+   * @return open price
+   */
+  public double openAt(int i) {
+    return open[i];
+  }
+
+  /**
+   * Get the highest price of a row.
+   *
+   * @param i row index
+   * @return highest price of the day
+   */
+  public double highAt(int i) {
+    return high[i];
+  }
+
+  /**
+   * Get the lowest price of a row.
+   *
+   * @param i row index
+   * @return lowest price of the day
+   */
+  public double lowAt(int i) {
+    return low[i];
+  }
+
+  /**
+   * Get the close price of a row.
+   *
+   * @param i row index
+   * @return close price
+   */
+  public double closeAt(int i) {
+    return close[i];
+  }
+
+  /**
+   * Sort the rows by ascending date, keeping only the last appended row of a date.
+   * Rows already ascending are left alone and rows in descending order, as most price sources
+   * list them, are reversed in place; any other order is sorted.
+   */
+  public void sortByDate() {
+    boolean ascending = true;
+    boolean descending = true;
+    for (int i = 1; i < size && (ascending || descending); i++) {
+      ascending &= dates[i - 1] < dates[i];
+      descending &= dates[i - 1] > dates[i];
+    }
+    if (ascending) {
+      return;
+    }
+    if (descending) {
+      for (int i = 0, j = size - 1; i < j; i++, j--) {
+        swap(i, j);
+      }
+      return;
+    }
+    // sort row indexes by date, the stable sort keeps rows of one date in appended order
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Integer.compare(dates[a], dates[b]));
+    int[] sortedDates = new int[dates.length];
+    double[][] sorted = new double[4][dates.length];
+    double[][] columns = {open, high, low, close};
+    int n = 0;
+    for (int k = 0; k < size; k++) {
+      int i = order[k];
+      if (n > 0 && sortedDates[n - 1] == dates[i]) {
+        n--;
+      }
+      sortedDates[n] = dates[i];
+      for (int c = 0; c < 4; c++) {
+        sorted[c][n] = columns[c][i];
+      }
+      n++;
+    }
+    dates = sortedDates;
+    open = sorted[0];
+    high = sorted[1];
+    low = sorted[2];
+    close = sorted[3];
+    size = n;
+  }
+
+  /**
+   * Swap two rows.
+   *
+   * @param i row index
+   * @param j row index
+   */
+  private void swap(int i, int j) {
+    int date = dates[i];
+    dates[i] = dates[j];
+    dates[j] = date;
+    swap(open, i, j);
+    swap(high, i, j);
+    swap(low, i, j);
+    swap(close, i, j);
+  }
+
+  /**
+   * Swap two values of a column.
+   *
+   * @param column the column
+   * @param i      row index
+   * @param j      row index
+   */
+  private static void swap(double[] column, int i, int j) {
+    double value = column[i];
+    column[i] = column[j];
+    column[j] = value;
+  }
+
+  /**
+   * Get the rows as a map.
+   *
+   * @return map with date as key and price record as value
+   */
+  public Map<Integer, PriceRecord> toMap() {
+    Map<Integer, PriceRecord> prices = new TreeMap<>();
+    for (int i = 0; i < size; i++) {
+      prices.put(dates[i], new PriceRecord(open[i], close[i], low[i], high[i]));
+    }
+    return prices;
+  }
+
+  /**
+   * Write the rows into a price store file. The rows must be sorted by date.
+   *
+   * @param file the target file
+   * @param name the stock name
+   * @throws IOException when the file cannot be written
+   */
+  public void writeTo(Path file, String name) throws IOException {
+    PriceStoreFile.write(file, name, dates, open, high, low, close, size);
+  }
+
+  /**
+   * Append these rows after the last row of a price store file.
+   *
+   * @param file the price store file
+   * @throws IOException when the file cannot be read or written
+   */
+  public void appendTo(Path file) throws IOException {
+    PriceStoreFile.append(file, dates, open, high, low, close, size);
+  }
+}
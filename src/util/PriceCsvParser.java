@@ -0,0 +1,571 @@
+package util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * This class represents a streaming parser of daily price CSV data, such as a historical price
+ * response or a bulk dump. The first line is a header naming the Date, Open, High, Low and Close
+ * columns in any order, and optionally a Symbol or Ticker column when the data holds several
+ * stocks; other columns are ignored. Dates are read as d-MMM-yy, d-MMM-yyyy, yyyy-MM-dd or
+ * yyyyMMdd.
+ * The parser reads bytes straight from the stream into a reusable buffer, and parses dates and
+ * decimals in place into price columns, so no object is created per row. A parser is not safe
+ * for use by several threads at once, but can parse any number of streams one after another.
+ */
+public class PriceCsvParser {
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+  // the first three letters of each month name in lower case, packed into an int
+  private static final int[] MONTHS = new int[12];
+  // exact powers of ten a decimal of at most 15 significant digits may be divided by
+  private static final double[] POWERS_OF_TEN = new double[23];
+
+  // column roles
+  private static final int NONE = 0;
+  private static final int DATE = 1;
+  private static final int OPEN = 2;
+  private static final int HIGH = 3;
+  private static final int LOW = 4;
+  private static final int CLOSE = 5;
+  private static final int SYMBOL = 6;
+
+  static {
+    String[] names = {"jan", "feb", "mar", "apr", "may", "jun",
+                      "jul", "aug", "sep", "oct", "nov", "dec"};
+    for (int i = 0; i < 12; i++) {
+      MONTHS[i] = names[i].charAt(0) << 16 | names[i].charAt(1) << 8 | names[i].charAt(2);
+    }
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private final int currentYear;
+  private byte[] buffer;
+  private int[] roles;
+  private int line;
+  private int rows;
+  private boolean lenient;
+  private int skipped;
+  // where rows go: one set of columns, or the columns of each symbol
+  private PriceColumns target;
+  private Map<String, PriceColumns> bySymbol;
+  private String defaultSymbol;
+  // symbol of the previous row, so a symbol string is only created when the symbol changes
+  private byte[] lastSymbol = new byte[16];
+  private int lastSymbolLength = -1;
+  private PriceColumns lastColumns;
+
+  /**
+   * Construct a parser with the default buffer size.
+   */
+  public PriceCsvParser() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Construct a parser. The buffer grows when a line does not fit in it.
+   *
+   * @param bufferSize initial size of the read buffer in bytes
+   */
+  public PriceCsvParser(int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.buffer = new byte[bufferSize];
+    this.currentYear = LocalDate.now().getYear();
+  }
+
+  /**
+   * Set whether rows whose date or prices cannot be parsed are skipped instead of failing the
+   * parse, as wanted for bulk imports where a few bad rows must not lose a whole file.
+   *
+   * @param lenient true to skip bad rows
+   */
+  public void setLenient(boolean lenient) {
+    this.lenient = lenient;
+  }
+
+  /**
+   * Get the number of bad rows skipped by the last parse.
+   *
+   * @return number of skipped rows
+   */
+  public int getSkippedRows() {
+    return skipped;
+  }
+
+  /**
+   * Parse a stream into new price columns. The rows keep the order of the stream.
+   *
+   * @param in the stream, which is read to its end but not closed
+   * @return the price columns
+   * @throws IOException when the stream cannot be read
+   */
+  public PriceColumns parse(InputStream in) throws IOException {
+    PriceColumns columns = new PriceColumns();
+    parse(in, columns);
+    return columns;
+  }
+
+  /**
+   * Parse a stream, appending its rows to the given price columns in the order of the stream.
+   * An empty stream has no rows.
+   *
+   * @param in      the stream, which is read to its end but not closed
+   * @param columns the price columns
+   * @return number of rows appended
+   * @throws IOException              when the stream cannot be read
+   * @throws IllegalArgumentException when the header does not name the price columns
+   * @throws NumberFormatException    when a date or a price cannot be parsed
+   */
+  public int parse(InputStream in, PriceColumns columns) throws IOException {
+    target = columns;
+    bySymbol = null;
+    return run(in);
+  }
+
+  /**
+   * Parse a stream holding one or more stocks, appending the rows of each stock to its price
+   * columns, which are created when missing. Rows go by the Symbol or Ticker column, or to the
+   * given default symbol when the data has no such column.
+   *
+   * @param in            the stream, which is read to its end but not closed
+   * @param bySymbol      map with stock symbol as key and its price columns as value
+   * @param defaultSymbol symbol of the rows when the data has no symbol column
+   * @return number of rows appended
+   * @throws IOException              when the stream cannot be read
+   * @throws IllegalArgumentException when the header does not name the price columns
+   * @throws NumberFormatException    when a date or a price cannot be parsed
+   */
+  public int parse(InputStream in, Map<String, PriceColumns> bySymbol, String defaultSymbol)
+          throws IOException {
+    this.target = null;
+    this.bySymbol = bySymbol;
+    this.defaultSymbol = defaultSymbol;
+    return run(in);
+  }
+
+  /**
+   * Parse a stream line by line.
+   *
+   * @param in the stream
+   * @return number of rows appended
+   * @throws IOException when the stream cannot be read
+   */
+  private int run(InputStream in) throws IOException {
+    roles = null;
+    line = 0;
+    rows = 0;
+    skipped = 0;
+    lastSymbolLength = -1;
+    lastColumns = null;
+    int start = 0;
+    int end = 0;
+    int scan = 0;
+    boolean eof = false;
+    while (true) {
+      while (scan < end && buffer[scan] != '\n') {
+        scan++;
+      }
+      if (scan < end) {
+        parseLine(start, scan);
+        start = ++scan;
+        continue;
+      }
+      if (eof) {
+        if (start < end) {
+          parseLine(start, end);
+        }
+        return rows;
+      }
+      // keep the unfinished line at the start of the buffer, growing it for long lines
+      if (start > 0) {
+        System.arraycopy(buffer, start, buffer, 0, end - start);
+        end -= start;
+        scan -= start;
+        start = 0;
+      } else if (end == buffer.length) {
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      int n = in.read(buffer, end, buffer.length - end);
+      if (n < 0) {
+        eof = true;
+      } else {
+        end += n;
+      }
+    }
+  }
+
+  /**
+   * Parse one line, the header if none has been read yet.
+   *
+   * @param from index of the first byte of the line
+   * @param to   index after the last byte of the line, without the line break
+   */
+  private void parseLine(int from, int to) {
+    line++;
+    if (to > from && buffer[to - 1] == '\r') {
+      to--;
+    }
+    if (from == to) {
+      return;
+    }
+    if (roles == null) {
+      parseHeader(from, to);
+      return;
+    }
+    if (!lenient) {
+      parseRow(from, to);
+      return;
+    }
+    try {
+      parseRow(from, to);
+    } catch (NumberFormatException e) {
+      skipped++;
+    }
+  }
+
+  /**
+   * Parse one row and append it to its price columns.
+   *
+   * @param from index of the first byte of the row
+   * @param to   index after the last byte of the row
+   */
+  private void parseRow(int from, int to) {
+    int date = 0;
+    double open = Double.NaN;
+    double high = Double.NaN;
+    double low = Double.NaN;
+    double close = Double.NaN;
+    int symbolFrom = -1;
+    int symbolTo = -1;
+    int found = 0;
+    int column = 0;
+    int fieldStart = from;
+    for (int i = from; i <= to && column < roles.length; i++) {
+      if (i < to && buffer[i] != ',') {
+        continue;
+      }
+      switch (roles[column]) {
+        case DATE:
+          date = parseDate(fieldStart, i);
+          break;
+        case OPEN:
+          open = parseDecimal(fieldStart, i);
+          break;
+        case HIGH:
+          high = parseDecimal(fieldStart, i);
+          break;
+        case LOW:
+          low = parseDecimal(fieldStart, i);
+          break;
+        case CLOSE:
+          close = parseDecimal(fieldStart, i);
+          break;
+        case SYMBOL:
+          symbolFrom = fieldStart;
+          symbolTo = i;
+          break;
+        default:
+          break;
+      }
+      if (roles[column] != NONE && roles[column] != SYMBOL) {
+        found++;
+      }
+      column++;
+      fieldStart = i + 1;
+    }
+    if (found < CLOSE) {
+      throw new NumberFormatException("missing price at line " + line);
+    }
+    columnsOf(symbolFrom, symbolTo).add(date, open, high, low, close);
+    rows++;
+  }
+
+  /**
+   * Get the price columns a row goes to.
+   *
+   * @param from index of the first byte of the row's symbol, or -1 if it has none
+   * @param to   index after the last byte of the row's symbol
+   * @return the price columns
+   */
+  private PriceColumns columnsOf(int from, int to) {
+    if (target != null) {
+      return target;
+    }
+    if (from < 0) {
+      if (lastColumns == null) {
+        lastColumns = bySymbol.computeIfAbsent(defaultSymbol, k -> new PriceColumns());
+      }
+      return lastColumns;
+    }
+    int length = to - from;
+    if (length == lastSymbolLength
+            && Arrays.equals(buffer, from, to, lastSymbol, 0, length)) {
+      return lastColumns;
+    }
+    if (length == 0) {
+      throw new NumberFormatException("missing symbol at line " + line);
+    }
+    if (length > lastSymbol.length) {
+      lastSymbol = new byte[length];
+    }
+    System.arraycopy(buffer, from, lastSymbol, 0, length);
+    lastSymbolLength = length;
+    String symbol = new String(buffer, from, length, StandardCharsets.UTF_8);
+    lastColumns = bySymbol.computeIfAbsent(symbol, k -> new PriceColumns());
+    return lastColumns;
+  }
+
+  /**
+   * Read the role of each column from the header line.
+   *
+   * @param from index of the first byte of the line
+   * @param to   index after the last byte of the line
+   */
+  private void parseHeader(int from, int to) {
+    String header = new String(buffer, from, to - from, StandardCharsets.UTF_8);
+    if (header.startsWith("\uFEFF")) {
+      header = header.substring(1);
+    }
+    String[] names = header.split(",");
+    int[] found = new int[names.length];
+    int last = -1;
+    int count = 0;
+    for (int i = 0; i < names.length; i++) {
+      int role = roleOf(names[i].trim().toLowerCase());
+      for (int j = 0; j < i && role != NONE; j++) {
+        if (found[j] == role) {
+          role = NONE;
+        }
+      }
+      found[i] = role;
+      if (role != NONE) {
+        last = i;
+        count += role == SYMBOL ? 0 : 1;
+      }
+    }
+    if (count < CLOSE) {
+      throw new IllegalArgumentException("invalid price data");
+    }
+    roles = Arrays.copyOf(found, last + 1);
+  }
+
+  /**
+   * Get the role of a column from its name.
+   *
+   * @param name column name in lower case
+   * @return the role
+   */
+  private static int roleOf(String name) {
+    switch (name) {
+      case "date":
+        return DATE;
+      case "open":
+        return OPEN;
+      case "high":
+        return HIGH;
+      case "low":
+        return LOW;
+      case "close":
+        return CLOSE;
+      case "symbol":
+      case "ticker":
+        return SYMBOL;
+      default:
+        return NONE;
+    }
+  }
+
+  /**
+   * Parse a date field.
+   *
+   * @param from index of the first byte of the field
+   * @param to   index after the last byte of the field
+   * @return date in YYYYMMDD notation
+   */
+  private int parseDate(int from, int to) {
+    int firstDash = indexOf('-', from, to);
+    int secondDash = firstDash < 0 ? -1 : indexOf('-', firstDash + 1, to);
+    int year;
+    int month;
+    int day;
+    if (firstDash < 0) {
+      // yyyyMMdd
+      if (to - from != 8) {
+        throw invalidDate();
+      }
+      year = parseInt(from, from + 4);
+      month = parseInt(from + 4, from + 6);
+      day = parseInt(from + 6, to);
+    } else if (secondDash < 0) {
+      throw invalidDate();
+    } else if (isLetter(buffer[firstDash + 1])) {
+      // d-MMM-yy or d-MMM-yyyy
+      day = parseInt(from, firstDash);
+      month = parseMonth(firstDash + 1, secondDash);
+      year = parseInt(secondDash + 1, to);
+      if (to - secondDash - 1 == 2) {
+        year += year <= currentYear % 100 ? currentYear / 100 * 100
+                : (currentYear / 100 - 1) * 100;
+      }
+    } else {
+      // yyyy-MM-dd
+      year = parseInt(from, firstDash);
+      month = parseInt(firstDash + 1, secondDash);
+      day = parseInt(secondDash + 1, to);
+    }
+    if (month < 1 || month > 12 || day < 1 || day > 31) {
+      throw invalidDate();
+    }
+    return (year * 100 + month) * 100 + day;
+  }
+
+  /**
+   * Parse a month name of which only the first three letters count, in any case.
+   *
+   * @param from index of the first byte of the name
+   * @param to   index after the last byte of the name
+   * @return month from 1 to 12
+   */
+  private int parseMonth(int from, int to) {
+    if (to - from >= 3) {
+      int packed = (buffer[from] | 0x20) << 16 | (buffer[from + 1] | 0x20) << 8
+              | (buffer[from + 2] | 0x20);
+      for (int i = 0; i < 12; i++) {
+        if (MONTHS[i] == packed) {
+          return i + 1;
+        }
+      }
+    }
+    throw invalidDate();
+  }
+
+  /**
+   * Parse a non-negative integer field.
+   *
+   * @param from index of the first byte of the field
+   * @param to   index after the last byte of the field
+   * @return the integer
+   */
+  private int parseInt(int from, int to) {
+    if (from == to || to - from > 9) {
+      throw invalidDate();
+    }
+    int value = 0;
+    for (int i = from; i < to; i++) {
+      int digit = buffer[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw invalidDate();
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Parse a decimal field. A plain decimal of at most 15 significant digits is parsed in place
+   * by dividing its digits by a power of ten, which gives the same double as
+   * Double.parseDouble; longer digit strings and exponents fall back to Double.parseDouble.
+   *
+   * @param from index of the first byte of the field
+   * @param to   index after the last byte of the field
+   * @return the value
+   */
+  private double parseDecimal(int from, int to) {
+    int i = from;
+    boolean negative = false;
+    if (i < to && (buffer[i] == '-' || buffer[i] == '+')) {
+      negative = buffer[i] == '-';
+      i++;
+    }
+    long digits = 0;
+    int significant = 0;
+    int scale = 0;
+    boolean point = false;
+    boolean any = false;
+    for (; i < to; i++) {
+      byte b = buffer[i];
+      if (b >= '0' && b <= '9') {
+        any = true;
+        if (significant > 0 || b != '0') {
+          significant++;
+        }
+        digits = digits * 10 + (b - '0');
+        if (point) {
+          scale++;
+        }
+      } else if (b == '.' && !point) {
+        point = true;
+      } else {
+        return parseSlow(from, to);
+      }
+    }
+    if (!any) {
+      throw new NumberFormatException("invalid price at line " + line);
+    }
+    if (significant > 15 || scale >= POWERS_OF_TEN.length) {
+      return parseSlow(from, to);
+    }
+    double value = scale == 0 ? digits : digits / POWERS_OF_TEN[scale];
+    return negative ? -value : value;
+  }
+
+  /**
+   * Parse a decimal field with Double.parseDouble.
+   *
+   * @param from index of the first byte of the field
+   * @param to   index after the last byte of the field
+   * @return the value
+   */
+  private double parseSlow(int from, int to) {
+    try {
+      return Double.parseDouble(new String(buffer, from, to - from, StandardCharsets.US_ASCII));
+    } catch (NumberFormatException e) {
+      throw new NumberFormatException("invalid price at line " + line);
+    }
+  }
+
+  /**
+   * Find a byte in a range of the buffer.
+   *
+   * @param b    the byte
+   * @param from index to start from
+   * @param to   index to stop at
+   * @return index of the byte, or -1 if not found
+   */
+  private int indexOf(char b, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Check whether a byte is an ASCII letter.
+   *
+   * @param b the byte
+   * @return true if it is a letter
+   */
+  private static boolean isLetter(byte b) {
+    int c = b | 0x20;
+    return c >= 'a' && c <= 'z';
+  }
+
+  /**
+   * Create the exception thrown for a date that cannot be parsed.
+   *
+   * @return the exception
+   */
+  private NumberFormatException invalidDate() {
+    return new NumberFormatException("invalid date at line " + line);
+  }
+}
@@ -0,0 +1,320 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * This class represents an immutable time series of prices, sorted by date.
+ * Dates (YYYYMMDD) and values are kept in parallel primitive arrays, so looking up a date is a
+ * binary search and slicing a date range shares the arrays instead of copying them.
+ */
+public final class PriceSeries {
+  public static final PriceSeries EMPTY = new PriceSeries(new int[0], new double[0], 0, 0);
+
+  private final int[] dates;
+  private final double[] values;
+  private final int offset;
+  private final int length;
+
+  /**
+   * Construct a price series on top of the given arrays without copying them.
+   *
+   * @param dates  date array, ascending
+   * @param values value array
+   * @param offset index of the first element of this series in the arrays
+   * @param length number of elements in this series
+   */
+  private PriceSeries(int[] dates, double[] values, int offset, int length) {
+    this.dates = dates;
+    this.values = values;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Construct a price series from parallel date and value arrays.
+   * The arrays are copied, and dates must be ascending without duplicates.
+   *
+   * @param dates  dates in YYYYMMDD notation
+   * @param values value on each date
+   * @return the price series
+   */
+  public static PriceSeries of(int[] dates, double[] values) {
+    if (dates.length != values.length) {
+      throw new IllegalArgumentException("dates and values must have the same length");
+    }
+    for (int i = 1; i < dates.length; i++) {
+      if (dates[i] <= dates[i - 1]) {
+        throw new IllegalArgumentException("dates must be ascending");
+      }
+    }
+    return new PriceSeries(dates.clone(), values.clone(), 0, dates.length);
+  }
+
+  /**
+   * Construct a price series from a map with date as key and price as value.
+   *
+   * @param map map with date (YYYYMMDD) as key and price as value
+   * @return the price series
+   */
+  public static PriceSeries fromMap(Map<Integer, Double> map) {
+    int n = map.size();
+    int[] dates = new int[n];
+    double[] values = new double[n];
+    int i = 0;
+    if (map instanceof SortedMap && ((SortedMap<Integer, Double>) map).comparator() == null) {
+      for (Map.Entry<Integer, Double> e : map.entrySet()) {
+        dates[i] = e.getKey();
+        values[i++] = e.getValue();
+      }
+      return new PriceSeries(dates, values, 0, n);
+    }
+    for (int date : map.keySet()) {
+      dates[i++] = date;
+    }
+    Arrays.sort(dates);
+    for (i = 0; i < n; i++) {
+      values[i] = map.get(dates[i]);
+    }
+    return new PriceSeries(dates, values, 0, n);
+  }
+
+  /**
+   * Construct a series of closing prices from a map of price records.
+   *
+   * @param prices map with date (YYYYMMDD) as key and price record as value
+   * @return the closing price series
+   */
+  public static PriceSeries closingOf(Map<Integer, PriceRecord> prices) {
+    int n = prices.size();
+    int[] dates = new int[n];
+    double[] values = new double[n];
+    int i = 0;
+    if (prices instanceof SortedMap
+            && ((SortedMap<Integer, PriceRecord>) prices).comparator() == null) {
+      for (Map.Entry<Integer, PriceRecord> e : prices.entrySet()) {
+        dates[i] = e.getKey();
+        values[i++] = e.getValue().getClosePrice();
+      }
+      return new PriceSeries(dates, values, 0, n);
+    }
+    for (int date : prices.keySet()) {
+      dates[i++] = date;
+    }
+    Arrays.sort(dates);
+    for (i = 0; i < n; i++) {
+      values[i] = prices.get(dates[i]).getClosePrice();
+    }
+    return new PriceSeries(dates, values, 0, n);
+  }
+
+  /**
+   * Get the number of dates in this series.
+   *
+   * @return size of this series
+   */
+  public int size() {
+    return length;
+  }
+
+  /**
+   * Check whether this series holds no date.
+   *
+   * @return true if this series is empty
+   */
+  public boolean isEmpty() {
+    return length == 0;
+  }
+
+  /**
+   * Get the date at the given index.
+   *
+   * @param i index in this series
+   * @return date in YYYYMMDD notation
+   */
+  public int dateAt(int i) {
+    if (i < 0 || i >= length) {
+      throw new IndexOutOfBoundsException("index " + i + " size " + length);
+    }
+    return dates[offset + i];
+  }
+
+  /**
+   * Get the value at the given index.
+   *
+   * @param i index in this series
+   * @return value at the index
+   */
+  public double valueAt(int i) {
+    if (i < 0 || i >= length) {
+      throw new IndexOutOfBoundsException("index " + i + " size " + length);
+    }
+    return values[offset + i];
+  }
+
+  /**
+   * Binary search this series for the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return index of the date if present, otherwise (-(insertion point) - 1)
+   */
+  public int indexOf(int date) {
+    int found = Arrays.binarySearch(dates, offset, offset + length, date);
+    return found >= 0 ? found - offset : found + offset;
+  }
+
+  /**
+   * Check whether this series has a value on the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return true if the date is in this series
+   */
+  public boolean contains(int date) {
+    return indexOf(date) >= 0;
+  }
+
+  /**
+   * Get the index of the last date on or before the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return index of the last date on or before date, or -1 if there is none
+   */
+  public int floorIndex(int date) {
+    int i = indexOf(date);
+    return i >= 0 ? i : -i - 2;
+  }
+
+  /**
+   * Get the index of the first date on or after the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return index of the first date on or after date, or size() if there is none
+   */
+  public int ceilingIndex(int date) {
+    int i = indexOf(date);
+    return i >= 0 ? i : -i - 1;
+  }
+
+  /**
+   * Get the part of this series between two indexes, sharing the arrays of this series.
+   *
+   * @param fromIndex first index, inclusive
+   * @param toIndex   last index, exclusive
+   * @return the sub series
+   */
+  public PriceSeries subSeries(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > length || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException("range " + fromIndex + " " + toIndex + " size "
+              + length);
+    }
+    return new PriceSeries(dates, values, offset + fromIndex, toIndex - fromIndex);
+  }
+
+  /**
+   * Get the part of this series within a date range, sharing the arrays of this series.
+   *
+   * @param fromDate start of date range, inclusive
+   * @param toDate   end of date range, inclusive
+   * @return the sub series
+   */
+  public PriceSeries slice(int fromDate, int toDate) {
+    int from = ceilingIndex(fromDate);
+    int to = Math.max(from, floorIndex(toDate) + 1);
+    return subSeries(from, to);
+  }
+
+  /**
+   * Add the values of another series, multiplied by a factor, to the values of this series.
+   * The result holds every date of both series, and a date missing in one of them contributes
+   * nothing from that series.
+   *
+   * @param other  the other series
+   * @param factor the factor applied to the values of other
+   * @return a new series with the summed values
+   */
+  public PriceSeries plusScaled(PriceSeries other, double factor) {
+    int[] outDates = new int[length + other.length];
+    double[] outValues = new double[length + other.length];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while (i < length || j < other.length) {
+      int a = i < length ? dates[offset + i] : Integer.MAX_VALUE;
+      int b = j < other.length ? other.dates[other.offset + j] : Integer.MAX_VALUE;
+      if (a < b) {
+        outDates[n] = a;
+        outValues[n++] = values[offset + i++];
+      } else if (b < a) {
+        outDates[n] = b;
+        outValues[n++] = other.values[other.offset + j++] * factor;
+      } else {
+        outDates[n] = a;
+        outValues[n++] = values[offset + i++] + other.values[other.offset + j++] * factor;
+      }
+    }
+    return new PriceSeries(outDates, outValues, 0, n);
+  }
+
+  /**
+   * Copy this series into a sorted map with date as key and value as value.
+   *
+   * @return the map view of this series
+   */
+  public Map<Integer, Double> toMap() {
+    Map<Integer, Double> map = new TreeMap<>();
+    for (int i = offset; i < offset + length; i++) {
+      map.put(dates[i], values[i]);
+    }
+    return map;
+  }
+
+  /**
+   * A builder which appends dates and values in ascending date order.
+   */
+  public static class Builder {
+    private int[] dates;
+    private double[] values;
+    private int size;
+
+    /**
+     * Construct a builder.
+     *
+     * @param capacity expected number of dates
+     */
+    public Builder(int capacity) {
+      this.dates = new int[Math.max(capacity, 8)];
+      this.values = new double[dates.length];
+    }
+
+    /**
+     * Append a value on a date after every date appended so far.
+     *
+     * @param date  date in YYYYMMDD notation
+     * @param value value on that date
+     * @return this builder
+     */
+    public Builder add(int date, double value) {
+      if (size > 0 && date <= dates[size - 1]) {
+        throw new IllegalArgumentException("dates must be ascending");
+      }
+      if (size == dates.length) {
+        dates = Arrays.copyOf(dates, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      dates[size] = date;
+      values[size++] = value;
+      return this;
+    }
+
+    /**
+     * Build the series. The builder must not be used afterwards.
+     *
+     * @return the price series
+     */
+    public PriceSeries build() {
+      return new PriceSeries(dates, values, 0, size);
+    }
+  }
+}
@@ -0,0 +1,603 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * This class represents the price history of one stock stored as a columnar binary file.
+ * The file holds a date column (YYYYMMDD integers, ascending) and the open, high, low and close
+ * columns, and is memory-mapped when opened so lookups read the columns in place.
+ * Both versions start with magic, version, row count, name length, name (UTF-8) and padding up
+ * to 8 bytes.
+ * Version 1 (uncompressed) continues with dates[count], padding up to 8 bytes, then
+ * open[count], high[count], low[count], close[count].
+ * Version 2 (compressed) continues with block size, block count and for each block its first
+ * date, last date and byte offset, padding up to 8 bytes, then the blocks encoded by the price
+ * block codec. Every block holds block size rows except the last, so a row is found by decoding
+ * one block; the most recently decoded block is kept for the next lookup.
+ */
+public class PriceStoreFile {
+  static final int MAGIC = 0x50525354;
+  static final int VERSION = 1;
+  static final int COMPRESSED_VERSION = 2;
+  static final int BLOCK_SIZE = 256;
+
+  private final MappedByteBuffer buffer;
+  private final String name;
+  private final int version;
+  private final int count;
+  private final int datesOffset;
+  private final int openOffset;
+  private final int highOffset;
+  private final int lowOffset;
+  private final int closeOffset;
+  private final int blockSize;
+  private final int blockCount;
+  private final int indexOffset;
+  private volatile Block cached;
+
+  /**
+   * One decoded block of a compressed file.
+   */
+  private static class Block {
+    private final int index;
+    private final int[] dates;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+
+    /**
+     * Construct an empty block.
+     *
+     * @param index block index
+     * @param rows  number of rows
+     */
+    private Block(int index, int rows) {
+      this.index = index;
+      this.dates = new int[rows];
+      this.open = new double[rows];
+      this.high = new double[rows];
+      this.low = new double[rows];
+      this.close = new double[rows];
+    }
+  }
+
+  /**
+   * Construct a price store file object on top of a mapped buffer.
+   *
+   * @param buffer the mapped file content
+   */
+  private PriceStoreFile(MappedByteBuffer buffer) {
+    if (buffer.capacity() < 16 || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("not a price store file");
+    }
+    this.version = buffer.getInt(4);
+    if (version != VERSION && version != COMPRESSED_VERSION) {
+      throw new IllegalArgumentException("unsupported price store version");
+    }
+    this.buffer = buffer;
+    this.count = buffer.getInt(8);
+    int nameLength = buffer.getInt(12);
+    byte[] nameBytes = new byte[nameLength];
+    for (int i = 0; i < nameLength; i++) {
+      nameBytes[i] = buffer.get(16 + i);
+    }
+    this.name = new String(nameBytes, StandardCharsets.UTF_8);
+    int dataOffset = align(16 + nameLength);
+    if (version == VERSION) {
+      this.datesOffset = dataOffset;
+      this.openOffset = align(datesOffset + 4 * count);
+      this.highOffset = openOffset + 8 * count;
+      this.lowOffset = highOffset + 8 * count;
+      this.closeOffset = lowOffset + 8 * count;
+      this.blockSize = BLOCK_SIZE;
+      this.blockCount = (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      this.indexOffset = 0;
+    } else {
+      this.datesOffset = 0;
+      this.openOffset = 0;
+      this.highOffset = 0;
+      this.lowOffset = 0;
+      this.closeOffset = 0;
+      this.blockSize = buffer.getInt(dataOffset);
+      this.blockCount = buffer.getInt(dataOffset + 4);
+      this.indexOffset = dataOffset + 8;
+    }
+  }
+
+  /**
+   * Memory-map an existing price store file.
+   *
+   * @param file the file to open
+   * @return the opened price store file
+   * @throws IOException when the file cannot be read
+   */
+  public static PriceStoreFile open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return new PriceStoreFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Write the given price records into a price store file.
+   * The file is written next to the target and moved into place, so readers never see a
+   * partially written file.
+   *
+   * @param file   the target file
+   * @param name   the stock name
+   * @param prices map with date (YYYYMMDD) as key and price record as value
+   * @throws IOException when the file cannot be written
+   */
+  public static void write(Path file, String name, Map<Integer, PriceRecord> prices)
+          throws IOException {
+    int n = prices.size();
+    int[] dates = new int[n];
+    double[] open = new double[n];
+    double[] high = new double[n];
+    double[] low = new double[n];
+    double[] close = new double[n];
+    int i = 0;
+    for (Map.Entry<Integer, PriceRecord> e : new TreeMap<>(prices).entrySet()) {
+      dates[i] = e.getKey();
+      open[i] = e.getValue().getOpenPrice();
+      high[i] = e.getValue().getHighestDayPrice();
+      low[i] = e.getValue().getLowestDayPrice();
+      close[i] = e.getValue().getClosePrice();
+      i++;
+    }
+    write(file, name, dates, open, high, low, close, n);
+  }
+
+  /**
+   * Write the given columns into a compressed price store file.
+   * Dates must be sorted ascending without duplicates.
+   *
+   * @param file  the target file
+   * @param name  the stock name
+   * @param dates date column (YYYYMMDD)
+   * @param open  open price column
+   * @param high  highest price column
+   * @param low   lowest price column
+   * @param close close price column
+   * @param n     number of rows to write
+   * @throws IOException when the file cannot be written
+   */
+  public static void write(Path file, String name, int[] dates, double[] open, double[] high,
+                           double[] low, double[] close, int n) throws IOException {
+    write(file, name, dates, open, high, low, close, n, true);
+  }
+
+  /**
+   * Write the given columns into a price store file.
+   * Dates must be sorted ascending without duplicates.
+   * The file is written next to the target and moved into place, so readers never see a
+   * partially written file.
+   *
+   * @param file       the target file
+   * @param name       the stock name
+   * @param dates      date column (YYYYMMDD)
+   * @param open       open price column
+   * @param high       highest price column
+   * @param low        lowest price column
+   * @param close      close price column
+   * @param n          number of rows to write
+   * @param compressed true for the compressed block format, false for plain columns
+   * @throws IOException when the file cannot be written
+   */
+  public static void write(Path file, String name, int[] dates, double[] open, double[] high,
+                           double[] low, double[] close, int n, boolean compressed)
+          throws IOException {
+    for (int i = 1; i < n; i++) {
+      if (dates[i] <= dates[i - 1]) {
+        throw new IllegalArgumentException("dates must be ascending");
+      }
+    }
+    byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    int dataOffset = align(16 + nameBytes.length);
+    ByteBuffer out;
+    if (compressed) {
+      int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      byte[][] encoded = new byte[blocks][];
+      int blocksOffset = align(dataOffset + 8 + 12 * blocks);
+      int size = blocksOffset;
+      for (int b = 0; b < blocks; b++) {
+        int from = b * BLOCK_SIZE;
+        encoded[b] = PriceBlockCodec.encode(dates, open, high, low, close, from,
+                Math.min(BLOCK_SIZE, n - from));
+        size += encoded[b].length;
+      }
+      out = ByteBuffer.allocate(size);
+      out.putInt(MAGIC).putInt(COMPRESSED_VERSION).putInt(n).putInt(nameBytes.length)
+              .put(nameBytes);
+      out.position(dataOffset);
+      out.putInt(BLOCK_SIZE).putInt(blocks);
+      int offset = blocksOffset;
+      for (int b = 0; b < blocks; b++) {
+        int from = b * BLOCK_SIZE;
+        out.putInt(dates[from]).putInt(dates[Math.min(n, from + BLOCK_SIZE) - 1]).putInt(offset);
+        offset += encoded[b].length;
+      }
+      out.position(blocksOffset);
+      for (byte[] block : encoded) {
+        out.put(block);
+      }
+    } else {
+      int openOffset = align(dataOffset + 4 * n);
+      out = ByteBuffer.allocate(openOffset + 32 * n);
+      out.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(nameBytes.length).put(nameBytes);
+      out.position(dataOffset);
+      for (int i = 0; i < n; i++) {
+        out.putInt(dates[i]);
+      }
+      out.position(openOffset);
+      for (double[] column : new double[][]{open, high, low, close}) {
+        for (int i = 0; i < n; i++) {
+          out.putDouble(column[i]);
+        }
+      }
+    }
+    out.flip();
+    replace(file, out);
+  }
+
+  /**
+   * Append rows after the last row of a price store file. Dates must be sorted ascending
+   * without duplicates, and after the last date of the file.
+   * The complete blocks of a compressed file are copied as they are encoded; only its last
+   * block, when it is not full, is decoded and encoded again together with the new rows, and
+   * the block index is extended. Readers keep the old file mapped, so the result is written next
+   * to the target and moved into place rather than written into the mapped file. Empty and
+   * uncompressed files are written again in full, in the compressed format.
+   *
+   * @param file  the price store file
+   * @param dates date column (YYYYMMDD) of the new rows
+   * @param open  open price column of the new rows
+   * @param high  highest price column of the new rows
+   * @param low   lowest price column of the new rows
+   * @param close close price column of the new rows
+   * @param n     number of rows to append
+   * @throws IOException when the file cannot be read or written
+   */
+  public static void append(Path file, int[] dates, double[] open, double[] high, double[] low,
+                            double[] close, int n) throws IOException {
+    PriceStoreFile stored = open(file);
+    if (n > 0 && stored.count > 0 && dates[0] <= stored.dateAt(stored.count - 1)) {
+      throw new IllegalArgumentException("dates must be ascending");
+    }
+    int bs = stored.blockSize;
+    // complete blocks are kept as they are; the rows of the last open block are encoded again
+    int kept = stored.version == COMPRESSED_VERSION ? stored.count / bs : 0;
+    int from = kept * bs;
+    int rows = stored.count - from + n;
+    int[] restDates = new int[rows];
+    double[] restOpen = new double[rows];
+    double[] restHigh = new double[rows];
+    double[] restLow = new double[rows];
+    double[] restClose = new double[rows];
+    for (int i = from; i < stored.count; i++) {
+      restDates[i - from] = stored.dateAt(i);
+      restOpen[i - from] = stored.openAt(i);
+      restHigh[i - from] = stored.highAt(i);
+      restLow[i - from] = stored.lowAt(i);
+      restClose[i - from] = stored.closeAt(i);
+    }
+    System.arraycopy(dates, 0, restDates, stored.count - from, n);
+    System.arraycopy(open, 0, restOpen, stored.count - from, n);
+    System.arraycopy(high, 0, restHigh, stored.count - from, n);
+    System.arraycopy(low, 0, restLow, stored.count - from, n);
+    System.arraycopy(close, 0, restClose, stored.count - from, n);
+    if (kept == 0) {
+      write(file, stored.name, restDates, restOpen, restHigh, restLow, restClose, rows);
+      return;
+    }
+
+    int added = (rows + bs - 1) / bs;
+    byte[][] encoded = new byte[added][];
+    for (int b = 0; b < added; b++) {
+      encoded[b] = PriceBlockCodec.encode(restDates, restOpen, restHigh, restLow, restClose,
+              b * bs, Math.min(bs, rows - b * bs));
+    }
+    ByteBuffer source = stored.buffer;
+    int keptStart = source.getInt(stored.indexOffset + 8);
+    int keptEnd = kept < stored.blockCount
+            ? source.getInt(stored.indexOffset + 12 * kept + 8) : source.capacity();
+    int blocks = kept + added;
+    int blocksOffset = align(stored.indexOffset + 12 * blocks);
+    int size = blocksOffset + keptEnd - keptStart;
+    for (byte[] block : encoded) {
+      size += block.length;
+    }
+
+    ByteBuffer out = ByteBuffer.allocate(size);
+    ByteBuffer header = source.duplicate();
+    header.position(0).limit(stored.indexOffset);
+    out.put(header);
+    out.putInt(8, stored.count + n);
+    out.putInt(stored.indexOffset - 4, blocks);
+    for (int b = 0; b < kept; b++) {
+      int entry = stored.indexOffset + 12 * b;
+      out.putInt(source.getInt(entry)).putInt(source.getInt(entry + 4))
+              .putInt(source.getInt(entry + 8) - keptStart + blocksOffset);
+    }
+    int offset = blocksOffset + keptEnd - keptStart;
+    for (int b = 0; b < added; b++) {
+      out.putInt(restDates[b * bs]).putInt(restDates[Math.min(rows, (b + 1) * bs) - 1])
+              .putInt(offset);
+      offset += encoded[b].length;
+    }
+    out.position(blocksOffset);
+    ByteBuffer keptBlocks = source.duplicate();
+    keptBlocks.position(keptStart).limit(keptEnd);
+    out.put(keptBlocks);
+    for (byte[] block : encoded) {
+      out.put(block);
+    }
+    out.flip();
+    replace(file, out);
+  }
+
+  /**
+   * Write a file next to the target and move it into place, so readers never see a partially
+   * written file.
+   *
+   * @param file the target file
+   * @param out  the file content
+   * @throws IOException when the file cannot be written
+   */
+  private static void replace(Path file, ByteBuffer out) throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+      channel.force(true);
+    }
+    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Get the stock name stored in this file.
+   *
+   * @return the stock name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Get the number of rows (business days) in this file.
+   *
+   * @return number of rows
+   */
+  public int size() {
+    return count;
+  }
+
+  /**
+   * Get the date (YYYYMMDD) of the given row.
+   *
+   * @param i row index
+   * @return date of the row
+   */
+  public int dateAt(int i) {
+    if (version == VERSION) {
+      return buffer.getInt(datesOffset + 4 * i);
+    }
+    return block(i / blockSize).dates[i % blockSize];
+  }
+
+  /**
+   * Get the open price of the given row.
+   *
+   * @param i row index
+   * @return open price
+   */
+  public double openAt(int i) {
+    if (version == VERSION) {
+      return buffer.getDouble(openOffset + 8 * i);
+    }
+    return block(i / blockSize).open[i % blockSize];
+  }
+
+  /**
+   * Get the highest price of the given row.
+   *
+   * @param i row index
+   * @return highest price
+   */
+  public double highAt(int i) {
+    if (version == VERSION) {
+      return buffer.getDouble(highOffset + 8 * i);
+    }
+    return block(i / blockSize).high[i % blockSize];
+  }
+
+  /**
+   * Get the lowest price of the given row.
+   *
+   * @param i row index
+   * @return lowest price
+   */
+  public double lowAt(int i) {
+    if (version == VERSION) {
+      return buffer.getDouble(lowOffset + 8 * i);
+    }
+    return block(i / blockSize).low[i % blockSize];
+  }
+
+  /**
+   * Get the close price of the given row.
+   *
+   * @param i row index
+   * @return close price
+   */
+  public double closeAt(int i) {
+    if (version == VERSION) {
+      return buffer.getDouble(closeOffset + 8 * i);
+    }
+    return block(i / blockSize).close[i % blockSize];
+  }
+
+  /**
+   * Get the price record of the given row.
+   *
+   * @param i row index
+   * @return price record of the row
+   */
+  public PriceRecord recordAt(int i) {
+    return new PriceRecord(openAt(i), closeAt(i), lowAt(i), highAt(i));
+  }
+
+  /**
+   * Binary search the date column for the first row whose date is not before the given date.
+   * Return size() if every row is before the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return index of the first row on or after date
+   */
+  public int lowerBound(int date) {
+    if (version == COMPRESSED_VERSION) {
+      // find the first block ending on or after date, then search inside it
+      int lo = 0;
+      int hi = blockCount;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (buffer.getInt(indexOffset + 12 * mid + 4) < date) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      if (lo == blockCount) {
+        return count;
+      }
+      Block block = block(lo);
+      int from = lo * blockSize;
+      int i = Arrays.binarySearch(block.dates, 0, rowsOf(lo), date);
+      return from + (i >= 0 ? i : -i - 1);
+    }
+    int lo = 0;
+    int hi = count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (dateAt(mid) < date) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   * Check if this file uses the compressed block format.
+   *
+   * @return true if compressed
+   */
+  public boolean isCompressed() {
+    return version == COMPRESSED_VERSION;
+  }
+
+  /**
+   * Get the number of rows of every block but the last.
+   *
+   * @return rows per block
+   */
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Get the number of blocks.
+   *
+   * @return number of blocks
+   */
+  public int getBlockCount() {
+    return blockCount;
+  }
+
+  /**
+   * Read one block of rows straight into primitive arrays, starting at index 0 of each array.
+   * The arrays must hold at least block size rows.
+   *
+   * @param b     block index
+   * @param dates target date column
+   * @param open  target open price column
+   * @param high  target highest price column
+   * @param low   target lowest price column
+   * @param close target close price column
+   * @return number of rows read
+   */
+  public int readBlock(int b, int[] dates, double[] open, double[] high, double[] low,
+                       double[] close) {
+    if (b < 0 || b >= blockCount) {
+      throw new IndexOutOfBoundsException("invalid block " + b);
+    }
+    int rows = rowsOf(b);
+    if (version == COMPRESSED_VERSION) {
+      PriceBlockCodec.decode(buffer, buffer.getInt(indexOffset + 12 * b + 8), rows, dates, open,
+              high, low, close);
+      return rows;
+    }
+    int from = b * blockSize;
+    for (int i = 0; i < rows; i++) {
+      dates[i] = buffer.getInt(datesOffset + 4 * (from + i));
+      open[i] = buffer.getDouble(openOffset + 8 * (from + i));
+      high[i] = buffer.getDouble(highOffset + 8 * (from + i));
+      low[i] = buffer.getDouble(lowOffset + 8 * (from + i));
+      close[i] = buffer.getDouble(closeOffset + 8 * (from + i));
+    }
+    return rows;
+  }
+
+  /**
+   * Get the number of rows of a block.
+   *
+   * @param b block index
+   * @return number of rows
+   */
+  private int rowsOf(int b) {
+    return Math.min(blockSize, count - b * blockSize);
+  }
+
+  /**
+   * Get a decoded block of a compressed file, decoding it unless it was the last one decoded.
+   *
+   * @param b block index
+   * @return the decoded block
+   */
+  private Block block(int b) {
+    Block block = cached;
+    if (block == null || block.index != b) {
+      if (b < 0 || b >= blockCount) {
+        throw new IndexOutOfBoundsException("invalid row");
+      }
+      block = new Block(b, rowsOf(b));
+      readBlock(b, block.dates, block.open, block.high, block.low, block.close);
+      cached = block;
+    }
+    return block;
+  }
+
+  /**
+   * Round the given offset up to a multiple of 8 bytes.
+   *
+   * @param offset byte offset
+   * @return aligned offset
+   */
+  private static int align(int offset) {
+    return (offset + 7) & ~7;
+  }
+}
@@ -0,0 +1,355 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class represents an offline tool which builds the local price store served by the
+ * mapped stock data retriever from CSV dumps on disk. A dump holds one stock, named by its file
+ * name, or several stocks told apart by a Symbol or Ticker column; gzipped dumps are read too.
+ * Files are parsed in parallel, then the rows of each stock are validated, sorted by date and
+ * written in parallel. Ingestion is incremental: a stock already in the store only gets the
+ * rows dated after its last stored date, and is not rewritten when there are none.
+ */
+public class PriceStoreIngester {
+  private final Path storeDirectory;
+  private final int threads;
+
+  /**
+   * The outcome of an ingestion.
+   */
+  public static class Report {
+    private final int files;
+    private final long parsedRows;
+    private final long rejectedRows;
+    private final long newRows;
+    private final int updatedSymbols;
+    private final long nanos;
+
+    /**
+     * Construct a report.
+     *
+     * @param files          number of files read
+     * @param parsedRows     number of valid rows read
+     * @param rejectedRows   number of rows which could not be parsed or failed validation
+     * @param newRows        number of rows added to the store
+     * @param updatedSymbols number of stocks written to the store
+     * @param nanos          time the ingestion took in nanoseconds
+     */
+    private Report(int files, long parsedRows, long rejectedRows, long newRows,
+                   int updatedSymbols, long nanos) {
+      this.files = files;
+      this.parsedRows = parsedRows;
+      this.rejectedRows = rejectedRows;
+      this.newRows = newRows;
+      this.updatedSymbols = updatedSymbols;
+      this.nanos = nanos;
+    }
+
+    /**
+     * Get the number of files read.
+     *
+     * @return number of files
+     */
+    public int getFiles() {
+      return files;
+    }
+
+    /**
+     * Get the number of valid rows read, including rows already in the store.
+     *
+     * @return number of parsed rows
+     */
+    public long getParsedRows() {
+      return parsedRows;
+    }
+
+    /**
+     * Get the number of rows which could not be parsed or failed validation.
+     *
+     * @return number of rejected rows
+     */
+    public long getRejectedRows() {
+      return rejectedRows;
+    }
+
+    /**
+     * Get the number of rows added to the store.
+     *
+     * @return number of new rows
+     */
+    public long getNewRows() {
+      return newRows;
+    }
+
+    /**
+     * Get the number of stocks written to the store.
+     *
+     * @return number of updated stocks
+     */
+    public int getUpdatedSymbols() {
+      return updatedSymbols;
+    }
+
+    /**
+     * Get the number of rows read per second, valid or not.
+     *
+     * @return rows per second
+     */
+    public double getRowsPerSecond() {
+      return nanos == 0 ? 0 : (parsedRows + rejectedRows) * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ROOT, "files: %d rows: %d rejected: %d new: %d symbols updated:"
+                      + " %d seconds: %.3f rows/s: %.0f", files, parsedRows, rejectedRows,
+              newRows, updatedSymbols, nanos / 1e9, getRowsPerSecond());
+    }
+  }
+
+  /**
+   * Construct an ingester using one thread per core.
+   *
+   * @param storeDirectory directory of the price store
+   */
+  public PriceStoreIngester(Path storeDirectory) {
+    this(storeDirectory, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Construct an ingester.
+   *
+   * @param storeDirectory directory of the price store
+   * @param threads        number of files parsed and stocks written at the same time
+   */
+  public PriceStoreIngester(Path storeDirectory, int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.storeDirectory = storeDirectory;
+    this.threads = threads;
+  }
+
+  /**
+   * Ingest a CSV file, or every .csv and .csv.gz file of a directory.
+   *
+   * @param source the file or directory
+   * @return the report of the ingestion
+   * @throws Exception when a file cannot be read or the store cannot be written
+   */
+  public Report ingest(Path source) throws Exception {
+    long start = System.nanoTime();
+    List<Path> files;
+    if (Files.isDirectory(source)) {
+      try (Stream<Path> list = Files.list(source)) {
+        files = list.filter(p -> Files.isRegularFile(p) && symbolOf(p) != null)
+                .sorted().collect(Collectors.toList());
+      }
+    } else {
+      files = new ArrayList<>();
+      files.add(source);
+    }
+    Files.createDirectories(storeDirectory);
+
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      // parse every file on its own thread
+      List<Future<ParsedFile>> parsing = new ArrayList<>();
+      for (Path file : files) {
+        parsing.add(pool.submit(() -> parse(file)));
+      }
+      long parsedRows = 0;
+      long rejectedRows = 0;
+      // rows of each stock, in file name order so later files win on duplicate dates
+      Map<String, List<PriceColumns>> bySymbol = new TreeMap<>();
+      for (Future<ParsedFile> future : parsing) {
+        ParsedFile parsed = get(future);
+        parsedRows += parsed.rows;
+        rejectedRows += parsed.skipped;
+        for (Map.Entry<String, PriceColumns> e : parsed.bySymbol.entrySet()) {
+          bySymbol.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(e.getValue());
+        }
+      }
+
+      // merge, validate and write every stock on its own thread
+      List<Future<long[]>> writing = new ArrayList<>();
+      for (Map.Entry<String, List<PriceColumns>> e : bySymbol.entrySet()) {
+        Callable<long[]> task = () -> write(e.getKey(), e.getValue());
+        writing.add(pool.submit(task));
+      }
+      long newRows = 0;
+      int updated = 0;
+      for (Future<long[]> future : writing) {
+        long[] counts = get(future);
+        rejectedRows += counts[0];
+        parsedRows -= counts[0];
+        newRows += counts[1];
+        updated += counts[1] > 0 ? 1 : 0;
+      }
+      return new Report(files.size(), parsedRows, rejectedRows, newRows, updated,
+              System.nanoTime() - start);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * The rows of one parsed file.
+   */
+  private static class ParsedFile {
+    private final Map<String, PriceColumns> bySymbol = new HashMap<>();
+    private int rows;
+    private int skipped;
+  }
+
+  /**
+   * Parse one file.
+   *
+   * @param file the file
+   * @return the rows of each stock in the file
+   * @throws IOException when the file cannot be read
+   */
+  private static ParsedFile parse(Path file) throws IOException {
+    PriceCsvParser parser = new PriceCsvParser();
+    parser.setLenient(true);
+    ParsedFile parsed = new ParsedFile();
+    try (InputStream raw = Files.newInputStream(file)) {
+      InputStream in = file.getFileName().toString().toLowerCase().endsWith(".gz")
+              ? new GZIPInputStream(raw, 1 << 16) : new BufferedInputStream(raw, 1 << 16);
+      String symbol = symbolOf(file);
+      parsed.rows = parser.parse(in, parsed.bySymbol,
+              symbol == null ? file.getFileName().toString() : symbol);
+      parsed.skipped = parser.getSkippedRows();
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+    }
+    return parsed;
+  }
+
+  /**
+   * Merge the parsed rows of a stock into the store, keeping only valid rows dated after the
+   * last stored date.
+   *
+   * @param symbol the stock symbol
+   * @param parts  parsed rows of the stock, one part per file
+   * @return number of rejected rows and number of rows added
+   * @throws IOException when the store cannot be read or written
+   */
+  private long[] write(String symbol, List<PriceColumns> parts) throws IOException {
+    int total = 0;
+    for (PriceColumns part : parts) {
+      total += part.size();
+    }
+    PriceColumns rows = new PriceColumns(total);
+    long rejected = 0;
+    for (PriceColumns part : parts) {
+      for (int i = 0; i < part.size(); i++) {
+        if (isValid(part, i)) {
+          rows.add(part.dateAt(i), part.openAt(i), part.highAt(i), part.lowAt(i),
+                  part.closeAt(i));
+        } else {
+          rejected++;
+        }
+      }
+    }
+    rows.sortByDate();
+
+    Path path = storeDirectory.resolve(symbol + MappedStockDataRetriever.SUFFIX);
+    String name = symbol;
+    PriceColumns merged = rows;
+    if (Files.exists(path)) {
+      PriceStoreFile stored = PriceStoreFile.open(path);
+      name = stored.getName();
+      int last = stored.size() == 0 ? 0 : stored.dateAt(stored.size() - 1);
+      merged = new PriceColumns(stored.size() + rows.size());
+      for (int i = 0; i < stored.size(); i++) {
+        merged.add(stored.dateAt(i), stored.openAt(i), stored.highAt(i), stored.lowAt(i),
+                stored.closeAt(i));
+      }
+      for (int i = 0; i < rows.size(); i++) {
+        if (rows.dateAt(i) > last) {
+          merged.add(rows.dateAt(i), rows.openAt(i), rows.highAt(i), rows.lowAt(i),
+                  rows.closeAt(i));
+        }
+      }
+      if (merged.size() == stored.size()) {
+        return new long[]{rejected, 0};
+      }
+      merged.writeTo(path, name);
+      return new long[]{rejected, merged.size() - stored.size()};
+    }
+    if (merged.size() > 0) {
+      merged.writeTo(path, name);
+    }
+    return new long[]{rejected, merged.size()};
+  }
+
+  /**
+   * Check a row: all prices must be positive numbers and the low must not exceed the high.
+   *
+   * @param rows the rows
+   * @param i    row index
+   * @return true if the row is valid
+   */
+  private static boolean isValid(PriceColumns rows, int i) {
+    double open = rows.openAt(i);
+    double high = rows.highAt(i);
+    double low = rows.lowAt(i);
+    double close = rows.closeAt(i);
+    return open > 0 && high > 0 && low > 0 && close > 0 && low <= high
+            && Double.isFinite(open) && Double.isFinite(high) && Double.isFinite(close);
+  }
+
+  /**
+   * Get the stock symbol a file holds when it has no symbol column: its name without the
+   * .csv or .csv.gz extension.
+   *
+   * @param file the file
+   * @return the symbol, or null if the file is not a CSV file
+   */
+  private static String symbolOf(Path file) {
+    String name = file.getFileName().toString();
+    String lower = name.toLowerCase();
+    if (lower.endsWith(".csv")) {
+      return name.substring(0, name.length() - 4);
+    }
+    if (lower.endsWith(".csv.gz")) {
+      return name.substring(0, name.length() - 7);
+    }
+    return null;
+  }
+
+  /**
+   * Wait for a task and rethrow the exception it failed with.
+   *
+   * @param future the task
+   * @param <T>    type of the result
+   * @return the result
+   * @throws Exception the exception the task failed with
+   */
+  private static <T> T get(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    }
+  }
+}
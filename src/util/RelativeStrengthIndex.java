@@ -0,0 +1,81 @@
+package util;
+
+/**
+ * This class represents the X-day relative strength index of closing prices, between 0 and 100.
+ * Average gain and loss are seeded with the simple average of the first X daily changes and then
+ * smoothed with Wilder's method, each new change weighing 1 / X.
+ */
+public class RelativeStrengthIndex implements Indicator {
+  private final int days;
+  private int changes;
+  private double previousClose;
+  private double averageGain;
+  private double averageLoss;
+
+  /**
+   * Construct an X-day relative strength index.
+   *
+   * @param days X business days
+   */
+  public RelativeStrengthIndex(int days) {
+    if (days <= 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.days = days;
+    this.changes = -1;
+  }
+
+  @Override
+  public String[] getOutputNames() {
+    return new String[]{"RSI" + days};
+  }
+
+  @Override
+  public boolean isOscillator() {
+    return true;
+  }
+
+  @Override
+  public int getLookback() {
+    return 3 * days + 1;
+  }
+
+  @Override
+  public void update(double high, double low, double close) {
+    changes++;
+    if (changes > 0) {
+      double change = close - previousClose;
+      double gain = Math.max(change, 0);
+      double loss = Math.max(-change, 0);
+      if (changes <= days) {
+        averageGain += gain / days;
+        averageLoss += loss / days;
+      } else {
+        averageGain = (averageGain * (days - 1) + gain) / days;
+        averageLoss = (averageLoss * (days - 1) + loss) / days;
+      }
+    }
+    previousClose = close;
+  }
+
+  @Override
+  public boolean isReady() {
+    return changes >= days;
+  }
+
+  @Override
+  public double getValue(int output) {
+    if (averageLoss == 0) {
+      return averageGain == 0 ? 50 : 100;
+    }
+    return 100 - 100 / (1 + averageGain / averageLoss);
+  }
+
+  @Override
+  public void reset() {
+    changes = -1;
+    previousClose = 0;
+    averageGain = 0;
+    averageLoss = 0;
+  }
+}
@@ -1,5 +1,7 @@
 package util;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -20,5 +22,37 @@ public interface StockDataRetriever {
           int toMonth,
           int toYear) throws Exception;
 
-
+  /**
+   * Get historical pricing of several stocks for the same date range in one call.
+   * This default fetches one stock after another; retrievers that can pipeline or parallelize
+   * fetches override it.
+   *
+   * @param stockSymbols the stock symbols
+   * @param fromDate     from day of the date
+   * @param fromMonth    from month of the date
+   * @param fromYear     from year of the date
+   * @param toDate       to day from the date
+   * @param toMonth      to month of the date
+   * @param toYear       to year of the date
+   * @return map with stock symbol as key, in the order of the given symbols, and the historical
+   *         price of that stock as value
+   * @throws Exception when cannot retrieve data
+   */
+  default Map<String, Map<Integer, PriceRecord>> getHistoricalPrices(
+          Collection<String> stockSymbols,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear) throws Exception {
+    Map<String, Map<Integer, PriceRecord>> prices = new LinkedHashMap<>();
+    for (String stockSymbol : stockSymbols) {
+      if (!prices.containsKey(stockSymbol)) {
+        prices.put(stockSymbol, getHistoricalPrices(stockSymbol, fromDate, fromMonth, fromYear,
+                toDate, toMonth, toYear));
+      }
+    }
+    return prices;
+  }
 }
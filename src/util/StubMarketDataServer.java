@@ -0,0 +1,409 @@
+package util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class represents a local HTTP server answering the requests of WebStockDataRetriever in
+ * the CSV formats of the web endpoints, with the data of another retriever. Names and current
+ * prices are served on the quote path, one value per response; historical prices on the
+ * history path, as Date,Open,High,Low,Close,Volume rows with d-MMM-yy dates, newest first.
+ * Unknown symbols get "N/A" as name and status 400 for prices. Responses are gzip compressed
+ * when the request accepts it.
+ * The server can imitate a remote endpoint: each response waits a latency with a uniform jitter
+ * around it before its first byte, fails with status 503 at a given rate, and is sent no faster
+ * than a given bandwidth. Those draws come from a seeded generator keyed by the request URL and
+ * by how many times that URL was requested, so a run behaves the same whatever the interleaving
+ * of its requests, and a retried request gets a new draw.
+ */
+public class StubMarketDataServer implements Closeable {
+  public static final String QUOTE_PATH = "/d/quotes.csv";
+  public static final String HISTORY_PATH = "/finance/historical";
+  private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+                                          "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+  static {
+    // the server writes headers and body apart, which without TCP_NODELAY stalls each response
+    // on a delayed acknowledgement
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final StockDataRetriever source;
+  private final HttpServer server;
+  private final ExecutorService pool;
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong compressed = new AtomicLong();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+  private volatile long latencyNanos;
+  private volatile long jitterNanos;
+  private volatile double errorRate;
+  private volatile long bandwidth;
+  private volatile long seed;
+
+  /**
+   * Start a server on a free port of the loopback address.
+   *
+   * @param source  the retriever whose data is served
+   * @param threads number of requests served at the same time
+   * @throws IOException when the server cannot be started
+   */
+  public StubMarketDataServer(StockDataRetriever source, int threads) throws IOException {
+    if (source == null || threads < 1) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.source = source;
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+            256);
+    this.pool = Executors.newFixedThreadPool(threads);
+    server.setExecutor(pool);
+    server.createContext(QUOTE_PATH, exchange -> serve(exchange, this::quote));
+    server.createContext(HISTORY_PATH, exchange -> serve(exchange, this::history));
+    server.start();
+  }
+
+  /**
+   * Get the URL to give WebStockDataRetriever as quote endpoint.
+   *
+   * @return the quote URL
+   */
+  public String getQuoteUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + QUOTE_PATH;
+  }
+
+  /**
+   * Get the URL to give WebStockDataRetriever as history endpoint.
+   *
+   * @return the history URL
+   */
+  public String getHistoryUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + HISTORY_PATH;
+  }
+
+  /**
+   * Get the number of requests served.
+   *
+   * @return number of requests
+   */
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /**
+   * Get the number of responses sent gzip compressed.
+   *
+   * @return number of compressed responses
+   */
+  public long getCompressedCount() {
+    return compressed.get();
+  }
+
+  /**
+   * Get the largest number of requests served at the same time.
+   *
+   * @return the largest number of requests in flight
+   */
+  public int getMaxInFlight() {
+    return maxInFlight.get();
+  }
+
+  /**
+   * Set the time each response waits before its first byte.
+   *
+   * @param latency the mean latency
+   * @param jitter  the largest deviation from the mean, drawn uniformly
+   */
+  public void setLatency(Duration latency, Duration jitter) {
+    if (latency.isNegative() || jitter.isNegative()) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.latencyNanos = latency.toNanos();
+    this.jitterNanos = jitter.toNanos();
+  }
+
+  /**
+   * Set the fraction of requests answered with status 503.
+   *
+   * @param errorRate the fraction, from 0 to 1
+   */
+  public void setErrorRate(double errorRate) {
+    if (!(errorRate >= 0 && errorRate <= 1)) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Set the largest rate each response body is sent at.
+   *
+   * @param bytesPerSecond the rate, or 0 for no limit
+   */
+  public void setBandwidth(long bytesPerSecond) {
+    if (bytesPerSecond < 0) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.bandwidth = bytesPerSecond;
+  }
+
+  /**
+   * Set the seed of the latency and error draws, and start counting requests of each URL anew.
+   *
+   * @param seed the seed
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+    attempts.clear();
+  }
+
+  /**
+   * Get the number of requests answered with status 503.
+   *
+   * @return number of failed requests
+   */
+  public long getErrorCount() {
+    return errors.get();
+  }
+
+  /**
+   * Get the number of response body bytes sent, after compression, counting the bytes being
+   * written.
+   *
+   * @return number of bytes
+   */
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  /**
+   * Stop the server.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+    pool.shutdownNow();
+  }
+
+  /**
+   * The body of the response to a request.
+   */
+  private interface Handler {
+    /**
+     * Answer a request.
+     *
+     * @param query the parameters of the request
+     * @return the response body, or null for status 400
+     * @throws Exception when the data cannot be retrieved
+     */
+    String answer(Map<String, String> query) throws Exception;
+  }
+
+  /**
+   * Serve a request with a handler.
+   *
+   * @param exchange the request
+   * @param handler  the handler
+   * @throws IOException when the response cannot be sent
+   */
+  private void serve(HttpExchange exchange, Handler handler) throws IOException {
+    requests.incrementAndGet();
+    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    try {
+      String key = exchange.getRequestURI().toString();
+      int attempt = attempts.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+      SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L
+              + key.hashCode() * 31L + attempt);
+      long delay = latencyNanos + (jitterNanos == 0 ? 0
+              : random.nextLong(-jitterNanos, jitterNanos + 1));
+      if (delay > 0) {
+        sleep(delay);
+      }
+      if (errorRate > 0 && random.nextDouble() < errorRate) {
+        errors.incrementAndGet();
+        exchange.sendResponseHeaders(503, -1);
+        return;
+      }
+      String body;
+      try {
+        body = handler.answer(parseQuery(exchange.getRequestURI().getRawQuery()));
+      } catch (Exception e) {
+        body = null;
+      }
+      if (body == null) {
+        exchange.sendResponseHeaders(400, -1);
+        return;
+      }
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+      if (accept != null && accept.contains("gzip")) {
+        ByteArrayOutputStream zipped = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(zipped)) {
+          out.write(bytes);
+        }
+        bytes = zipped.toByteArray();
+        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        compressed.incrementAndGet();
+      }
+      exchange.getResponseHeaders().set("Content-Type", "text/csv");
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        write(out, bytes);
+      }
+    } finally {
+      inFlight.decrementAndGet();
+      exchange.close();
+    }
+  }
+
+  /**
+   * Write a response body, in chunks paced to the bandwidth if one is set.
+   *
+   * @param out   the response stream
+   * @param bytes the body
+   * @throws IOException when the body cannot be sent
+   */
+  private void write(OutputStream out, byte[] bytes) throws IOException {
+    long rate = bandwidth;
+    // bytes are counted before they are written, so a client that has read a response always
+    // sees them counted
+    if (rate == 0) {
+      bytesSent.addAndGet(bytes.length);
+      out.write(bytes);
+      return;
+    }
+    // chunks of about 10 ms worth of bytes
+    int chunk = (int) Math.max(512, Math.min(1 << 16, rate / 100));
+    long start = System.nanoTime();
+    for (int off = 0; off < bytes.length; off += chunk) {
+      int n = Math.min(chunk, bytes.length - off);
+      // a chunk is written once the bandwidth could have carried it, so the last byte arrives no
+      // sooner than the whole body takes at that rate
+      long due = start + (off + n) * 1_000_000_000L / rate;
+      long wait = due - System.nanoTime();
+      if (wait > 0) {
+        sleep(wait);
+      }
+      bytesSent.addAndGet(n);
+      out.write(bytes, off, n);
+      out.flush();
+    }
+  }
+
+  /**
+   * Sleep for a time.
+   *
+   * @param nanos the time in nanoseconds
+   * @throws IOException when interrupted, so the server stops serving the request
+   */
+  private static void sleep(long nanos) throws IOException {
+    try {
+      Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted");
+    }
+  }
+
+  /**
+   * Answer a name or current price request.
+   *
+   * @param query the parameters s (symbol) and f (n for name, l1 for price)
+   * @return the name in quotes or the price
+   * @throws Exception when the data cannot be retrieved
+   */
+  private String quote(Map<String, String> query) throws Exception {
+    String stockSymbol = query.get("s");
+    if (stockSymbol == null) {
+      return null;
+    }
+    if ("n".equals(query.get("f"))) {
+      String name = source.getName(stockSymbol);
+      return name == null || name.equals("N/A") ? "N/A\n" : "\"" + name + "\"\n";
+    }
+    if ("l1".equals(query.get("f"))) {
+      return source.getCurrentPrice(stockSymbol) + "\n";
+    }
+    return null;
+  }
+
+  /**
+   * Answer a historical price request.
+   *
+   * @param query the parameters q (symbol), startdate and enddate (month day year)
+   * @return the CSV rows, newest first
+   * @throws Exception when the data cannot be retrieved
+   */
+  private String history(Map<String, String> query) throws Exception {
+    String stockSymbol = query.get("q");
+    String[] from = query.getOrDefault("startdate", "").split(" ");
+    String[] to = query.getOrDefault("enddate", "").split(" ");
+    if (stockSymbol == null || from.length != 3 || to.length != 3) {
+      return null;
+    }
+    Map<Integer, PriceRecord> prices = source.getHistoricalPrices(stockSymbol,
+            Integer.parseInt(from[1]), Integer.parseInt(from[0]), Integer.parseInt(from[2]),
+            Integer.parseInt(to[1]), Integer.parseInt(to[0]), Integer.parseInt(to[2]));
+    List<Integer> dates = new ArrayList<>(prices.keySet());
+    dates.sort(null);
+    StringBuilder csv = new StringBuilder(48 * dates.size() + 40);
+    csv.append("Date,Open,High,Low,Close,Volume\n");
+    for (int i = dates.size() - 1; i >= 0; i--) {
+      int date = dates.get(i);
+      PriceRecord record = prices.get(date);
+      csv.append(date % 100).append('-').append(MONTHS[date / 100 % 100 - 1]).append('-')
+              .append(String.format(Locale.ROOT, "%02d", date / 10000 % 100)).append(',')
+              .append(record.getOpenPrice()).append(',')
+              .append(record.getHighestDayPrice()).append(',')
+              .append(record.getLowestDayPrice()).append(',')
+              .append(record.getClosePrice()).append(",0\n");
+    }
+    return csv.toString();
+  }
+
+  /**
+   * Split a raw query string into decoded parameters.
+   *
+   * @param rawQuery the query string, or null
+   * @return the parameters
+   */
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq > 0) {
+        query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return query;
+  }
+}
@@ -0,0 +1,477 @@
+package util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class represents a stock retriever module that generates daily prices instead of
+ * downloading them. Every symbol of letters, digits, dots and dashes is a stock, trading every
+ * weekday from 1960 to 2100. Its close follows a geometric Brownian motion with jumps: each day
+ * the log price moves by the drift less half the variance, plus a normal shock, plus with a small
+ * probability a normally distributed jump. The motion switches between a calm regime and a
+ * turbulent regime of higher volatility and lower drift, as a Markov chain. Open, high and low
+ * are drawn around the close, and all prices are rounded to cents.
+ * Prices depend only on the seed, the symbol and the date: the draws of each symbol and year
+ * come from their own seeded generators, so a range gives the same prices as the same days of a
+ * longer range. The course of a year is first drawn coarsely, with the days of its regime
+ * switches and jumps as waiting times and the sum of its daily shocks as one normal draw, which
+ * gives the price at the start of the next year. Only the years of a requested range are then
+ * filled in day by day, the daily shocks drawn as a Brownian bridge onto that sum. The price and
+ * regime at the start of each year are kept once computed, so fifty years of history cost a few
+ * hundred draws before the first requested day.
+ * The drift, volatility and starting price of each symbol are drawn from the seed too, around
+ * the given values, so a universe of symbols is not a set of copies.
+ */
+public class SyntheticStockDataRetriever implements StockDataRetriever {
+  public static final int FIRST_YEAR = 1960;
+  public static final int LAST_YEAR = 2100;
+  private static final double DAYS_PER_YEAR = 252;
+  private static final double DT = 1 / DAYS_PER_YEAR;
+  private static final double SQRT_DT = Math.sqrt(DT);
+  // turbulent regime: volatility multiplier, drift penalty, and how much faster it ends
+  private static final double TURBULENT_VOLATILITY = 2;
+  private static final double TURBULENT_DRIFT = -0.05;
+  private static final double TURBULENT_EXIT = 4;
+  private static final double JUMP_MEAN = -0.02;
+  // number of weekdays in each year
+  private static final int[] WEEKDAYS = new int[LAST_YEAR - FIRST_YEAR + 1];
+
+  static {
+    for (int year = FIRST_YEAR; year <= LAST_YEAR; year++) {
+      WEEKDAYS[year - FIRST_YEAR] = countWeekdays(year);
+    }
+  }
+
+  private final long seed;
+  private final double drift;
+  private final double volatility;
+  private final double jumpsPerYear;
+  private final double jumpVolatility;
+  private final double regimeSwitchesPerYear;
+  private final Map<String, Walk> walks = new ConcurrentHashMap<>();
+
+  /**
+   * Construct a generator of stocks with a drift of 9% and a volatility of 20% a year, one jump
+   * a year with a volatility of 8%, and one turbulent regime every two years.
+   *
+   * @param seed the seed
+   */
+  public SyntheticStockDataRetriever(long seed) {
+    this(seed, 0.09, 0.2, 1, 0.08, 0.5);
+  }
+
+  /**
+   * Construct a generator.
+   *
+   * @param seed                  the seed
+   * @param drift                 mean annual drift of the log price
+   * @param volatility            mean annual volatility in the calm regime
+   * @param jumpsPerYear          expected number of jumps a year, 0 for none
+   * @param jumpVolatility        standard deviation of the log size of a jump
+   * @param regimeSwitchesPerYear expected number of switches to the turbulent regime a year, 0
+   *                              for a single regime
+   */
+  public SyntheticStockDataRetriever(long seed, double drift, double volatility,
+                                     double jumpsPerYear, double jumpVolatility,
+                                     double regimeSwitchesPerYear) {
+    if (!(volatility >= 0) || !(jumpsPerYear >= 0) || !(jumpVolatility >= 0)
+            || !(regimeSwitchesPerYear >= 0) || Double.isNaN(drift)) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.seed = seed;
+    this.drift = drift;
+    this.volatility = volatility;
+    this.jumpsPerYear = jumpsPerYear;
+    this.jumpVolatility = jumpVolatility;
+    this.regimeSwitchesPerYear = regimeSwitchesPerYear;
+  }
+
+  /**
+   * Get the symbol of the i-th stock of a universe: AAAA, AAAB and so on.
+   *
+   * @param i the index, below 26 to the power of 4
+   * @return the symbol
+   */
+  public static String symbol(int i) {
+    char[] letters = new char[4];
+    for (int k = 3; k >= 0; k--) {
+      letters[k] = (char) ('A' + i % 26);
+      i /= 26;
+    }
+    return new String(letters);
+  }
+
+  /**
+   * Get the symbols of a universe of stocks.
+   *
+   * @param size number of stocks
+   * @return the symbols of the first size stocks
+   */
+  public static List<String> universe(int size) {
+    List<String> symbols = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      symbols.add(symbol(i));
+    }
+    return symbols;
+  }
+
+  @Override
+  public double getCurrentPrice(String stockSymbol) throws Exception {
+    LocalDate now = LocalDate.now();
+    int today = DateUtil.toInt(now.getDayOfMonth(), now.getMonthValue(), now.getYear());
+    PriceColumns week = getColumns(stockSymbol, DateUtil.plusDays(today, -7), today);
+    return week.closeAt(week.size() - 1);
+  }
+
+  @Override
+  public String getName(String stockSymbol) throws Exception {
+    return isValid(stockSymbol) ? stockSymbol + " Synthetic Inc." : "N/A";
+  }
+
+  @Override
+  public Map<Integer, PriceRecord> getHistoricalPrices(
+          String stockSymbol,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    return getHistoricalPrices(stockSymbol, DateUtil.toInt(fromDate, fromMonth, fromYear),
+            DateUtil.toInt(toDate, toMonth, toYear));
+  }
+
+  /**
+   * Get the prices of a stock over a date range.
+   *
+   * @param stockSymbol the stock symbol
+   * @param from        first date (YYYYMMDD)
+   * @param to          last date (YYYYMMDD)
+   * @return map with the date as key and the prices of that day as value
+   */
+  public Map<Integer, PriceRecord> getHistoricalPrices(String stockSymbol, int from, int to) {
+    PriceColumns columns = getColumns(stockSymbol, from, to);
+    Map<Integer, PriceRecord> prices = new TreeMap<>();
+    for (int i = 0; i < columns.size(); i++) {
+      prices.put(columns.dateAt(i), new PriceRecord(columns.openAt(i), columns.closeAt(i),
+              columns.lowAt(i), columns.highAt(i)));
+    }
+    return prices;
+  }
+
+  /**
+   * Get the prices of a stock over a date range as columns, without creating an object per day.
+   *
+   * @param stockSymbol the stock symbol
+   * @param from        first date (YYYYMMDD)
+   * @param to          last date (YYYYMMDD)
+   * @return the prices in date order
+   */
+  public PriceColumns getColumns(String stockSymbol, int from, int to) {
+    if (!isValid(stockSymbol)) {
+      throw new IllegalArgumentException("invalid stock symbol");
+    }
+    if (from > to) {
+      throw new IllegalArgumentException("invalid date range");
+    }
+    PriceColumns columns = new PriceColumns();
+    int firstYear = Math.max(FIRST_YEAR, from / 10000);
+    int lastYear = Math.min(LAST_YEAR, to / 10000);
+    if (firstYear > lastYear) {
+      return columns;
+    }
+    Walk walk = walks.computeIfAbsent(stockSymbol, Walk::new);
+    for (int year = firstYear; year <= lastYear; year++) {
+      walk.fill(year, columns, from, to);
+    }
+    return columns;
+  }
+
+  /**
+   * Check whether a symbol names a stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @return true for 1 to 12 letters, digits, dots and dashes
+   */
+  private static boolean isValid(String stockSymbol) {
+    if (stockSymbol == null || stockSymbol.isEmpty() || stockSymbol.length() > 12) {
+      return false;
+    }
+    for (int i = 0; i < stockSymbol.length(); i++) {
+      char c = stockSymbol.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '.' && c != '-') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Mix the seed, a symbol and a number into the seed of a generator.
+   *
+   * @param stockSymbol the stock symbol
+   * @param n           the number
+   * @return the seed
+   */
+  private long seedOf(String stockSymbol, long n) {
+    long h = seed * 0x9E3779B97F4A7C15L + stockSymbol.hashCode() * 0xC2B2AE3D27D4EB4FL + n;
+    h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+    return h ^ (h >>> 29);
+  }
+
+  /**
+   * The price path of one stock.
+   */
+  private class Walk {
+    private final String stockSymbol;
+    private final double mu;
+    private final double sigma;
+    // log price and regime (1 turbulent) on the first trading day of each year computed so far
+    private final double[] startLog = new double[LAST_YEAR - FIRST_YEAR + 2];
+    private final boolean[] startTurbulent = new boolean[LAST_YEAR - FIRST_YEAR + 2];
+    private int known;
+
+    /**
+     * Draw the parameters of a stock.
+     *
+     * @param stockSymbol the stock symbol
+     */
+    Walk(String stockSymbol) {
+      this.stockSymbol = stockSymbol;
+      SplittableRandom random = new SplittableRandom(seedOf(stockSymbol, -1));
+      this.mu = drift + 0.03 * random.nextGaussian();
+      this.sigma = volatility * Math.exp(0.2 * random.nextGaussian());
+      startLog[0] = Math.log(5) + random.nextDouble() * Math.log(40);
+      known = 1;
+    }
+
+    /**
+     * Get the log price and regime at the start of a year, planning the years before it that
+     * are not known yet.
+     *
+     * @param year the year
+     * @return the log price, and 1 for the turbulent regime or 0
+     */
+    synchronized double[] stateAt(int year) {
+      int index = year - FIRST_YEAR;
+      while (known <= index) {
+        Plan plan = new Plan(FIRST_YEAR + known - 1, startLog[known - 1],
+                startTurbulent[known - 1]);
+        startLog[known] = plan.endLog;
+        startTurbulent[known] = plan.endTurbulent;
+        known++;
+      }
+      return new double[]{startLog[index], startTurbulent[index] ? 1 : 0};
+    }
+
+    /**
+     * Generate the trading days of a year that fall in a date range.
+     *
+     * @param year    the year
+     * @param columns where to add the days
+     * @param from    first date to add (YYYYMMDD)
+     * @param to      last date to add (YYYYMMDD)
+     */
+    void fill(int year, PriceColumns columns, int from, int to) {
+      double[] state = stateAt(year);
+      Plan plan = new Plan(year, state[0], state[1] != 0);
+      int days = plan.days;
+      // the daily shocks are a Brownian bridge ending on the total shock of the plan
+      SplittableRandom bridge = new SplittableRandom(seedOf(stockSymbol, -2 - year));
+      SplittableRandom bars = new SplittableRandom(seedOf(stockSymbol, -1000 - year));
+      double remainingShock = plan.shock;
+      double remainingVariance = plan.variance;
+      double log = state[0];
+      double close = Math.exp(log);
+      boolean turbulent = state[1] != 0;
+      int nextSwitch = 0;
+      int nextJump = 0;
+      int day = DateUtil.toEpochDay(DateUtil.toInt(1, 1, year));
+      for (int i = 0; i < days; day++) {
+        if (!isWeekday(day)) {
+          continue;
+        }
+        if (nextSwitch < plan.switches.length && plan.switches[nextSwitch] == i) {
+          turbulent = !turbulent;
+          nextSwitch++;
+        }
+        double s = turbulent ? sigma * TURBULENT_VOLATILITY : sigma;
+        double m = turbulent ? mu + TURBULENT_DRIFT : mu;
+        double variance = s * s * DT;
+        double shock;
+        if (i == days - 1 || remainingVariance <= variance) {
+          shock = remainingShock;
+        } else {
+          double share = variance / remainingVariance;
+          shock = remainingShock * share
+                  + Math.sqrt(variance * (1 - share)) * bridge.nextGaussian();
+        }
+        remainingShock -= shock;
+        remainingVariance -= variance;
+        log += (m - s * s / 2) * DT + shock;
+        while (nextJump < plan.jumpDays.length && plan.jumpDays[nextJump] == i) {
+          log += plan.jumpSizes[nextJump++];
+        }
+        // drawn on every day of the year, so the bars do not depend on the range
+        double gap = bars.nextGaussian();
+        double up = Math.abs(bars.nextGaussian());
+        double down = Math.abs(bars.nextGaussian());
+        double previous = close;
+        close = Math.exp(log);
+        i++;
+        int date = DateUtil.fromEpochDay(day);
+        if (date < from || date > to) {
+          continue;
+        }
+        double daily = s * SQRT_DT;
+        double open = previous * Math.exp(0.3 * daily * gap);
+        double high = Math.max(open, close) * Math.exp(0.5 * daily * up);
+        double low = Math.min(open, close) * Math.exp(-0.5 * daily * down);
+        double openCents = cents(open);
+        double closeCents = cents(close);
+        columns.add(date, openCents,
+                Math.max(cents(high), Math.max(openCents, closeCents)),
+                Math.min(cents(low), Math.min(openCents, closeCents)), closeCents);
+      }
+    }
+
+    /**
+     * The course of a year, drawn with a handful of numbers instead of a few per day: the
+     * trading days the regime switches on and the jumps, as geometric waiting times, and the sum
+     * of the daily normal shocks, as one normal draw of the summed variance.
+     */
+    private class Plan {
+      private final int days;
+      private final int[] switches;
+      private final int[] jumpDays;
+      private final double[] jumpSizes;
+      private final double shock;
+      private final double variance;
+      private final double endLog;
+      private final boolean endTurbulent;
+
+      /**
+       * Draw the course of a year.
+       *
+       * @param year      the year
+       * @param log       log price at the start of the year
+       * @param turbulent regime at the start of the year
+       */
+      Plan(int year, double log, boolean turbulent) {
+        SplittableRandom random = new SplittableRandom(seedOf(stockSymbol, year));
+        this.days = WEEKDAYS[year - FIRST_YEAR];
+        double enter = regimeSwitchesPerYear * DT;
+        double exit = Math.min(1, enter * TURBULENT_EXIT);
+
+        int[] found = new int[8];
+        int count = 0;
+        double variance = 0;
+        double trend = 0;
+        boolean regime = turbulent;
+        for (int i = 0; i < days; ) {
+          int next = Math.min(days, i + waitingTime(random, regime ? exit : enter));
+          double s = regime ? sigma * TURBULENT_VOLATILITY : sigma;
+          double m = regime ? mu + TURBULENT_DRIFT : mu;
+          variance += (next - i) * s * s * DT;
+          trend += (next - i) * (m - s * s / 2) * DT;
+          if (next < days) {
+            if (count == found.length) {
+              found = Arrays.copyOf(found, count * 2);
+            }
+            found[count++] = next;
+            regime = !regime;
+          }
+          i = next;
+        }
+        this.switches = Arrays.copyOf(found, count);
+        this.endTurbulent = regime;
+
+        double jumpChance = Math.min(1, jumpsPerYear * DT);
+        count = 0;
+        int[] at = new int[8];
+        double[] sizes = new double[8];
+        double jumps = 0;
+        for (int i = waitingTime(random, jumpChance) - 1; i < days;
+             i += waitingTime(random, jumpChance)) {
+          if (count == at.length) {
+            at = Arrays.copyOf(at, count * 2);
+            sizes = Arrays.copyOf(sizes, count * 2);
+          }
+          at[count] = i;
+          sizes[count] = JUMP_MEAN + jumpVolatility * random.nextGaussian();
+          jumps += sizes[count++];
+        }
+        this.jumpDays = Arrays.copyOf(at, count);
+        this.jumpSizes = Arrays.copyOf(sizes, count);
+
+        this.variance = variance;
+        this.shock = Math.sqrt(variance) * random.nextGaussian();
+        this.endLog = log + trend + shock + jumps;
+      }
+    }
+  }
+
+  /**
+   * Draw the number of trading days until an event of a given daily chance, at least 1.
+   *
+   * @param random the generator
+   * @param chance the daily chance
+   * @return the number of days, or Integer.MAX_VALUE for an event that never happens
+   */
+  private static int waitingTime(SplittableRandom random, double chance) {
+    if (chance <= 0) {
+      return Integer.MAX_VALUE / 2;
+    }
+    if (chance >= 1) {
+      return 1;
+    }
+    double days = Math.ceil(Math.log(1 - random.nextDouble()) / Math.log(1 - chance));
+    return (int) Math.max(1, Math.min(Integer.MAX_VALUE / 2, days));
+  }
+
+  /**
+   * Count the weekdays in a year.
+   *
+   * @param year the year
+   * @return number of weekdays
+   */
+  private static int countWeekdays(int year) {
+    int first = DateUtil.toEpochDay(DateUtil.toInt(1, 1, year));
+    int last = DateUtil.toEpochDay(DateUtil.toInt(31, 12, year));
+    int count = 0;
+    for (int day = first; day <= last; day++) {
+      if (isWeekday(day)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Check whether a day is a weekday.
+   *
+   * @param epochDay days since 1970-01-01, a Thursday
+   * @return true from Monday to Friday
+   */
+  private static boolean isWeekday(int epochDay) {
+    return Math.floorMod(epochDay + 3, 7) < 5;
+  }
+
+  /**
+   * Round a price to cents, one cent at least.
+   *
+   * @param price the price
+   * @return the rounded price
+   */
+  private static double cents(double price) {
+    return Math.max(1, Math.round(price * 100)) / 100.0;
+  }
+}
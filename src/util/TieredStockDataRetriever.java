@@ -0,0 +1,696 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * This class represents a two-tier caching stock retriever module that wraps another retriever.
+ * For each stock symbol it keeps one price series covering a date range. Hot series stay on the
+ * heap as primitive columns within a byte budget; series evicted from the heap are spilled to a
+ * disk directory as compressed price store files within a second byte budget, so reading them
+ * again costs a file read instead of a fetch. Disk files are found again after a restart.
+ * The heap tier is evicted the W-TinyLFU way: new series enter a small LRU window, and a series
+ * leaving the window only takes the place of main-tier series (a probation and a protected LRU
+ * segment) when it has been requested more often than the series it would evict, as estimated
+ * by an aging frequency sketch. Sizes are counted in bytes, so one large series may have to beat
+ * several small ones. The disk tier evicts least recently used files.
+ * Hit counts of both tiers are kept to size the heap budget from real usage.
+ */
+public class TieredStockDataRetriever implements StockDataRetriever {
+  private static final String SUFFIX = ".prices";
+  private static final Pattern FILE_NAME = Pattern.compile("(.+)\\.(\\d{8})-(\\d{8})\\.prices");
+  // estimated bytes of a series besides its columns
+  private static final int SERIES_OVERHEAD = 128;
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  private final StockDataRetriever delegate;
+  private final Path directory;
+  private final long heapBudget;
+  private final long windowBudget;
+  private final long protectedBudget;
+  private final long diskBudget;
+
+  private final Map<String, Node> nodes = new LinkedHashMap<>();
+  private final List<LinkedHashMap<String, Node>> segments = new ArrayList<>();
+  private final long[] segmentBytes = new long[3];
+  private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(16, 0.75f, true);
+  private final FrequencySketch sketch = new FrequencySketch(4096);
+  private long diskBytes;
+
+  private long requests;
+  private long heapHits;
+  private long diskHits;
+  private long spills;
+  private long rejections;
+
+  /**
+   * The cached prices of one stock over a date range, every trading day of the range included.
+   */
+  private static class Series {
+    private final int from;
+    private final int to;
+    private final PriceColumns rows;
+
+    /**
+     * Construct a series.
+     *
+     * @param from first covered date (YYYYMMDD)
+     * @param to   last covered date (YYYYMMDD)
+     * @param rows price rows of the range, sorted by date
+     */
+    private Series(int from, int to, PriceColumns rows) {
+      this.from = from;
+      this.to = to;
+      this.rows = rows;
+    }
+
+    /**
+     * Get the estimated heap size of this series.
+     *
+     * @return number of bytes
+     */
+    private long bytes() {
+      return SERIES_OVERHEAD + 36L * rows.size();
+    }
+
+    /**
+     * Check if this series covers a date range.
+     *
+     * @param from start date of range
+     * @param to   end date of range
+     * @return true if the range is covered
+     */
+    private boolean covers(int from, int to) {
+      return this.from <= from && to <= this.to;
+    }
+
+    /**
+     * Get the prices of a date range.
+     *
+     * @param from start date of range
+     * @param to   end date of range
+     * @return map with date as key and price record as value
+     */
+    private Map<Integer, PriceRecord> slice(int from, int to) {
+      Map<Integer, PriceRecord> prices = new TreeMap<>();
+      for (int i = 0; i < rows.size(); i++) {
+        int date = rows.dateAt(i);
+        if (date >= from && date <= to) {
+          prices.put(date, new PriceRecord(rows.openAt(i), rows.closeAt(i), rows.lowAt(i),
+                  rows.highAt(i)));
+        }
+      }
+      return prices;
+    }
+  }
+
+  /**
+   * A series held on the heap, with the segment it is in.
+   */
+  private static class Node {
+    private final String symbol;
+    private Series series;
+    private int segment;
+
+    /**
+     * Construct a node.
+     *
+     * @param symbol the stock symbol
+     * @param series the series
+     */
+    private Node(String symbol, Series series) {
+      this.symbol = symbol;
+      this.series = series;
+    }
+  }
+
+  /**
+   * A series spilled to disk.
+   */
+  private static class DiskEntry {
+    private final int from;
+    private final int to;
+    private final Path file;
+    private final long bytes;
+
+    /**
+     * Construct a disk entry.
+     *
+     * @param from  first covered date (YYYYMMDD)
+     * @param to    last covered date (YYYYMMDD)
+     * @param file  the file holding the series
+     * @param bytes size of the file
+     */
+    private DiskEntry(int from, int to, Path file, long bytes) {
+      this.from = from;
+      this.to = to;
+      this.file = file;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * A count-min sketch of small counters, saturating at 15, estimating how often each symbol was
+   * requested recently. All counters are halved after a number of increments, so old popularity
+   * fades.
+   */
+  private static class FrequencySketch {
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int increments;
+
+    /**
+     * Construct a sketch.
+     *
+     * @param width counters per row, a power of two
+     */
+    private FrequencySketch(int width) {
+      this.counters = new byte[SEEDS.length][width];
+      this.mask = width - 1;
+      this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Get the counter index of a key in a row.
+     *
+     * @param key the key
+     * @param row the row
+     * @return index into the row
+     */
+    private int index(String key, int row) {
+      int h = key.hashCode() * SEEDS[row];
+      return (h ^ (h >>> 16)) & mask;
+    }
+
+    /**
+     * Count one request of a key.
+     *
+     * @param key the key
+     */
+    private void increment(String key) {
+      for (int row = 0; row < SEEDS.length; row++) {
+        int i = index(key, row);
+        if (counters[row][i] < 15) {
+          counters[row][i]++;
+        }
+      }
+      if (++increments == sampleSize) {
+        for (byte[] row : counters) {
+          for (int i = 0; i < row.length; i++) {
+            row[i] >>= 1;
+          }
+        }
+        increments /= 2;
+      }
+    }
+
+    /**
+     * Estimate how often a key was requested recently.
+     *
+     * @param key the key
+     * @return the estimate
+     */
+    private int frequency(String key) {
+      int min = 15;
+      for (int row = 0; row < SEEDS.length; row++) {
+        min = Math.min(min, counters[row][index(key, row)]);
+      }
+      return min;
+    }
+  }
+
+  /**
+   * Construct a TieredStockDataRetriever object.
+   *
+   * @param delegate   the retriever to fetch missing data from
+   * @param directory  the directory of the disk tier
+   * @param heapBytes  byte budget of the heap tier
+   * @param diskBytes  byte budget of the disk tier
+   * @throws IOException when the directory cannot be created or read
+   */
+  public TieredStockDataRetriever(StockDataRetriever delegate, Path directory, long heapBytes,
+                                  long diskBytes) throws IOException {
+    if (heapBytes <= 0 || diskBytes < 0) {
+      throw new IllegalArgumentException("cache size must be positive");
+    }
+    this.delegate = delegate;
+    this.directory = Files.createDirectories(directory);
+    this.heapBudget = heapBytes;
+    this.windowBudget = Math.max(1, heapBytes / 100);
+    this.protectedBudget = (heapBytes - windowBudget) * 4 / 5;
+    this.diskBudget = diskBytes;
+    for (int i = 0; i < 3; i++) {
+      segments.add(new LinkedHashMap<>());
+    }
+    try (Stream<Path> files = Files.list(this.directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Matcher m = FILE_NAME.matcher(file.getFileName().toString());
+        if (m.matches()) {
+          addToDisk(m.group(1), new DiskEntry(Integer.parseInt(m.group(2)),
+                  Integer.parseInt(m.group(3)), file, Files.size(file)));
+        }
+      }
+    }
+  }
+
+  @Override
+  public double getCurrentPrice(String stockSymbol) throws Exception {
+    return delegate.getCurrentPrice(stockSymbol);
+  }
+
+  @Override
+  public String getName(String stockSymbol) throws Exception {
+    return delegate.getName(stockSymbol);
+  }
+
+  @Override
+  public Map<Integer, PriceRecord> getHistoricalPrices(
+          String stockSymbol,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    int from = DateUtil.toInt(fromDate, fromMonth, fromYear);
+    int to = DateUtil.toInt(toDate, toMonth, toYear);
+
+    DiskEntry spilled = null;
+    synchronized (this) {
+      requests++;
+      sketch.increment(stockSymbol);
+      Node node = nodes.get(stockSymbol);
+      if (node != null && node.series.covers(from, to)) {
+        heapHits++;
+        touch(node);
+        return node.series.slice(from, to);
+      }
+      DiskEntry entry = disk.get(stockSymbol);
+      if (entry != null && entry.from <= from && to <= entry.to) {
+        spilled = entry;
+      }
+    }
+
+    // read and fetch outside of the lock, so slow symbols do not block the others
+    if (spilled != null) {
+      Series series = read(spilled);
+      if (series != null) {
+        List<Node> evicted;
+        synchronized (this) {
+          diskHits++;
+          evicted = put(stockSymbol, series);
+        }
+        spill(evicted);
+        return series.slice(from, to);
+      }
+    }
+
+    Map<Integer, PriceRecord> fetched = delegate.getHistoricalPrices(stockSymbol,
+            fromDate, fromMonth, fromYear, toDate, toMonth, toYear);
+    // data of today and later is not final yet, so it is returned but never cached
+    int end = Math.min(to, DateUtil.convertInt(LocalDate.now().minusDays(1)));
+    if (from <= end) {
+      List<Node> evicted;
+      synchronized (this) {
+        evicted = put(stockSymbol, merge(nodes.get(stockSymbol), from, end, fetched));
+      }
+      spill(evicted);
+    }
+    return fetched;
+  }
+
+  /**
+   * Build the series of fetched prices, joined with the cached series of the stock when their
+   * ranges overlap or touch. Must be called holding the lock of this cache.
+   *
+   * @param cached  the heap node of the stock, or null
+   * @param from    start of fetched range
+   * @param to      end of fetched range to cache
+   * @param fetched the fetched prices
+   * @return the series
+   */
+  private static Series merge(Node cached, int from, int to, Map<Integer, PriceRecord> fetched) {
+    TreeMap<Integer, PriceRecord> prices = new TreeMap<>();
+    if (cached != null && cached.series.from <= DateUtil.plusDays(to, 1)
+            && from <= DateUtil.plusDays(cached.series.to, 1)) {
+      Series old = cached.series;
+      prices.putAll(old.slice(old.from, old.to));
+      from = Math.min(from, old.from);
+      to = Math.max(to, old.to);
+    }
+    for (Map.Entry<Integer, PriceRecord> e : fetched.entrySet()) {
+      if (e.getKey() <= to) {
+        prices.put(e.getKey(), e.getValue());
+      }
+    }
+    PriceColumns rows = new PriceColumns(prices.size());
+    for (Map.Entry<Integer, PriceRecord> e : prices.entrySet()) {
+      PriceRecord r = e.getValue();
+      rows.add(e.getKey(), r.getOpenPrice(), r.getHighestDayPrice(), r.getLowestDayPrice(),
+              r.getClosePrice());
+    }
+    return new Series(from, to, rows);
+  }
+
+  /**
+   * Put a series on the heap, replacing the stock's series if there is one, and evict until
+   * the heap is within its budget. A replaced series which the new one does not cover is
+   * evicted too, and a main-tier series which grew has to be admitted again, as if it left the
+   * window. Must be called holding the lock of this cache.
+   *
+   * @param stockSymbol the stock symbol
+   * @param series      the series
+   * @return the series evicted from the heap, to be spilled to disk
+   */
+  private List<Node> put(String stockSymbol, Series series) {
+    List<Node> evicted = new ArrayList<>();
+    Node node = nodes.get(stockSymbol);
+    if (node != null) {
+      Series old = node.series;
+      if (!series.covers(old.from, old.to)) {
+        evicted.add(new Node(stockSymbol, old));
+      }
+      remove(node);
+      node.series = series;
+      add(node, node.segment == PROBATION ? PROTECTED : node.segment);
+      int segment = node.segment;
+      if (segment != WINDOW
+              && segmentBytes[PROBATION] + segmentBytes[PROTECTED] > heapBudget - windowBudget) {
+        admit(node, evicted);
+        if (nodes.get(stockSymbol) == node) {
+          remove(node);
+          add(node, segment);
+        }
+      }
+    } else {
+      node = new Node(stockSymbol, series);
+      nodes.put(stockSymbol, node);
+      add(node, WINDOW);
+    }
+    while (segmentBytes[WINDOW] > windowBudget) {
+      admit(first(WINDOW), evicted);
+    }
+    while (segmentBytes[PROTECTED] > protectedBudget) {
+      Node demoted = first(PROTECTED);
+      remove(demoted);
+      add(demoted, PROBATION);
+    }
+    return evicted;
+  }
+
+  /**
+   * Move a series leaving the window into the main tier if there is room or it is requested
+   * more often than the main-tier series which would make room for it; otherwise evict it.
+   * Must be called holding the lock of this cache.
+   *
+   * @param candidate the oldest series of the window
+   * @param evicted   collects the evicted series
+   */
+  private void admit(Node candidate, List<Node> evicted) {
+    remove(candidate);
+    long mainBudget = heapBudget - windowBudget;
+    long needed = segmentBytes[PROBATION] + segmentBytes[PROTECTED] + candidate.series.bytes()
+            - mainBudget;
+    if (needed <= 0) {
+      add(candidate, PROBATION);
+      return;
+    }
+    // the least recently used main-tier series which would make room, probation first
+    List<Node> victims = new ArrayList<>();
+    int victimFrequency = 0;
+    long freed = 0;
+    for (int segment : new int[]{PROBATION, PROTECTED}) {
+      for (Node victim : segments.get(segment).values()) {
+        if (freed >= needed) {
+          break;
+        }
+        victims.add(victim);
+        victimFrequency = Math.max(victimFrequency, sketch.frequency(victim.symbol));
+        freed += victim.series.bytes();
+      }
+    }
+    if (freed >= needed && sketch.frequency(candidate.symbol) > victimFrequency) {
+      for (Node victim : victims) {
+        remove(victim);
+        nodes.remove(victim.symbol);
+        evicted.add(victim);
+      }
+      add(candidate, PROBATION);
+    } else {
+      rejections++;
+      nodes.remove(candidate.symbol);
+      evicted.add(candidate);
+    }
+  }
+
+  /**
+   * Record a request of a series on the heap: move it to the most recent end of its segment,
+   * or from probation into the protected segment. Must be called holding the lock of this cache.
+   *
+   * @param node the heap node
+   */
+  private void touch(Node node) {
+    int segment = node.segment == PROBATION ? PROTECTED : node.segment;
+    remove(node);
+    add(node, segment);
+  }
+
+  /**
+   * Append a node to the most recent end of a segment.
+   *
+   * @param node    the heap node
+   * @param segment the segment
+   */
+  private void add(Node node, int segment) {
+    node.segment = segment;
+    segments.get(segment).put(node.symbol, node);
+    segmentBytes[segment] += node.series.bytes();
+  }
+
+  /**
+   * Remove a node from its segment.
+   *
+   * @param node the heap node
+   */
+  private void remove(Node node) {
+    segments.get(node.segment).remove(node.symbol);
+    segmentBytes[node.segment] -= node.series.bytes();
+  }
+
+  /**
+   * Get the least recently used node of a segment.
+   *
+   * @param segment the segment
+   * @return the node
+   */
+  private Node first(int segment) {
+    return segments.get(segment).values().iterator().next();
+  }
+
+  /**
+   * Write series evicted from the heap to the disk tier, unless the disk already holds the same
+   * range, and delete the least recently used files beyond the disk budget. A series which
+   * cannot be written is dropped, as a plain cache would.
+   *
+   * @param evicted the evicted series
+   */
+  private void spill(List<Node> evicted) {
+    for (Node node : evicted) {
+      Series series = node.series;
+      synchronized (this) {
+        DiskEntry entry = disk.get(node.symbol);
+        if (entry != null && entry.from == series.from && entry.to == series.to) {
+          continue;
+        }
+      }
+      if (series.bytes() > diskBudget) {
+        continue;
+      }
+      Path file = directory.resolve(node.symbol + "." + series.from + "-" + series.to + SUFFIX);
+      long size;
+      try {
+        series.rows.writeTo(file, node.symbol);
+        size = Files.size(file);
+      } catch (IOException e) {
+        continue;
+      }
+      List<Path> deleted = new ArrayList<>();
+      synchronized (this) {
+        spills++;
+        DiskEntry old = disk.remove(node.symbol);
+        if (old != null) {
+          diskBytes -= old.bytes;
+          if (!old.file.equals(file)) {
+            deleted.add(old.file);
+          }
+        }
+        addToDisk(node.symbol, new DiskEntry(series.from, series.to, file, size));
+        Iterator<DiskEntry> it = disk.values().iterator();
+        while (diskBytes > diskBudget && it.hasNext()) {
+          DiskEntry eldest = it.next();
+          diskBytes -= eldest.bytes;
+          deleted.add(eldest.file);
+          it.remove();
+        }
+      }
+      for (Path path : deleted) {
+        try {
+          Files.deleteIfExists(path);
+        } catch (IOException e) {
+          // the file is no longer indexed, a leftover only wastes space
+        }
+      }
+    }
+  }
+
+  /**
+   * Register a file of the disk tier. Must be called holding the lock of this cache, or from
+   * the constructor.
+   *
+   * @param stockSymbol the stock symbol
+   * @param entry       the disk entry
+   */
+  private void addToDisk(String stockSymbol, DiskEntry entry) {
+    disk.put(stockSymbol, entry);
+    diskBytes += entry.bytes;
+  }
+
+  /**
+   * Read a series from the disk tier.
+   *
+   * @param entry the disk entry
+   * @return the series, or null if the file is gone or cannot be read
+   */
+  private static Series read(DiskEntry entry) {
+    try {
+      PriceStoreFile file = PriceStoreFile.open(entry.file);
+      int size = file.getBlockSize();
+      int[] dates = new int[size];
+      double[] open = new double[size];
+      double[] high = new double[size];
+      double[] low = new double[size];
+      double[] close = new double[size];
+      PriceColumns rows = new PriceColumns(file.size());
+      for (int b = 0; b < file.getBlockCount(); b++) {
+        int n = file.readBlock(b, dates, open, high, low, close);
+        for (int i = 0; i < n; i++) {
+          rows.add(dates[i], open[i], high[i], low[i], close[i]);
+        }
+      }
+      return new Series(entry.from, entry.to, rows);
+    } catch (IOException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Get the number of requests served from the heap tier.
+   *
+   * @return number of heap hits
+   */
+  public synchronized long getHeapHitCount() {
+    return heapHits;
+  }
+
+  /**
+   * Get the number of requests served from the disk tier.
+   *
+   * @return number of disk hits
+   */
+  public synchronized long getDiskHitCount() {
+    return diskHits;
+  }
+
+  /**
+   * Get the number of requests fetched from the wrapped retriever.
+   *
+   * @return number of misses
+   */
+  public synchronized long getMissCount() {
+    return requests - heapHits - diskHits;
+  }
+
+  /**
+   * Get the share of all requests served from the heap tier.
+   *
+   * @return heap hit rate between 0 and 1
+   */
+  public synchronized double getHeapHitRate() {
+    return requests == 0 ? 0 : (double) heapHits / requests;
+  }
+
+  /**
+   * Get the share of requests missing the heap tier which were served from the disk tier.
+   *
+   * @return disk hit rate between 0 and 1
+   */
+  public synchronized double getDiskHitRate() {
+    long heapMisses = requests - heapHits;
+    return heapMisses == 0 ? 0 : (double) diskHits / heapMisses;
+  }
+
+  /**
+   * Get the estimated number of bytes held by the heap tier.
+   *
+   * @return heap bytes
+   */
+  public synchronized long getHeapBytes() {
+    return segmentBytes[WINDOW] + segmentBytes[PROBATION] + segmentBytes[PROTECTED];
+  }
+
+  /**
+   * Get the number of bytes held by the disk tier.
+   *
+   * @return disk bytes
+   */
+  public synchronized long getDiskBytes() {
+    return diskBytes;
+  }
+
+  /**
+   * Check if the heap tier holds a series of the given stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @return true if the stock is on the heap
+   */
+  public synchronized boolean isOnHeap(String stockSymbol) {
+    return nodes.containsKey(stockSymbol);
+  }
+
+  /**
+   * Check if the disk tier holds a series of the given stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @return true if the stock is on disk
+   */
+  public synchronized boolean isOnDisk(String stockSymbol) {
+    return disk.containsKey(stockSymbol);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(Locale.ROOT, "requests: %d heap hits: %d (%.1f%%) disk hits: %d "
+                    + "(%.1f%% of heap misses) misses: %d heap: %d bytes in %d series "
+                    + "disk: %d bytes in %d series spills: %d rejected: %d", requests, heapHits,
+            100 * getHeapHitRate(), diskHits, 100 * getDiskHitRate(), getMissCount(),
+            getHeapBytes(), nodes.size(), diskBytes, disk.size(), spills, rejections);
+  }
+}
@@ -0,0 +1,202 @@
+package util;
+
+/**
+ * This class represents a trading calendar derived from the dates of stored price data.
+ * Each trading day gets a dense business-day ordinal, starting from 0 on the first trading day.
+ * Dates map to ordinals and back in constant time through a table indexed by calendar day, so
+ * stepping between trading days does not create LocalDate objects or parse strings.
+ */
+public class TradingCalendar {
+  private final int[] dates;
+  private final int firstEpochDay;
+  // for each calendar day from the first to the last trading day, the ordinal of the first
+  // trading day on or after it
+  private final int[] ceilingOrdinals;
+
+  /**
+   * Construct a trading calendar from the given trading days.
+   *
+   * @param dates trading days in YYYYMMDD notation, ascending without duplicates
+   */
+  private TradingCalendar(int[] dates) {
+    this.dates = dates;
+    if (dates.length == 0) {
+      this.firstEpochDay = 0;
+      this.ceilingOrdinals = new int[0];
+      return;
+    }
+    this.firstEpochDay = DateUtil.toEpochDay(dates[0]);
+    this.ceilingOrdinals = new int[DateUtil.toEpochDay(dates[dates.length - 1]) - firstEpochDay
+            + 1];
+    int ordinal = 0;
+    int next = firstEpochDay;
+    for (int day = 0; day < ceilingOrdinals.length; day++) {
+      if (next < firstEpochDay + day) {
+        ordinal++;
+        next = DateUtil.toEpochDay(dates[ordinal]);
+      }
+      ceilingOrdinals[day] = ordinal;
+    }
+  }
+
+  /**
+   * Create a trading calendar from the dates of a price series.
+   *
+   * @param series price series of a stock
+   * @return the trading calendar
+   */
+  public static TradingCalendar of(PriceSeries series) {
+    int[] dates = new int[series.size()];
+    for (int i = 0; i < dates.length; i++) {
+      dates[i] = series.dateAt(i);
+    }
+    return new TradingCalendar(dates);
+  }
+
+  /**
+   * Create a trading calendar from the given trading days.
+   *
+   * @param dates trading days in YYYYMMDD notation, ascending without duplicates
+   * @return the trading calendar
+   */
+  public static TradingCalendar of(int[] dates) {
+    for (int i = 1; i < dates.length; i++) {
+      if (dates[i] <= dates[i - 1]) {
+        throw new IllegalArgumentException("dates must be ascending");
+      }
+    }
+    return new TradingCalendar(dates.clone());
+  }
+
+  /**
+   * Get the number of trading days in this calendar.
+   *
+   * @return number of trading days
+   */
+  public int size() {
+    return dates.length;
+  }
+
+  /**
+   * Get the trading day of the given ordinal.
+   *
+   * @param ordinal business-day ordinal
+   * @return trading day in YYYYMMDD notation
+   */
+  public int dateOf(int ordinal) {
+    return dates[ordinal];
+  }
+
+  /**
+   * Get the ordinal of a trading day.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return the business-day ordinal, or -1 if date is not a trading day of this calendar
+   */
+  public int ordinalOf(int date) {
+    int ordinal = ceilingOrdinal(date);
+    return ordinal < dates.length && dates[ordinal] == date ? ordinal : -1;
+  }
+
+  /**
+   * Check whether the given date is a trading day.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return true if date is a trading day of this calendar
+   */
+  public boolean isTradingDay(int date) {
+    return ordinalOf(date) >= 0;
+  }
+
+  /**
+   * Get the ordinal of the first trading day on or after the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return the business-day ordinal, or size() if there is no such trading day
+   */
+  public int ceilingOrdinal(int date) {
+    int day = DateUtil.toEpochDay(date) - firstEpochDay;
+    if (day < 0) {
+      return 0;
+    }
+    if (day >= ceilingOrdinals.length) {
+      return dates.length;
+    }
+    return ceilingOrdinals[day];
+  }
+
+  /**
+   * Get the ordinal of the last trading day on or before the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return the business-day ordinal, or -1 if there is no such trading day
+   */
+  public int floorOrdinal(int date) {
+    int ordinal = ceilingOrdinal(date);
+    return ordinal < dates.length && dates[ordinal] == date ? ordinal : ordinal - 1;
+  }
+
+  /**
+   * Get the next trading day on or after the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @return the trading day, or -1 if there is none in this calendar
+   */
+  public int nextTradingDay(int date) {
+    int ordinal = ceilingOrdinal(date);
+    return ordinal < dates.length ? dates[ordinal] : -1;
+  }
+
+  /**
+   * Get the trading day N business days before the given date. With N equal to 0 this is the
+   * last trading day on or before the given date.
+   *
+   * @param date date in YYYYMMDD notation
+   * @param days number of business days
+   * @return the trading day, or -1 if it is before the start of this calendar
+   */
+  public int businessDaysBefore(int date, int days) {
+    int ordinal = floorOrdinal(date) - days;
+    return ordinal >= 0 ? dates[ordinal] : -1;
+  }
+
+  /**
+   * Get the ordinal of the first trading day on or after the given date, if it is at most the
+   * given number of calendar days away.
+   *
+   * @param date    date in YYYYMMDD notation
+   * @param maxDays maximum number of calendar days to look ahead
+   * @return the business-day ordinal, or -1 if there is no such trading day
+   */
+  public int nextTradingOrdinal(int date, int maxDays) {
+    int ordinal = ceilingOrdinal(date);
+    if (ordinal >= dates.length
+            || DateUtil.toEpochDay(dates[ordinal]) - DateUtil.toEpochDay(date) > maxDays) {
+      return -1;
+    }
+    return ordinal;
+  }
+
+  /**
+   * Estimate the earliest date to fetch so that a range ending on the given date holds at least
+   * the given number of business days, when no calendar covering that range is known yet.
+   * Weekends are skipped exactly, and holidays are covered by a slack of one day in twenty plus
+   * five days.
+   *
+   * @param date end date in YYYYMMDD notation
+   * @param days number of business days needed up to and including date
+   * @return start date in YYYYMMDD notation
+   */
+  public static int lookbackStart(int date, int days) {
+    int weekdays = days + days / 20 + 5;
+    int epochDay = DateUtil.toEpochDay(date) - weekdays / 5 * 7;
+    for (int left = weekdays % 5; left > 0; ) {
+      epochDay--;
+      int dayOfWeek = Math.floorMod(epochDay + 3, 7) + 1;
+      if (dayOfWeek <= 5) {
+        left--;
+      }
+    }
+    return DateUtil.fromEpochDay(epochDay);
+  }
+}
@@ -1,22 +1,84 @@
 package util;
 
-import java.net.URL;
-import java.time.LocalDate;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Scanner;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
 
 /**
- * This class represents a stock retriever module. It is a singleton, and so to
- * get the one (and only) object call getStockDataRetriever()
+ * This class represents a stock retriever module that downloads stock data from the web.
+ * Every request goes through one HTTP client, which keeps connections alive and reuses them,
+ * asks for gzip compressed responses, and fails a request with an HttpTimeoutException when its
+ * response does not arrive in time. At most a given number of requests are in flight at the
+ * same time; further requests wait in order of arrival for one of them to finish. The endpoints
+ * can be given, so the retriever can be pointed at a local server.
  */
 public class WebStockDataRetriever implements StockDataRetriever {
+  public static final String QUOTE_URL = "https://download.finance.yahoo.com/d/quotes.csv";
+  public static final String HISTORY_URL = "https://www.google.com/finance/historical";
+  // default limits of the web endpoints
+  private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+  private static final int DEFAULT_CONCURRENCY = 8;
+  // each thread reuses the buffer of its own parser
+  private static final ThreadLocal<PriceCsvParser> PARSER
+          = ThreadLocal.withInitial(PriceCsvParser::new);
+
+  private final String quoteUrl;
+  private final String historyUrl;
+  private final Duration timeout;
+  private final int maxConcurrency;
+  private final Semaphore permits;
+  private final HttpClient client;
+
   /**
-   * Construct a WebStockDataRetriever object.
+   * Construct a WebStockDataRetriever object for the web endpoints.
    */
   public WebStockDataRetriever() {
-    // Construct a WebStockDataRetriever object.
+    this(QUOTE_URL, HISTORY_URL, DEFAULT_TIMEOUT, DEFAULT_CONCURRENCY);
+  }
 
+  /**
+   * Construct a WebStockDataRetriever object for the given endpoints.
+   *
+   * @param quoteUrl       endpoint of names and current prices, such as QUOTE_URL
+   * @param historyUrl     endpoint of historical prices, such as HISTORY_URL
+   * @param timeout        time to wait for a connection, and for the response of a request
+   * @param maxConcurrency maximum number of requests in flight at the same time
+   */
+  public WebStockDataRetriever(String quoteUrl, String historyUrl, Duration timeout,
+                               int maxConcurrency) {
+    if (quoteUrl == null || historyUrl == null || timeout == null || timeout.isNegative()
+            || timeout.isZero() || maxConcurrency < 1) {
+      throw new IllegalArgumentException("invalid input");
+    }
+    this.quoteUrl = quoteUrl;
+    this.historyUrl = historyUrl;
+    this.timeout = timeout;
+    this.maxConcurrency = maxConcurrency;
+    this.permits = new Semaphore(maxConcurrency, true);
+    this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
   }
 
   /**
@@ -27,13 +89,7 @@ public class WebStockDataRetriever implements StockDataRetriever {
    * @throws Exception cannot retrieve data
    */
   public double getCurrentPrice(String stockSymbol) throws Exception {
-    URL url = new URL("https://download.finance.yahoo.com/d/quotes.csv?"
-            + "s=" + stockSymbol + "&f=l1&e=.csv");
-
-    String output = new Scanner(url.openStream()).next();
-
-
-    return Double.parseDouble(output);
+    return Double.parseDouble(getLine(quoteUrl + "?s=" + encode(stockSymbol) + "&f=l1&e=.csv"));
   }
 
   /**
@@ -44,13 +100,11 @@ public class WebStockDataRetriever implements StockDataRetriever {
    * @throws Exception cannot retrieve data
    */
   public String getName(String stockSymbol) throws Exception {
-    URL url = new URL("https://download.finance.yahoo.com/d/quotes.csv?"
-            + "s=" + stockSymbol + "&f=n&e=.csv");
-
-    String output = new Scanner(url.openStream()).next();
-
-
-    return output;
+    String name = getLine(quoteUrl + "?s=" + encode(stockSymbol) + "&f=n&e=.csv");
+    if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+      name = name.substring(1, name.length() - 1);
+    }
+    return name;
   }
 
 
@@ -77,84 +131,130 @@ public class WebStockDataRetriever implements StockDataRetriever {
           int toYear)
           throws
           Exception {
-
-
-    URL url = new URL("https://www.google"
-            + ".com/finance/historical?output=csv&q=" + stockSymbol + "&startdate="
+    String url = historyUrl + "?output=csv&q=" + encode(stockSymbol) + "&startdate="
             + fromMonth + "+" + fromDate + "+" + fromYear + "&enddate=" + toMonth + "+"
-            + toDate + "+" + toYear);
-
-    String output = "";
-    Map<Integer, PriceRecord> prices = new TreeMap<Integer, PriceRecord>();
-    Scanner sc = new Scanner(url.openStream());
-    //get first line of labels
-    output = sc.next();
-
-    while (sc.hasNext()) {
-      output = sc.next();
-      String[] data = output.split(",");
-      PriceRecord record = new PriceRecord(
-              Double.parseDouble(data[1]),
-              Double.parseDouble(data[4]),
-              Double.parseDouble(data[3]),
-              Double.parseDouble(data[2])
-      );
-      //date is index 0
-      Integer date = getDate(data[0]);
-      prices.put(date, record);
+            + toDate + "+" + toYear;
+    permits.acquire();
+    try (InputStream in = open(url)) {
+      return PARSER.get().parse(in).toMap();
+    } finally {
+      permits.release();
     }
-    return prices;
-
   }
 
-
-  private int toMonth(String month) {
-    switch (month) {
-      case "Jan":
-        return 1;
-      case "Feb":
-        return 2;
-      case "Mar":
-        return 3;
-      case "Apr":
-        return 4;
-      case "May":
-        return 5;
-      case "Jun":
-        return 6;
-      case "Jul":
-        return 7;
-      case "Aug":
-        return 8;
-      case "Sep":
-        return 9;
-      case "Oct":
-        return 10;
-      case "Nov":
-        return 11;
-      case "Dec":
-        return 12;
-      default:
-        return -1;
+  /**
+   * Get historical pricing of several stocks, fetching as many stocks at a time as requests may
+   * be in flight.
+   *
+   * @param stockSymbols the stock symbols
+   * @param fromDate     from day of the date
+   * @param fromMonth    from month of the date
+   * @param fromYear     from year of the date
+   * @param toDate       to day from the date
+   * @param toMonth      to month of the date
+   * @param toYear       to year of the date
+   * @return map with stock symbol as key and the historical price of that stock as value
+   * @throws Exception when cannot retrieve data
+   */
+  @Override
+  public Map<String, Map<Integer, PriceRecord>> getHistoricalPrices(
+          Collection<String> stockSymbols,
+          int fromDate,
+          int fromMonth,
+          int fromYear,
+          int toDate,
+          int toMonth,
+          int toYear)
+          throws
+          Exception {
+    Set<String> symbols = new LinkedHashSet<>(stockSymbols);
+    if (symbols.size() <= 1) {
+      return StockDataRetriever.super.getHistoricalPrices(symbols, fromDate, fromMonth, fromYear,
+              toDate, toMonth, toYear);
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(maxConcurrency,
+            symbols.size()));
+    try {
+      Map<String, Future<Map<Integer, PriceRecord>>> futures = new LinkedHashMap<>();
+      for (String stockSymbol : symbols) {
+        futures.put(stockSymbol, pool.submit(() -> getHistoricalPrices(stockSymbol,
+                fromDate, fromMonth, fromYear, toDate, toMonth, toYear)));
+      }
+      Map<String, Map<Integer, PriceRecord>> prices = new LinkedHashMap<>();
+      for (Map.Entry<String, Future<Map<Integer, PriceRecord>>> e : futures.entrySet()) {
+        try {
+          prices.put(e.getKey(), e.getValue().get());
+        } catch (ExecutionException ex) {
+          throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+      }
+      return prices;
+    } finally {
+      pool.shutdownNow();
     }
   }
 
-  private Integer getDate(String date) {
-    String[] splitdate = date.split("-");
-    int actualDate = Integer.parseInt(splitdate[0]);
-    int actualYear = Integer.parseInt(splitdate[2]);
-    int actualMonth = toMonth(splitdate[1]);
-    if (actualYear <= LocalDate.now().getYear() % 100) {
-      actualYear = LocalDate.now().getYear() / 100 * 100 + actualYear;
-    } else {
-      actualYear = (LocalDate.now().getYear() / 100 - 1) * 100 + actualYear;
+  /**
+   * Get the first line of the response to a request, without surrounding white space.
+   *
+   * @param url the request URL
+   * @return the first line
+   * @throws Exception when cannot retrieve data
+   */
+  private String getLine(String url) throws Exception {
+    permits.acquire();
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(open(url),
+            StandardCharsets.UTF_8))) {
+      String line = in.readLine();
+      if (line == null) {
+        throw new IOException("empty response from " + url);
+      }
+      return line.trim();
+    } finally {
+      permits.release();
     }
-    return (actualYear * 100 + actualMonth) * 100 + actualDate;
   }
 
-  public static void main(String[] args) {
-    WebStockDataRetriever test = new WebStockDataRetriever();
+  /**
+   * Send a request and open its response body, decompressing it if it is gzip encoded. The
+   * caller must hold a permit and close the stream.
+   *
+   * @param url the request URL
+   * @return the response body
+   * @throws Exception when the request fails or its status is not 200
+   */
+  private InputStream open(String url) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+            .timeout(timeout)
+            .header("Accept-Encoding", "gzip")
+            .GET()
+            .build();
+    HttpResponse<InputStream> response = client.send(request,
+            HttpResponse.BodyHandlers.ofInputStream());
+    InputStream body = response.body();
+    if (response.statusCode() != 200) {
+      body.close();
+      throw new IOException("HTTP " + response.statusCode() + " for " + url);
+    }
+    if (response.headers().firstValue("Content-Encoding").orElse("")
+            .equalsIgnoreCase("gzip")) {
+      try {
+        return new GZIPInputStream(body, 1 << 16);
+      } catch (IOException e) {
+        body.close();
+        throw e;
+      }
+    }
+    return body;
   }
 
-
+  /**
+   * Encode a stock symbol for a query string.
+   *
+   * @param stockSymbol the stock symbol
+   * @return the encoded symbol
+   */
+  private static String encode(String stockSymbol) {
+    return URLEncoder.encode(stockSymbol, StandardCharsets.UTF_8);
+  }
 }
@@ -2,12 +2,26 @@ package view.trader;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
+import controller.BatchController;
 import controller.InteractiveController;
 import model.trader.IStockModel;
 import model.trader.SimpleTrendCalculator;
 import model.trader.TrendCalculator;
+import util.CachedStockDataRetriever;
+import util.CassetteStockDataRetriever;
+import util.CoalescingStockDataRetriever;
+import util.MappedStockDataRetriever;
+import util.PriceStoreIngester;
 import util.StockDataRetriever;
+import util.SyntheticStockDataRetriever;
+import util.TieredStockDataRetriever;
 import util.WebStockDataRetriever;
 
 /**
@@ -18,13 +32,138 @@ public class App {
 
   /**
    * Entrance to the application.
+   * [-store directory]: serve stock data from a local price store instead of the web.
+   * [-synthetic seed]: serve generated stock data of the given seed instead of the web.
+   * [-cache directory]: cache web data on the heap and spill it to the given directory, instead
+   * of caching it on the heap only.
+   * [-record file]: record every request made to the web, or to the cassette given by -replay,
+   * into a cassette file.
+   * [-replay file]: serve the requests recorded in a cassette file instead of the web.
+   * [-pace scale]: make each replayed request wait its recorded time times scale, 0 by default.
+   * [-snapshot file]: restore the model saved in the file when it exists, replay the basket
+   * changes journaled since into file.journal, journal every later change there, and fold the
+   * journal into the snapshot every 10000 changes and on exit.
+   * [-batch [file]]: run the commands of a file, or of standard input, without the manual and
+   * write one record per command.
+   * [-format tsv|json]: output format of batch mode, tsv by default.
+   * [-flush n]: flush batch output after every n commands, only at the end by default.
+   * [-ingest file/directory]: build or extend the price store given by -store from CSV dumps,
+   * print the ingestion report and exit.
+   * [-threads n]: number of threads used by -ingest, one per core by default, and number of
+   * stocks -refresh fetches at the same time, 8 by default.
    *
    * @param args input arguments
    */
   public static void main(String[] args) throws IOException {
-    StockDataRetriever dataRetriever = new WebStockDataRetriever();
+    String store = null;
+    String cache = null;
+    String snapshot = null;
+    String synthetic = null;
+    String record = null;
+    String replay = null;
+    double pace = 0;
+    boolean batch = false;
+    String script = null;
+    BatchController.Format format = BatchController.Format.TSV;
+    int flushEvery = 0;
+    String ingest = null;
+    int threads = 0;
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("-store") && i + 1 < args.length) {
+        store = args[++i];
+      } else if (args[i].equals("-cache") && i + 1 < args.length) {
+        cache = args[++i];
+      } else if (args[i].equals("-synthetic") && i + 1 < args.length) {
+        synthetic = args[++i];
+      } else if (args[i].equals("-record") && i + 1 < args.length) {
+        record = args[++i];
+      } else if (args[i].equals("-replay") && i + 1 < args.length) {
+        replay = args[++i];
+      } else if (args[i].equals("-pace") && i + 1 < args.length) {
+        pace = Double.parseDouble(args[++i]);
+      } else if (args[i].equals("-snapshot") && i + 1 < args.length) {
+        snapshot = args[++i];
+      } else if (args[i].equals("-batch")) {
+        batch = true;
+        if (i + 1 < args.length && !args[i + 1].startsWith("-")) {
+          script = args[++i];
+        }
+      } else if (args[i].equals("-format") && i + 1 < args.length) {
+        format = BatchController.Format.valueOf(args[++i].toUpperCase());
+      } else if (args[i].equals("-flush") && i + 1 < args.length) {
+        flushEvery = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("-ingest") && i + 1 < args.length) {
+        ingest = args[++i];
+      } else if (args[i].equals("-threads") && i + 1 < args.length) {
+        threads = Integer.parseInt(args[++i]);
+      }
+    }
+
+    if (ingest != null) {
+      if (store == null) {
+        System.err.println("-ingest needs a -store directory");
+        return;
+      }
+      try {
+        System.out.println(new PriceStoreIngester(Paths.get(store),
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors())
+                .ingest(Paths.get(ingest)));
+      } catch (Exception e) {
+        System.err.println(e.getMessage());
+      }
+      return;
+    }
+
+    StockDataRetriever web = replay == null ? new WebStockDataRetriever()
+            : CassetteStockDataRetriever.replay(Paths.get(replay), pace);
+    CassetteStockDataRetriever recorder = null;
+    if (record != null) {
+      recorder = CassetteStockDataRetriever.record(web, Paths.get(record));
+      web = recorder;
+    }
+    StockDataRetriever dataRetriever;
+    if (synthetic != null) {
+      dataRetriever = new CachedStockDataRetriever(
+              new SyntheticStockDataRetriever(Long.parseLong(synthetic)));
+    } else if (store != null) {
+      dataRetriever = new MappedStockDataRetriever(Paths.get(store),
+              new CoalescingStockDataRetriever(web),
+              threads > 0 ? threads : 8);
+    } else if (cache != null) {
+      dataRetriever = new TieredStockDataRetriever(
+              new CoalescingStockDataRetriever(web), Paths.get(cache),
+              Runtime.getRuntime().maxMemory() / 8, 1L << 30);
+    } else {
+      dataRetriever = new CachedStockDataRetriever(
+              new CoalescingStockDataRetriever(web));
+    }
     IStockModel iStockModel = new IStockModel(dataRetriever);
     TrendCalculator trendCalculator = new SimpleTrendCalculator();
+    if (snapshot != null) {
+      try {
+        iStockModel.openJournal(Paths.get(snapshot), Paths.get(snapshot + ".journal"), 10,
+                10000);
+      } catch (Exception e) {
+        System.err.println("cannot load snapshot: " + e.getMessage());
+      }
+    }
+
+    if (batch) {
+      Reader in = script == null
+              ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+              : Files.newBufferedReader(Paths.get(script), StandardCharsets.UTF_8);
+      Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+      try {
+        new BatchController(in, out, format, flushEvery, iStockModel, dataRetriever,
+                trendCalculator).startProgram();
+      } catch (Exception e) {
+        System.err.println(e.getMessage());
+      } finally {
+        in.close();
+      }
+      save(iStockModel, snapshot, recorder);
+      return;
+    }
 
     final Readable IN = new InputStreamReader(System.in);
     final Appendable OUT = System.out;
@@ -40,8 +179,32 @@ public class App {
     } catch (Exception e) {
       view.printError("invalid input\n");
     }
+    save(iStockModel, snapshot, recorder);
   }
 
-
-
+  /**
+   * Fold the journal into the snapshot file and write out the cassette, if they were given.
+   *
+   * @param iStockModel the model
+   * @param snapshot    the snapshot file, or null
+   * @param recorder    the recording cassette, or null
+   */
+  private static void save(IStockModel iStockModel, String snapshot,
+                           CassetteStockDataRetriever recorder) {
+    if (recorder != null) {
+      try {
+        recorder.close();
+      } catch (IOException e) {
+        System.err.println("cannot save cassette: " + e.getMessage());
+      }
+    }
+    if (snapshot == null) {
+      return;
+    }
+    try {
+      iStockModel.closeJournal();
+    } catch (IOException e) {
+      System.err.println("cannot save snapshot: " + e.getMessage());
+    }
+  }
 }
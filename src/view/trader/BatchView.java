@@ -0,0 +1,120 @@
+package view.trader;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is a Batch View class, the view used when commands are run from a script.
+ * It never prints the manual and never opens a graph window: graph lines are only kept in memory.
+ * Everything a command prints is collected, so the batch controller can take the output and the
+ * error status of each command separately.
+ */
+public class BatchView extends InteractiveView {
+  private final StringBuilder buffer;
+  private Map<String, Map<Integer, Double>> graph;
+  private boolean error;
+
+  /**
+   * Construct a batch view object.
+   */
+  public BatchView() {
+    this(new StringBuilder());
+  }
+
+  /**
+   * Construct a batch view object collecting output in the given buffer.
+   *
+   * @param buffer the buffer
+   */
+  private BatchView(StringBuilder buffer) {
+    super(buffer);
+    this.buffer = buffer;
+  }
+
+  /**
+   * Take the output printed since the last call, and clear it.
+   *
+   * @return the output
+   */
+  public String takeOutput() {
+    String output = buffer.toString();
+    buffer.setLength(0);
+    return output;
+  }
+
+  /**
+   * Take whether an error was printed since the last call, and clear it.
+   *
+   * @return true if an error was printed
+   */
+  public boolean takeError() {
+    boolean result = error;
+    error = false;
+    return result;
+  }
+
+  @Override
+  public void manual() {
+    // the manual is for people typing commands, not for scripts
+  }
+
+  @Override
+  public void printError(String message) throws IOException {
+    error = true;
+    super.printError(message);
+  }
+
+  @Override
+  public void printGraph() {
+    graph = new LinkedHashMap<>();
+  }
+
+  @Override
+  public void addline(Map<String, Map<Integer, Double>> newdata) throws IOException {
+    if (graph == null) {
+      printMessage("create a graph first\n");
+      return;
+    }
+    if (graph.size() + newdata.size() < 11) {
+      graph.putAll(newdata);
+      printMessage("data added to graph\n");
+    } else {
+      printMessage("Maximum 11 lines are allowed in one graph\n");
+    }
+  }
+
+  @Override
+  public void removeline(List<String> istocklist) throws IOException {
+    if (graph == null) {
+      printMessage("create a graph first\n");
+      return;
+    }
+    for (String stockname : istocklist) {
+      if (graph.remove(stockname) == null) {
+        printMessage("line is not exist\n");
+        return;
+      }
+    }
+    printMessage("line removed\n");
+  }
+
+  @Override
+  public void plotWithData(Map<String, Map<Integer, Double>> newdata) {
+    if (newdata.size() >= 11) {
+      throw new IndexOutOfBoundsException();
+    }
+    graph = new LinkedHashMap<>(newdata);
+  }
+
+  @Override
+  public void plotWithData(Map<String, Map<Integer, Double>> newdata,
+                           Map<String, Map<Integer, Double>> oscillators) {
+    if (newdata.size() + oscillators.size() >= 11) {
+      throw new IndexOutOfBoundsException();
+    }
+    graph = new LinkedHashMap<>(newdata);
+    graph.putAll(oscillators);
+  }
+}
@@ -41,4 +41,14 @@ public interface GraphicView {
    * @param newdata data for plot
    */
   void plotWithData(Map<String, Map<Integer, Double>> newdata) throws IOException;
+
+  /**
+   * Create a new graph with given price data, and given oscillator data on a separate axis.
+   * Maximum 11 lines/data will be allowed in one graph, counting both.
+   *
+   * @param newdata     price data for plot
+   * @param oscillators oscillator data for plot, whose values are not on the price scale
+   */
+  void plotWithData(Map<String, Map<Integer, Double>> newdata,
+                    Map<String, Map<Integer, Double>> oscillators) throws IOException;
 }
@@ -37,10 +37,17 @@ public class InteractiveView implements TextView, GraphicView {
             + "[-graph -plotMA50-200 basketname/stockname startDate endDate]\n"
             + "[-graph -add basketname/stockname startDate endDate]\n"
             + "[-graph -addMA days basketname/stockname startDate endDate]\n"
+            + "[-graph -plotIndicators EMA20,RSI14,MACD,BB20,ATR14 basketname/stockname "
+            + "startDate endDate]\n"
             + "[-graph -remove basketname/stockname]\n"
             + "[-simulate -run principle investingAmount startDate endDate "
             + "DCA/AR MONTH/QUARTER {a list of stock proportion pairs}]\n"
             + "[-simulate -query date]\n"
+            + "[-simulate -curve startDate endDate]\n"
+            + "[-simulate -sweep principles investingAmounts startDate endDate DCA,AR "
+            + "MONTH,QUARTER stock1,stock2 steps [top]]\n"
+            + "[-refresh stockName...]\n"
+            + "[-save file]\n"
             + "[q Exit]\n");
   }
 
@@ -123,6 +130,18 @@ public class InteractiveView implements TextView, GraphicView {
     }
   }
 
+  @Override
+  public void plotWithData(Map<String, Map<Integer, Double>> newdata,
+                           Map<String, Map<Integer, Double>> oscillators) throws IOException {
+    if (newdata.size() + oscillators.size() < 11) {
+      graph = new DrawLine();
+      graph.addStock(newdata);
+      graph.addOscillators(oscillators);
+    } else {
+      throw new IndexOutOfBoundsException();
+    }
+  }
+
   @Override
   public String toString() {
     return this.out.toString();
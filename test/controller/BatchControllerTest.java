@@ -0,0 +1,87 @@
+package controller;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import model.trader.IStockModel;
+import model.trader.SimpleTrendCalculator;
+import util.FakeStockDataRetriever;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for batch controller class.
+ */
+public class BatchControllerTest {
+  private String script = "# nightly report\n"
+          + "-create basket1 20150101\n"
+          + "\n"
+          + "  -add GOOG 10   basket1\n"
+          + "-nosuchcommand\n"
+          + "-simulate -run 5000 1000 20170102 20170601 DCA MONTH GOOG 1\n"
+          + "-simulate -query 20170601\n"
+          + "q\n"
+          + "-create basket2 20150101\n";
+
+  /**
+   * Run the script and return the output.
+   *
+   * @param format output format
+   * @return the output
+   */
+  private String run(BatchController.Format format) throws Exception {
+    FakeStockDataRetriever dataRetriever = new FakeStockDataRetriever();
+    StringWriter out = new StringWriter();
+    new BatchController(new StringReader(script), out, format, 2,
+            new IStockModel(dataRetriever), dataRetriever, new SimpleTrendCalculator())
+            .startProgram();
+    return out.toString();
+  }
+
+  /**
+   * Tests if each command writes one tab separated record, without the manual.
+   */
+  @Test
+  public void tsvTest() throws Exception {
+    String[] lines = run(BatchController.Format.TSV).split("\n");
+    assertEquals(6, lines.length);
+    assertEquals("seq\tstatus\tmillis\tcommand\toutput", lines[0]);
+    String[] first = lines[1].split("\t");
+    assertEquals("1", first[0]);
+    assertEquals("ok", first[1]);
+    assertEquals("-create basket1 20150101", first[3]);
+    assertEquals("Basket basket1 Created", first[4]);
+    assertTrue(lines[2].endsWith("\t-add GOOG 10   basket1\t"
+            + "Stock GOOG with share 10 has been added to basket1"));
+    assertTrue(lines[3].startsWith("3\terror\t"));
+    assertTrue(lines[5].startsWith("5\tok\t"));
+    assertTrue(lines[5].contains("Profit on 2017-06-01 is "));
+  }
+
+  /**
+   * Tests if each command writes one JSON object per line.
+   */
+  @Test
+  public void jsonTest() throws Exception {
+    String[] lines = run(BatchController.Format.JSON).split("\n");
+    assertEquals(5, lines.length);
+    assertTrue(lines[0].startsWith("{\"seq\":1,\"status\":\"ok\",\"millis\":"));
+    assertTrue(lines[0].endsWith(",\"command\":\"-create basket1 20150101\","
+            + "\"output\":\"Basket basket1 Created\"}"));
+    assertTrue(lines[2].contains("\"status\":\"error\""));
+  }
+
+  /**
+   * Tests if command lines are split on any run of whitespaces.
+   */
+  @Test
+  public void tokenizeTest() {
+    assertArrayEquals(new String[]{"-add", "GOOG", "10", "basket1"},
+            InteractiveController.tokenize(" -add\tGOOG  10 basket1 "));
+    assertEquals(0, InteractiveController.tokenize("   ").length);
+  }
+}
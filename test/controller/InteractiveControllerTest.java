@@ -43,10 +43,17 @@ public class InteractiveControllerTest {
             + "[-graph -plotMA50-200 basketname/stockname startDate endDate]\n"
             + "[-graph -add basketname/stockname startDate endDate]\n"
             + "[-graph -addMA days basketname/stockname startDate endDate]\n"
+            + "[-graph -plotIndicators EMA20,RSI14,MACD,BB20,ATR14 basketname/stockname "
+            + "startDate endDate]\n"
             + "[-graph -remove basketname/stockname]\n"
             + "[-simulate -run principle investingAmount startDate endDate "
             + "DCA/AR MONTH/QUARTER {a list of stock proportion pairs}]\n"
             + "[-simulate -query date]\n"
+            + "[-simulate -curve startDate endDate]\n"
+            + "[-simulate -sweep principles investingAmounts startDate endDate DCA,AR "
+            + "MONTH,QUARTER stock1,stock2 steps [top]]\n"
+            + "[-refresh stockName...]\n"
+            + "[-save file]\n"
             + "[q Exit]\n";
     exit = "Exit!";
 
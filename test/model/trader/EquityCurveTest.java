@@ -0,0 +1,115 @@
+package model.trader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import util.DateUtil;
+import util.FakeStockDataRetriever;
+import util.PriceSeries;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for equity curve class.
+ */
+public class EquityCurveTest {
+  private double epsilon = 0.0001;
+  private Simulator simulator;
+  private EquityCurve curve;
+
+  /**
+   * Set up a monthly simulation of two stocks from a Saturday.
+   */
+  @Before
+  public void setUp() throws Exception {
+    Map<String, Double> proportionMap = new HashMap<>();
+    proportionMap.put("AAPL", 0.5);
+    proportionMap.put("AMZN", 0.5);
+    simulator = new Simulator(5000, 1000, LocalDate.of(2017, 1, 7), LocalDate.of(2017, 6, 2),
+            "DCA", "MONTH", proportionMap, new FakeStockDataRetriever());
+    curve = simulator.getEquityCurve();
+  }
+
+  /**
+   * Tests if the curve covers every day and values days without trading like the simulation.
+   */
+  @Test
+  public void valueTest() {
+    assertEquals(20170107, curve.getStartDate());
+    assertEquals(20170602, curve.getEndDate());
+    assertEquals(curve.getValue(20170109), curve.getValue(20170107), epsilon);
+    assertEquals(curve.getValue(20170602) - simulator.getPrinciple(),
+            simulator.getProfit(LocalDate.of(2017, 6, 2)), epsilon);
+    assertFalse(curve.contains(20170106));
+  }
+
+  /**
+   * Tests if money invested grows on each investment date.
+   */
+  @Test
+  public void costTest() {
+    assertTrue(curve.getCost(20170107) <= 5000);
+    assertEquals(curve.getCost(20170107), curve.getCost(20170206), epsilon);
+    assertTrue(curve.getCost(20170207) > curve.getCost(20170206));
+    assertEquals(simulator.getPrinciple(), curve.getCost(20170602), epsilon);
+    assertEquals(curve.getValue(20170315) - simulator.getPrinciple(),
+            curve.getProfit(20170315), epsilon);
+  }
+
+  /**
+   * Tests if the simulation reports the same profit on every trading day as the model curve
+   * lines, and the same end date profit without building its curve.
+   */
+  @Test
+  public void profitTest() throws Exception {
+    Map<String, Double> proportionMap = new HashMap<>();
+    proportionMap.put("AAPL", 0.5);
+    proportionMap.put("AMZN", 0.5);
+    Simulator fresh = new Simulator(5000, 1000, LocalDate.of(2017, 1, 7),
+            LocalDate.of(2017, 6, 2), "DCA", "MONTH", proportionMap,
+            new FakeStockDataRetriever());
+    double end = fresh.getEndProfit();
+    Map<Integer, Double> queried = new HashMap<>();
+    for (int date : curve.getValues(20170107, 20170602).toMap().keySet()) {
+      queried.put(date, fresh.getProfit(DateUtil.getLocalDate(date)));
+    }
+    IStockModel model = new IStockModel(new FakeStockDataRetriever());
+    Map<Integer, Double> profits = model.getEquityCurve(fresh, LocalDate.of(2017, 1, 7),
+            LocalDate.of(2017, 6, 2)).get("profit");
+    assertEquals(queried.keySet(), profits.keySet());
+    for (Map.Entry<Integer, Double> e : queried.entrySet()) {
+      assertEquals(e.getValue(), profits.get(e.getKey()), epsilon);
+      assertEquals(e.getValue(), fresh.getProfit(DateUtil.getLocalDate(e.getKey())), epsilon);
+    }
+    assertEquals(fresh.getProfit(LocalDate.of(2017, 6, 2)), end, epsilon);
+  }
+
+  /**
+   * Tests if range queries return trading days only.
+   */
+  @Test
+  public void rangeTest() {
+    PriceSeries values = curve.getValues(20170101, 20170115);
+    assertEquals(5, values.size());
+    assertEquals(20170109, values.dateAt(0));
+    IStockModel model = new IStockModel(new FakeStockDataRetriever());
+    Map<String, Map<Integer, Double>> lines = model.getEquityCurve(simulator,
+            LocalDate.of(2017, 1, 7), LocalDate.of(2017, 6, 2));
+    assertEquals(lines.get("value").keySet(), lines.get("profit").keySet());
+    assertEquals(curve.getProfit(20170601), lines.get("profit").get(20170601), epsilon);
+  }
+
+  /**
+   * Tests if an exception is thrown for a date out of the simulation range.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void outOfRangeTest() {
+    curve.getValue(20170603);
+  }
+}
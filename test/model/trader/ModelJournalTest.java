@@ -0,0 +1,183 @@
+package model.trader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import util.CachedStockDataRetriever;
+import util.FakeStockDataRetriever;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for model journal class.
+ */
+public class ModelJournalTest {
+  private Path snapshot;
+  private Path journal;
+  private CachedStockDataRetriever cache;
+
+  /**
+   * Set up the files of a model.
+   */
+  @Before
+  public void setUp() throws Exception {
+    Path dir = Files.createTempDirectory("journal");
+    snapshot = dir.resolve("model.snapshot");
+    journal = dir.resolve("model.snapshot.journal");
+    cache = new CachedStockDataRetriever(new FakeStockDataRetriever());
+  }
+
+  /**
+   * Tests if basket changes journaled without a snapshot are replayed without validating stocks
+   * again.
+   */
+  @Test
+  public void replayTest() throws Exception {
+    IStockModel model = new IStockModel(cache);
+    assertEquals(0, model.openJournal(snapshot, journal, 10, 1000));
+    model.add("tech", cache, 20170101);
+    model.addStock("tech", "GOOG", 10);
+    model.addStock("tech", "GOOG", 2);
+    model.addStock("tech", "AAPL", 5);
+    model.getJournal().sync();
+
+    FakeStockDataRetriever newSource = new FakeStockDataRetriever();
+    CachedStockDataRetriever newCache = new CachedStockDataRetriever(newSource);
+    IStockModel restored = new IStockModel(newCache);
+    assertEquals(4, restored.openJournal(snapshot, journal, 10, 1000));
+    assertEquals(0, newSource.nameCalls);
+    Basket tech = restored.getBasketSet().get("tech");
+    assertEquals(20170101, tech.getBasektCreateTime());
+    assertEquals(12, (int) tech.getStockMap().get("GOOG"));
+    assertEquals(5, (int) tech.getStockMap().get("AAPL"));
+    restored.closeJournal();
+    model.closeJournal();
+  }
+
+  /**
+   * Tests if stocks of a basket with its own retriever are journaled and compacted with their
+   * names, so restoring them does not validate them again.
+   */
+  @Test
+  public void otherRetrieverTest() throws Exception {
+    IStockModel model = new IStockModel(cache);
+    model.openJournal(snapshot, journal, 10, 1000);
+    model.add("other", new FakeStockDataRetriever(), 20170101);
+    model.addStock("other", "GOOG", 3);
+    model.getJournal().sync();
+    FakeStockDataRetriever newSource = new FakeStockDataRetriever();
+    IStockModel restored = new IStockModel(new CachedStockDataRetriever(newSource));
+    assertEquals(2, restored.openJournal(snapshot, journal, 10, 1000));
+    assertEquals(0, newSource.nameCalls);
+    restored.closeJournal();
+    model.closeJournal();
+
+    Files.delete(journal);
+    model = new IStockModel(cache);
+    model.openJournal(snapshot, journal, 0, 2);
+    model.add("other", new FakeStockDataRetriever(), 20170101);
+    model.addStock("other", "AAPL", 4);
+    model.closeJournal();
+    assertTrue(Files.exists(snapshot));
+    newSource = new FakeStockDataRetriever();
+    restored = new IStockModel(new CachedStockDataRetriever(newSource));
+    restored.openJournal(snapshot, journal, 10, 1000);
+    assertEquals(4, (int) restored.getBasketSet().get("other").getStockMap().get("AAPL"));
+    assertEquals(0, newSource.nameCalls);
+    restored.closeJournal();
+  }
+
+  /**
+   * Tests if thousands of added stocks are committed in a few groups instead of one sync each.
+   */
+  @Test
+  public void groupCommitTest() throws Exception {
+    IStockModel model = new IStockModel(cache);
+    model.openJournal(snapshot, journal, 10, 100000);
+    model.add("big", cache, 20170101);
+    for (int i = 0; i < 5000; i++) {
+      model.addStock("big", "S" + (i % 100), 1);
+    }
+    ModelJournal records = model.getJournal();
+    records.sync();
+    assertEquals(5001, records.getRecordCount());
+    assertTrue(records.getCommitCount() < 100);
+    model.closeJournal();
+
+    IStockModel restored = new IStockModel(cache);
+    assertEquals(0, restored.openJournal(snapshot, journal, 10, 100000));
+    assertEquals(50, (int) restored.getBasketSet().get("big").getStockMap().get("S99"));
+    restored.closeJournal();
+  }
+
+  /**
+   * Tests if compaction folds the journal into the snapshot, and records folded in are not
+   * replayed again when the journal could not be emptied.
+   */
+  @Test
+  public void compactTest() throws Exception {
+    IStockModel model = new IStockModel(cache);
+    model.openJournal(snapshot, journal, 0, 3);
+    model.add("tech", cache, 20170101);
+    model.addStock("tech", "GOOG", 10);
+    model.getJournal().sync();
+    byte[] beforeCompaction = Files.readAllBytes(journal);
+    model.addStock("tech", "GOOG", 1);
+    assertTrue(Files.exists(snapshot));
+    assertEquals(0, model.getJournal().getRecordCount());
+    model.addStock("tech", "AAPL", 4);
+    model.getJournal().sync();
+    model.closeJournal();
+    assertFalse(Files.size(journal) > 16);
+
+    IStockModel restored = new IStockModel(cache);
+    assertEquals(0, restored.openJournal(snapshot, journal, 0, 1000));
+    assertEquals(11, (int) restored.getBasketSet().get("tech").getStockMap().get("GOOG"));
+    assertEquals(4, (int) restored.getBasketSet().get("tech").getStockMap().get("AAPL"));
+    restored.closeJournal();
+
+    // as if a crash came between writing the snapshot and emptying the journal
+    Files.write(journal, beforeCompaction);
+    IStockModel crashed = new IStockModel(cache);
+    assertEquals(0, crashed.openJournal(snapshot, journal, 0, 1000));
+    assertEquals(11, (int) crashed.getBasketSet().get("tech").getStockMap().get("GOOG"));
+    crashed.closeJournal();
+  }
+
+  /**
+   * Tests if a record torn by a crash is cut off and the records before it are replayed.
+   */
+  @Test
+  public void tornRecordTest() throws Exception {
+    IStockModel model = new IStockModel(cache);
+    model.openJournal(snapshot, journal, 0, 1000);
+    model.add("tech", cache, 20170101);
+    model.addStock("tech", "GOOG", 10);
+    model.addStock("tech", "MSFT", 3);
+    model.getJournal().sync();
+    long size = Files.size(journal);
+    try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.WRITE)) {
+      channel.truncate(size - 3);
+    }
+
+    IStockModel restored = new IStockModel(cache);
+    assertEquals(2, restored.openJournal(snapshot, journal, 0, 1000));
+    assertEquals(10, (int) restored.getBasketSet().get("tech").getStockMap().get("GOOG"));
+    assertFalse(restored.getBasketSet().get("tech").getStockMap().containsKey("MSFT"));
+    restored.addStock("tech", "AAPL", 1);
+    restored.closeJournal();
+
+    IStockModel again = new IStockModel(cache);
+    again.openJournal(snapshot, journal, 0, 1000);
+    assertEquals(1, (int) again.getBasketSet().get("tech").getStockMap().get("AAPL"));
+    again.closeJournal();
+    model.closeJournal();
+  }
+}
@@ -0,0 +1,95 @@
+package model.trader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import util.CachedStockDataRetriever;
+import util.FakeStockDataRetriever;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for model snapshot class.
+ */
+public class ModelSnapshotTest {
+  private double epsilon = 0.0001;
+  private Path file;
+  private FakeStockDataRetriever source;
+  private CachedStockDataRetriever cache;
+  private IStockModel model;
+
+  /**
+   * Set up a model with two baskets whose prices have been fetched once.
+   */
+  @Before
+  public void setUp() throws Exception {
+    file = Files.createTempDirectory("snapshot").resolve("model.snapshot");
+    source = new FakeStockDataRetriever();
+    cache = new CachedStockDataRetriever(source);
+    model = new IStockModel(cache);
+    model.add("tech", cache, 20170101);
+    model.addStock("tech", "GOOG", 10);
+    model.addStock("tech", "AAPL", 5);
+    model.addStock("tech", "GOOG", 2);
+    model.add("single", cache, 20160601);
+    model.addStock("single", "MSFT", 7);
+    model.iStockPlot("tech", 20170301, 20170331);
+  }
+
+  /**
+   * Tests if a saved model is restored without validating stocks or fetching prices again.
+   */
+  @Test
+  public void restoreTest() throws Exception {
+    Map<String, Map<Integer, Double>> before = model.iStockPlot("tech", 20170301, 20170331);
+    model.saveSnapshot(file);
+
+    FakeStockDataRetriever newSource = new FakeStockDataRetriever();
+    CachedStockDataRetriever newCache = new CachedStockDataRetriever(newSource);
+    IStockModel restored = new IStockModel(newCache);
+    assertEquals(2, restored.loadSnapshot(file));
+    assertEquals(0, newSource.nameCalls);
+
+    Basket tech = restored.getBasketSet().get("tech");
+    assertEquals(20170101, tech.getBasektCreateTime());
+    assertEquals(12, (int) tech.getStockMap().get("GOOG"));
+    assertEquals(5, (int) tech.getStockMap().get("AAPL"));
+    assertEquals(7, (int) restored.getBasketSet().get("single").getStockMap().get("MSFT"));
+    assertEquals(20160601, restored.getBasketSet().get("single").getBasektCreateTime());
+
+    Map<String, Map<Integer, Double>> after = restored.iStockPlot("tech", 20170301, 20170331);
+    assertEquals(0, newSource.historicalCalls);
+    assertEquals(before.get("tech").keySet(), after.get("tech").keySet());
+    assertEquals(before.get("tech").get(20170315), after.get("tech").get(20170315), epsilon);
+  }
+
+  /**
+   * Tests if hundreds of baskets are saved and restored.
+   */
+  @Test
+  public void manyBasketsTest() throws Exception {
+    for (int i = 0; i < 500; i++) {
+      model.add("b" + i, cache, 20170101);
+      model.addStock("b" + i, "S" + (i % 50), i + 1);
+    }
+    model.saveSnapshot(file);
+    IStockModel restored = new IStockModel(cache);
+    assertEquals(502, restored.loadSnapshot(file));
+    assertEquals(500, (int) restored.getBasketSet().get("b499").getStockMap().get("S49"));
+    assertTrue(restored.containsBasket("b0"));
+  }
+
+  /**
+   * Tests if an exception is thrown for a file which is not a snapshot.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidFileTest() throws Exception {
+    Files.write(file, "not a snapshot".getBytes());
+    model.loadSnapshot(file);
+  }
+}
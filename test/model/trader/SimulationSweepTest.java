@@ -0,0 +1,84 @@
+package model.trader;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import util.FakeStockDataRetriever;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for simulation sweep class.
+ */
+public class SimulationSweepTest {
+  private double epsilon = 0.0001;
+
+  /**
+   * Tests if the proportion grid holds every split of 1 into equal steps.
+   */
+  @Test
+  public void proportionGridTest() {
+    List<Map<String, Double>> grid = SimulationSweep.proportionGrid(
+            Arrays.asList("AAPL", "AMZN", "GOOG"), 10);
+    assertEquals(66, grid.size());
+    for (Map<String, Double> proportion : grid) {
+      double sum = 0;
+      for (double part : proportion.values()) {
+        sum += part;
+      }
+      assertEquals(1, sum, 0.00001);
+    }
+    assertEquals(1.0, grid.get(0).get("AAPL"), epsilon);
+  }
+
+  /**
+   * Tests if a parallel sweep fetches prices once and gives the profits of single simulations.
+   */
+  @Test
+  public void sweepTest() throws Exception {
+    FakeStockDataRetriever dataRetriever = new FakeStockDataRetriever();
+    SymbolRegistry registry = new SymbolRegistry(dataRetriever);
+    LocalDate startDate = LocalDate.of(2016, 1, 4);
+    LocalDate endDate = LocalDate.of(2017, 6, 2);
+    SimulationSweep sweep = new SimulationSweep(startDate, endDate, Arrays.asList(5000.0, 8000.0),
+            Arrays.asList(500.0, 1000.0), Arrays.asList("DCA", "AR"),
+            Arrays.asList("MONTH", "QUARTER"),
+            SimulationSweep.proportionGrid(Arrays.asList("AAPL", "AMZN"), 4));
+    assertEquals(80, sweep.size());
+
+    List<SimulationSweep.Result> results = sweep.run(registry, new ForkJoinPool(4));
+    assertEquals(80, results.size());
+    assertEquals(2, dataRetriever.historicalCalls);
+    for (int i = 1; i < results.size(); i++) {
+      assertTrue(results.get(i - 1).getProfit() >= results.get(i).getProfit());
+    }
+
+    for (SimulationSweep.Result result : Arrays.asList(results.get(0), results.get(79))) {
+      Simulator simulator = new Simulator(result.getPrinciple(), result.getInvestAmount(),
+              startDate, endDate, result.getStrategy(), result.getCadence(),
+              result.getProportion(), dataRetriever, registry);
+      assertEquals(simulator.getProfit(endDate), result.getProfit(), epsilon);
+      assertEquals(simulator.getPrinciple(), result.getInvested(), epsilon);
+    }
+  }
+
+  /**
+   * Tests if an invalid simulation of a sweep fails the sweep with its own exception.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCadenceTest() throws Exception {
+    SimulationSweep sweep = new SimulationSweep(LocalDate.of(2017, 1, 2),
+            LocalDate.of(2017, 6, 2), Collections.singletonList(5000.0),
+            Collections.singletonList(500.0), Collections.singletonList("DCA"),
+            Arrays.asList("MONTH", "WEEK"),
+            Collections.singletonList(Collections.singletonMap("AAPL", 1.0)));
+    sweep.run(new SymbolRegistry(new FakeStockDataRetriever()));
+  }
+}
@@ -0,0 +1,93 @@
+package model.trader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import util.FakeStockDataRetriever;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for symbol registry class.
+ */
+public class SymbolRegistryTest {
+  private FakeStockDataRetriever dataRetriever;
+  private SymbolRegistry registry;
+
+  /**
+   * Set up for symbol registry test.
+   */
+  @Before
+  public void setUp() {
+    dataRetriever = new FakeStockDataRetriever("XXXX");
+    registry = new SymbolRegistry(dataRetriever);
+  }
+
+  /**
+   * Tests if one Stock object is shared per symbol, and its name is looked up only once.
+   */
+  @Test
+  public void internTest() throws Exception {
+    Stock stock1 = registry.getStock("GOOG");
+    Stock stock2 = registry.getStock("GOOG");
+    assertSame(stock1, stock2);
+    assertEquals("GOOGGOOG Corp", stock1.toString());
+    assertEquals(1, dataRetriever.nameCalls);
+  }
+
+  /**
+   * Tests if unknown symbols are remembered, and forgotten once their time-to-live elapsed.
+   */
+  @Test
+  public void negativeTest() throws Exception {
+    assertFalse(registry.isValid("XXXX"));
+    assertFalse(registry.isValid("XXXX"));
+    assertEquals(1, dataRetriever.nameCalls);
+
+    SymbolRegistry expiring = new SymbolRegistry(dataRetriever, 0, 0);
+    assertFalse(expiring.isValid("XXXX"));
+    assertTrue(expiring.isValid("GOOG"));
+    assertFalse(expiring.isValid("XXXX"));
+    assertTrue(expiring.isValid("GOOG"));
+    assertEquals(5, dataRetriever.nameCalls);
+  }
+
+  /**
+   * Tests if a valid symbol with the same hash code as a remembered unknown symbol is still
+   * looked up and found valid.
+   */
+  @Test
+  public void collisionTest() throws Exception {
+    SymbolRegistry colliding = new SymbolRegistry(new FakeStockDataRetriever("Aa"));
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    assertFalse(colliding.isValid("Aa"));
+    assertTrue(colliding.isValid("BB"));
+  }
+
+  /**
+   * Tests if an exception is thrown when an unknown stock is requested.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidStockTest() throws Exception {
+    registry.getStock("XXXX");
+  }
+
+  /**
+   * Tests if baskets sharing a registry validate each symbol only once.
+   */
+  @Test
+  public void sharedBasketTest() throws Exception {
+    Basket basket1 = new Basket("basket1", dataRetriever, 20150101, registry);
+    Basket basket2 = new Basket("basket2", dataRetriever, 20150101, registry);
+    basket1.addStock("GOOG", 10);
+    basket1.addStock("MSFT", 20);
+    basket2.addStock("GOOG", 30);
+    basket2.addStock("MSFT", 40);
+    basket1.toString();
+    assertEquals(2, dataRetriever.nameCalls);
+    assertEquals(40, (int) basket2.getStockMap().get("MSFT"));
+  }
+}
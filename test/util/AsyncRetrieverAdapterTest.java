@@ -0,0 +1,169 @@
+package util;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import model.trader.IStockModel;
+import model.trader.SimpleTrendCalculator;
+import model.trader.TrendCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test for async retriever adapter class.
+ */
+public class AsyncRetrieverAdapterTest {
+
+  /**
+   * A retriever whose fetches block until enough fetches are running at the same time, or until
+   * they are interrupted.
+   */
+  private static class BlockingRetriever extends FakeStockDataRetriever {
+    private final CountDownLatch running;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    BlockingRetriever(int parties) {
+      this.running = new CountDownLatch(parties);
+    }
+
+    @Override
+    public Map<Integer, PriceRecord> getHistoricalPrices(
+            String stockSymbol, int fromDate, int fromMonth, int fromYear,
+            int toDate, int toMonth, int toYear) throws Exception {
+      started.countDown();
+      running.countDown();
+      try {
+        if (!running.await(5, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("fetches did not overlap");
+        }
+      } catch (InterruptedException e) {
+        interrupted.countDown();
+        throw e;
+      }
+      return super.getHistoricalPrices(stockSymbol, fromDate, fromMonth, fromYear,
+              toDate, toMonth, toYear);
+    }
+  }
+
+  /**
+   * Tests if the adapter returns the same prices as the wrapped retriever.
+   */
+  @Test
+  public void fetchTest() throws Exception {
+    FakeStockDataRetriever retriever = new FakeStockDataRetriever();
+    AsyncStockDataRetriever async = new AsyncRetrieverAdapter(retriever);
+    Map<Integer, PriceRecord> prices
+            = AsyncStockDataRetriever.await(async.getHistoricalPrices("AAPL", 20170601, 20170630));
+    assertEquals(retriever.getHistoricalPrices("AAPL", 1, 6, 2017, 30, 6, 2017).keySet(),
+            prices.keySet());
+    PriceSeries closing = AsyncStockDataRetriever.await(
+            async.getClosingSeries("AAPL", 20170601, 20170630, Duration.ofSeconds(5)));
+    assertEquals(prices.get(20170601).getClosePrice(), closing.valueAt(0), 0.0001);
+    assertEquals("AAPL Corp", AsyncStockDataRetriever.await(async.getName("AAPL")));
+  }
+
+  /**
+   * Tests if a multi-stock plot and trend fetch their stocks at the same time.
+   */
+  @Test
+  public void overlapTest() throws Exception {
+    List<String> names = Arrays.asList("AAPL", "MSFT", "GOOG");
+    IStockModel model = new IStockModel(new BlockingRetriever(3));
+    Map<String, Map<Integer, Double>> lines = model.iStockPlot(names, 20170601, 20170630);
+    assertEquals(names, Arrays.asList(lines.keySet().toArray()));
+    TrendCalculator calculator = new SimpleTrendCalculator();
+    model = new IStockModel(new BlockingRetriever(3));
+    Map<String, String> trends = model.trend(names, 20170601, 20170630, calculator);
+    IStockModel serial = new IStockModel(new FakeStockDataRetriever());
+    for (String name : names) {
+      assertEquals(serial.trend(name, 20170601, 20170630, calculator), trends.get(name));
+    }
+  }
+
+  /**
+   * Tests if a passed deadline fails the future and interrupts the fetch.
+   */
+  @Test
+  public void deadlineTest() throws Exception {
+    BlockingRetriever retriever = new BlockingRetriever(2);
+    AsyncStockDataRetriever async = new AsyncRetrieverAdapter(retriever);
+    try {
+      AsyncStockDataRetriever.await(async.getHistoricalPrices("AAPL", 20170601, 20170630,
+              Duration.ofMillis(50)));
+      fail("deadline did not pass");
+    } catch (TimeoutException e) {
+      assertTrue(retriever.interrupted.await(5, TimeUnit.SECONDS));
+    }
+  }
+
+  /**
+   * Tests if cancelling a future interrupts the fetch.
+   */
+  @Test
+  public void cancelTest() throws Exception {
+    BlockingRetriever retriever = new BlockingRetriever(2);
+    AsyncStockDataRetriever async = new AsyncRetrieverAdapter(retriever);
+    CompletableFuture<Map<Integer, PriceRecord>> future
+            = async.getHistoricalPrices("AAPL", 20170601, 20170630);
+    assertTrue(retriever.started.await(5, TimeUnit.SECONDS));
+    future.cancel(true);
+    assertTrue(retriever.interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Tests if a failing fetch cancels the others and its exception is rethrown.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void failureTest() throws Exception {
+    AsyncStockDataRetriever async = new AsyncRetrieverAdapter(
+            new FakeStockDataRetriever("AAPL2"));
+    AsyncStockDataRetriever.awaitAll(async.getHistoricalPrices(
+            Arrays.asList("AAPL", "AAPL2"), 20170601, 20170630, null));
+  }
+
+  /**
+   * Tests if cancelling a closing series future interrupts the fetch behind it.
+   */
+  @Test
+  public void closingCancelTest() throws Exception {
+    BlockingRetriever retriever = new BlockingRetriever(2);
+    AsyncStockDataRetriever async = new AsyncRetrieverAdapter(retriever);
+    CompletableFuture<PriceSeries> future
+            = async.getClosingSeries("AAPL", 20170601, 20170630, null);
+    assertTrue(retriever.started.await(5, TimeUnit.SECONDS));
+    future.cancel(true);
+    assertTrue(retriever.interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Tests if the first failure is rethrown even when an earlier future is cancelled for it.
+   */
+  @Test
+  public void firstFailureTest() throws Exception {
+    Map<String, CompletableFuture<Integer>> futures = new LinkedHashMap<>();
+    CompletableFuture<Integer> pending = new CompletableFuture<>();
+    CompletableFuture<Integer> failing = new CompletableFuture<>();
+    futures.put("AAPL", pending);
+    futures.put("MSFT", failing);
+    failing.completeExceptionally(new IllegalArgumentException("invalid input"));
+    try {
+      AsyncStockDataRetriever.awaitAll(futures);
+      fail("failure was not rethrown");
+    } catch (IllegalArgumentException e) {
+      assertEquals("invalid input", e.getMessage());
+    }
+    assertTrue(pending.isCancelled());
+  }
+}
@@ -0,0 +1,118 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import model.trader.Basket;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This is a JUnit test for the interval-aware caching stock data retriever.
+ */
+public class CachedStockDataRetrieverTest {
+  private FakeStockDataRetriever source;
+  private CachedStockDataRetriever cache;
+
+  /**
+   * Set up for cached retriever test.
+   */
+  @Before
+  public void setUp() {
+    source = new FakeStockDataRetriever();
+    cache = new CachedStockDataRetriever(source, 1000);
+  }
+
+  /**
+   * Tests if a covered range is served without fetching again.
+   */
+  @Test
+  public void hitTest() throws Exception {
+    Map<Integer, PriceRecord> first = cache.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 5, 2017);
+    Map<Integer, PriceRecord> second = cache.getHistoricalPrices("GOOG", 6, 4, 2017, 5, 5, 2017);
+    assertEquals(1, source.historicalCalls);
+    assertEquals(source.getHistoricalPrices("GOOG", 6, 4, 2017, 5, 5, 2017).keySet(),
+            second.keySet());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    assertEquals(66, first.size());
+  }
+
+  /**
+   * Tests if only the missing parts of a partly covered range are fetched, and adjacent
+   * intervals are merged.
+   */
+  @Test
+  public void gapFetchTest() throws Exception {
+    cache.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 3, 2017);
+    cache.getHistoricalPrices("GOOG", 1, 5, 2017, 31, 5, 2017);
+    // covers the hole in April and the tail in June: two gaps
+    Map<Integer, PriceRecord> all = cache.getHistoricalPrices("GOOG", 1, 3, 2017, 30, 6, 2017);
+    assertEquals(4, cache.getGapFetchCount());
+    assertEquals(source.getHistoricalPrices("GOOG", 1, 3, 2017, 30, 6, 2017).keySet(),
+            all.keySet());
+    // the adjacent intervals have been merged, so any sub range is a hit
+    cache.getHistoricalPrices("GOOG", 20, 3, 2017, 10, 6, 2017);
+    assertEquals(1, cache.getHitCount());
+  }
+
+  /**
+   * Tests if whole symbols are evicted, least recently used first, when the bound is reached.
+   */
+  @Test
+  public void evictionTest() throws Exception {
+    cache.getHistoricalPrices("GOOG", 1, 1, 2016, 30, 6, 2017);
+    cache.getHistoricalPrices("MSFT", 1, 1, 2016, 30, 6, 2017);
+    // each symbol holds 391 records, the third one pushes GOOG out
+    cache.getHistoricalPrices("MSFT", 1, 1, 2016, 2, 1, 2016);
+    cache.getHistoricalPrices("AAPL", 1, 1, 2016, 30, 6, 2017);
+    assertEquals(782, cache.getRecordCount());
+    int calls = source.historicalCalls;
+    cache.getHistoricalPrices("MSFT", 1, 1, 2016, 30, 6, 2017);
+    assertEquals(calls, source.historicalCalls);
+    cache.getHistoricalPrices("GOOG", 1, 1, 2016, 30, 6, 2017);
+    assertEquals(calls + 1, source.historicalCalls);
+  }
+
+  /**
+   * Tests if a batch request serves covered stocks from the cache and fetches the others with
+   * one batch request.
+   */
+  @Test
+  public void batchTest() throws Exception {
+    cache.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 5, 2017);
+    Map<String, Map<Integer, PriceRecord>> prices = cache.getHistoricalPrices(
+            Arrays.asList("AAPL", "GOOG", "AMZN"), 1, 4, 2017, 30, 4, 2017);
+    assertEquals(Arrays.asList("AAPL", "GOOG", "AMZN"), new ArrayList<>(prices.keySet()));
+    assertEquals(1, source.batchCalls);
+    assertEquals(3, source.historicalCalls);
+    assertEquals(source.getHistoricalPrices("AMZN", 1, 4, 2017, 30, 4, 2017).keySet(),
+            prices.get("AMZN").keySet());
+    assertEquals(20, prices.get("GOOG").size());
+
+    cache.getHistoricalPrices(Arrays.asList("AAPL", "AMZN"), 3, 4, 2017, 28, 4, 2017);
+    assertEquals(1, source.batchCalls);
+    assertEquals(3, cache.getHitCount());
+  }
+
+  /**
+   * Tests if a basket fetches the prices of all its stocks with one batch request.
+   */
+  @Test
+  public void basketTest() throws Exception {
+    Basket basket = new Basket("b", source, 20170101);
+    basket.addStock("AAPL", 1);
+    basket.addStock("GOOG", 2);
+    PriceSeries closing = basket.getClosingSeries(20170403, 20170428);
+    assertEquals(1, source.batchCalls);
+    assertEquals(20, closing.size());
+    assertEquals(FakeStockDataRetriever.closeOf("AAPL", LocalDate.of(2017, 4, 3))
+            + 2 * FakeStockDataRetriever.closeOf("GOOG", LocalDate.of(2017, 4, 3)),
+            closing.valueAt(0), 0.0001);
+  }
+}
@@ -0,0 +1,182 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test for cassette stock data retriever class.
+ */
+public class CassetteStockDataRetrieverTest {
+  private double epsilon = 0.0001;
+
+  private Path dir;
+
+  /**
+   * Create a directory for the cassettes.
+   */
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("cassette");
+  }
+
+  /**
+   * Tests if a replay answers every recorded request as the recorded retriever did, without it.
+   */
+  @Test
+  public void replayTest() throws Exception {
+    Path file = dir.resolve("session.cassette");
+    FakeStockDataRetriever fake = new FakeStockDataRetriever();
+    Map<Integer, PriceRecord> recorded;
+    try (CassetteStockDataRetriever recorder = CassetteStockDataRetriever.record(fake, file)) {
+      assertEquals("GOOG Corp", recorder.getName("GOOG"));
+      recorder.getCurrentPrice("GOOG");
+      recorded = recorder.getHistoricalPrices("GOOG", 1, 1, 2016, 31, 3, 2016);
+      recorder.getHistoricalPrices("GOOG", 2, 1, 2016, 3, 1, 2016);
+      recorder.getHistoricalPrices(Arrays.asList("MSFT", "AAPL"), 1, 2, 2016, 29, 2, 2016);
+      assertEquals(6, recorder.getRecordedCount());
+    }
+
+    CassetteStockDataRetriever player = CassetteStockDataRetriever.replay(file, 0);
+    assertEquals(6, player.size());
+    assertEquals("GOOG Corp", player.getName("GOOG"));
+    assertEquals(fake.getCurrentPrice("GOOG"), player.getCurrentPrice("GOOG"), epsilon);
+    Map<Integer, PriceRecord> replayed = player.getHistoricalPrices("GOOG", 1, 1, 2016, 31, 3,
+            2016);
+    assertEquals(recorded.size(), replayed.size());
+    for (Map.Entry<Integer, PriceRecord> e : recorded.entrySet()) {
+      PriceRecord record = replayed.get(e.getKey());
+      assertEquals(e.getValue().getOpenPrice(), record.getOpenPrice(), epsilon);
+      assertEquals(e.getValue().getClosePrice(), record.getClosePrice(), epsilon);
+      assertEquals(e.getValue().getLowestDayPrice(), record.getLowestDayPrice(), epsilon);
+      assertEquals(e.getValue().getHighestDayPrice(), record.getHighestDayPrice(), epsilon);
+    }
+    assertTrue(player.getHistoricalPrices("GOOG", 2, 1, 2016, 3, 1, 2016).isEmpty());
+    Map<String, Map<Integer, PriceRecord>> batch = player.getHistoricalPrices(
+            Arrays.asList("MSFT", "AAPL"), 1, 2, 2016, 29, 2, 2016);
+    assertEquals(FakeStockDataRetriever.closeOf("AAPL", LocalDate.of(2016, 2, 29)),
+            batch.get("AAPL").get(20160229).getClosePrice(), epsilon);
+    assertEquals(6, player.getReplayedCount());
+
+    try {
+      player.getHistoricalPrices("GOOG", 1, 1, 2015, 31, 3, 2015);
+      fail();
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("not on cassette"));
+    }
+  }
+
+  /**
+   * Tests if a replay fails the requests that failed when recorded, with the same message.
+   */
+  @Test
+  public void errorTest() throws Exception {
+    Path file = dir.resolve("errors.cassette");
+    try (CassetteStockDataRetriever recorder = CassetteStockDataRetriever.record(
+            new FakeStockDataRetriever("NOPE"), file)) {
+      try {
+        recorder.getHistoricalPrices("NOPE", 1, 1, 2016, 31, 1, 2016);
+        fail();
+      } catch (IllegalArgumentException e) {
+        assertEquals("invalid stock symbol", e.getMessage());
+      }
+    }
+    CassetteStockDataRetriever player = CassetteStockDataRetriever.replay(file, 0);
+    try {
+      player.getHistoricalPrices("NOPE", 1, 1, 2016, 31, 1, 2016);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("invalid stock symbol", e.getMessage());
+    }
+  }
+
+  /**
+   * Tests if a replay fails every stock of a batch that failed when recorded, with the same
+   * message.
+   */
+  @Test
+  public void batchErrorTest() throws Exception {
+    Path file = dir.resolve("batch.cassette");
+    try (CassetteStockDataRetriever recorder = CassetteStockDataRetriever.record(
+            new FakeStockDataRetriever("NOPE"), file)) {
+      try {
+        recorder.getHistoricalPrices(Arrays.asList("GOOG", "NOPE"), 1, 1, 2016, 31, 1, 2016);
+        fail();
+      } catch (IllegalArgumentException e) {
+        assertEquals("invalid stock symbol", e.getMessage());
+      }
+      assertEquals(2, recorder.getRecordedCount());
+    }
+    CassetteStockDataRetriever player = CassetteStockDataRetriever.replay(file, 0);
+    try {
+      player.getHistoricalPrices(Arrays.asList("GOOG", "NOPE"), 1, 1, 2016, 31, 1, 2016);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("invalid stock symbol", e.getMessage());
+    }
+  }
+
+  /**
+   * Tests if a replay returns no name where the recorded retriever returned none.
+   */
+  @Test
+  public void nullNameTest() throws Exception {
+    Path file = dir.resolve("names.cassette");
+    StockDataRetriever nameless = new FakeStockDataRetriever() {
+      @Override
+      public String getName(String stockSymbol) throws Exception {
+        return stockSymbol.equals("GOOG") ? null : super.getName(stockSymbol);
+      }
+    };
+    try (CassetteStockDataRetriever recorder = CassetteStockDataRetriever.record(nameless,
+            file)) {
+      assertNull(recorder.getName("GOOG"));
+      recorder.getName("MSFT");
+    }
+    CassetteStockDataRetriever player = CassetteStockDataRetriever.replay(file, 0);
+    assertEquals(2, player.size());
+    assertNull(player.getName("GOOG"));
+    assertEquals("MSFT Corp", player.getName("MSFT"));
+  }
+
+  /**
+   * Tests if a replay waits the scaled recorded time, and a cut off cassette is replayed up to
+   * its last whole entry.
+   */
+  @Test
+  public void latencyAndTruncationTest() throws Exception {
+    Path file = dir.resolve("slow.cassette");
+    StockDataRetriever slow = new FakeStockDataRetriever() {
+      @Override
+      public String getName(String stockSymbol) throws Exception {
+        Thread.sleep(40);
+        return super.getName(stockSymbol);
+      }
+    };
+    try (CassetteStockDataRetriever recorder = CassetteStockDataRetriever.record(slow, file)) {
+      recorder.getName("GOOG");
+      recorder.getName("MSFT");
+    }
+
+    long start = System.nanoTime();
+    CassetteStockDataRetriever.replay(file, 0.5).getName("GOOG");
+    assertTrue(System.nanoTime() - start >= 20_000_000L);
+
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+    CassetteStockDataRetriever player = CassetteStockDataRetriever.replay(file, 0);
+    assertEquals(1, player.size());
+    assertEquals("GOOG Corp", player.getName("GOOG"));
+  }
+}
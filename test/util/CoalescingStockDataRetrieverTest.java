@@ -0,0 +1,212 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test for coalescing stock data retriever class.
+ */
+public class CoalescingStockDataRetrieverTest {
+  private GatedRetriever source;
+  private CoalescingStockDataRetriever retriever;
+  private ExecutorService pool;
+
+  /**
+   * A retriever whose fetches wait until the test opens the gate. Fetches of BROKEN end with an
+   * error rather than an exception.
+   */
+  private static class GatedRetriever extends FakeStockDataRetriever {
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    GatedRetriever(String... invalidSymbols) {
+      super(invalidSymbols);
+    }
+
+    @Override
+    public Map<Integer, PriceRecord> getHistoricalPrices(
+            String stockSymbol, int fromDate, int fromMonth, int fromYear,
+            int toDate, int toMonth, int toYear) throws Exception {
+      entered.countDown();
+      gate.await(5, TimeUnit.SECONDS);
+      if (stockSymbol.equals("BROKEN")) {
+        throw new AssertionError("source broke");
+      }
+      return super.getHistoricalPrices(stockSymbol, fromDate, fromMonth, fromYear,
+              toDate, toMonth, toYear);
+    }
+  }
+
+  /**
+   * Set up for coalescing retriever test.
+   */
+  @Before
+  public void setUp() {
+    source = new GatedRetriever("AAPL2");
+    retriever = new CoalescingStockDataRetriever(source);
+    pool = Executors.newCachedThreadPool();
+  }
+
+  /**
+   * Start a fetch on another thread and wait until it reaches the source.
+   *
+   * @param symbol the stock symbol
+   * @return the future of the fetch
+   */
+  private Future<Map<Integer, PriceRecord>> startLeader(String symbol) throws Exception {
+    Future<Map<Integer, PriceRecord>> future = pool.submit(() ->
+            retriever.getHistoricalPrices(symbol, 1, 1, 2017, 30, 6, 2017));
+    assertTrue(source.entered.await(5, TimeUnit.SECONDS));
+    return future;
+  }
+
+  /**
+   * Wait until the given number of requests have been coalesced.
+   *
+   * @param count the number of requests
+   */
+  private void awaitCoalesced(long count) throws Exception {
+    for (int i = 0; i < 500 && retriever.getCoalescedCount() < count; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, retriever.getCoalescedCount());
+  }
+
+  /**
+   * Tests if identical and subset requests wait for the fetch in flight instead of fetching.
+   */
+  @Test
+  public void coalesceTest() throws Exception {
+    Future<Map<Integer, PriceRecord>> leader = startLeader("GOOG");
+    Future<Map<Integer, PriceRecord>> same = pool.submit(() ->
+            retriever.getHistoricalPrices("GOOG", 1, 1, 2017, 30, 6, 2017));
+    Future<Map<Integer, PriceRecord>> subset = pool.submit(() ->
+            retriever.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 3, 2017));
+    awaitCoalesced(2);
+    source.gate.countDown();
+
+    assertEquals(leader.get().keySet(), same.get().keySet());
+    assertEquals(new FakeStockDataRetriever().getHistoricalPrices("GOOG", 1, 3, 2017,
+            31, 3, 2017).keySet(), subset.get().keySet());
+    assertEquals(1, source.historicalCalls);
+    assertEquals(3, retriever.getRequestCount());
+    assertEquals(1, retriever.getFetchCount());
+    assertEquals(1, retriever.getSubsetServedCount());
+
+    // nothing is kept after the fetch, so a later request fetches again
+    retriever.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 3, 2017);
+    assertEquals(2, source.historicalCalls);
+  }
+
+  /**
+   * Tests if a batch request only fetches the stocks without a covering fetch in flight.
+   */
+  @Test
+  public void batchTest() throws Exception {
+    Future<Map<Integer, PriceRecord>> leader = startLeader("GOOG");
+    Future<Map<String, Map<Integer, PriceRecord>>> batch = pool.submit(() ->
+            retriever.getHistoricalPrices(Arrays.asList("MSFT", "GOOG"), 1, 2, 2017,
+                    28, 2, 2017));
+    awaitCoalesced(1);
+    source.gate.countDown();
+
+    Map<String, Map<Integer, PriceRecord>> prices = batch.get();
+    assertEquals(Arrays.asList("MSFT", "GOOG"), Arrays.asList(prices.keySet().toArray()));
+    assertEquals(prices.get("MSFT").keySet(), prices.get("GOOG").keySet());
+    assertEquals(20, prices.get("GOOG").size());
+    assertEquals(130, leader.get().size());
+    assertEquals(1, source.batchCalls);
+    assertEquals(2, retriever.getFetchCount());
+  }
+
+  /**
+   * Tests if a failed fetch fails every request waiting for it.
+   */
+  @Test
+  public void failureTest() throws Exception {
+    Future<Map<Integer, PriceRecord>> leader = startLeader("AAPL2");
+    Future<Map<Integer, PriceRecord>> follower = pool.submit(() ->
+            retriever.getHistoricalPrices("AAPL2", 1, 1, 2017, 30, 6, 2017));
+    awaitCoalesced(1);
+    source.gate.countDown();
+    for (Future<Map<Integer, PriceRecord>> future : Arrays.asList(leader, follower)) {
+      try {
+        future.get();
+        fail("fetch did not fail");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+      }
+    }
+    assertEquals(1, source.historicalCalls);
+  }
+
+  /**
+   * Tests if a fetch ending with an error fails its waiters and leaves flight, so later requests
+   * do not wait for it forever.
+   */
+  @Test
+  public void errorTest() throws Exception {
+    Future<Map<Integer, PriceRecord>> leader = startLeader("BROKEN");
+    Future<Map<Integer, PriceRecord>> follower = pool.submit(() ->
+            retriever.getHistoricalPrices("BROKEN", 1, 1, 2017, 30, 6, 2017));
+    awaitCoalesced(1);
+    source.gate.countDown();
+    for (Future<Map<Integer, PriceRecord>> future : Arrays.asList(leader, follower)) {
+      try {
+        future.get(5, TimeUnit.SECONDS);
+        fail("fetch did not fail");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof AssertionError);
+      }
+    }
+    try {
+      pool.submit(() -> retriever.getHistoricalPrices("BROKEN", 1, 1, 2017, 30, 6, 2017))
+              .get(5, TimeUnit.SECONDS);
+      fail("fetch did not fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof AssertionError);
+    }
+    assertEquals(2, retriever.getFetchCount());
+  }
+
+  /**
+   * Tests if a stock the batch delegate leaves out fails the request instead of having no prices.
+   */
+  @Test
+  public void omittedTest() throws Exception {
+    retriever = new CoalescingStockDataRetriever(new FakeStockDataRetriever() {
+      @Override
+      public Map<String, Map<Integer, PriceRecord>> getHistoricalPrices(
+              Collection<String> stockSymbols, int fromDate, int fromMonth, int fromYear,
+              int toDate, int toMonth, int toYear) throws Exception {
+        Map<String, Map<Integer, PriceRecord>> prices = new LinkedHashMap<>(
+                super.getHistoricalPrices(stockSymbols, fromDate, fromMonth, fromYear,
+                        toDate, toMonth, toYear));
+        prices.remove("MSFT");
+        return prices;
+      }
+    });
+    try {
+      retriever.getHistoricalPrices(Arrays.asList("GOOG", "MSFT"), 1, 2, 2017, 28, 2, 2017);
+      fail("omitted stock did not fail");
+    } catch (IOException e) {
+      assertEquals("no prices returned for MSFT", e.getMessage());
+    }
+  }
+}
@@ -51,5 +51,19 @@ public class DateUtilTest {
     assertEquals(20170101, DateUtil.convertInt(test));
   }
 
-
-}
\ No newline at end of file
+  /**
+   * Tests if the integer date arithmetic agrees with LocalDate across leap years and centuries.
+   */
+  @Test
+  public void epochDayTest() {
+    for (LocalDate day = LocalDate.of(1899, 12, 1); day.isBefore(LocalDate.of(2101, 3, 1));
+         day = day.plusDays(1)) {
+      int date = DateUtil.toInt(day.getDayOfMonth(), day.getMonthValue(), day.getYear());
+      assertEquals(day.toEpochDay(), DateUtil.toEpochDay(date));
+      assertEquals(date, DateUtil.fromEpochDay((int) day.toEpochDay()));
+      assertEquals(day.getDayOfWeek().getValue(), DateUtil.dayOfWeek(date));
+    }
+    assertEquals(20170701, DateUtil.plusDays(20170630, 1));
+    assertEquals(20160229, DateUtil.plusDays(20160301, -1));
+  }
+}
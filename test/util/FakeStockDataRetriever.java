@@ -0,0 +1,86 @@
+package util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * This is a deterministic stock data retriever for tests that must not depend on the network.
+ * Every weekday is a business day, prices depend only on the symbol and the date, and every
+ * call is counted. Symbols listed as invalid return "N/A" as name.
+ */
+public class FakeStockDataRetriever implements StockDataRetriever {
+  private final Set<String> invalid;
+  public int nameCalls;
+  public int priceCalls;
+  public int historicalCalls;
+  public int batchCalls;
+
+  /**
+   * Construct a fake retriever.
+   *
+   * @param invalidSymbols symbols that are treated as unknown
+   */
+  public FakeStockDataRetriever(String... invalidSymbols) {
+    this.invalid = new HashSet<>(Arrays.asList(invalidSymbols));
+  }
+
+  /**
+   * Get the close price of a symbol on a date, the value every other method is derived from.
+   *
+   * @param stockSymbol the stock symbol
+   * @param date        the date
+   * @return the close price
+   */
+  public static double closeOf(String stockSymbol, LocalDate date) {
+    return 10 + Math.abs(stockSymbol.hashCode() % 90) + date.toEpochDay() % 37 * 0.5;
+  }
+
+  @Override
+  public synchronized double getCurrentPrice(String stockSymbol) throws Exception {
+    priceCalls++;
+    return closeOf(stockSymbol, LocalDate.of(2017, 6, 16));
+  }
+
+  @Override
+  public synchronized String getName(String stockSymbol) throws Exception {
+    nameCalls++;
+    return invalid.contains(stockSymbol) ? "N/A" : stockSymbol + " Corp";
+  }
+
+  @Override
+  public synchronized Map<Integer, PriceRecord> getHistoricalPrices(
+          String stockSymbol, int fromDate, int fromMonth, int fromYear,
+          int toDate, int toMonth, int toYear) throws Exception {
+    historicalCalls++;
+    if (invalid.contains(stockSymbol)) {
+      throw new IllegalArgumentException("invalid stock symbol");
+    }
+    Map<Integer, PriceRecord> prices = new TreeMap<>();
+    LocalDate day = LocalDate.of(fromYear, fromMonth, fromDate);
+    LocalDate end = LocalDate.of(toYear, toMonth, toDate);
+    for (; !day.isAfter(end); day = day.plusDays(1)) {
+      if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+        continue;
+      }
+      double close = closeOf(stockSymbol, day);
+      prices.put(DateUtil.convertInt(day), new PriceRecord(close - 0.25, close,
+              close - 1, close + 1));
+    }
+    return prices;
+  }
+
+  @Override
+  public synchronized Map<String, Map<Integer, PriceRecord>> getHistoricalPrices(
+          Collection<String> stockSymbols, int fromDate, int fromMonth, int fromYear,
+          int toDate, int toMonth, int toYear) throws Exception {
+    batchCalls++;
+    return StockDataRetriever.super.getHistoricalPrices(stockSymbols, fromDate, fromMonth,
+            fromYear, toDate, toMonth, toYear);
+  }
+}
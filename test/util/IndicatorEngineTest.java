@@ -0,0 +1,140 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+import model.trader.IStockModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for indicator engine class.
+ */
+public class IndicatorEngineTest {
+  private double epsilon = 0.0001;
+
+  /**
+   * Tests if the exponential moving average is seeded with the simple average.
+   */
+  @Test
+  public void emaTest() {
+    ExponentialMovingAverage ema = new ExponentialMovingAverage(3);
+    ema.update(0, 0, 1);
+    ema.update(0, 0, 2);
+    assertFalse(ema.isReady());
+    ema.update(0, 0, 3);
+    assertTrue(ema.isReady());
+    assertEquals(2, ema.getValue(0), epsilon);
+    ema.update(0, 0, 4);
+    assertEquals(3, ema.getValue(0), epsilon);
+    ema.update(0, 0, 6);
+    assertEquals(4.5, ema.getValue(0), epsilon);
+  }
+
+  /**
+   * Tests if the relative strength index smooths gains and losses with Wilder's method.
+   */
+  @Test
+  public void rsiTest() {
+    RelativeStrengthIndex rsi = new RelativeStrengthIndex(2);
+    rsi.update(0, 0, 10);
+    rsi.update(0, 0, 11);
+    assertFalse(rsi.isReady());
+    rsi.update(0, 0, 10);
+    assertEquals(50, rsi.getValue(0), epsilon);
+    rsi.update(0, 0, 12);
+    assertEquals(100 - 100 / 6.0, rsi.getValue(0), epsilon);
+  }
+
+  /**
+   * Tests if Bollinger bands and the average true range follow their definitions.
+   */
+  @Test
+  public void bandsAndRangeTest() {
+    BollingerBands bands = new BollingerBands(3);
+    AverageTrueRange atr = new AverageTrueRange(2);
+    double[][] bars = {{2, 1, 1}, {3, 2, 2}, {5, 3, 3}, {4, 2, 4}};
+    for (double[] bar : bars) {
+      bands.update(bar[0], bar[1], bar[2]);
+      atr.update(bar[0], bar[1], bar[2]);
+    }
+    double deviation = Math.sqrt(2.0 / 3);
+    assertEquals(3, bands.getValue(0), epsilon);
+    assertEquals(3 + 2 * deviation, bands.getValue(1), epsilon);
+    assertEquals(3 - 2 * deviation, bands.getValue(2), epsilon);
+    // true ranges are 1, 2, 3 and 2; seeded with (1 + 2) / 2, then smoothed
+    assertEquals(((1.5 + 3) / 2 + 2) / 2, atr.getValue(0), epsilon);
+  }
+
+  /**
+   * Tests if indicators computed in one fused pass equal indicators computed one at a time.
+   */
+  @Test
+  public void fusedPassTest() throws Exception {
+    Map<Integer, PriceRecord> bars = new FakeStockDataRetriever().getHistoricalPrices("GOOG",
+            1, 1, 2016, 30, 6, 2017);
+    String[] specs = {"EMA20", "RSI14", "MACD", "bb20", "ATR14"};
+    Map<String, PriceSeries> fused = IndicatorEngine.parse(Arrays.asList(specs))
+            .run(bars, 20170101, 20170630);
+    assertEquals(Arrays.asList("EMA20", "RSI14", "MACD12-26-9", "MACD12-26-9signal",
+            "MACD12-26-9hist", "BB20", "BB20upper", "BB20lower", "ATR14"),
+            Arrays.asList(fused.keySet().toArray()));
+
+    for (String spec : specs) {
+      Map<String, PriceSeries> single = IndicatorEngine.parse(Collections.singletonList(spec))
+              .run(bars, 20170101, 20170630);
+      for (Map.Entry<String, PriceSeries> e : single.entrySet()) {
+        assertEquals(e.getValue().toMap(), fused.get(e.getKey()).toMap());
+      }
+    }
+    PriceSeries ema = fused.get("EMA20");
+    assertEquals(PriceSeries.closingOf(bars).slice(20170101, 20170630).size(), ema.size());
+  }
+
+  /**
+   * Tests if dates before an indicator is defined are left out of its line.
+   */
+  @Test
+  public void warmUpTest() {
+    Map<Integer, PriceRecord> bars = new TreeMap<>();
+    for (int i = 1; i <= 9; i++) {
+      bars.put(20170600 + i, new PriceRecord(i, i, i, i));
+    }
+    PriceSeries ema = IndicatorEngine.parse(Collections.singletonList("EMA5"))
+            .run(bars, 20170603, 20170608).get("EMA5");
+    assertEquals(4, ema.size());
+    assertEquals(20170605, ema.dateAt(0));
+    assertEquals(3, ema.valueAt(0), epsilon);
+  }
+
+  /**
+   * Tests if an exception is thrown for an unknown indicator.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidSpecTest() {
+    IndicatorEngine.parse("SMA20");
+  }
+
+  /**
+   * Tests if the model names indicator lines after the stock, warms them up before the range,
+   * and derives the closing prices from the same fetch.
+   */
+  @Test
+  public void modelTest() throws Exception {
+    FakeStockDataRetriever dataRetriever = new FakeStockDataRetriever();
+    IStockModel model = new IStockModel(dataRetriever);
+    Map<String, Map<Integer, Double>> lines = model.iStockPlotIndicators("GOOG", 20170601,
+            20170630, Arrays.asList("EMA50", "ATR14"));
+    assertEquals(1, dataRetriever.historicalCalls);
+    assertEquals(3, lines.size());
+    assertEquals(model.iStockPlot("GOOG", 20170601, 20170630).get("GOOG"), lines.get("GOOG"));
+    assertEquals(lines.get("GOOG").keySet(), lines.get("GOOGEMA50").keySet());
+    assertTrue(lines.containsKey("GOOGATR14"));
+  }
+}
@@ -0,0 +1,152 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for the memory-mapped stock data retriever.
+ */
+public class MappedStockDataRetrieverTest {
+  private double epsilon = 0.0001;
+  private FakeStockDataRetriever source;
+  private MappedStockDataRetriever store;
+  private Path dir;
+
+  /**
+   * Set up a store holding one year of GOOG prices.
+   */
+  @Before
+  public void setUp() throws Exception {
+    source = new FakeStockDataRetriever();
+    dir = Files.createTempDirectory("pricestore");
+    store = new MappedStockDataRetriever(dir);
+    store.importFrom(source, "GOOG", 20160101, 20161231);
+  }
+
+  /**
+   * Tests if a range lookup returns exactly the stored business days of the range.
+   */
+  @Test
+  public void historicalPricesTest() throws Exception {
+    Map<Integer, PriceRecord> expected = source.getHistoricalPrices("GOOG",
+            6, 6, 2016, 17, 6, 2016);
+    Map<Integer, PriceRecord> actual = store.getHistoricalPrices("GOOG",
+            6, 6, 2016, 17, 6, 2016);
+    assertEquals(expected.keySet(), actual.keySet());
+    for (int date : expected.keySet()) {
+      assertEquals(expected.get(date).getClosePrice(), actual.get(date).getClosePrice(), epsilon);
+      assertEquals(expected.get(date).getOpenPrice(), actual.get(date).getOpenPrice(), epsilon);
+      assertEquals(expected.get(date).getHighestDayPrice(),
+              actual.get(date).getHighestDayPrice(), epsilon);
+      assertEquals(expected.get(date).getLowestDayPrice(),
+              actual.get(date).getLowestDayPrice(), epsilon);
+    }
+  }
+
+  /**
+   * Tests if ranges outside of the stored history return no data.
+   */
+  @Test
+  public void outOfRangeTest() throws Exception {
+    assertEquals(0, store.getHistoricalPrices("GOOG", 1, 1, 2015, 31, 12, 2015).size());
+    assertEquals(0, store.getHistoricalPrices("GOOG", 2, 1, 2016, 3, 1, 2016).size());
+    assertEquals(1, store.getHistoricalPrices("GOOG", 30, 12, 2016, 1, 1, 2018).size());
+  }
+
+  /**
+   * Tests if name lookups come from the store, and unknown symbols are reported as "N/A".
+   */
+  @Test
+  public void nameTest() throws Exception {
+    assertEquals("GOOG Corp", store.getName("GOOG"));
+    assertEquals("N/A", store.getName("MSFT"));
+  }
+
+  /**
+   * Tests if an exception is thrown when a symbol is not in the store.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownSymbolTest() throws Exception {
+    store.getHistoricalPrices("MSFT", 1, 1, 2016, 31, 12, 2016);
+  }
+
+  /**
+   * Tests if a refresh fetches only the days after the last stored date and appends them.
+   */
+  @Test
+  public void refreshTest() throws Exception {
+    List<int[]> ranges = new ArrayList<>();
+    FakeStockDataRetriever upstream = new FakeStockDataRetriever("BAD") {
+      @Override
+      public synchronized Map<Integer, PriceRecord> getHistoricalPrices(String stockSymbol,
+              int fromDay, int fromMonth, int fromYear, int toDay, int toMonth, int toYear)
+              throws Exception {
+        ranges.add(new int[]{DateUtil.toInt(fromDay, fromMonth, fromYear),
+                             DateUtil.toInt(toDay, toMonth, toYear)});
+        return super.getHistoricalPrices(stockSymbol, fromDay, fromMonth, fromYear,
+                toDay, toMonth, toYear);
+      }
+    };
+    store.importFrom(source, "MSFT", 20160101, 20161215);
+    MappedStockDataRetriever refreshing = new MappedStockDataRetriever(dir, upstream, 2);
+    assertEquals(20161230, refreshing.getLastDate("GOOG"));
+    assertEquals(20161215, refreshing.getLastDate("MSFT"));
+
+    MappedStockDataRetriever.Refresh refresh = refreshing.refresh(
+            Arrays.asList("GOOG", "MSFT", "AAPL"), 20170110);
+    assertEquals(7, (int) refresh.getAppended().get("GOOG"));
+    assertEquals(18, (int) refresh.getAppended().get("MSFT"));
+    assertTrue(refresh.getFailures().get("AAPL") instanceof IllegalArgumentException);
+    assertEquals(2, ranges.size());
+    for (int[] range : ranges) {
+      assertTrue(range[0] == 20161231 || range[0] == 20161216);
+      assertEquals(20170110, range[1]);
+    }
+
+    assertEquals(20170110, refreshing.getLastDate("GOOG"));
+    Map<Integer, PriceRecord> prices = new MappedStockDataRetriever(dir)
+            .getHistoricalPrices("MSFT", 1, 12, 2016, 10, 1, 2017);
+    assertEquals(29, prices.size());
+    assertEquals(source.getHistoricalPrices("MSFT", 10, 1, 2017, 10, 1, 2017).get(20170110)
+            .getClosePrice(), prices.get(20170110).getClosePrice(), epsilon);
+    assertEquals("GOOG Corp", refreshing.getName("GOOG"));
+
+    assertEquals(0, refreshing.refresh("GOOG", 20170110));
+    assertEquals(2, ranges.size());
+  }
+
+  /**
+   * Tests if refreshing a stock the store holds no day of fetches its whole history.
+   */
+  @Test
+  public void emptyRefreshTest() throws Exception {
+    List<Integer> starts = new ArrayList<>();
+    FakeStockDataRetriever upstream = new FakeStockDataRetriever() {
+      @Override
+      public synchronized Map<Integer, PriceRecord> getHistoricalPrices(String stockSymbol,
+              int fromDay, int fromMonth, int fromYear, int toDay, int toMonth, int toYear)
+              throws Exception {
+        starts.add(DateUtil.toInt(fromDay, fromMonth, fromYear));
+        return super.getHistoricalPrices(stockSymbol, fromDay, fromMonth, fromYear,
+                toDay, toMonth, toYear);
+      }
+    };
+    store.store("MSFT", "MSFT Corp", new TreeMap<>());
+    MappedStockDataRetriever refreshing = new MappedStockDataRetriever(dir, upstream, 1);
+    int appended = refreshing.refresh("MSFT", 20170110);
+    assertEquals(Arrays.asList(19700101), starts);
+    assertEquals(source.getHistoricalPrices("MSFT", 1, 1, 1970, 10, 1, 2017).size(), appended);
+    assertEquals(20170110, refreshing.getLastDate("MSFT"));
+  }
+}
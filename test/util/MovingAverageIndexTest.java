@@ -0,0 +1,95 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import model.trader.Stock;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This is a JUnit test for moving average index class.
+ */
+public class MovingAverageIndexTest {
+  private double epsilon = 0.0001;
+
+  /**
+   * Tests if moving averages of any window are computed from the closing prices.
+   */
+  @Test
+  public void averageTest() {
+    MovingAverageIndex index = new MovingAverageIndex(PriceSeries.of(
+            new int[]{20170605, 20170606, 20170607, 20170608, 20170609},
+            new double[]{10, 11, 12, 13, 14}));
+    assertEquals(14, index.average(4, 1), epsilon);
+    assertEquals(13.5, index.average(4, 2), epsilon);
+    assertEquals(12, index.average(4, 5), epsilon);
+    // only two closing prices are available, but the sum is divided by three days
+    assertEquals(7, index.average(1, 3), epsilon);
+
+    PriceSeries ave = index.averageSeries(20170606, 20170608, 2);
+    assertEquals(3, ave.size());
+    assertEquals(10.5, ave.valueAt(0), epsilon);
+    ave = index.averageSeries(20170610, 20170620, 2);
+    assertEquals(1, ave.size());
+    assertEquals(20170609, ave.dateAt(0));
+    assertEquals(13.5, ave.valueAt(0), epsilon);
+  }
+
+  /**
+   * Tests if the moving averages of 20 years match the per-date calculation, which sums the
+   * last X closing prices newest first, up to rounding in the last bits.
+   */
+  @Test
+  public void exactTest() throws Exception {
+    Map<Integer, PriceRecord> prices = new SyntheticStockDataRetriever(3)
+            .getHistoricalPrices("GOOG", 1, 1, 1997, 31, 12, 2016);
+    PriceSeries.Builder builder = new PriceSeries.Builder(prices.size());
+    for (Map.Entry<Integer, PriceRecord> e : new TreeMap<>(prices).entrySet()) {
+      builder.add(e.getKey(), e.getValue().getClosePrice());
+    }
+    PriceSeries closing = builder.build();
+    MovingAverageIndex index = new MovingAverageIndex(closing);
+    for (int days : new int[]{50, 200}) {
+      for (int i = 0; i < closing.size(); i++) {
+        double sum = 0;
+        int count = days;
+        for (int j = i; j >= 0 && count != 0; j--, count--) {
+          sum += closing.valueAt(j);
+        }
+        assertEquals(sum / days, index.average(i, days), 1e-9);
+      }
+    }
+  }
+
+  /**
+   * Tests if an exception is thrown when there is no closing price before the range.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyRangeTest() {
+    MovingAverageIndex index = new MovingAverageIndex(PriceSeries.of(
+            new int[]{20170605}, new double[]{10}));
+    index.averageSeries(20170601, 20170602, 2);
+  }
+
+  /**
+   * Tests if a stock reuses its closing price series for moving averages of covered dates.
+   */
+  @Test
+  public void stockCacheTest() throws Exception {
+    FakeStockDataRetriever dataRetriever = new FakeStockDataRetriever();
+    Stock stock = new Stock("GOOG", dataRetriever);
+    stock.getAveRange(20170101, 20170601, 200);
+    int calls = dataRetriever.historicalCalls;
+    stock.getAveRange(20170301, 20170501, 50);
+    stock.getAveRange(20170201, 20170601, 13);
+    stock.buyOpportunity(1, 6, 2017);
+    assertEquals(calls, dataRetriever.historicalCalls);
+    stock.getAveRange(20170101, 20170615, 5);
+    assertEquals(calls + 1, dataRetriever.historicalCalls);
+    assertEquals(Calculate.getAve(stock, 20, 1, 6, 2017),
+            Calculate.getAveSeries(stock, 20170601, 20170601, 20).valueAt(0), epsilon);
+  }
+}
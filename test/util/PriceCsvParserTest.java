@@ -0,0 +1,147 @@
+package util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * This is a JUnit test for price csv parser class.
+ */
+public class PriceCsvParserTest {
+  private double epsilon = 0.0001;
+
+  /**
+   * Create a stream of the given text.
+   *
+   * @param text the text
+   * @return the stream
+   */
+  private static InputStream streamOf(String text) {
+    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Tests if a historical price response is parsed into the right price records.
+   */
+  @Test
+  public void responseTest() throws Exception {
+    String csv = "\uFEFFDate,Open,High,Low,Close,Volume\n"
+            + "7-Jun-17,155.02,155.98,154.48,155.37,21250798\n"
+            + "6-Jun-17,153.90,155.81,153.78,154.45,26624926\n"
+            + "30-Dec-99,3.5,4,3,3.75,100\n";
+    Map<Integer, PriceRecord> prices = new PriceCsvParser().parse(streamOf(csv)).toMap();
+    assertEquals(3, prices.size());
+    PriceRecord record = prices.get(20170607);
+    assertEquals(155.02, record.getOpenPrice(), epsilon);
+    assertEquals(155.98, record.getHighestDayPrice(), epsilon);
+    assertEquals(154.48, record.getLowestDayPrice(), epsilon);
+    assertEquals(155.37, record.getClosePrice(), epsilon);
+    assertEquals(3.75, prices.get(19991230).getClosePrice(), epsilon);
+  }
+
+  /**
+   * Tests if columns in any order, CRLF line breaks, ISO dates and lines longer than the buffer
+   * are parsed, and a parser can be reused.
+   */
+  @Test
+  public void layoutTest() throws Exception {
+    String csv = "Date,Close,Adj Close,Volume,Open,High,Low\r\n"
+            + "2017-06-05,153.93,153.93,16454700,154.34,154.45,153.46\r\n"
+            + "\r\n"
+            + "20170602,155.45,155.45,27770700,153.58,155.45,152.89";
+    PriceCsvParser parser = new PriceCsvParser(8);
+    PriceColumns columns = new PriceColumns();
+    assertEquals(2, parser.parse(streamOf(csv), columns));
+    assertEquals(20170605, columns.dateAt(0));
+    assertEquals(154.34, columns.openAt(0), epsilon);
+    assertEquals(152.89, columns.lowAt(1), epsilon);
+    assertEquals(2, parser.parse(streamOf(csv), columns));
+    assertEquals(4, columns.size());
+    assertEquals(0, parser.parse(streamOf(""), columns));
+  }
+
+  /**
+   * Tests if decimals parsed in place are exactly the values of Double.parseDouble.
+   */
+  @Test
+  public void decimalTest() throws Exception {
+    Random random = new Random(7);
+    StringBuilder csv = new StringBuilder("Date,Open,High,Low,Close\n");
+    String[] values = new String[4000];
+    for (int i = 0; i < values.length; i++) {
+      double value = random.nextDouble() * Math.pow(10, random.nextInt(7));
+      values[i] = String.format(Locale.ROOT, "%." + random.nextInt(9) + "f", value);
+      if (i % 4 == 3) {
+        int date = DateUtil.convertInt(LocalDate.of(2000, 1, 1).plusDays(i / 4));
+        csv.append(date).append(',').append(values[i - 3]).append(',')
+                .append(values[i - 2]).append(',').append(values[i - 1]).append(',')
+                .append(values[i]).append('\n');
+      }
+    }
+    csv.append("20170101,1e2,0.1234567890123456789,-0.5,12345678901234567\n");
+    PriceColumns columns = new PriceCsvParser(64).parse(streamOf(csv.toString()));
+    for (int i = 0; i < values.length; i++) {
+      double expected = Double.parseDouble(values[i]);
+      double[] row = {columns.openAt(i / 4), columns.highAt(i / 4), columns.lowAt(i / 4),
+                      columns.closeAt(i / 4)};
+      assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(row[i % 4]));
+    }
+    int last = columns.size() - 1;
+    assertEquals(100, columns.openAt(last), 0);
+    assertEquals(0.1234567890123456789, columns.highAt(last), 0);
+    assertEquals(-0.5, columns.lowAt(last), 0);
+    assertEquals(12345678901234567.0, columns.closeAt(last), 0);
+  }
+
+  /**
+   * Tests if rows are sorted by date, keeping the last row of a date.
+   */
+  @Test
+  public void sortTest() {
+    PriceColumns columns = new PriceColumns(2);
+    columns.add(20170603, 3, 3, 3, 3);
+    columns.add(20170602, 2, 2, 2, 2);
+    columns.add(20170601, 1, 1, 1, 1);
+    columns.sortByDate();
+    assertEquals(20170601, columns.dateAt(0));
+    assertEquals(3, columns.closeAt(2), epsilon);
+    columns.add(20170602, 4, 4, 4, 4);
+    columns.add(20170531, 0, 0, 0, 0);
+    columns.sortByDate();
+    assertEquals(4, columns.size());
+    assertEquals(20170531, columns.dateAt(0));
+    assertEquals(4, columns.closeAt(2), epsilon);
+  }
+
+  /**
+   * Tests if an exception is thrown when the header does not name the price columns.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void headerTest() throws Exception {
+    new PriceCsvParser().parse(streamOf("<html>\nnot found\n"));
+  }
+
+  /**
+   * Tests if an exception is thrown for a missing price.
+   */
+  @Test(expected = NumberFormatException.class)
+  public void missingPriceTest() throws Exception {
+    new PriceCsvParser().parse(streamOf("Date,Open,High,Low,Close\n7-Jun-17,-,1,1,1\n"));
+  }
+
+  /**
+   * Tests if an exception is thrown for an invalid date.
+   */
+  @Test(expected = NumberFormatException.class)
+  public void invalidDateTest() throws Exception {
+    new PriceCsvParser().parse(streamOf("Date,Open,High,Low,Close\n20171301,1,1,1,1\n"));
+  }
+}
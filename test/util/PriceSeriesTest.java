@@ -0,0 +1,94 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for price series class.
+ */
+public class PriceSeriesTest {
+  private double epsilon = 0.0001;
+  private PriceSeries series;
+
+  /**
+   * Set up a series of one business week.
+   */
+  @Before
+  public void setUp() {
+    series = PriceSeries.of(new int[]{20170605, 20170606, 20170607, 20170608, 20170609},
+            new double[]{10, 11, 12, 13, 14});
+  }
+
+  /**
+   * Tests if date lookups find present dates and the nearest neighbours of missing ones.
+   */
+  @Test
+  public void lookupTest() {
+    assertEquals(2, series.indexOf(20170607));
+    assertTrue(series.indexOf(20170604) < 0);
+    assertEquals(-1, series.floorIndex(20170604));
+    assertEquals(0, series.ceilingIndex(20170604));
+    assertEquals(4, series.floorIndex(20170611));
+    assertEquals(5, series.ceilingIndex(20170611));
+    assertFalse(series.contains(20170610));
+  }
+
+  /**
+   * Tests if slices look up dates relative to the slice.
+   */
+  @Test
+  public void sliceTest() {
+    PriceSeries slice = series.slice(20170606, 20170608);
+    assertEquals(3, slice.size());
+    assertEquals(20170606, slice.dateAt(0));
+    assertEquals(13, slice.valueAt(2), epsilon);
+    assertEquals(1, slice.indexOf(20170607));
+    assertEquals(-1, slice.floorIndex(20170605));
+    assertEquals(3, slice.ceilingIndex(20170609));
+    assertEquals(0, series.slice(20170610, 20170620).size());
+    assertEquals(2, slice.subSeries(1, 3).size());
+  }
+
+  /**
+   * Tests if an unsorted map is converted into a sorted series and back.
+   */
+  @Test
+  public void mapTest() {
+    Map<Integer, Double> map = new HashMap<>();
+    map.put(20170609, 4.0);
+    map.put(20170605, 1.0);
+    map.put(20170607, 2.0);
+    PriceSeries fromMap = PriceSeries.fromMap(map);
+    assertEquals(20170605, fromMap.dateAt(0));
+    assertEquals(4.0, fromMap.valueAt(2), epsilon);
+    assertEquals(map, fromMap.toMap());
+  }
+
+  /**
+   * Tests if scaled series are summed on the union of their dates.
+   */
+  @Test
+  public void plusScaledTest() {
+    PriceSeries other = PriceSeries.of(new int[]{20170602, 20170607}, new double[]{1, 2});
+    PriceSeries sum = series.plusScaled(other, 10);
+    assertEquals(6, sum.size());
+    assertEquals(10, sum.valueAt(0), epsilon);
+    assertEquals(32, sum.valueAt(3), epsilon);
+    assertEquals(14, sum.valueAt(5), epsilon);
+  }
+
+  /**
+   * Tests if an exception is thrown when dates are not ascending.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void unsortedTest() {
+    PriceSeries.of(new int[]{20170606, 20170605}, new double[]{1, 2});
+  }
+}
@@ -0,0 +1,170 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for price store file class.
+ */
+public class PriceStoreFileTest {
+  private Path dir;
+  private int n;
+  private int[] dates;
+  private double[] open;
+  private double[] high;
+  private double[] low;
+  private double[] close;
+
+  /**
+   * Set up 1000 business days of cent-quoted prices, with a few values which are not decimals.
+   */
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("pricestore");
+    n = 1000;
+    dates = new int[n];
+    open = new double[n];
+    high = new double[n];
+    low = new double[n];
+    close = new double[n];
+    Random random = new Random(17);
+    LocalDate date = LocalDate.of(2014, 12, 29);
+    long cents = 15537;
+    for (int i = 0; i < n; i++) {
+      dates[i] = DateUtil.convertInt(date);
+      date = date.plusDays(date.getDayOfWeek().getValue() == 5 ? 3 : 1);
+      cents += random.nextInt(401) - 200;
+      long openCents = cents + random.nextInt(101) - 50;
+      close[i] = cents / 100.0;
+      open[i] = openCents / 100.0;
+      high[i] = (Math.max(openCents, cents) + random.nextInt(50)) / 100.0;
+      low[i] = (Math.min(openCents, cents) - random.nextInt(50)) / 100.0;
+    }
+    // values only the XOR encoding can hold
+    open[300] = Math.PI;
+    high[301] = Double.NaN;
+    low[302] = -0.0;
+    close[700] = 1.0 / 3;
+  }
+
+  /**
+   * Check that a file holds exactly the rows of the test data.
+   *
+   * @param file the file
+   */
+  private void assertRows(PriceStoreFile file) {
+    assertEquals(n, file.size());
+    for (int i = 0; i < n; i++) {
+      assertEquals(dates[i], file.dateAt(i));
+      assertEquals(Double.doubleToRawLongBits(open[i]),
+              Double.doubleToRawLongBits(file.openAt(i)));
+      assertEquals(Double.doubleToRawLongBits(high[i]),
+              Double.doubleToRawLongBits(file.highAt(i)));
+      assertEquals(Double.doubleToRawLongBits(low[i]),
+              Double.doubleToRawLongBits(file.lowAt(i)));
+      assertEquals(Double.doubleToRawLongBits(close[i]),
+              Double.doubleToRawLongBits(file.closeAt(i)));
+    }
+  }
+
+  /**
+   * Tests if the compressed format restores every value bit for bit and is much smaller than the
+   * plain format.
+   */
+  @Test
+  public void compressedTest() throws Exception {
+    Path plain = dir.resolve("plain.prices");
+    Path compressed = dir.resolve("compressed.prices");
+    PriceStoreFile.write(plain, "GOOG Corp", dates, open, high, low, close, n, false);
+    PriceStoreFile.write(compressed, "GOOG Corp", dates, open, high, low, close, n, true);
+    PriceStoreFile file = PriceStoreFile.open(compressed);
+    assertTrue(file.isCompressed());
+    assertFalse(PriceStoreFile.open(plain).isCompressed());
+    assertEquals("GOOG Corp", file.getName());
+    assertRows(file);
+    assertRows(PriceStoreFile.open(plain));
+    assertTrue(Files.size(compressed) * 4 < Files.size(plain));
+  }
+
+  /**
+   * Tests if blocks are read straight into arrays and random access works across blocks.
+   */
+  @Test
+  public void blockTest() throws Exception {
+    Path path = dir.resolve("GOOG.prices");
+    PriceStoreFile.write(path, "GOOG Corp", dates, open, high, low, close, n);
+    PriceStoreFile file = PriceStoreFile.open(path);
+    assertEquals(4, file.getBlockCount());
+    int size = file.getBlockSize();
+    int[] blockDates = new int[size];
+    double[] blockOpen = new double[size];
+    double[] blockHigh = new double[size];
+    double[] blockLow = new double[size];
+    double[] blockClose = new double[size];
+    assertEquals(n - 3 * size, file.readBlock(3, blockDates, blockOpen, blockHigh, blockLow,
+            blockClose));
+    assertEquals(dates[3 * size], blockDates[0]);
+    assertEquals(close[n - 1], blockClose[n - 3 * size - 1], 0);
+
+    assertEquals(close[999], file.closeAt(999), 0);
+    assertEquals(close[0], file.closeAt(0), 0);
+    assertEquals(dates[511], file.dateAt(511));
+    assertEquals(0, file.lowerBound(dates[0]));
+    assertEquals(256, file.lowerBound(dates[255] + 1));
+    assertEquals(600, file.lowerBound(dates[600]));
+    assertEquals(n, file.lowerBound(dates[n - 1] + 1));
+  }
+
+  /**
+   * Tests if an empty series and a single row are written and read.
+   */
+  @Test
+  public void smallTest() throws Exception {
+    Path path = dir.resolve("EMPTY.prices");
+    PriceStoreFile.write(path, "", dates, open, high, low, close, 0);
+    PriceStoreFile file = PriceStoreFile.open(path);
+    assertEquals(0, file.size());
+    assertEquals(0, file.lowerBound(20170101));
+    PriceStoreFile.write(path, "One", dates, open, high, low, close, 1);
+    file = PriceStoreFile.open(path);
+    assertEquals(dates[0], file.dateAt(0));
+    assertEquals(close[0], file.closeAt(0), 0);
+  }
+
+  /**
+   * Tests if appending rows gives the same file as writing all rows at once, whether or not the
+   * last block was full, and if a plain file is appended to in the compressed format.
+   */
+  @Test
+  public void appendTest() throws Exception {
+    Path whole = dir.resolve("WHOLE.prices");
+    PriceStoreFile.write(whole, "GOOG Corp", dates, open, high, low, close, n);
+    for (int split : new int[]{600, 512, 100}) {
+      Path path = dir.resolve("GOOG" + split + ".prices");
+      PriceStoreFile.write(path, "GOOG Corp", dates, open, high, low, close, split);
+      int rest = n - split;
+      PriceStoreFile.append(path, Arrays.copyOfRange(dates, split, n),
+              Arrays.copyOfRange(open, split, n), Arrays.copyOfRange(high, split, n),
+              Arrays.copyOfRange(low, split, n), Arrays.copyOfRange(close, split, n), rest);
+      assertArrayEquals(Files.readAllBytes(whole), Files.readAllBytes(path));
+    }
+
+    Path plain = dir.resolve("PLAIN.prices");
+    PriceStoreFile.write(plain, "GOOG Corp", dates, open, high, low, close, 600, false);
+    PriceStoreFile.append(plain, Arrays.copyOfRange(dates, 600, n),
+            Arrays.copyOfRange(open, 600, n), Arrays.copyOfRange(high, 600, n),
+            Arrays.copyOfRange(low, 600, n), Arrays.copyOfRange(close, 600, n), n - 600);
+    assertArrayEquals(Files.readAllBytes(whole), Files.readAllBytes(plain));
+  }
+}
@@ -0,0 +1,97 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for price store ingester class.
+ */
+public class PriceStoreIngesterTest {
+  private double epsilon = 0.0001;
+  private Path dumps;
+  private Path store;
+  private PriceStoreIngester ingester;
+
+  /**
+   * Set up a directory with a per-symbol dump and a gzipped multi-symbol dump.
+   */
+  @Before
+  public void setUp() throws Exception {
+    dumps = Files.createTempDirectory("dumps");
+    store = Files.createTempDirectory("pricestore");
+    ingester = new PriceStoreIngester(store, 2);
+    Files.write(dumps.resolve("AAPL.csv"), ("Date,Open,High,Low,Close,Volume\n"
+            + "7-Jun-17,155.02,155.98,154.48,155.37,21250798\n"
+            + "6-Jun-17,153.90,155.81,153.78,154.45,26624926\n"
+            + "5-Jun-17,154.34,154.45,153.46,153.93,16454700\n").getBytes(StandardCharsets.UTF_8));
+    try (OutputStream out = new GZIPOutputStream(
+            Files.newOutputStream(dumps.resolve("dump.csv.gz")))) {
+      out.write(("Symbol,Date,Open,High,Low,Close\n"
+              + "MSFT,2017-06-05,71.97,72.89,71.81,72.28\n"
+              + "MSFT,2017-06-06,72.30,72.62,72.27,72.52\n"
+              + "MSFT,2017-06-07,72.64,72.77,71.95,72.39\n"
+              + "MSFT,2017-06-08,72.04,72.53,71.50,71.95\n"
+              + "AAPL,2017-06-08,155.25,155.54,154.40,154.99\n"
+              + "MSFT,2017-06-09,72.04,72.08,68.59,x\n"
+              + "MSFT,2017-06-12,65.00,64.00,66.00,65.50\n").getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * Tests if the dumps are ingested into a store the mapped retriever serves, rejecting bad rows.
+   */
+  @Test
+  public void ingestTest() throws Exception {
+    PriceStoreIngester.Report report = ingester.ingest(dumps);
+    assertEquals(2, report.getFiles());
+    assertEquals(8, report.getParsedRows());
+    assertEquals(2, report.getRejectedRows());
+    assertEquals(8, report.getNewRows());
+    assertEquals(2, report.getUpdatedSymbols());
+    assertTrue(report.getRowsPerSecond() > 0);
+
+    MappedStockDataRetriever retriever = new MappedStockDataRetriever(store);
+    Map<Integer, PriceRecord> aapl = retriever.getHistoricalPrices("AAPL", 1, 6, 2017,
+            30, 6, 2017);
+    assertEquals(4, aapl.size());
+    assertEquals(154.45, aapl.get(20170606).getClosePrice(), epsilon);
+    assertEquals(155.54, aapl.get(20170608).getHighestDayPrice(), epsilon);
+    assertEquals(4, retriever.getHistoricalPrices("MSFT", 1, 6, 2017, 30, 6, 2017).size());
+    assertEquals("AAPL", retriever.getName("AAPL"));
+  }
+
+  /**
+   * Tests if ingesting again only appends dates after the last stored date.
+   */
+  @Test
+  public void incrementalTest() throws Exception {
+    ingester.ingest(dumps);
+    PriceStoreIngester.Report again = ingester.ingest(dumps);
+    assertEquals(0, again.getNewRows());
+    assertEquals(0, again.getUpdatedSymbols());
+
+    Files.write(dumps.resolve("MSFT.csv"), ("Date,Open,High,Low,Close\n"
+            + "20170613,70.02,70.82,69.96,70.65\n"
+            + "20170608,1,1,1,1\n").getBytes(StandardCharsets.UTF_8));
+    PriceStoreIngester.Report update = ingester.ingest(dumps.resolve("MSFT.csv"));
+    assertEquals(1, update.getFiles());
+    assertEquals(1, update.getNewRows());
+    assertEquals(1, update.getUpdatedSymbols());
+
+    Map<Integer, PriceRecord> msft = new MappedStockDataRetriever(store)
+            .getHistoricalPrices("MSFT", 1, 6, 2017, 30, 6, 2017);
+    assertEquals(5, msft.size());
+    assertEquals(71.95, msft.get(20170608).getClosePrice(), epsilon);
+    assertEquals(70.65, msft.get(20170613).getClosePrice(), epsilon);
+  }
+}
@@ -0,0 +1,107 @@
+package util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for stub market data server class.
+ */
+public class StubMarketDataServerTest {
+  private StubMarketDataServer server;
+  private WebStockDataRetriever retriever;
+
+  /**
+   * Set up a local server serving fake data.
+   */
+  @Before
+  public void setUp() throws Exception {
+    server = new StubMarketDataServer(new FakeStockDataRetriever(), 4);
+    retriever = new WebStockDataRetriever(server.getQuoteUrl(), server.getHistoryUrl(),
+            Duration.ofSeconds(5), 4);
+  }
+
+  /**
+   * Stop the server.
+   */
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  /**
+   * Tests if every response waits at least the latency less the jitter.
+   */
+  @Test
+  public void latencyTest() throws Exception {
+    server.setLatency(Duration.ofMillis(50), Duration.ofMillis(20));
+    for (int i = 0; i < 3; i++) {
+      long start = System.nanoTime();
+      retriever.getName("S" + i);
+      assertTrue(System.nanoTime() - start >= 30_000_000L);
+    }
+  }
+
+  /**
+   * Tests if the same requests fail the same way with the same seed, and a retry gets a new
+   * draw.
+   */
+  @Test
+  public void errorRateTest() throws Exception {
+    server.setErrorRate(0.5);
+    List<Boolean> first = outcomes();
+    server.setSeed(0);
+    List<Boolean> second = outcomes();
+    assertEquals(first, second);
+    assertTrue(first.contains(true));
+    assertTrue(first.contains(false));
+    assertEquals(first.stream().filter(ok -> !ok).count() * 2, server.getErrorCount());
+
+    // the failed requests of the first round, retried, do not all fail again
+    List<Boolean> third = outcomes();
+    assertTrue(!third.equals(first));
+  }
+
+  /**
+   * Tests if a response is sent no faster than the bandwidth.
+   */
+  @Test
+  public void bandwidthTest() throws Exception {
+    retriever.getHistoricalPrices("GOOG", 1, 1, 2016, 31, 12, 2016);
+    long size = server.getBytesSent();
+    server.setBandwidth(size * 4);
+    long start = System.nanoTime();
+    retriever.getHistoricalPrices("GOOG", 1, 1, 2016, 31, 12, 2016);
+    long elapsed = System.nanoTime() - start;
+    assertEquals(2 * size, server.getBytesSent());
+    assertTrue(elapsed >= 200_000_000L);
+  }
+
+  /**
+   * Request the names of 40 symbols one after another.
+   *
+   * @return for each request, whether it succeeded
+   * @throws Exception when a request fails other than with status 503
+   */
+  private List<Boolean> outcomes() throws Exception {
+    List<Boolean> outcomes = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      try {
+        retriever.getName("S" + i);
+        outcomes.add(true);
+      } catch (IOException e) {
+        assertTrue(e.getMessage().startsWith("HTTP 503"));
+        outcomes.add(false);
+      }
+    }
+    return outcomes;
+  }
+}
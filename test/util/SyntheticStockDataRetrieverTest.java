@@ -0,0 +1,111 @@
+package util;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * This is a JUnit test for synthetic stock data retriever class.
+ */
+public class SyntheticStockDataRetrieverTest {
+  private double epsilon = 0.0001;
+  private SyntheticStockDataRetriever retriever = new SyntheticStockDataRetriever(7);
+
+  /**
+   * Tests if a range gives the same prices as the same days of a longer range, from any
+   * generator of the same seed.
+   */
+  @Test
+  public void reproducibleTest() throws Exception {
+    Map<Integer, PriceRecord> decade = retriever.getHistoricalPrices("GOOG", 1, 1, 2005, 31,
+            12, 2014);
+    Map<Integer, PriceRecord> month = new SyntheticStockDataRetriever(7)
+            .getHistoricalPrices("GOOG", 1, 3, 2012, 31, 3, 2012);
+    assertEquals(22, month.size());
+    for (Map.Entry<Integer, PriceRecord> e : month.entrySet()) {
+      PriceRecord record = decade.get(e.getKey());
+      assertEquals(record.getOpenPrice(), e.getValue().getOpenPrice(), epsilon);
+      assertEquals(record.getClosePrice(), e.getValue().getClosePrice(), epsilon);
+      assertEquals(record.getLowestDayPrice(), e.getValue().getLowestDayPrice(), epsilon);
+      assertEquals(record.getHighestDayPrice(), e.getValue().getHighestDayPrice(), epsilon);
+    }
+
+    Map<Integer, PriceRecord> other = new SyntheticStockDataRetriever(8)
+            .getHistoricalPrices("GOOG", 1, 3, 2012, 31, 3, 2012);
+    assertNotEquals(month.get(20120315).getClosePrice(), other.get(20120315).getClosePrice(),
+            epsilon);
+    Map<Integer, PriceRecord> msft = retriever.getHistoricalPrices("MSFT", 1, 3, 2012, 31, 3,
+            2012);
+    assertNotEquals(month.get(20120315).getClosePrice(), msft.get(20120315).getClosePrice(),
+            epsilon);
+  }
+
+  /**
+   * Tests if every day of 50 years is a weekday with consistent prices in cents.
+   */
+  @Test
+  public void pricesTest() throws Exception {
+    PriceColumns columns = retriever.getColumns("AAPL", 19670101, 20161231);
+    assertEquals(13045, columns.size());
+    for (int i = 0; i < columns.size(); i++) {
+      assertTrue(DateUtil.dayOfWeek(columns.dateAt(i)) <= 5);
+      double open = columns.openAt(i);
+      double close = columns.closeAt(i);
+      assertTrue(columns.lowAt(i) >= 0.01);
+      assertTrue(columns.lowAt(i) <= Math.min(open, close));
+      assertTrue(columns.highAt(i) >= Math.max(open, close));
+      assertEquals(Math.round(close * 100), close * 100, 1e-6);
+    }
+  }
+
+  /**
+   * Tests if years with many regime switches and jumps are generated, over 20 years.
+   */
+  @Test
+  public void turbulentTest() throws Exception {
+    SyntheticStockDataRetriever turbulent = new SyntheticStockDataRetriever(7, 0.09, 0.2, 20,
+            0.08, 10);
+    PriceColumns columns = turbulent.getColumns("AAPL", 19970101, 20161231);
+    assertEquals(5218, columns.size());
+    for (int i = 0; i < columns.size(); i++) {
+      assertTrue(columns.lowAt(i) >= 0.01);
+      assertTrue(columns.lowAt(i) <= Math.min(columns.openAt(i), columns.closeAt(i)));
+    }
+  }
+
+  /**
+   * Tests if the prices of a large universe are generated quickly, and its symbols are distinct.
+   */
+  @Test
+  public void universeTest() throws Exception {
+    List<String> symbols = SyntheticStockDataRetriever.universe(10000);
+    assertEquals("AAAA", symbols.get(0));
+    assertEquals("AAAB", symbols.get(1));
+    assertEquals(10000, symbols.stream().distinct().count());
+    Map<String, Map<Integer, PriceRecord>> prices = retriever.getHistoricalPrices(symbols,
+            1, 1, 2016, 31, 1, 2016);
+    assertEquals(10000, prices.size());
+    assertEquals(21, prices.get("AOUP").size());
+  }
+
+  /**
+   * Tests if malformed symbols are unknown.
+   */
+  @Test
+  public void invalidSymbolTest() throws Exception {
+    assertEquals("N/A", retriever.getName("NO SUCH"));
+    assertEquals("GOOG Synthetic Inc.", retriever.getName("GOOG"));
+    try {
+      retriever.getHistoricalPrices("NO SUCH", 1, 1, 2016, 31, 1, 2016);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("invalid stock symbol", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for the two-tier caching stock data retriever.
+ */
+public class TieredStockDataRetrieverTest {
+  private double epsilon = 0.0001;
+  private FakeStockDataRetriever source;
+  private Path dir;
+  private TieredStockDataRetriever cache;
+
+  /**
+   * Set up a cache whose heap holds two quarters of prices.
+   */
+  @Before
+  public void setUp() throws Exception {
+    source = new FakeStockDataRetriever();
+    dir = Files.createTempDirectory("tiered");
+    cache = new TieredStockDataRetriever(source, dir, 6000, 1000000);
+  }
+
+  /**
+   * Get the first quarter of 2017 of a stock.
+   *
+   * @param stockSymbol the stock symbol
+   * @return the prices
+   * @throws Exception when cannot retrieve data
+   */
+  private Map<Integer, PriceRecord> quarter(String stockSymbol) throws Exception {
+    return cache.getHistoricalPrices(stockSymbol, 1, 1, 2017, 31, 3, 2017);
+  }
+
+  /**
+   * Tests if a covered range is served from the heap without fetching again.
+   */
+  @Test
+  public void heapHitTest() throws Exception {
+    quarter("GOOG");
+    Map<Integer, PriceRecord> march = cache.getHistoricalPrices("GOOG", 1, 3, 2017,
+            31, 3, 2017);
+    assertEquals(1, source.historicalCalls);
+    assertEquals(source.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 3, 2017).keySet(),
+            march.keySet());
+    assertEquals(1, cache.getHeapHitCount());
+    assertEquals(0.5, cache.getHeapHitRate(), epsilon);
+    assertTrue(cache.isOnHeap("GOOG"));
+  }
+
+  /**
+   * Tests if a series which does not fit on the heap is spilled to disk and read from there.
+   */
+  @Test
+  public void spillTest() throws Exception {
+    quarter("GOOG");
+    quarter("AAPL");
+    Map<Integer, PriceRecord> expected = quarter("MSFT");
+    assertFalse(cache.isOnHeap("MSFT"));
+    assertTrue(cache.isOnDisk("MSFT"));
+    assertTrue(cache.getHeapBytes() <= 6000);
+
+    Map<Integer, PriceRecord> actual = quarter("MSFT");
+    assertEquals(3, source.historicalCalls);
+    assertEquals(1, cache.getDiskHitCount());
+    assertEquals(0.25, cache.getDiskHitRate(), epsilon);
+    assertEquals(expected.keySet(), actual.keySet());
+    assertEquals(expected.get(20170315).getClosePrice(), actual.get(20170315).getClosePrice(),
+            epsilon);
+    // requested twice now, it takes the place of a stock requested once
+    assertTrue(cache.isOnHeap("MSFT"));
+    assertEquals(3, cache.getMissCount());
+  }
+
+  /**
+   * Tests if a frequently requested series stays on the heap while others pass through once.
+   */
+  @Test
+  public void frequencyTest() throws Exception {
+    quarter("GOOG");
+    quarter("GOOG");
+    quarter("GOOG");
+    for (int i = 0; i < 10; i++) {
+      quarter("S" + i);
+    }
+    assertTrue(cache.isOnHeap("GOOG"));
+    quarter("GOOG");
+    assertEquals(3, cache.getHeapHitCount());
+    assertEquals(11, source.historicalCalls);
+  }
+
+  /**
+   * Tests if spilled series are found on disk by a new cache on the same directory.
+   */
+  @Test
+  public void restartTest() throws Exception {
+    quarter("GOOG");
+    quarter("AAPL");
+    quarter("MSFT");
+    TieredStockDataRetriever restarted = new TieredStockDataRetriever(source, dir, 6000,
+            1000000);
+    assertTrue(restarted.isOnDisk("MSFT"));
+    assertEquals(65, restarted.getHistoricalPrices("MSFT", 1, 1, 2017, 31, 3, 2017).size());
+    assertEquals(1, restarted.getDiskHitCount());
+    assertEquals(3, source.historicalCalls);
+  }
+
+  /**
+   * Tests if a main-tier series which grows past the heap budget makes room for itself, and the
+   * series it displaces is spilled to disk.
+   */
+  @Test
+  public void growthTest() throws Exception {
+    quarter("GOOG");
+    quarter("AAPL");
+    quarter("GOOG");
+    cache.getHistoricalPrices("GOOG", 1, 4, 2017, 30, 6, 2017);
+    assertTrue(cache.getHeapBytes() <= 6000);
+    assertTrue(cache.isOnHeap("GOOG"));
+    assertFalse(cache.isOnHeap("AAPL"));
+    assertTrue(cache.isOnDisk("AAPL"));
+    assertEquals(130, cache.getHistoricalPrices("GOOG", 1, 1, 2017, 30, 6, 2017).size());
+    assertEquals(3, source.historicalCalls);
+  }
+
+  /**
+   * Tests if a series replaced by a range it does not join is spilled to disk, not dropped.
+   */
+  @Test
+  public void replaceTest() throws Exception {
+    quarter("GOOG");
+    cache.getHistoricalPrices("GOOG", 1, 1, 2016, 31, 3, 2016);
+    assertTrue(cache.isOnDisk("GOOG"));
+    assertEquals(65, quarter("GOOG").size());
+    assertEquals(2, source.historicalCalls);
+    assertEquals(1, cache.getDiskHitCount());
+  }
+}
@@ -0,0 +1,73 @@
+package util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for trading calendar class.
+ */
+public class TradingCalendarTest {
+  private TradingCalendar calendar;
+
+  /**
+   * Set up a calendar of June and July 2017 with the 4th of July as holiday.
+   */
+  @Before
+  public void setUp() throws Exception {
+    Map<Integer, PriceRecord> prices = new FakeStockDataRetriever().getHistoricalPrices("GOOG",
+            1, 6, 2017, 31, 7, 2017);
+    prices.remove(20170704);
+    calendar = TradingCalendar.of(PriceSeries.closingOf(prices));
+  }
+
+  /**
+   * Tests if trading days map to dense ordinals and back.
+   */
+  @Test
+  public void ordinalTest() {
+    assertEquals(0, calendar.ordinalOf(20170601));
+    assertEquals(2, calendar.ordinalOf(20170605));
+    assertEquals(-1, calendar.ordinalOf(20170603));
+    assertEquals(-1, calendar.ordinalOf(20170704));
+    assertEquals(20170705, calendar.dateOf(calendar.ordinalOf(20170703) + 1));
+    assertTrue(calendar.isTradingDay(20170731));
+    assertFalse(calendar.isTradingDay(20170801));
+    assertEquals(42, calendar.size());
+  }
+
+  /**
+   * Tests if the next trading day and business days before a date skip weekends and holidays.
+   */
+  @Test
+  public void steppingTest() {
+    assertEquals(20170605, calendar.nextTradingDay(20170603));
+    assertEquals(20170705, calendar.nextTradingDay(20170704));
+    assertEquals(-1, calendar.nextTradingDay(20170801));
+    assertEquals(20170630, calendar.businessDaysBefore(20170705, 2));
+    assertEquals(20170703, calendar.businessDaysBefore(20170704, 0));
+    assertEquals(-1, calendar.businessDaysBefore(20170602, 5));
+    assertEquals(-1, calendar.nextTradingOrdinal(20170722, 1));
+    assertEquals(calendar.ordinalOf(20170724), calendar.nextTradingOrdinal(20170722, 2));
+  }
+
+  /**
+   * Tests if the estimated lookback start holds the needed number of business days.
+   */
+  @Test
+  public void lookbackTest() throws Exception {
+    FakeStockDataRetriever dataRetriever = new FakeStockDataRetriever();
+    for (int days : new int[]{1, 5, 50, 200}) {
+      int start = TradingCalendar.lookbackStart(20170616, days);
+      Map<Integer, PriceRecord> prices = dataRetriever.getHistoricalPrices("GOOG",
+              start % 100, start / 100 % 100, start / 10000, 16, 6, 2017);
+      assertTrue(prices.size() >= days);
+      assertTrue(prices.size() <= days + days / 20 + 6);
+    }
+  }
+}
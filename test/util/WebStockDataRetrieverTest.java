@@ -0,0 +1,127 @@
+package util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This is a JUnit test for web stock data retriever class.
+ */
+public class WebStockDataRetrieverTest {
+  private double epsilon = 0.0001;
+  private FakeStockDataRetriever source;
+  private StubMarketDataServer server;
+  private WebStockDataRetriever retriever;
+
+  /**
+   * A retriever whose historical prices take a while, so requests overlap.
+   */
+  private static class SlowRetriever extends FakeStockDataRetriever {
+
+    @Override
+    public Map<Integer, PriceRecord> getHistoricalPrices(
+            String stockSymbol, int fromDate, int fromMonth, int fromYear,
+            int toDate, int toMonth, int toYear) throws Exception {
+      Thread.sleep(100);
+      return super.getHistoricalPrices(stockSymbol, fromDate, fromMonth, fromYear, toDate,
+              toMonth, toYear);
+    }
+  }
+
+  /**
+   * Set up a local server serving fake data.
+   */
+  @Before
+  public void setUp() throws Exception {
+    source = new FakeStockDataRetriever("ZZZZ");
+    server = new StubMarketDataServer(source, 4);
+    retriever = new WebStockDataRetriever(server.getQuoteUrl(), server.getHistoryUrl(),
+            Duration.ofSeconds(5), 4);
+  }
+
+  /**
+   * Stop the server.
+   */
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  /**
+   * Tests if names, current prices and historical prices are read from the responses.
+   */
+  @Test
+  public void retrieveTest() throws Exception {
+    assertEquals("GOOG Corp", retriever.getName("GOOG"));
+    assertEquals("N/A", retriever.getName("ZZZZ"));
+    assertEquals(source.getCurrentPrice("GOOG"), retriever.getCurrentPrice("GOOG"), epsilon);
+
+    Map<Integer, PriceRecord> expected = source.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 3,
+            2017);
+    Map<Integer, PriceRecord> actual = retriever.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 3,
+            2017);
+    assertEquals(expected.keySet(), actual.keySet());
+    for (int date : expected.keySet()) {
+      assertEquals(expected.get(date).getOpenPrice(), actual.get(date).getOpenPrice(), epsilon);
+      assertEquals(expected.get(date).getClosePrice(), actual.get(date).getClosePrice(),
+              epsilon);
+      assertEquals(expected.get(date).getLowestDayPrice(), actual.get(date).getLowestDayPrice(),
+              epsilon);
+      assertEquals(expected.get(date).getHighestDayPrice(),
+              actual.get(date).getHighestDayPrice(), epsilon);
+    }
+    assertEquals(4, server.getRequestCount());
+    assertEquals(4, server.getCompressedCount());
+  }
+
+  /**
+   * Tests if an exception is thrown when prices of an unknown symbol are requested.
+   */
+  @Test(expected = IOException.class)
+  public void invalidSymbolTest() throws Exception {
+    retriever.getHistoricalPrices("ZZZZ", 1, 3, 2017, 31, 3, 2017);
+  }
+
+  /**
+   * Tests if no more requests than the limit are in flight at the same time.
+   */
+  @Test
+  public void concurrencyTest() throws Exception {
+    server.close();
+    server = new StubMarketDataServer(new SlowRetriever(), 16);
+    retriever = new WebStockDataRetriever(server.getQuoteUrl(), server.getHistoryUrl(),
+            Duration.ofSeconds(5), 3);
+    List<String> symbols = new ArrayList<>();
+    for (int i = 0; i < 12; i++) {
+      symbols.add("S" + i);
+    }
+    Map<String, Map<Integer, PriceRecord>> prices = retriever.getHistoricalPrices(symbols, 1, 3,
+            2017, 10, 3, 2017);
+    assertEquals(12, prices.size());
+    assertEquals(8, prices.get("S11").size());
+    assertTrue(server.getMaxInFlight() <= 3);
+    assertTrue(server.getMaxInFlight() >= 2);
+  }
+
+  /**
+   * Tests if a request fails when its response takes longer than the timeout.
+   */
+  @Test(expected = HttpTimeoutException.class)
+  public void timeoutTest() throws Exception {
+    server.close();
+    server = new StubMarketDataServer(new SlowRetriever(), 1);
+    retriever = new WebStockDataRetriever(server.getQuoteUrl(), server.getHistoryUrl(),
+            Duration.ofMillis(20), 1);
+    retriever.getHistoricalPrices("GOOG", 1, 3, 2017, 31, 3, 2017);
+  }
+}